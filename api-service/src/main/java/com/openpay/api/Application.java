@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * <h2>OpenPay API Service — Main Application Entry Point</h2>
@@ -15,6 +16,8 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
  * <li>Scans for components, configurations, and services in the API module</li>
  * <li>Launches the embedded web server and initializes the application
  * context</li>
+ * <li>Enables scheduling for background maintenance jobs (e.g., idempotency
+ * key purge)</li>
  * </ul>
  *
  * <h3>Usage:</h3>
@@ -31,6 +34,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 @EntityScan(basePackages = {
     "com.openpay.shared.model"
 })
+@EnableScheduling
 public class Application {
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
@@ -0,0 +1,125 @@
+package com.openpay.api.config;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>ReadReplicaConfig</h2>
+ * <p>
+ * Replaces the auto-configured datasource with a primary/replica router when
+ * {@code openpay.datasource.replicas.enabled=true}. Without that flag nothing
+ * here is loaded and the service keeps its single primary datasource.
+ * </p>
+ *
+ * <ul>
+ * <li>Primary pool is built from the usual {@code spring.datasource.*} and
+ * {@code spring.datasource.hikari.*} settings and is the one Flyway
+ * migrates</li>
+ * <li>One read-only pool per {@code openpay.datasource.replicas.nodes[i]}</li>
+ * <li>The {@code @Primary} datasource seen by JPA and JdbcTemplate is the lazy
+ * router</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ * @see ReplicaRoutingDataSource
+ * @see ReplicaLagMonitor
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "openpay.datasource.replicas", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class ReadReplicaConfig {
+
+    /**
+     * Write-side pool; also the Flyway target.
+     *
+     * @param properties standard {@code spring.datasource.*} settings
+     * @return the primary Hikari pool
+     */
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("openpay-primary");
+        return dataSource;
+    }
+
+    /**
+     * Replica pools plus the lag probe that decides which are usable.
+     *
+     * @param properties    replica settings
+     * @param meterRegistry registry for lag/health gauges
+     * @return the lag monitor owning all replica pools
+     */
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaDataSourceProperties properties, MeterRegistry meterRegistry) {
+        List<ReplicaDataSourceProperties.Node> nodes = properties.getNodes();
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException(
+                    "openpay.datasource.replicas.enabled=true but no openpay.datasource.replicas.nodes configured");
+        }
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            ReplicaDataSourceProperties.Node node = nodes.get(i);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("openpay-replica-" + i);
+            replica.setJdbcUrl(node.getUrl());
+            replica.setUsername(node.getUsername());
+            replica.setPassword(node.getPassword());
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(properties.getMaxPoolSize());
+            // Let the app start with a replica down; the lag probe keeps it out of rotation
+            replica.setInitializationFailTimeout(-1);
+            replicas.put("replica-" + i, replica);
+        }
+        return new ReplicaLagMonitor(replicas, properties.getMaxLagMs(), properties.getReceiverTimeoutMs(),
+                meterRegistry);
+    }
+
+    /**
+     * The datasource everything else injects: routes read-only transactions to
+     * replicas, the rest to the primary.
+     *
+     * @param primaryDataSource write-side pool
+     * @param lagMonitor        replica pools and health
+     * @param meterRegistry     registry for routing counters
+     * @return lazy routing datasource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaLagMonitor lagMonitor,
+            MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>(lagMonitor.getReplicas());
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primaryDataSource);
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(lagMonitor, meterRegistry);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+
+        // Defers the routing decision until the first statement, i.e. after
+        // the transaction manager has bound the read-only flag
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
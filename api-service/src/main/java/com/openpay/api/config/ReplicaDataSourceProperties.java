@@ -0,0 +1,134 @@
+package com.openpay.api.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <h2>ReplicaDataSourceProperties</h2>
+ * <p>
+ * Binds {@code openpay.datasource.replicas.*}: the read replicas that
+ * {@code @Transactional(readOnly = true)} work is routed to, and the lag
+ * threshold above which a replica is skipped in favour of the primary.
+ * </p>
+ *
+ * <h3>Example:</h3>
+ *
+ * <pre>
+ * openpay.datasource.replicas.enabled=true
+ * openpay.datasource.replicas.max-lag-ms=1000
+ * openpay.datasource.replicas.nodes[0].url=jdbc:postgresql://localhost:5433/openpay
+ * openpay.datasource.replicas.nodes[0].username=openpay
+ * openpay.datasource.replicas.nodes[0].password=openpay
+ * </pre>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "openpay.datasource.replicas")
+public class ReplicaDataSourceProperties {
+
+    /** Master switch; when false all traffic stays on the primary. */
+    private boolean enabled;
+
+    /** Replicas lagging more than this are taken out of rotation. */
+    private long maxLagMs = 1000;
+
+    /**
+     * A replica counts as caught up only while its WAL receiver is streaming
+     * and heard from the primary within this long (Postgres'
+     * {@code wal_receiver_timeout} by default).
+     */
+    private long receiverTimeoutMs = 60000;
+
+    /** How often replica lag is probed. */
+    private long lagCheckIntervalMs = 2000;
+
+    /** Connection pool size per replica. */
+    private int maxPoolSize = 10;
+
+    /** Replica connection settings. */
+    private List<Node> nodes = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    public void setMaxLagMs(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    public long getReceiverTimeoutMs() {
+        return receiverTimeoutMs;
+    }
+
+    public void setReceiverTimeoutMs(long receiverTimeoutMs) {
+        this.receiverTimeoutMs = receiverTimeoutMs;
+    }
+
+    public long getLagCheckIntervalMs() {
+        return lagCheckIntervalMs;
+    }
+
+    public void setLagCheckIntervalMs(long lagCheckIntervalMs) {
+        this.lagCheckIntervalMs = lagCheckIntervalMs;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Connection settings of a single replica.
+     */
+    public static class Node {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.openpay.api.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>ReplicaLagMonitor</h2>
+ * <p>
+ * Owns the replica connection pools and periodically measures how far each
+ * replica trails the primary. Only replicas whose replay lag is within
+ * {@code openpay.datasource.replicas.max-lag-ms} are handed out to
+ * {@link ReplicaRoutingDataSource}; the rest are skipped until they catch up.
+ * </p>
+ *
+ * <ul>
+ * <li>Lag is {@code now() - pg_last_xact_replay_timestamp()}, or 0 when the
+ * replica has replayed everything it received and its WAL receiver is
+ * streaming and heard from the primary within
+ * {@code openpay.datasource.replicas.receiver-timeout-ms} (an idle primary
+ * would otherwise look infinitely behind)</li>
+ * <li>A replica whose WAL receiver is down or silent is never assumed in sync:
+ * it is only as fresh as its last replayed transaction, and unknown if it has
+ * replayed none</li>
+ * <li>A replica that cannot be probed counts as unhealthy</li>
+ * <li>Replicas start unhealthy; reads go to the primary until the first
+ * successful probe</li>
+ * <li>Exports {@code openpay.datasource.replica.lag} and
+ * {@code openpay.datasource.replica.healthy} per replica</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // pg_stat_wal_receiver details need pg_read_all_stats; without it the
+    // receiver looks silent and lag falls back to the replay timestamp
+    private static final String LAG_QUERY = "SELECT CASE "
+            + "WHEN NOT pg_is_in_recovery() THEN -1 "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() AND EXISTS (SELECT 1 "
+            + "FROM pg_stat_wal_receiver WHERE status = 'streaming' "
+            + "AND last_msg_receipt_time > now() - make_interval(secs => ?)) THEN 0 "
+            + "ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint "
+            + "END";
+
+    private static final long UNKNOWN_LAG = Long.MAX_VALUE;
+
+    private final Map<String, HikariDataSource> replicas;
+    private final long maxLagMs;
+    private final long receiverTimeoutMs;
+    private final Map<String, AtomicLong> lagMs = new ConcurrentHashMap<>();
+    private volatile List<String> healthy = List.of();
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    /**
+     * Constructs the monitor and registers per-replica gauges.
+     *
+     * @param replicas      replica pools keyed by routing key; closed with the
+     *                      monitor
+     * @param maxLagMs          lag above which a replica is taken out of
+     *                          rotation
+     * @param receiverTimeoutMs longest silence of a replica's WAL receiver
+     *                          before it no longer counts as caught up
+     * @param meterRegistry     registry for lag/health gauges
+     */
+    public ReplicaLagMonitor(Map<String, HikariDataSource> replicas, long maxLagMs, long receiverTimeoutMs,
+            MeterRegistry meterRegistry) {
+        this.replicas = replicas;
+        this.maxLagMs = maxLagMs;
+        this.receiverTimeoutMs = receiverTimeoutMs;
+        for (String key : replicas.keySet()) {
+            AtomicLong lag = new AtomicLong(UNKNOWN_LAG);
+            lagMs.put(key, lag);
+            Gauge.builder("openpay.datasource.replica.lag", lag,
+                    l -> l.get() == UNKNOWN_LAG ? Double.NaN : l.get())
+                    .tag("replica", key)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("openpay.datasource.replica.healthy", this, m -> m.healthy.contains(key) ? 1 : 0)
+                    .tag("replica", key)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @return the replica pools keyed by routing key
+     */
+    public Map<String, ? extends DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Picks the next in-sync replica, round-robin.
+     *
+     * @return routing key of a healthy replica, or empty if none is usable
+     */
+    public Optional<String> nextHealthyReplica() {
+        List<String> current = healthy;
+        if (current.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(current.get(Math.floorMod(cursor.getAndIncrement(), current.size())));
+    }
+
+    /**
+     * Scheduled probe: measures every replica and rebuilds the healthy set.
+     * Never throws; an unreachable replica is simply marked unhealthy.
+     */
+    @Scheduled(fixedDelayString = "${openpay.datasource.replicas.lag-check-interval-ms:2000}")
+    public void checkLag() {
+        List<String> inSync = replicas.entrySet().stream()
+                .filter(e -> {
+                    long lag = probe(e.getKey(), e.getValue());
+                    lagMs.get(e.getKey()).set(lag);
+                    return lag <= maxLagMs;
+                })
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+
+        if (!inSync.equals(healthy)) {
+            log.info("[REPLICA] In-sync replicas changed: {} -> {}", healthy, inSync);
+        }
+        healthy = inSync;
+    }
+
+    private long probe(String key, DataSource replica) {
+        try (Connection connection = replica.getConnection();
+                PreparedStatement statement = connection.prepareStatement(LAG_QUERY)) {
+            statement.setDouble(1, receiverTimeoutMs / 1000.0);
+            long lag;
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                lag = rs.getLong(1);
+                if (rs.wasNull()) {
+                    log.warn("[REPLICA] {} has no WAL receiver and no replayed transaction; lag unknown", key);
+                    return UNKNOWN_LAG;
+                }
+            }
+            if (lag < 0) {
+                // Promoted or misconfigured: never route reads to a writable node
+                log.warn("[REPLICA] {} is not in recovery; keeping it out of rotation", key);
+                return UNKNOWN_LAG;
+            }
+            return lag;
+        } catch (SQLException e) {
+            log.warn("[REPLICA] Lag probe failed for {}: {}", key, e.getMessage());
+            return UNKNOWN_LAG;
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,67 @@
+package com.openpay.api.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>ReplicaRoutingDataSource</h2>
+ * <p>
+ * Routes each physical connection by the transaction it is opened for:
+ * {@code @Transactional(readOnly = true)} work goes to an in-sync replica from
+ * {@link ReplicaLagMonitor}, everything else (writes, Flyway, JdbcTemplate
+ * outside a transaction) goes to the primary.
+ * </p>
+ *
+ * <ul>
+ * <li>Falls back to the primary when every replica lags beyond the threshold
+ * or is down</li>
+ * <li>Counts the split as {@code openpay.datasource.routed} tagged
+ * {@code target=primary|replica|fallback}</li>
+ * <li>Must be wrapped in a {@code LazyConnectionDataSourceProxy} so the
+ * connection is fetched after the read-only flag is bound</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    /** Routing key of the primary datasource. */
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter routedPrimary;
+    private final Counter routedReplica;
+    private final Counter routedFallback;
+
+    /**
+     * @param lagMonitor    source of in-sync replicas
+     * @param meterRegistry registry for routing counters
+     */
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.routedPrimary = meterRegistry.counter("openpay.datasource.routed", "target", "primary");
+        this.routedReplica = meterRegistry.counter("openpay.datasource.routed", "target", "replica");
+        this.routedFallback = meterRegistry.counter("openpay.datasource.routed", "target", "fallback");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            routedPrimary.increment();
+            return PRIMARY;
+        }
+        return lagMonitor.nextHealthyReplica()
+                .map(replica -> {
+                    routedReplica.increment();
+                    return (Object) replica;
+                })
+                .orElseGet(() -> {
+                    routedFallback.increment();
+                    return PRIMARY;
+                });
+    }
+}
@@ -5,10 +5,14 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.openpay.shared.util.StreamPartitioner;
 
 /**
  * <h2>StreamBootstrapConfig</h2>
@@ -19,8 +23,12 @@ import org.springframework.data.redis.core.RedisTemplate;
  * </p>
  *
  * <ul>
- * <li>Creates or verifies existence of {@code transactions.main},
- * {@code transactions.retry}, and {@code transactions.dlq} streams</li>
+ * <li>Creates or verifies existence of {@code transactions.retry} and
+ * {@code transactions.dlq} streams</li>
+ * <li>Publishes the partition count of {@code transactions.main.{p}} so
+ * workers can detect a mismatched {@code openpay.streams.partitions}
+ * (partition streams are created by the first XADD; no init record is written
+ * to them, it would only end up in the DLQ)</li>
  * <li>Runs automatically at startup via {@link CommandLineRunner}</li>
  * <li>Uses the provided RedisTemplate for stream operations</li>
  * </ul>
@@ -38,18 +46,24 @@ public class StreamBootstrapConfig {
      *
      * @param redisApiStreamBootStrapTemplate configured RedisTemplate for stream
      *                                        operations
+     * @param stringRedisTemplate             template for plain string keys
+     * @param streamPartitions                number of partition streams
      * @return CommandLineRunner that executes on application startup
      */
     @Bean
-    public CommandLineRunner redisStreamBootstrap(RedisTemplate<Object, Object> redisApiStreamBootStrapTemplate) {
+    public CommandLineRunner redisStreamBootstrap(RedisTemplate<Object, Object> redisApiStreamBootStrapTemplate,
+            StringRedisTemplate stringRedisTemplate,
+            @Value("${openpay.streams.partitions:8}") int streamPartitions) {
         return args -> {
             Map<Object, Object> fields = new HashMap<>();
             fields.put("test", "init");
-            redisApiStreamBootStrapTemplate.opsForStream().add("transactions.main", fields);
             redisApiStreamBootStrapTemplate.opsForStream().add("transactions.retry", fields);
             redisApiStreamBootStrapTemplate.opsForStream().add("transactions.dlq", fields);
+            stringRedisTemplate.opsForValue().set(StreamPartitioner.PARTITION_COUNT_KEY,
+                    String.valueOf(streamPartitions));
             log.info(
-                    "==============>✅ Redis Streams created/verified: transactions.main, transactions.retry, transactions.dlq");
+                    "==============>✅ Redis Streams created/verified: transactions.main.[0..{}), transactions.retry, transactions.dlq",
+                    streamPartitions);
         };
     }
 }
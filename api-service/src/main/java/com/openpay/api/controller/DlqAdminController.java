@@ -0,0 +1,135 @@
+package com.openpay.api.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.openpay.api.service.DlqRedriveService;
+import com.openpay.shared.dto.StatusResponse;
+
+/**
+ * <h2>DlqAdminController</h2>
+ * <p>
+ * Operator endpoints for the dead-letter queue ({@code transactions.dlq}):
+ * failure analytics and throttled redrive, backed by
+ * {@link DlqRedriveService}. Also driven by {@code scripts/dlq_redrive.sh}.
+ * </p>
+ *
+ * <h3>Endpoints</h3>
+ * <ul>
+ * <li><b>GET /admin/dlq/summary</b> — entry counts by failure reason and
+ * outcome</li>
+ * <li><b>GET /admin/dlq/entries?reason=&amp;after=&amp;limit=</b> — one page of
+ * entries</li>
+ * <li><b>POST /admin/dlq/redrive</b> — start a redrive job, body
+ * <code>{"reasons":["GATEWAY_UNAVAILABLE"],"limit":1000,"ratePerSecond":20,"dryRun":false}</code>
+ * (or <code>"entryIds":[...]</code>)</li>
+ * <li><b>GET /admin/dlq/redrive/{jobId}</b> — job progress</li>
+ * <li><b>DELETE /admin/dlq/redrive/{jobId}</b> — cancel a job</li>
+ * </ul>
+ *
+ * <ul>
+ * <li>Every call needs header <code>X-Admin-Token</code> matching
+ * {@code openpay.admin.token}; with no token configured the endpoints answer
+ * <code>403</code></li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@RestController
+@RequestMapping("/admin/dlq")
+public class DlqAdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(DlqAdminController.class);
+
+    private final DlqRedriveService dlqRedriveService;
+    private final byte[] adminToken;
+
+    /**
+     * @param dlqRedriveService DLQ analytics and redrive
+     * @param adminToken        shared operator token (blank disables the endpoints)
+     */
+    public DlqAdminController(DlqRedriveService dlqRedriveService,
+            @Value("${openpay.admin.token:}") String adminToken) {
+        this.dlqRedriveService = dlqRedriveService;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<?> summary(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(dlqRedriveService.summarize());
+    }
+
+    @GetMapping("/entries")
+    public ResponseEntity<?> entries(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(value = "reason", required = false) String reason,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(dlqRedriveService.listEntries(reason, after, limit));
+    }
+
+    @PostMapping("/redrive")
+    public ResponseEntity<?> redrive(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestBody DlqRedriveService.RedriveRequest request) {
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(dlqRedriveService.startRedrive(request));
+    }
+
+    @GetMapping("/redrive/{jobId}")
+    public ResponseEntity<?> job(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @PathVariable("jobId") String jobId) {
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return dlqRedriveService.getJob(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/redrive/{jobId}")
+    public ResponseEntity<?> cancel(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @PathVariable("jobId") String jobId) {
+        if (!authorized(token)) {
+            return forbidden();
+        }
+        return dlqRedriveService.cancel(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private boolean authorized(String token) {
+        if (adminToken.length == 0 || token == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ResponseEntity<StatusResponse> forbidden() {
+        log.warn("[SECURITY] DLQ admin call without a valid X-Admin-Token");
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new StatusResponse(null, "ERROR", "Admin token missing or invalid"));
+    }
+}
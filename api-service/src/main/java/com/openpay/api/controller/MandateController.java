@@ -0,0 +1,124 @@
+package com.openpay.api.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openpay.api.security.HmacAuthService;
+import com.openpay.api.service.MandateService;
+import com.openpay.shared.dto.MandateRequest;
+import com.openpay.shared.dto.StatusResponse;
+import com.openpay.shared.exception.OpenPayException;
+import com.openpay.shared.model.MandateStatus;
+
+import jakarta.validation.Valid;
+
+/**
+ * ========================================================================
+ * MandateController: OpenPay Recurring Payment (Mandate) Endpoints
+ * ------------------------------------------------------------------------
+ * - Registers recurring payment mandates (/mandates).
+ * - Revokes them (/mandates/{id}/revoke).
+ * - Same HMAC authentication as the payment endpoints; each due occurrence
+ * is later fired as an ordinary payment by MandateScheduler.
+ * ========================================================================
+ * <b>API Endpoints:</b>
+ * POST /mandates - Register a mandate
+ * Headers: Idempotency-Key (required), X-HMAC (required)
+ * Body: MandateRequest
+ * POST /mandates/{id}/revoke - Revoke a mandate
+ * Headers: X-HMAC (required, over "{id}:revoke")
+ * ========================================================================
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@RestController
+public class MandateController {
+
+    private static final Logger log = LoggerFactory.getLogger(MandateController.class);
+
+    private final MandateService mandateService;
+    private final HmacAuthService hmacAuthService;
+    private final ObjectMapper objectMapper;
+
+    public MandateController(MandateService mandateService,
+            HmacAuthService hmacAuthService,
+            ObjectMapper objectMapper) {
+        this.mandateService = mandateService;
+        this.hmacAuthService = hmacAuthService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registers a mandate; HMAC over the request JSON plus the
+     * Idempotency-Key, as for {@code /pay}.
+     */
+    @PostMapping("/mandates")
+    public ResponseEntity<StatusResponse> registerMandate(
+            @Valid @RequestBody MandateRequest request,
+            @RequestHeader("Idempotency-Key") String idempotencyKey,
+            @RequestHeader(value = "X-HMAC", required = false) String hmacHeader) {
+
+        if (hmacHeader == null || hmacHeader.isBlank()) {
+            log.warn("[SECURITY] Mandate request missing HMAC header");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new StatusResponse(null, "ERROR", "Missing HMAC header"));
+        }
+        String message;
+        try {
+            message = objectMapper.writeValueAsString(request) + idempotencyKey;
+        } catch (JsonProcessingException e) {
+            log.error("[SECURITY] Failed to serialize MandateRequest for HMAC validation", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new StatusResponse(null, "ERROR", "Internal error (serialization)"));
+        }
+        if (!hmacAuthService.isValidHmac(message, hmacHeader)) {
+            log.warn("[SECURITY] Mandate request failed HMAC validation (idempotencyKey={})", idempotencyKey);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new StatusResponse(null, "ERROR", "Invalid HMAC signature"));
+        }
+
+        try {
+            Long id = mandateService.register(request, idempotencyKey);
+            return ResponseEntity.ok(new StatusResponse(id, MandateStatus.ACTIVE.name(),
+                    "Mandate registered, first debit due " + request.getStartAt()));
+        } catch (OpenPayException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new StatusResponse(null, "ERROR", e.getMessage()));
+        }
+    }
+
+    /**
+     * Revokes a mandate; HMAC over {@code "{id}:revoke"}.
+     */
+    @PostMapping("/mandates/{id}/revoke")
+    public ResponseEntity<StatusResponse> revokeMandate(@PathVariable Long id,
+            @RequestHeader(value = "X-HMAC", required = false) String hmacHeader) {
+        if (hmacHeader == null || hmacHeader.isBlank()) {
+            log.warn("[SECURITY] Mandate revoke missing HMAC header");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new StatusResponse(id, "ERROR", "Missing HMAC header"));
+        }
+        if (!hmacAuthService.isValidHmac(id + ":revoke", hmacHeader)) {
+            log.warn("[SECURITY] Mandate revoke failed HMAC validation (mandateId={})", id);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new StatusResponse(id, "ERROR", "Invalid HMAC signature"));
+        }
+        try {
+            mandateService.revoke(id);
+            return ResponseEntity.ok(new StatusResponse(id, MandateStatus.REVOKED.name(), "Mandate revoked"));
+        } catch (OpenPayException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new StatusResponse(id, "ERROR", e.getMessage()));
+        }
+    }
+}
@@ -2,15 +2,16 @@ package com.openpay.api.controller;
 
 import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.openpay.api.service.TransactionQueryService;
 import com.openpay.shared.dto.StatusResponse;
-import com.openpay.shared.model.TransactionEntity;
-import com.openpay.shared.repository.TransactionRepository;
+import com.openpay.shared.model.TransactionStatus;
 
 /**
  * <h2>StatusController</h2>
@@ -37,7 +38,7 @@ import com.openpay.shared.repository.TransactionRepository;
  * <pre>
  * {
  *   "id": 42,
- *   "status": "SUCCESS"
+ *   "status": "COMPLETED"
  * }
  * </pre>
  *
@@ -45,6 +46,9 @@ import com.openpay.shared.repository.TransactionRepository;
  * <li>Returns <code>404 Not Found</code> if the transaction does not
  * exist.</li>
  * <li>On success, returns status in a {@link StatusResponse} DTO.</li>
+ * <li>Reads go to a read replica when enabled; a transaction the replica has
+ * not replayed yet is looked up on the primary before answering 404 (only
+ * then: without replicas the first lookup already was the primary).</li>
  * </ul>
  *
  * @author David Grace
@@ -56,15 +60,19 @@ import com.openpay.shared.repository.TransactionRepository;
 @RequestMapping("/transaction")
 public class StatusController {
 
-    private final TransactionRepository transactionRepository;
+    private final TransactionQueryService transactionQueryService;
+    private final boolean replicasEnabled;
 
     /**
      * Constructs the controller with its required dependencies.
      * 
-     * @param transactionRepository DAO for accessing transaction data
+     * @param transactionQueryService read-only transaction lookups
+     * @param replicasEnabled         whether reads may be served by a replica
      */
-    public StatusController(TransactionRepository transactionRepository) {
-        this.transactionRepository = transactionRepository;
+    public StatusController(TransactionQueryService transactionQueryService,
+            @Value("${openpay.datasource.replicas.enabled:false}") boolean replicasEnabled) {
+        this.transactionQueryService = transactionQueryService;
+        this.replicasEnabled = replicasEnabled;
     }
 
     /**
@@ -75,15 +83,19 @@ public class StatusController {
      */
     @GetMapping("/{id}/status")
     public ResponseEntity<?> getStatus(@PathVariable("id") Long id) {
-        Optional<TransactionEntity> transaction = transactionRepository.findById(id);
+        // Replica first; fall back to the primary for not-yet-replicated rows
+        Optional<TransactionStatus> status = transactionQueryService.findStatus(id);
+        if (status.isEmpty() && replicasEnabled) {
+            status = transactionQueryService.findStatusOnPrimary(id);
+        }
 
-        if (transaction.isEmpty()) {
+        if (status.isEmpty()) {
             // Return 404 if transaction is not present
             return ResponseEntity.notFound().build();
         }
 
         // Return the transaction's status in a standard response DTO
         return ResponseEntity.ok(
-                new StatusResponse(id, transaction.get().getStatus()));
+                new StatusResponse(id, status.get().name()));
     }
 }
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -15,6 +16,9 @@ import com.openpay.api.security.HmacAuthService;
 import com.openpay.api.service.TransactionApiProducer;
 import com.openpay.shared.dto.PaymentRequest;
 import com.openpay.shared.dto.StatusResponse;
+import com.openpay.shared.exception.OpenPayException;
+import com.openpay.shared.exception.VelocityLimitExceededException;
+import com.openpay.shared.model.TransactionStatus;
 
 import jakarta.validation.Valid;
 
@@ -25,6 +29,8 @@ import jakarta.validation.Valid;
  * ------------------------------------------------------------------------
  * - Initiates new UPI payment requests (/pay).
  * - Initiates new UPI collect requests (/collect).
+ * - Records the payer's approval or decline of a collect
+ * (/collect/{txnId}/approve, /collect/{txnId}/decline).
  * - Enforces API-level HMAC authentication for all money movement endpoints.
  * - Validates request input, idempotency, and authenticates using HMAC.
  * - Delegates business logic to TransactionApiProducer (service layer).
@@ -34,6 +40,8 @@ import jakarta.validation.Valid;
  * POST /collect - Initiate a collect (pull) request
  * Headers: Idempotency-Key (required), X-HMAC (required)
  * Body: PaymentRequest
+ * POST /collect/{txnId}/approve | /decline - Payer's answer to a collect
+ * Headers: X-HMAC (required, over "{txnId}:approve" / "{txnId}:decline")
  * ========================================================================
  * <b>Security/Audit:</b>
  * - All requests must include valid HMAC, or will be rejected (401/403).
@@ -75,7 +83,7 @@ public class TransactionController {
                 hmacHeader,
                 (req, key) -> {
                     Long id = transactionApiProducer.createTransaction(req, key);
-                    return new StatusResponse(id, "QUEUED", "Transaction queued");
+                    return new StatusResponse(id, TransactionStatus.QUEUED.name(), "Transaction queued");
                 });
     }
 
@@ -94,10 +102,28 @@ public class TransactionController {
                 hmacHeader,
                 (req, key) -> {
                     Long id = transactionApiProducer.createCollectRequest(req, key);
-                    return new StatusResponse(id, "REQUESTED", "Collect request queued");
+                    return new StatusResponse(id, TransactionStatus.REQUESTED.name(), "Collect request queued");
                 });
     }
 
+    /**
+     * Handles the payer's approval of a pending collect request.
+     */
+    @PostMapping("/collect/{txnId}/approve")
+    public ResponseEntity<StatusResponse> approveCollect(@PathVariable Long txnId,
+            @RequestHeader(value = "X-HMAC", required = false) String hmacHeader) {
+        return respondToCollect(txnId, true, hmacHeader);
+    }
+
+    /**
+     * Handles the payer's decline of a pending collect request.
+     */
+    @PostMapping("/collect/{txnId}/decline")
+    public ResponseEntity<StatusResponse> declineCollect(@PathVariable Long txnId,
+            @RequestHeader(value = "X-HMAC", required = false) String hmacHeader) {
+        return respondToCollect(txnId, false, hmacHeader);
+    }
+
     // =========================
     // INTERNAL HELPER (DRY)
     // =========================
@@ -135,6 +161,10 @@ public class TransactionController {
         try {
             StatusResponse response = logic.process(request, idempotencyKey);
             return ResponseEntity.ok(response);
+        } catch (VelocityLimitExceededException e) {
+            log.warn("[VELOCITY] {} (idempotencyKey={})", e.getMessage(), idempotencyKey);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(new StatusResponse(null, "ERROR", e.getMessage()));
         } catch (Exception e) {
             log.error("[BUSINESS] Exception in business logic: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -142,6 +172,33 @@ public class TransactionController {
         }
     }
 
+    /**
+     * HMAC check and hand-off of a payer's collect answer; accepted answers are
+     * applied asynchronously by the worker (202).
+     */
+    private ResponseEntity<StatusResponse> respondToCollect(Long txnId, boolean approved, String hmacHeader) {
+        if (hmacHeader == null || hmacHeader.isBlank()) {
+            log.warn("[SECURITY] Collect response missing HMAC header");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new StatusResponse(txnId, "ERROR", "Missing HMAC header"));
+        }
+        String decision = approved ? "approve" : "decline";
+        if (!hmacAuthService.isValidHmac(txnId + ":" + decision, hmacHeader)) {
+            log.warn("[SECURITY] Collect response failed HMAC validation (txnId={})", txnId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new StatusResponse(txnId, "ERROR", "Invalid HMAC signature"));
+        }
+        try {
+            transactionApiProducer.respondToCollect(txnId, approved);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(new StatusResponse(txnId, TransactionStatus.REQUESTED.name(),
+                            approved ? "Approval accepted" : "Decline accepted"));
+        } catch (OpenPayException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new StatusResponse(txnId, "ERROR", e.getMessage()));
+        }
+    }
+
     /**
      * Functional interface for lambda business logic (for DRY HMAC check)
      */
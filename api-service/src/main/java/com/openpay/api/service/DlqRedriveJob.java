@@ -0,0 +1,161 @@
+package com.openpay.api.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h2>DlqRedriveJob</h2>
+ * <p>
+ * Progress of one DLQ redrive run started by {@link DlqRedriveService}.
+ * Counters are updated by the redrive thread and read (serialized as JSON) by
+ * the admin endpoint while the job runs.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code scanned}: DLQ entries looked at</li>
+ * <li>{@code replayed}: entries moved back to their partition stream</li>
+ * <li>{@code skipped}: selected entries left in the DLQ because replaying
+ * them cannot help (no txnId, unknown or already completed transaction)</li>
+ * <li>{@code failed}: entries that could not be moved (Redis error, or taken
+ * by a concurrent redrive)</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class DlqRedriveJob {
+
+    /**
+     * Lifecycle of a job.
+     */
+    public enum State {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final List<String> reasons;
+    private final List<String> entryIds;
+    private final long limit;
+    private final double ratePerSecond;
+    private final boolean dryRun;
+    private final Instant startedAt = Instant.now();
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile State state = State.RUNNING;
+    private volatile boolean cancelRequested;
+    private volatile String lastEntryId;
+    private volatile Instant finishedAt;
+    private volatile String message;
+
+    /**
+     * @param reasons       failure reasons selected (empty when selecting by id)
+     * @param entryIds      DLQ entry ids selected (empty when selecting by reason)
+     * @param limit         maximum entries to replay
+     * @param ratePerSecond replay rate, already capped by the service
+     * @param dryRun        count what would be replayed without moving anything
+     */
+    DlqRedriveJob(List<String> reasons, List<String> entryIds, long limit, double ratePerSecond, boolean dryRun) {
+        this.reasons = List.copyOf(reasons);
+        this.entryIds = List.copyOf(entryIds);
+        this.limit = limit;
+        this.ratePerSecond = ratePerSecond;
+        this.dryRun = dryRun;
+    }
+
+    void finish(State finalState, String finalMessage) {
+        this.message = finalMessage;
+        this.finishedAt = Instant.now();
+        this.state = finalState;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void scanned(String entryId) {
+        scanned.incrementAndGet();
+        lastEntryId = entryId;
+    }
+
+    void replayed() {
+        replayed.incrementAndGet();
+    }
+
+    void skipped() {
+        skipped.incrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public List<String> getReasons() {
+        return reasons;
+    }
+
+    public List<String> getEntryIds() {
+        return entryIds;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public String getLastEntryId() {
+        return lastEntryId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,532 @@
+package com.openpay.api.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openpay.shared.exception.OpenPayException;
+import com.openpay.shared.model.FailureReason;
+import com.openpay.shared.model.TransactionHistoryEntity;
+import com.openpay.shared.model.TransactionStatus;
+import com.openpay.shared.repository.TransactionHistoryRepository;
+import com.openpay.shared.repository.TransactionRepository;
+import com.openpay.shared.util.StreamPartitioner;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>DlqRedriveService</h2>
+ * <p>
+ * Inspection and throttled replay of {@code transactions.dlq}. The worker
+ * dead-letters payments with an {@code outcome} / {@code failureReason} (see
+ * {@code TransactionWorkerConsumer#moveToDLQ}); this service groups them by
+ * reason and moves selected entries back to their sender's partition stream
+ * ({@code transactions.main.{p}}) once the cause is fixed.
+ * </p>
+ *
+ * <ul>
+ * <li>The DLQ is always read in pages of {@code page-size} (XRANGE with an
+ * exclusive cursor), never in one call</li>
+ * <li>Each entry is moved in two steps, first XADD to the partition stream
+ * with {@code redriveOf=<dlq entry id>}, then XDEL from the DLQ. The two
+ * streams live in different Redis Cluster slots, so the steps cannot be one
+ * script; this order never loses an entry. A crash between them, or a
+ * concurrent redrive, only adds another copy with the same {@code redriveOf},
+ * which the worker's deduplicator (key {@code txnId:redriveOf}) skips</li>
+ * <li>Replay is paced at {@code rate-per-second}, capped by
+ * {@code max-rate-per-second}, and only one job runs at a time, so a redrive
+ * cannot swamp the gateway</li>
+ * <li>FAILED transactions are moved back to QUEUED (conditional update +
+ * audit row); entries without a txnId, for unknown transactions or for
+ * already COMPLETED ones stay in the DLQ and are counted as skipped</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Service
+public class DlqRedriveService {
+
+    private static final Logger log = LoggerFactory.getLogger(DlqRedriveService.class);
+
+    static final String DLQ_STREAM = "transactions.dlq";
+
+    /** Group for entries written before failure reasons existed (or init records). */
+    static final String UNCLASSIFIED = "UNCLASSIFIED";
+
+    /** Fields added by the worker when dead-lettering; dropped on replay. */
+    private static final Set<String> DLQ_FIELDS = Set.of("outcome", "failureReason");
+
+    private final RedisTemplate<Object, Object> redisTemplate;
+    private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int streamPartitions;
+    private final int pageSize;
+    private final long maxScan;
+    private final double defaultRatePerSecond;
+    private final double maxRatePerSecond;
+
+    private final Counter replayedCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "dlq-redrive");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<DlqRedriveJob> activeJob = new AtomicReference<>();
+    private final Map<String, DlqRedriveJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param redisTemplate                template the worker's DLQ entries are
+     *                                     (de)serialized with
+     * @param transactionRepository        transaction rows (FAILED → QUEUED)
+     * @param transactionHistoryRepository audit trail
+     * @param transactionTemplate          read-write transactions on the primary
+     * @param meterRegistry                metrics registry
+     * @param streamPartitions             number of partition streams
+     * @param pageSize                     DLQ entries read per XRANGE
+     * @param maxScan                      entries a summary looks at, at most
+     * @param defaultRatePerSecond         replay rate when a request sets none
+     * @param maxRatePerSecond             hard cap on any requested rate
+     */
+    public DlqRedriveService(RedisTemplate<Object, Object> redisTemplate,
+            TransactionRepository transactionRepository,
+            TransactionHistoryRepository transactionHistoryRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.streams.partitions:8}") int streamPartitions,
+            @Value("${openpay.dlq.redrive.page-size:500}") int pageSize,
+            @Value("${openpay.dlq.redrive.max-scan:100000}") long maxScan,
+            @Value("${openpay.dlq.redrive.rate-per-second:20}") double defaultRatePerSecond,
+            @Value("${openpay.dlq.redrive.max-rate-per-second:100}") double maxRatePerSecond) {
+        if (pageSize <= 0 || defaultRatePerSecond <= 0 || maxRatePerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid DLQ redrive settings");
+        }
+        this.redisTemplate = redisTemplate;
+        this.transactionRepository = transactionRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.streamPartitions = streamPartitions;
+        this.pageSize = pageSize;
+        this.maxScan = maxScan;
+        this.defaultRatePerSecond = Math.min(defaultRatePerSecond, maxRatePerSecond);
+        this.maxRatePerSecond = maxRatePerSecond;
+        this.replayedCounter = redriveCounter(meterRegistry, "replayed");
+        this.skippedCounter = redriveCounter(meterRegistry, "skipped");
+        this.failedCounter = redriveCounter(meterRegistry, "failed");
+    }
+
+    /**
+     * DLQ failure analytics.
+     *
+     * @param length     current stream length (XLEN)
+     * @param scanned    entries looked at (at most {@code max-scan})
+     * @param truncated  true if the scan stopped before the end of the stream
+     * @param byReason   entry count per failure reason
+     * @param byOutcome  entry count per outcome class
+     * @param oldestId   first entry id seen, null if empty
+     * @param newestId   last entry id seen, null if empty
+     */
+    public record Summary(long length, long scanned, boolean truncated, Map<String, Long> byReason,
+            Map<String, Long> byOutcome, String oldestId, String newestId) {
+    }
+
+    /**
+     * One DLQ entry as shown to operators.
+     *
+     * @param id     stream entry id
+     * @param reason failure reason (or {@value #UNCLASSIFIED})
+     * @param fields all fields of the entry, as strings
+     */
+    public record Entry(String id, String reason, Map<String, String> fields) {
+    }
+
+    /**
+     * A page of entries plus the cursor for the next one.
+     *
+     * @param entries   entries in stream order
+     * @param nextAfter pass as {@code after} to get the next page; null at the end
+     */
+    public record EntryPage(List<Entry> entries, String nextAfter) {
+    }
+
+    /**
+     * What to replay.
+     *
+     * @param reasons       failure reasons to replay (or {@value #UNCLASSIFIED})
+     * @param entryIds      specific DLQ entry ids to replay
+     * @param limit         maximum entries to replay (null: no limit)
+     * @param ratePerSecond replay rate (null: configured default; capped)
+     * @param dryRun        only count what would be replayed
+     */
+    public record RedriveRequest(List<String> reasons, List<String> entryIds, Long limit, Double ratePerSecond,
+            boolean dryRun) {
+    }
+
+    /**
+     * Scans the DLQ page by page and groups entries by failure reason and
+     * outcome.
+     *
+     * @return the summary
+     */
+    public Summary summarize() {
+        Map<String, Long> byReason = new TreeMap<>();
+        Map<String, Long> byOutcome = new TreeMap<>();
+        String oldest = null;
+        String newest = null;
+        long scanned = 0;
+        String cursor = null;
+        boolean truncated = false;
+
+        while (true) {
+            List<MapRecord<Object, Object, Object>> page = readPage(cursor, pageSize);
+            for (MapRecord<Object, Object, Object> record : page) {
+                if (scanned == maxScan) {
+                    truncated = true;
+                    break;
+                }
+                scanned++;
+                String id = record.getId().getValue();
+                oldest = oldest == null ? id : oldest;
+                newest = id;
+                byReason.merge(reasonOf(record.getValue()), 1L, Long::sum);
+                byOutcome.merge(stringField(record.getValue(), "outcome").orElse(UNCLASSIFIED), 1L, Long::sum);
+            }
+            if (truncated || page.size() < pageSize) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getId().getValue();
+        }
+
+        Long length = redisTemplate.opsForStream().size(DLQ_STREAM);
+        return new Summary(length == null ? 0 : length, scanned, truncated, byReason, byOutcome, oldest, newest);
+    }
+
+    /**
+     * Lists DLQ entries, optionally only those with a given reason.
+     *
+     * @param reason only entries with this failure reason (null: all)
+     * @param after  exclusive cursor (entry id), null to start at the oldest
+     * @param limit  maximum entries to return
+     * @return the page
+     */
+    public EntryPage listEntries(String reason, String after, int limit) {
+        String wanted = reason == null || reason.isBlank() ? null : normalizeReason(reason);
+        int size = Math.max(1, Math.min(limit, pageSize));
+        List<Entry> entries = new ArrayList<>(size);
+        String cursor = after;
+        long looked = 0;
+
+        while (entries.size() < size && looked < maxScan) {
+            List<MapRecord<Object, Object, Object>> page = readPage(cursor, pageSize);
+            for (MapRecord<Object, Object, Object> record : page) {
+                looked++;
+                cursor = record.getId().getValue();
+                String entryReason = reasonOf(record.getValue());
+                if (wanted == null || wanted.equals(entryReason)) {
+                    entries.add(new Entry(cursor, entryReason, asStrings(record.getValue())));
+                    if (entries.size() == size) {
+                        break;
+                    }
+                }
+            }
+            if (page.size() < pageSize && entries.size() < size) {
+                return new EntryPage(entries, null);
+            }
+        }
+        return new EntryPage(entries, cursor);
+    }
+
+    /**
+     * Starts a redrive job in the background. Only one job runs at a time.
+     *
+     * @param request selection, limit and rate
+     * @return the started job (poll {@link #getJob(String)} for progress)
+     * @throws OpenPayException if nothing is selected or a job is already running
+     */
+    public DlqRedriveJob startRedrive(RedriveRequest request) {
+        List<String> reasons = request.reasons() == null ? List.of()
+                : request.reasons().stream().map(DlqRedriveService::normalizeReason).distinct().toList();
+        List<String> entryIds = request.entryIds() == null ? List.of() : request.entryIds();
+        if (reasons.isEmpty() && entryIds.isEmpty()) {
+            throw new OpenPayException("Select DLQ entries to redrive by reason or by entry id");
+        }
+        long limit = request.limit() == null ? Long.MAX_VALUE : request.limit();
+        if (limit <= 0) {
+            throw new OpenPayException("Redrive limit must be positive");
+        }
+        double rate = request.ratePerSecond() == null ? defaultRatePerSecond
+                : Math.min(request.ratePerSecond(), maxRatePerSecond);
+        if (rate <= 0) {
+            throw new OpenPayException("Redrive rate must be positive");
+        }
+
+        DlqRedriveJob job = new DlqRedriveJob(reasons, entryIds, limit, rate, request.dryRun());
+        if (!activeJob.compareAndSet(null, job)) {
+            throw new OpenPayException("A DLQ redrive is already running: " + activeJob.get().getId());
+        }
+        jobs.put(job.getId(), job);
+        log.info("[DLQ-REDRIVE] Job {} started: reasons={} entryIds={} limit={} rate={}/s dryRun={}",
+                job.getId(), reasons, entryIds.size(), limit, rate, request.dryRun());
+        runner.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * @param jobId job id
+     * @return the job, if this instance started it
+     */
+    public Optional<DlqRedriveJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Asks a running job to stop after the current entry.
+     *
+     * @param jobId job id
+     * @return the job, if this instance started it
+     */
+    public Optional<DlqRedriveJob> cancel(String jobId) {
+        DlqRedriveJob job = jobs.get(jobId);
+        if (job != null) {
+            job.requestCancel();
+        }
+        return Optional.ofNullable(job);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        DlqRedriveJob job = activeJob.get();
+        if (job != null) {
+            job.requestCancel();
+        }
+        runner.shutdown();
+    }
+
+    private void run(DlqRedriveJob job) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / job.getRatePerSecond());
+        long nextSlot = System.nanoTime();
+        try {
+            String cursor = null;
+            Set<String> reasons = Set.copyOf(job.getReasons());
+            List<String> ids = job.getEntryIds();
+            int idIndex = 0;
+
+            while (job.getReplayed() < job.getLimit() && !job.isCancelRequested()) {
+                List<MapRecord<Object, Object, Object>> page;
+                if (!ids.isEmpty()) {
+                    if (idIndex == ids.size()) {
+                        break;
+                    }
+                    String id = ids.get(idIndex++);
+                    page = redisTemplate.opsForStream().range(DLQ_STREAM, Range.closed(id, id));
+                } else {
+                    page = readPage(cursor, pageSize);
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    cursor = page.get(page.size() - 1).getId().getValue();
+                }
+
+                for (MapRecord<Object, Object, Object> record : page) {
+                    if (job.getReplayed() >= job.getLimit() || job.isCancelRequested()) {
+                        break;
+                    }
+                    job.scanned(record.getId().getValue());
+                    if (ids.isEmpty() && !reasons.contains(reasonOf(record.getValue()))) {
+                        continue;
+                    }
+                    nextSlot = pace(nextSlot, intervalNanos);
+                    redriveOne(job, record);
+                }
+                if (ids.isEmpty() && page.size() < pageSize) {
+                    break;
+                }
+            }
+            DlqRedriveJob.State state = job.isCancelRequested() ? DlqRedriveJob.State.CANCELLED
+                    : DlqRedriveJob.State.COMPLETED;
+            job.finish(state, job.isDryRun() ? "Dry run: 'replayed' counts entries that would be replayed" : null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish(DlqRedriveJob.State.CANCELLED, "Interrupted");
+        } catch (RuntimeException e) {
+            log.error("[DLQ-REDRIVE] Job {} failed", job.getId(), e);
+            job.finish(DlqRedriveJob.State.FAILED, e.getMessage());
+        } finally {
+            activeJob.compareAndSet(job, null);
+            log.info("[DLQ-REDRIVE] Job {} {}: scanned={} replayed={} skipped={} failed={}", job.getId(),
+                    job.getState(), job.getScanned(), job.getReplayed(), job.getSkipped(), job.getFailed());
+        }
+    }
+
+    /**
+     * Replays one selected entry, or counts it as skipped/failed.
+     */
+    private void redriveOne(DlqRedriveJob job, MapRecord<Object, Object, Object> record) {
+        String entryId = record.getId().getValue();
+        Map<Object, Object> fields = record.getValue();
+        Long txnId = txnIdOf(fields);
+        Optional<String> sender = stringField(fields, "senderUpi");
+        if (txnId == null || sender.isEmpty()) {
+            skip(job, entryId, "no txnId/senderUpi");
+            return;
+        }
+        TransactionStatus status = transactionRepository.findById(txnId).map(t -> t.getStatus()).orElse(null);
+        if (status == null) {
+            skip(job, entryId, "transaction " + txnId + " not found");
+            return;
+        }
+        if (status == TransactionStatus.COMPLETED) {
+            skip(job, entryId, "transaction " + txnId + " already completed");
+            return;
+        }
+        if (job.isDryRun()) {
+            job.replayed();
+            return;
+        }
+
+        Map<Object, Object> payload = new LinkedHashMap<>(fields);
+        DLQ_FIELDS.forEach(payload::remove);
+        payload.put("redriveOf", entryId);
+        String stream = StreamPartitioner.streamForSender(sender.get(), streamPartitions);
+        String newId;
+        Long removed;
+        try {
+            // XADD before XDEL: a crash in between leaves a duplicate, never a loss
+            RecordId added = redisTemplate.opsForStream().add(stream, payload);
+            newId = added == null ? null : added.getValue();
+            removed = redisTemplate.opsForStream().delete(DLQ_STREAM, entryId);
+        } catch (DataAccessException e) {
+            log.warn("[DLQ-REDRIVE] Could not move entry {}: {}", entryId, e.getMessage());
+            job.failed();
+            failedCounter.increment();
+            return;
+        }
+        if (removed == null || removed == 0) {
+            // already removed by a concurrent redrive (or an operator); our copy
+            // carries the same redriveOf and is skipped by the worker
+            job.failed();
+            failedCounter.increment();
+            return;
+        }
+
+        // after the move: if the worker already took it, the conditional update is a no-op
+        if (status == TransactionStatus.FAILED) {
+            requeue(txnId);
+        }
+        job.replayed();
+        replayedCounter.increment();
+        log.debug("[DLQ-REDRIVE] Entry {} (txnId={}) replayed to {} as {}", entryId, txnId, stream, newId);
+    }
+
+    private void skip(DlqRedriveJob job, String entryId, String why) {
+        job.skipped();
+        skippedCounter.increment();
+        log.debug("[DLQ-REDRIVE] Entry {} skipped: {}", entryId, why);
+    }
+
+    private void requeue(Long txnId) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (transactionRepository.transition(txnId, TransactionStatus.FAILED, TransactionStatus.QUEUED, null,
+                    LocalDateTime.now()) == 1) {
+                TransactionHistoryEntity audit = new TransactionHistoryEntity();
+                audit.setTransactionId(txnId);
+                audit.setPrevStatus(TransactionStatus.FAILED);
+                audit.setNewStatus(TransactionStatus.QUEUED);
+                audit.setChangedAt(LocalDateTime.now());
+                transactionHistoryRepository.save(audit);
+            }
+        });
+    }
+
+    /**
+     * Blocks until the next replay slot of the job's rate.
+     */
+    private static long pace(long nextSlot, long intervalNanos) throws InterruptedException {
+        long wait = nextSlot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return nextSlot + intervalNanos;
+        }
+        // behind schedule (slow Redis/DB): do not burst to catch up
+        return System.nanoTime() + intervalNanos;
+    }
+
+    private List<MapRecord<Object, Object, Object>> readPage(String after, int count) {
+        Range<String> range = after == null ? Range.unbounded()
+                : Range.rightUnbounded(Range.Bound.exclusive(after));
+        List<MapRecord<Object, Object, Object>> page = redisTemplate.opsForStream()
+                .range(DLQ_STREAM, range, Limit.limit().count(count));
+        return page == null ? List.of() : page;
+    }
+
+    private static Counter redriveCounter(MeterRegistry registry, String result) {
+        return Counter.builder("openpay.dlq.redrive.entries")
+                .description("DLQ entries handled by redrive jobs")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static String reasonOf(Map<Object, Object> fields) {
+        return stringField(fields, "failureReason").orElse(UNCLASSIFIED);
+    }
+
+    private static String normalizeReason(String reason) {
+        String name = reason.trim().toUpperCase(Locale.ROOT);
+        if (!UNCLASSIFIED.equals(name)) {
+            FailureReason.valueOf(name); // IllegalArgumentException → 400
+        }
+        return name;
+    }
+
+    private static Optional<String> stringField(Map<Object, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value == null ? Optional.empty() : Optional.of(value.toString());
+    }
+
+    private static Long txnIdOf(Map<Object, Object> fields) {
+        Object value = fields.get("txnId");
+        if (value instanceof Number n) {
+            return n.longValue();
+        }
+        try {
+            return value == null ? null : Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> asStrings(Map<Object, Object> fields) {
+        Map<String, String> out = new TreeMap<>();
+        fields.forEach((k, v) -> out.put(String.valueOf(k), String.valueOf(v)));
+        return out;
+    }
+}
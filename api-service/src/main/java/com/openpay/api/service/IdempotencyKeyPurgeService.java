@@ -0,0 +1,247 @@
+package com.openpay.api.service;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <h2>IdempotencyKeyPurgeService</h2>
+ * <p>
+ * Background maintenance for the day-partitioned {@code idempotency_keys}
+ * table (see {@code V3__partition_idempotency_keys.sql}). Keeps the primary-key
+ * index that every {@code /pay} consults small by expiring keys a whole day at
+ * a time instead of through row-level DELETEs.
+ * </p>
+ *
+ * <ul>
+ * <li>Pre-creates the next {@code premake-days} daily partitions so inserts
+ * never miss a partition</li>
+ * <li>Detaches ({@code CONCURRENTLY}) and drops partitions that lie entirely
+ * beyond the TTL, a bounded number per run</li>
+ * <li>Runs every DDL statement with a short {@code lock_timeout}; on contention
+ * it gives up and retries next run rather than queueing {@code /pay}
+ * inserts</li>
+ * <li>Exports created/dropped partitions, purged keys (estimate), failures,
+ * run duration and the live partition count via Micrometer</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Service
+public class IdempotencyKeyPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyPurgeService.class);
+
+    private static final String PARENT_TABLE = "idempotency_keys";
+    private static final String PARTITION_PREFIX = "idempotency_keys_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "\\d{8}");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration keyTtl;
+    private final int premakeDays;
+    private final int maxDropsPerRun;
+    private final long lockTimeoutMs;
+    private final long pauseBetweenDropsMs;
+
+    private final Counter partitionsCreated;
+    private final Counter partitionsDropped;
+    private final Counter keysPurged;
+    private final Counter purgeFailures;
+    private final Timer purgeDuration;
+    private final AtomicInteger livePartitions = new AtomicInteger();
+
+    /**
+     * Constructs the purge service with its JDBC access, tuning knobs and
+     * metrics registry.
+     *
+     * @param jdbcTemplate        JDBC template bound to the primary datasource
+     * @param meterRegistry       registry for purge metrics
+     * @param keyTtl              how long a key must stay visible
+     * @param premakeDays         number of future daily partitions to keep ready
+     * @param maxDropsPerRun      upper bound on partitions dropped per run
+     * @param lockTimeoutMs       lock_timeout applied to every DDL statement
+     * @param pauseBetweenDropsMs pause between two drops in the same run
+     */
+    public IdempotencyKeyPurgeService(JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.idempotency.ttl:PT24H}") Duration keyTtl,
+            @Value("${openpay.idempotency.purge.premake-days:3}") int premakeDays,
+            @Value("${openpay.idempotency.purge.max-drops-per-run:2}") int maxDropsPerRun,
+            @Value("${openpay.idempotency.purge.lock-timeout-ms:200}") long lockTimeoutMs,
+            @Value("${openpay.idempotency.purge.pause-between-drops-ms:1000}") long pauseBetweenDropsMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.keyTtl = keyTtl;
+        this.premakeDays = premakeDays;
+        this.maxDropsPerRun = maxDropsPerRun;
+        this.lockTimeoutMs = lockTimeoutMs;
+        this.pauseBetweenDropsMs = pauseBetweenDropsMs;
+
+        this.partitionsCreated = meterRegistry.counter("openpay.idempotency.partitions.created");
+        this.partitionsDropped = meterRegistry.counter("openpay.idempotency.partitions.dropped");
+        this.keysPurged = meterRegistry.counter("openpay.idempotency.keys.purged");
+        this.purgeFailures = meterRegistry.counter("openpay.idempotency.purge.failures");
+        this.purgeDuration = meterRegistry.timer("openpay.idempotency.purge.duration");
+        Gauge.builder("openpay.idempotency.partitions.live", livePartitions, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled entry point: makes sure upcoming partitions exist, then drops
+     * expired ones. Never throws; failures are logged, counted and retried on
+     * the next run.
+     */
+    @Scheduled(initialDelayString = "${openpay.idempotency.purge.initial-delay-ms:10000}",
+            fixedDelayString = "${openpay.idempotency.purge.interval-ms:600000}")
+    public void maintainPartitions() {
+        long start = System.nanoTime();
+        try {
+            ensureFuturePartitions();
+            dropExpiredPartitions();
+        } catch (DataAccessException e) {
+            purgeFailures.increment();
+            log.warn("[IDEMPOTENCY] Partition maintenance failed, will retry next run: {}", e.getMessage());
+        } finally {
+            purgeDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Creates any missing daily partition from today (UTC) up to
+     * {@code today + premakeDays}.
+     */
+    void ensureFuturePartitions() {
+        List<String> existing = listPartitions();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (int i = 0; i <= premakeDays; i++) {
+            LocalDate day = today.plusDays(i);
+            String name = partitionName(day);
+            if (existing.contains(name)) {
+                continue;
+            }
+            runDdl("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT_TABLE
+                    + " FOR VALUES FROM ('" + day + "T00:00:00Z') TO ('" + day.plusDays(1) + "T00:00:00Z')");
+            partitionsCreated.increment();
+            log.info("[IDEMPOTENCY] Created partition {}", name);
+        }
+    }
+
+    /**
+     * Detaches and drops partitions whose whole day ended before
+     * {@code now - ttl}. Bounded to {@code maxDropsPerRun} per invocation, with
+     * a pause between drops so catalog locks never pile up.
+     */
+    void dropExpiredPartitions() {
+        LocalDate oldestLiveDay = LocalDate.ofInstant(
+                Instant.now().minus(keyTtl), ZoneOffset.UTC);
+        List<String> partitions = listPartitions();
+        livePartitions.set(partitions.size());
+
+        int dropped = 0;
+        for (String name : partitions) {
+            if (dropped >= maxDropsPerRun) {
+                break;
+            }
+            LocalDate day = LocalDate.parse(name.substring(PARTITION_PREFIX.length()), SUFFIX);
+            if (!day.isBefore(oldestLiveDay)) {
+                continue; // still (partly) inside the TTL window
+            }
+            if (dropped > 0) {
+                pause();
+            }
+            Long estimatedRows = jdbcTemplate.queryForObject(
+                    "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = ?", Long.class, name);
+
+            if (isDetachPending(name)) {
+                // A previous CONCURRENTLY detach was interrupted; finish it first
+                runDdl("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name + " FINALIZE");
+            } else {
+                runDdl("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name + " CONCURRENTLY");
+            }
+            runDdl("DROP TABLE IF EXISTS " + name);
+
+            dropped++;
+            partitionsDropped.increment();
+            keysPurged.increment(estimatedRows == null ? 0 : estimatedRows);
+            livePartitions.decrementAndGet();
+            log.info("[IDEMPOTENCY] Dropped expired partition {} (~{} keys)", name, estimatedRows);
+        }
+    }
+
+    /**
+     * Lists the daily partitions currently attached to {@code idempotency_keys},
+     * oldest first.
+     */
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? ORDER BY c.relname",
+                String.class, PARENT_TABLE)
+                .stream()
+                .filter(name -> PARTITION_NAME.matcher(name).matches())
+                .toList();
+    }
+
+    private boolean isDetachPending(String partition) {
+        Boolean pending = jdbcTemplate.queryForObject(
+                "SELECT i.inhdetachpending FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE c.relname = ?",
+                Boolean.class, partition);
+        return Boolean.TRUE.equals(pending);
+    }
+
+    /**
+     * Executes one DDL statement on a dedicated autocommit connection with a
+     * short lock_timeout, so a busy parent table makes us fail fast instead of
+     * stalling {@code /pay} inserts behind our lock request.
+     */
+    private void runDdl(String sql) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET lock_timeout = " + lockTimeoutMs);
+                try {
+                    statement.execute(sql);
+                } finally {
+                    statement.execute("RESET lock_timeout");
+                }
+            }
+            return null;
+        });
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pauseBetweenDropsMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + SUFFIX.format(day);
+    }
+}
@@ -10,10 +10,11 @@ package com.openpay.api.service;
  * </p>
  * 
  * <p>
- * Typical usage: before processing a payment, check
- * {@link #isDuplicate(String)}
- * with the request idempotency key. If not duplicate, process and call
- * {@link #saveKey(String, Long)} to register the key/transaction mapping.
+ * Typical usage: in one database transaction, {@link #claim(String)} the
+ * request idempotency key; if it is free, process and call
+ * {@link #saveKey(String, Long)} to register the key/transaction mapping
+ * before committing. {@link #isDuplicate(String)} is a plain lookup for
+ * callers that only need to know.
  * </p>
  * 
  * <strong>Implementations must ensure thread safety and durability as
@@ -36,6 +37,20 @@ public interface IdempotencyService {
      */
     boolean isDuplicate(String key);
 
+    /**
+     * Serializes concurrent requests carrying {@code key} until the current
+     * transaction ends, then checks whether the key is in use. A second
+     * request with the same key waits for the first to commit and then sees
+     * its key, so at most one of them proceeds.
+     *
+     * @param key the unique idempotency key of the request
+     * @return true if the key is free and now held by this transaction, false
+     *         if it was used before (duplicate request)
+     * @throws org.springframework.transaction.IllegalTransactionStateException
+     *         if no transaction is active
+     */
+    boolean claim(String key);
+
     /**
      * Records a new idempotency key along with the associated transaction ID.
      * <p>
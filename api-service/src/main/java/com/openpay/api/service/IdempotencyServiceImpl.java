@@ -1,8 +1,11 @@
 package com.openpay.api.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.openpay.shared.model.IdempotencyKeyEntity;
@@ -26,8 +29,13 @@ import com.openpay.shared.repository.IdempotencyKeyRepository;
  * <li>All idempotency logic is persisted in the database via
  * {@link IdempotencyKeyRepository}.</li>
  * <li>Transactional annotation ensures atomicity for key registration.</li>
+ * <li>The key alone is not unique in the partitioned table, so
+ * {@link #claim(String)} takes an advisory lock on it for the caller's
+ * transaction: check and insert of one key never interleave.</li>
  * <li>Use case: prevent re-processing of payments or actions with same external
  * request ID.</li>
+ * <li>Keys expire after {@code openpay.idempotency.ttl} (default 24h); expired
+ * partitions are dropped by {@link IdempotencyKeyPurgeService}.</li>
  * </ul>
  *
  * @author David Grace
@@ -37,22 +45,27 @@ import com.openpay.shared.repository.IdempotencyKeyRepository;
 public class IdempotencyServiceImpl implements IdempotencyService {
 
     private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final Duration keyTtl;
 
     /**
      * Constructs a new IdempotencyServiceImpl with the given repository.
      *
      * @param idempotencyKeyRepository the JPA repository for idempotency key
      *                                 entities
+     * @param keyTtl                   how long a key blocks duplicates
      */
-    public IdempotencyServiceImpl(IdempotencyKeyRepository idempotencyKeyRepository) {
+    public IdempotencyServiceImpl(IdempotencyKeyRepository idempotencyKeyRepository,
+            @Value("${openpay.idempotency.ttl:PT24H}") Duration keyTtl) {
         this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.keyTtl = keyTtl;
     }
 
     /**
      * Checks if the provided idempotency key already exists in the system.
      * <p>
      * Used to determine if the incoming request is a duplicate and should be
-     * ignored.
+     * ignored. Only keys younger than the TTL count, which also lets Postgres
+     * prune every expired partition from the lookup.
      * </p>
      *
      * @param key the unique idempotency key from the client/request
@@ -60,8 +73,20 @@ public class IdempotencyServiceImpl implements IdempotencyService {
      */
     @Override
     public boolean isDuplicate(String key) {
-        // Query repository for existence of the key (indexed column)
-        return idempotencyKeyRepository.existsByIdempotencyKey(key);
+        // Query repository for existence of a live key (PK prefix + partition pruning)
+        return idempotencyKeyRepository.existsByIdempotencyKeyAndCreatedAtAfter(key,
+                LocalDateTime.now().minus(keyTtl));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(String key) {
+        // held until the caller's transaction ends, i.e. until its key is committed
+        idempotencyKeyRepository.lockKey(key);
+        return !isDuplicate(key);
     }
 
     /**
@@ -0,0 +1,340 @@
+package com.openpay.api.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.openpay.shared.dto.PaymentRequest;
+import com.openpay.shared.exception.OpenPayException;
+import com.openpay.shared.model.MandateEntity;
+import com.openpay.shared.model.MandateFrequency;
+import com.openpay.shared.model.MandateStatus;
+import com.openpay.shared.util.Paise;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>MandateScheduler</h2>
+ * <p>
+ * Fires due mandate occurrences as ordinary payments through
+ * {@link TransactionApiProducer#createTransaction(PaymentRequest, String)}, so
+ * they are persisted, audited and enqueued on {@code transactions.main} like a
+ * {@code /pay}. Every API instance runs it; they share the work through
+ * claims.
+ * </p>
+ *
+ * <ul>
+ * <li><b>Due index</b>: each run reads only the head of
+ * {@code idx_mandates_due (due_bucket, id) WHERE status = ACTIVE}; the table is
+ * never scanned, however many mandates exist</li>
+ * <li><b>Claims</b>: a batch is claimed with one
+ * {@code UPDATE ... FOR UPDATE SKIP LOCKED} that stamps {@code claimed_by} and
+ * {@code claimed_until}; instances never block on or double-fire each other's
+ * batches, and a crashed instance's claims lapse after {@code claim-ttl}</li>
+ * <li><b>Exactly once</b>: occurrence {@code n} of mandate {@code m} is fired
+ * with the Idempotency-Key {@code mandate-m-n}; a retry after a crash between
+ * firing and advancing finds the key and only advances</li>
+ * <li><b>Rate limit</b>: permits per second are counted fleet-wide in Redis
+ * ({@code openpay:mandate:permits:<epochSecond>}); an instance claims no more
+ * mandates than it was granted</li>
+ * <li><b>Catch-up</b>: when the oldest due bucket lags by
+ * {@code catch-up-after} or more (after downtime) the lower
+ * {@code catch-up-rate-per-second} applies until the backlog is gone; of
+ * several missed occurrences of one mandate only the latest is debited, the
+ * older ones are skipped and counted</li>
+ * <li>A failure other than a rejected payment (database, Redis) leaves the
+ * claim to lapse, so the occurrence is retried after {@code claim-ttl}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Service
+public class MandateScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(MandateScheduler.class);
+
+    static final String PERMITS_KEY_PREFIX = "openpay:mandate:permits:";
+
+    /** Grants min(wanted, limit - used) permits of the current second. */
+    private static final RedisScript<Long> TAKE_PERMITS = new DefaultRedisScript<>(
+            "local used = tonumber(redis.call('get', KEYS[1]) or '0') "
+                    + "local grant = math.min(tonumber(ARGV[1]), tonumber(ARGV[2]) - used) "
+                    + "if grant <= 0 then return 0 end "
+                    + "redis.call('incrby', KEYS[1], grant) "
+                    + "redis.call('pexpire', KEYS[1], 2000) "
+                    + "return grant",
+            Long.class);
+
+    private static final String OLDEST_DUE_SQL = "SELECT min(due_bucket) FROM mandates "
+            + "WHERE status = 1 AND (claimed_until IS NULL OR claimed_until < now())";
+
+    private static final String CLAIM_SQL = "UPDATE mandates m "
+            + "SET claimed_by = ?, claimed_until = now() + make_interval(secs => ?) "
+            + "FROM (SELECT id FROM mandates WHERE status = 1 AND due_bucket <= ? AND next_due_at <= now() "
+            + "AND (claimed_until IS NULL OR claimed_until < now()) "
+            + "ORDER BY due_bucket, id LIMIT ? FOR UPDATE SKIP LOCKED) due "
+            + "WHERE m.id = due.id "
+            + "RETURNING m.id, m.sender_upi, m.receiver_upi, m.amount_paise, m.frequency, m.start_at, "
+            + "m.end_at, m.max_debits, m.debits, m.occurrences";
+
+    private static final String ADVANCE_SQL = "UPDATE mandates SET occurrences = ?, debits = ?, "
+            + "next_due_at = ?, due_bucket = ?, status = ?, "
+            + "last_transaction_id = COALESCE(?, last_transaction_id), "
+            + "claimed_by = NULL, claimed_until = NULL, updated_at = now() "
+            + "WHERE id = ? AND claimed_by = ? AND status = 1";
+
+    private final TransactionApiProducer transactionApiProducer;
+    private final IdempotencyService idempotencyService;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redis;
+    private final String instanceId;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration claimTtl;
+    private final int ratePerSecond;
+    private final int catchUpRatePerSecond;
+    private final Duration catchUpAfter;
+
+    private final Counter fired;
+    private final Counter alreadyFired;
+    private final Counter rejected;
+    private final Counter skipped;
+    private final Counter completed;
+    private final Counter failures;
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final AtomicInteger catchingUp = new AtomicInteger();
+
+    /**
+     * A claimed mandate, as returned by the claim statement.
+     */
+    record ClaimedMandate(long id, String senderUpi, String receiverUpi, long amountPaise,
+            MandateFrequency frequency, LocalDateTime startAt, LocalDateTime endAt, Integer maxDebits,
+            int debits, int occurrences) {
+    }
+
+    /**
+     * @param transactionApiProducer creates and enqueues the payments
+     * @param idempotencyService     tells an already fired occurrence apart
+     * @param jdbcTemplate           JDBC template bound to the primary datasource
+     * @param redis                  string template for the permit counters
+     * @param meterRegistry          registry for scheduler metrics
+     * @param enabled                master switch
+     * @param batchSize              most mandates claimed per run
+     * @param claimTtl               how long a claim keeps other instances off
+     * @param ratePerSecond          fleet-wide debits per second
+     * @param catchUpRatePerSecond   fleet-wide debits per second while catching up
+     * @param catchUpAfter           due-lag that switches to catch-up mode
+     */
+    public MandateScheduler(TransactionApiProducer transactionApiProducer,
+            IdempotencyService idempotencyService,
+            JdbcTemplate jdbcTemplate,
+            StringRedisTemplate redis,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.mandate.scheduler.enabled:true}") boolean enabled,
+            @Value("${openpay.mandate.scheduler.batch-size:200}") int batchSize,
+            @Value("${openpay.mandate.scheduler.claim-ttl:PT1M}") Duration claimTtl,
+            @Value("${openpay.mandate.scheduler.rate-per-second:200}") int ratePerSecond,
+            @Value("${openpay.mandate.scheduler.catch-up-rate-per-second:50}") int catchUpRatePerSecond,
+            @Value("${openpay.mandate.scheduler.catch-up-after:PT5M}") Duration catchUpAfter) {
+        if (batchSize <= 0 || ratePerSecond <= 0 || catchUpRatePerSecond <= 0) {
+            throw new IllegalArgumentException("Mandate batch size and rates must be positive");
+        }
+        this.transactionApiProducer = transactionApiProducer;
+        this.idempotencyService = idempotencyService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redis = redis;
+        this.instanceId = defaultInstanceId();
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.claimTtl = claimTtl;
+        this.ratePerSecond = ratePerSecond;
+        this.catchUpRatePerSecond = catchUpRatePerSecond;
+        this.catchUpAfter = catchUpAfter;
+
+        this.fired = meterRegistry.counter("openpay.mandate.occurrences", "outcome", "fired");
+        this.alreadyFired = meterRegistry.counter("openpay.mandate.occurrences", "outcome", "already-fired");
+        this.rejected = meterRegistry.counter("openpay.mandate.occurrences", "outcome", "rejected");
+        this.skipped = meterRegistry.counter("openpay.mandate.occurrences", "outcome", "skipped");
+        this.completed = meterRegistry.counter("openpay.mandate.completed");
+        this.failures = meterRegistry.counter("openpay.mandate.failures");
+        Gauge.builder("openpay.mandate.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("How far the oldest unfired due occurrence lags behind now")
+                .register(meterRegistry);
+        Gauge.builder("openpay.mandate.catch_up", catchingUp, AtomicInteger::get)
+                .description("1 while the catch-up rate applies")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled entry point: measures the due lag, takes permits for this
+     * second, claims that many due mandates and fires them. Never throws.
+     */
+    @Scheduled(initialDelayString = "${openpay.mandate.scheduler.initial-delay-ms:10000}",
+            fixedDelayString = "${openpay.mandate.scheduler.interval-ms:250}")
+    public void fireDueMandates() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long nowBucket = MandateEntity.dueBucketOf(LocalDateTime.now());
+            Long oldest = jdbcTemplate.queryForObject(OLDEST_DUE_SQL, Long.class);
+            if (oldest == null || oldest > nowBucket) {
+                lagSeconds.set(0);
+                setCatchingUp(false);
+                return;
+            }
+            long lag = (nowBucket - oldest) * MandateEntity.BUCKET_SECONDS;
+            lagSeconds.set(lag);
+            boolean catchUp = lag >= catchUpAfter.toSeconds();
+            setCatchingUp(catchUp);
+
+            int rate = catchUp ? catchUpRatePerSecond : ratePerSecond;
+            int permits = takePermits(Math.min(batchSize, rate), rate);
+            if (permits == 0) {
+                return;
+            }
+            List<ClaimedMandate> claimed = jdbcTemplate.query(CLAIM_SQL, this::mapClaimed,
+                    instanceId, claimTtl.toMillis() / 1000.0, nowBucket, permits);
+            for (ClaimedMandate mandate : claimed) {
+                try {
+                    fire(mandate, LocalDateTime.now());
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    log.warn("[MANDATE] Firing mandate {} failed, retry after claim lapses: {}",
+                            mandate.id(), e.getMessage());
+                }
+            }
+        } catch (DataAccessException e) {
+            failures.increment();
+            log.warn("[MANDATE] Scheduler run failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fires the latest due occurrence of a claimed mandate (skipping older
+     * missed ones) and advances it to its next occurrence, or completes it.
+     */
+    void fire(ClaimedMandate mandate, LocalDateTime now) {
+        MandateFrequency frequency = mandate.frequency();
+        int index = mandate.occurrences();
+        LocalDateTime due = frequency.occurrence(mandate.startAt(), index);
+        LocalDateTime following = frequency.occurrence(mandate.startAt(), index + 1);
+        while (following != null && !following.isAfter(now)) {
+            index++;
+            due = following;
+            following = frequency.occurrence(mandate.startAt(), index + 1);
+        }
+        if (index > mandate.occurrences()) {
+            skipped.increment(index - mandate.occurrences());
+            log.info("[MANDATE] Mandate {} skipped {} missed occurrence(s)", mandate.id(),
+                    index - mandate.occurrences());
+        }
+
+        int debits = mandate.debits();
+        Long transactionId = null;
+        boolean ended = mandate.endAt() != null && due.isAfter(mandate.endAt());
+        if (!ended) {
+            String key = "mandate-" + mandate.id() + "-" + index;
+            if (idempotencyService.isDuplicate(key)) {
+                // fired before a crash, not yet advanced
+                alreadyFired.increment();
+                debits++;
+            } else {
+                try {
+                    transactionId = transactionApiProducer.createTransaction(paymentOf(mandate), key);
+                    fired.increment();
+                    debits++;
+                } catch (OpenPayException e) {
+                    rejected.increment();
+                    log.warn("[MANDATE] Occurrence {} of mandate {} rejected: {}", index, mandate.id(),
+                            e.getMessage());
+                }
+            }
+        }
+
+        LocalDateTime next = following;
+        MandateStatus status = MandateStatus.ACTIVE;
+        if (ended || next == null
+                || (mandate.endAt() != null && next.isAfter(mandate.endAt()))
+                || (mandate.maxDebits() != null && debits >= mandate.maxDebits())) {
+            status = MandateStatus.COMPLETED;
+            next = due;
+        }
+        int updated = jdbcTemplate.update(ADVANCE_SQL, index + 1, debits, Timestamp.valueOf(next),
+                MandateEntity.dueBucketOf(next), status.getCode(), transactionId, mandate.id(), instanceId);
+        if (updated == 0) {
+            // revoked meanwhile, or our claim lapsed and another instance took it
+            log.warn("[MANDATE] Mandate {} was not advanced (revoked or claim lost)", mandate.id());
+        } else if (status == MandateStatus.COMPLETED) {
+            completed.increment();
+            log.info("[MANDATE] Mandate {} completed after {} debit(s)", mandate.id(), debits);
+        }
+    }
+
+    private int takePermits(int wanted, int limit) {
+        long second = System.currentTimeMillis() / 1000;
+        Long granted = redis.execute(TAKE_PERMITS, List.of(PERMITS_KEY_PREFIX + second),
+                String.valueOf(wanted), String.valueOf(limit));
+        return granted == null ? 0 : granted.intValue();
+    }
+
+    private void setCatchingUp(boolean catchUp) {
+        int previous = catchingUp.getAndSet(catchUp ? 1 : 0);
+        if (catchUp && previous == 0) {
+            log.warn("[MANDATE] Due mandates lag by {}s, catching up at {}/s", lagSeconds.get(),
+                    catchUpRatePerSecond);
+        } else if (!catchUp && previous == 1) {
+            log.info("[MANDATE] Caught up, back to {}/s", ratePerSecond);
+        }
+    }
+
+    private ClaimedMandate mapClaimed(ResultSet rs, int row) throws SQLException {
+        Timestamp endAt = rs.getTimestamp("end_at");
+        return new ClaimedMandate(rs.getLong("id"), rs.getString("sender_upi"), rs.getString("receiver_upi"),
+                rs.getLong("amount_paise"), MandateFrequency.fromCode(rs.getShort("frequency")),
+                rs.getTimestamp("start_at").toLocalDateTime(),
+                endAt == null ? null : endAt.toLocalDateTime(),
+                rs.getObject("max_debits", Integer.class),
+                rs.getInt("debits"), rs.getInt("occurrences"));
+    }
+
+    private static PaymentRequest paymentOf(ClaimedMandate mandate) {
+        PaymentRequest request = new PaymentRequest();
+        request.setSenderUpi(mandate.senderUpi());
+        request.setReceiverUpi(mandate.receiverUpi());
+        request.setAmount(Paise.toRupees(mandate.amountPaise()));
+        return request;
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "api";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
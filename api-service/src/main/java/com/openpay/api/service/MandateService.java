@@ -0,0 +1,125 @@
+package com.openpay.api.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openpay.shared.dto.MandateRequest;
+import com.openpay.shared.exception.OpenPayException;
+import com.openpay.shared.model.MandateEntity;
+import com.openpay.shared.model.MandateStatus;
+import com.openpay.shared.repository.MandateRepository;
+import com.openpay.shared.util.Paise;
+
+/**
+ * <h2>MandateService</h2>
+ * <p>
+ * Registers and revokes recurring payment mandates (UPI AutoPay style). Due
+ * occurrences are fired by {@link MandateScheduler}.
+ * </p>
+ *
+ * <ul>
+ * <li>A registration is idempotent on its Idempotency-Key (unique column of
+ * {@code mandates}), like {@code /pay}</li>
+ * <li>The first occurrence may lie at most {@code max-start-lag} in the past,
+ * so a retried registration never fires a backlog</li>
+ * <li>Revocation takes the mandate off the due index at once; an occurrence
+ * already being fired still completes</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Service
+public class MandateService {
+
+    private static final Logger log = LoggerFactory.getLogger(MandateService.class);
+
+    private final MandateRepository mandateRepository;
+    private final Duration maxStartLag;
+
+    /**
+     * @param mandateRepository JPA repository of the mandates table
+     * @param maxStartLag       how far in the past a first occurrence may lie
+     */
+    public MandateService(MandateRepository mandateRepository,
+            @Value("${openpay.mandate.max-start-lag:PT5M}") Duration maxStartLag) {
+        this.mandateRepository = mandateRepository;
+        this.maxStartLag = maxStartLag;
+    }
+
+    /**
+     * Validates and persists a new ACTIVE mandate.
+     *
+     * @param request        mandate terms
+     * @param idempotencyKey client-supplied registration key
+     * @return id of the new mandate
+     * @throws OpenPayException for business rule violations (duplicate key,
+     *                          sender = receiver, inconsistent schedule)
+     */
+    public Long register(MandateRequest request, String idempotencyKey) {
+        if (request.getSenderUpi().equalsIgnoreCase(request.getReceiverUpi())) {
+            throw new OpenPayException("Sender and receiver UPI must be different");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (request.getStartAt().isBefore(now.minus(maxStartLag))) {
+            throw new OpenPayException("Mandate start must not be in the past");
+        }
+        if (request.getEndAt() != null && request.getEndAt().isBefore(request.getStartAt())) {
+            throw new OpenPayException("Mandate end must not be before its start");
+        }
+        if (mandateRepository.findByIdempotencyKey(idempotencyKey).isPresent()) {
+            throw new OpenPayException("Duplicate request");
+        }
+
+        MandateEntity mandate = new MandateEntity();
+        mandate.setIdempotencyKey(idempotencyKey);
+        mandate.setSenderUpi(request.getSenderUpi());
+        mandate.setReceiverUpi(request.getReceiverUpi());
+        mandate.setAmountPaise(Paise.fromRupees(request.getAmount()));
+        mandate.setFrequency(request.getFrequency());
+        mandate.setStatus(MandateStatus.ACTIVE);
+        mandate.setStartAt(request.getStartAt());
+        mandate.setEndAt(request.getEndAt());
+        mandate.setMaxDebits(request.getMaxDebits());
+        mandate.setNextDueAt(request.getStartAt());
+        mandate.setDueBucket(MandateEntity.dueBucketOf(request.getStartAt()));
+        mandate.setCreatedAt(now);
+
+        MandateEntity saved;
+        try {
+            saved = mandateRepository.save(mandate);
+        } catch (DataIntegrityViolationException e) {
+            // concurrent registration with the same key
+            throw new OpenPayException("Duplicate request");
+        }
+        log.info("[MANDATE] Registered mandate {} ({} {} -> {}, first due {})", saved.getId(),
+                saved.getFrequency(), saved.getSenderUpi(), saved.getReceiverUpi(), saved.getStartAt());
+        return saved.getId();
+    }
+
+    /**
+     * Revokes an ACTIVE mandate.
+     *
+     * @param mandateId mandate id
+     * @throws OpenPayException if there is no such mandate or it is no longer
+     *                          active
+     */
+    @Transactional
+    public void revoke(Long mandateId) {
+        if (mandateRepository.transition(mandateId, MandateStatus.ACTIVE, MandateStatus.REVOKED,
+                LocalDateTime.now()) == 1) {
+            log.info("[MANDATE] Revoked mandate {}", mandateId);
+            return;
+        }
+        MandateEntity mandate = mandateRepository.findById(mandateId)
+                .orElseThrow(() -> new OpenPayException("Unknown mandate " + mandateId));
+        throw new OpenPayException("Mandate " + mandateId + " is not active (" + mandate.getStatus() + ")");
+    }
+}
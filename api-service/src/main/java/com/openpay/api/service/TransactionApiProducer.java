@@ -6,16 +6,22 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.openpay.api.velocity.VelocityGuard;
 import com.openpay.shared.dto.PaymentRequest;
 import com.openpay.shared.exception.OpenPayException;
 import com.openpay.shared.model.TransactionEntity;
 import com.openpay.shared.model.TransactionHistoryEntity;
+import com.openpay.shared.model.TransactionStatus;
 import com.openpay.shared.repository.TransactionHistoryRepository;
 import com.openpay.shared.repository.TransactionRepository;
+import com.openpay.shared.util.Paise;
+import com.openpay.shared.util.StreamPartitioner;
 
 import jakarta.annotation.PostConstruct;
 
@@ -32,6 +38,8 @@ import jakarta.annotation.PostConstruct;
  * {@link com.openpay.api.controller.TransactionController})</li>
  * <li>Performs validation (e.g., sender ≠ receiver, idempotency key
  * uniqueness)</li>
+ * <li>Enforces per-sender/receiver velocity limits in memory before any
+ * database access (see {@link VelocityGuard})</li>
  * <li>Persists transaction to the database and pushes payload to Redis for
  * async processing</li>
  * </ul>
@@ -39,8 +47,12 @@ import jakarta.annotation.PostConstruct;
  * <b>How it works:</b>
  * <ol>
  * <li>Validates and persists the transaction</li>
- * <li>Checks and stores idempotency keys to avoid double-processing</li>
- * <li>Pushes a job to the Redis stream for the worker service to consume</li>
+ * <li>Claims the idempotency key, saves the transaction and stores the key in
+ * one database transaction, so two concurrent requests with the same key
+ * cannot both create a payment (see {@link IdempotencyService#claim})</li>
+ * <li>Pushes a job to the sender's partition stream
+ * ({@code transactions.main.{p}}, see {@link StreamPartitioner}) for the worker
+ * service to consume</li>
  * </ol>
  *
  * @author David Grace
@@ -54,6 +66,9 @@ public class TransactionApiProducer {
     private static final Logger log = LoggerFactory.getLogger(TransactionApiProducer.class);
     private final RedisTemplate<Object, Object> redisApiTemplate;
     private final TransactionHistoryRepository transactionHistoryRepository; // <------- change made: field
+    private final int streamPartitions;
+    private final VelocityGuard velocityGuard;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Constructs the TransactionApiProducer with required dependencies via bean
@@ -65,15 +80,25 @@ public class TransactionApiProducer {
      * @param redisApiTemplate             RedisTemplate for queueing jobs to stream
      * @param transactionHistoryRepository Repository for transaction history DB
      *                                     records
+     * @param streamPartitions             Number of partition streams payments
+     *                                     are hashed over
+     * @param velocityGuard                Per-sender/receiver velocity limits
+     * @param transactionTemplate          Read-write transactions on the primary
      */
     public TransactionApiProducer(TransactionRepository transactionRepository,
             IdempotencyService idempotencyService,
             RedisTemplate<Object, Object> redisApiTemplate,
-            TransactionHistoryRepository transactionHistoryRepository) {
+            TransactionHistoryRepository transactionHistoryRepository,
+            @Value("${openpay.streams.partitions:8}") int streamPartitions,
+            VelocityGuard velocityGuard,
+            TransactionTemplate transactionTemplate) {
         this.transactionRepository = transactionRepository;
         this.idempotencyService = idempotencyService;
         this.redisApiTemplate = redisApiTemplate;
         this.transactionHistoryRepository = transactionHistoryRepository;
+        this.streamPartitions = streamPartitions;
+        this.velocityGuard = velocityGuard;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
@@ -114,11 +139,13 @@ public class TransactionApiProducer {
      * Steps:
      * <ol>
      * <li>Validates sender and receiver UPI IDs</li>
-     * <li>Checks idempotency to prevent duplicate transactions</li>
-     * <li>Persists the new transaction in the database</li>
-     * <li>Stores the idempotency key (after successful DB save)</li>
-     * <li>Builds a payload and pushes it to the Redis stream
-     * (<code>transactions.main</code>)</li>
+     * <li>Counts the payment against the velocity limits (in memory; a
+     * rejected payment never reaches the database)</li>
+     * <li>In one database transaction: claims the idempotency key (a
+     * concurrent request with the same key waits, then sees it as a
+     * duplicate), persists the new transaction and stores the key</li>
+     * <li>Builds a payload and pushes it to the sender's partition stream
+     * (<code>transactions.main.{p}</code>)</li>
      * </ol>
      * </p>
      *
@@ -127,7 +154,7 @@ public class TransactionApiProducer {
      *                          enforcement
      * @return transaction ID of the newly created payment
      * @throws OpenPayException for business rule violations (e.g., duplicate key,
-     *                          sender = receiver)
+     *                          sender = receiver, velocity limit exceeded)
      */
     public Long createTransaction(PaymentRequest paymentRequestDto, String idempotencyKey) {
         if (paymentRequestDto.getSenderUpi().equalsIgnoreCase(paymentRequestDto.getReceiverUpi())) {
@@ -136,44 +163,35 @@ public class TransactionApiProducer {
         log.info("Creating transaction for sender={} receiver={}", paymentRequestDto.getSenderUpi(),
                 paymentRequestDto.getReceiverUpi());
 
-        // Idempotency check: throws if duplicate request is detected
-        if (idempotencyService.isDuplicate(idempotencyKey)) {
-            throw new OpenPayException("Duplicate request");
-        }
-
-        // Build and persist transaction entity
-        TransactionEntity liveTransactionEntity = new TransactionEntity();
-        liveTransactionEntity.setSenderUpi(paymentRequestDto.getSenderUpi());
-        liveTransactionEntity.setReceiverUpi(paymentRequestDto.getReceiverUpi());
-        liveTransactionEntity.setAmount(paymentRequestDto.getAmount());
-        liveTransactionEntity.setStatus("queued");
-        liveTransactionEntity.setCreatedAt(LocalDateTime.now());
-
-        TransactionEntity savedTransactionEntity = transactionRepository.save(liveTransactionEntity);
-
-        // <------- change made: audit log entry for queued
-        TransactionHistoryEntity audit = new TransactionHistoryEntity();
-        audit.setTransactionId(savedTransactionEntity.getId());
-        audit.setPrevStatus("NONE"); // since this is the first ever state
-        audit.setNewStatus("queued");
-        audit.setChangedAt(savedTransactionEntity.getCreatedAt());
-        transactionHistoryRepository.save(audit);
+        // Velocity limits: throws VelocityLimitExceededException before any DB access
+        long amountPaise = Paise.fromRupees(paymentRequestDto.getAmount());
+        VelocityGuard.Reservation velocity = velocityGuard.reserve(paymentRequestDto.getSenderUpi(),
+                paymentRequestDto.getReceiverUpi(), amountPaise);
 
-        // Record idempotency key after successful save
-        idempotencyService.saveKey(idempotencyKey, savedTransactionEntity.getId());
+        try {
+            // Idempotency claim, row and key in one DB transaction: throws if
+            // duplicate request is detected (a retry must not count twice: released below)
+            TransactionEntity savedTransactionEntity = transactionTemplate.execute(status -> insert(
+                    paymentRequestDto, amountPaise, TransactionStatus.QUEUED, idempotencyKey, "Duplicate request"));
 
-        // Prepare and push message to Redis Stream
-        Map<Object, Object> streamPayload = new HashMap<>();
-        streamPayload.put("txnId", savedTransactionEntity.getId());
-        streamPayload.put("senderUpi", savedTransactionEntity.getSenderUpi());
-        streamPayload.put("receiverUpi", savedTransactionEntity.getReceiverUpi());
-        streamPayload.put("amount", savedTransactionEntity.getAmount().toString());
+            // Enqueued only once committed: the worker must find the row
+            Map<Object, Object> streamPayload = new HashMap<>();
+            streamPayload.put("txnId", savedTransactionEntity.getId());
+            streamPayload.put("senderUpi", savedTransactionEntity.getSenderUpi());
+            streamPayload.put("receiverUpi", savedTransactionEntity.getReceiverUpi());
+            streamPayload.put("amountPaise", String.valueOf(savedTransactionEntity.getAmountPaise()));
 
-        redisApiTemplate.opsForValue().set("service-key", "hello-from-service"); // For dev/test only
-        redisApiTemplate.opsForStream().add("transactions.main", streamPayload);
-        log.info("Enqueued transaction {} to transactions.main stream", savedTransactionEntity.getId());
+            redisApiTemplate.opsForValue().set("service-key", "hello-from-service"); // For dev/test only
+            String stream = StreamPartitioner.streamForSender(savedTransactionEntity.getSenderUpi(),
+                    streamPartitions);
+            redisApiTemplate.opsForStream().add(stream, streamPayload);
+            log.info("Enqueued transaction {} to {} stream", savedTransactionEntity.getId(), stream);
 
-        return savedTransactionEntity.getId();
+            return savedTransactionEntity.getId();
+        } catch (RuntimeException e) {
+            velocityGuard.release(velocity); // duplicate, or the payment was not created
+            throw e;
+        }
     }
 
     /**
@@ -190,13 +208,18 @@ public class TransactionApiProducer {
      *
      * <ol>
      * <li>Validates sender and receiver UPI (must not be equal)</li>
-     * <li>Enforces idempotency—rejects if the same key was already used</li>
+     * <li>Counts the collect against the payer's and payee's velocity limits
+     * when it is requested, since the worker turns an approval into a payment
+     * without another check</li>
+     * <li>Claims the idempotency key—rejects if the same key was already used;
+     * claim, insert and key registration share one database transaction</li>
      * <li>Creates a new transaction entity with status
-     * <code>"requested"</code></li>
+     * {@link TransactionStatus#REQUESTED}</li>
      * <li>Logs audit history for compliance</li>
      * <li>Stores the idempotency key after successful DB save</li>
-     * <li>Pushes a job to the <b>transactions.main</b> Redis stream for worker
-     * consumption</li>
+     * <li>Publishes a {@code collect} event to <b>transactions.collect</b>; the
+     * worker holds it pending until the payer approves or declines it (see
+     * {@link #respondToCollect(Long, boolean)}) or it expires</li>
      * </ol>
      *
      * <b>Note:</b> This method is functionally similar to
@@ -224,7 +247,8 @@ public class TransactionApiProducer {
      *                          for retries
      * @return transaction ID of the newly created collect request
      * @throws OpenPayException for business rule violations (duplicate request,
-     *                          same sender/receiver, etc.)
+     *                          same sender/receiver, velocity limit exceeded,
+     *                          etc.)
      *
      * @author David Grace
      * @since 1.0
@@ -236,44 +260,104 @@ public class TransactionApiProducer {
         log.info("Creating collect request for sender={} receiver={}", paymentRequestDto.getSenderUpi(),
                 paymentRequestDto.getReceiverUpi());
 
-        // Idempotency check: throws if duplicate request is detected
-        if (idempotencyService.isDuplicate(idempotencyKey)) {
-            throw new OpenPayException("Duplicate collect request");
+        // Velocity limits: an approved collect is paid without another check
+        long amountPaise = Paise.fromRupees(paymentRequestDto.getAmount());
+        VelocityGuard.Reservation velocity = velocityGuard.reserve(paymentRequestDto.getSenderUpi(),
+                paymentRequestDto.getReceiverUpi(), amountPaise);
+
+        try {
+            // Idempotency claim, row and key in one DB transaction: throws if
+            // duplicate request is detected (a retry must not count twice: released below)
+            TransactionEntity savedCollect = transactionTemplate.execute(status -> insert(paymentRequestDto,
+                    amountPaise, TransactionStatus.REQUESTED, idempotencyKey, "Duplicate collect request"));
+
+            // Enqueued only once committed: the worker must find the row
+            Map<Object, Object> streamPayload = new HashMap<>();
+            streamPayload.put("txnId", savedCollect.getId());
+            streamPayload.put("senderUpi", savedCollect.getSenderUpi());
+            streamPayload.put("receiverUpi", savedCollect.getReceiverUpi());
+            streamPayload.put("amountPaise", String.valueOf(savedCollect.getAmountPaise()));
+            streamPayload.put("type", "collect");
+
+            redisApiTemplate.opsForStream().add(StreamPartitioner.COLLECT_STREAM, streamPayload);
+            log.info("Enqueued collect {} to {} stream", savedCollect.getId(), StreamPartitioner.COLLECT_STREAM);
+
+            return savedCollect.getId();
+        } catch (RuntimeException e) {
+            velocityGuard.release(velocity); // duplicate, or the payment was not created
+            throw e;
         }
+    }
 
-        // Build and persist transaction entity
-        TransactionEntity collectTransaction = new TransactionEntity();
-        collectTransaction.setSenderUpi(paymentRequestDto.getSenderUpi());
-        collectTransaction.setReceiverUpi(paymentRequestDto.getReceiverUpi());
-        collectTransaction.setAmount(paymentRequestDto.getAmount());
-        collectTransaction.setStatus("requested"); // <--- difference!
-        collectTransaction.setCreatedAt(LocalDateTime.now());
+    /**
+     * Claims the idempotency key, then persists the transaction, its first
+     * audit row and the key. Runs inside the caller's database transaction,
+     * so a concurrent request with the same key waits on the claim until this
+     * one commits and then fails as a duplicate.
+     *
+     * @param request          payment details
+     * @param amountPaise      amount in paise
+     * @param initialStatus    {@code QUEUED} (push) or {@code REQUESTED} (collect)
+     * @param idempotencyKey   client-supplied key
+     * @param duplicateMessage message of the duplicate-request error
+     * @return the saved transaction
+     * @throws OpenPayException if the key was used before
+     */
+    private TransactionEntity insert(PaymentRequest request, long amountPaise, TransactionStatus initialStatus,
+            String idempotencyKey, String duplicateMessage) {
+        if (!idempotencyService.claim(idempotencyKey)) {
+            throw new OpenPayException(duplicateMessage);
+        }
 
-        TransactionEntity savedCollect = transactionRepository.save(collectTransaction);
+        // Build and persist transaction entity
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setSenderUpi(request.getSenderUpi());
+        transaction.setReceiverUpi(request.getReceiverUpi());
+        transaction.setAmountPaise(amountPaise);
+        transaction.setStatus(initialStatus);
+        transaction.setCreatedAt(LocalDateTime.now());
+        TransactionEntity saved = transactionRepository.save(transaction);
 
-        // Audit log entry
+        // Audit log entry for the first state
         TransactionHistoryEntity audit = new TransactionHistoryEntity();
-        audit.setTransactionId(savedCollect.getId());
-        audit.setPrevStatus("NONE");
-        audit.setNewStatus("requested");
-        audit.setChangedAt(savedCollect.getCreatedAt());
+        audit.setTransactionId(saved.getId());
+        audit.setPrevStatus(TransactionStatus.NONE); // since this is the first ever state
+        audit.setNewStatus(initialStatus);
+        audit.setChangedAt(saved.getCreatedAt());
         transactionHistoryRepository.save(audit);
 
-        // Record idempotency key after successful save
-        idempotencyService.saveKey(idempotencyKey, savedCollect.getId());
-
-        // Prepare and push message to Redis Stream
-        Map<Object, Object> streamPayload = new HashMap<>();
-        streamPayload.put("txnId", savedCollect.getId());
-        streamPayload.put("senderUpi", savedCollect.getSenderUpi());
-        streamPayload.put("receiverUpi", savedCollect.getReceiverUpi());
-        streamPayload.put("amount", savedCollect.getAmount().toString());
-        streamPayload.put("type", "collect"); // optional for worker to distinguish
+        // Record idempotency key after successful save, before the claim is released
+        idempotencyService.saveKey(idempotencyKey, saved.getId());
+        return saved;
+    }
 
-        redisApiTemplate.opsForStream().add("transactions.main", streamPayload);
-        log.info("Enqueued collect {} to transactions.main stream", savedCollect.getId());
+    /**
+     * <h2>respondToCollect</h2>
+     * <p>
+     * Records the payer's answer to a pending collect request. The answer is
+     * published as a {@code collect-approved} / {@code collect-declined} event
+     * to <b>transactions.collect</b>; the worker applies it (an approved collect
+     * becomes a queued payment) unless the collect expired first.
+     * </p>
+     *
+     * @param txnId    id of the collect request
+     * @param approved true to approve (pay), false to decline
+     * @throws OpenPayException if there is no such collect or it is no longer
+     *                          awaiting approval
+     */
+    public void respondToCollect(Long txnId, boolean approved) {
+        TransactionEntity collect = transactionRepository.findById(txnId)
+                .orElseThrow(() -> new OpenPayException("Unknown collect request " + txnId));
+        if (collect.getStatus() != TransactionStatus.REQUESTED) {
+            throw new OpenPayException("Collect request " + txnId + " is not awaiting approval ("
+                    + collect.getStatus() + ")");
+        }
 
-        return savedCollect.getId();
+        Map<Object, Object> event = new HashMap<>();
+        event.put("txnId", txnId);
+        event.put("type", approved ? "collect-approved" : "collect-declined");
+        redisApiTemplate.opsForStream().add(StreamPartitioner.COLLECT_STREAM, event);
+        log.info("Collect {} {} by payer", txnId, approved ? "approved" : "declined");
     }
 
 }
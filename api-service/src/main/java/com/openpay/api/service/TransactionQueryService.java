@@ -0,0 +1,65 @@
+package com.openpay.api.service;
+
+import java.util.Optional;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openpay.shared.model.TransactionEntity;
+import com.openpay.shared.model.TransactionStatus;
+import com.openpay.shared.repository.TransactionRepository;
+
+/**
+ * <h2>TransactionQueryService</h2>
+ * <p>
+ * Read side for transaction lookups. Every method here runs in a read-only
+ * transaction, so with replicas enabled (see
+ * {@link com.openpay.api.config.ReadReplicaConfig}) the query is served by an
+ * in-sync replica instead of the primary that takes {@code /pay} writes.
+ * </p>
+ *
+ * <ul>
+ * <li>New listing/search endpoints should add their reads here</li>
+ * <li>{@link #findStatusOnPrimary(Long)} gives read-your-writes for a
+ * transaction the replica has not replayed yet</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Service
+public class TransactionQueryService {
+
+    private final TransactionRepository transactionRepository;
+
+    /**
+     * @param transactionRepository DAO for accessing transaction data
+     */
+    public TransactionQueryService(TransactionRepository transactionRepository) {
+        this.transactionRepository = transactionRepository;
+    }
+
+    /**
+     * Looks up a transaction's status on a replica (or the primary if no
+     * replica is in sync).
+     *
+     * @param id transaction ID
+     * @return the status, or empty if the row is not visible there
+     */
+    @Transactional(readOnly = true)
+    public Optional<TransactionStatus> findStatus(Long id) {
+        return transactionRepository.findById(id).map(TransactionEntity::getStatus);
+    }
+
+    /**
+     * Looks up a transaction's status on the primary. Used when a just-created
+     * transaction has not reached the replica yet.
+     *
+     * @param id transaction ID
+     * @return the status, or empty if the transaction does not exist
+     */
+    @Transactional
+    public Optional<TransactionStatus> findStatusOnPrimary(Long id) {
+        return transactionRepository.findById(id).map(TransactionEntity::getStatus);
+    }
+}
@@ -0,0 +1,326 @@
+package com.openpay.api.velocity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h2>SlidingWindowCounters</h2>
+ * <p>
+ * In-memory payment count and amount per key (a UPI id) over several sliding
+ * windows at once, with an atomic check-and-add across keys. Built for the
+ * {@code /pay} hot path: a check is a hash lookup and a few array reads under
+ * one stripe lock, with no boxing and no per-bucket objects.
+ * </p>
+ *
+ * <ul>
+ * <li>Each window is a ring of {@code buckets} sub-windows of
+ * {@code bucketMillis}; its total covers the current bucket and the
+ * {@code buckets - 1} before it. The oldest bucket is dropped whole, so the
+ * window slides in steps of one bucket</li>
+ * <li>A key's state is a single {@code long[]}: last-touch time, then per
+ * window the head bucket index, the bucket counts and the bucket amounts</li>
+ * <li>Keys are spread over {@code stripes} lock-protected hash maps; a
+ * multi-key operation locks the stripes involved in ascending order, so it
+ * never deadlocks</li>
+ * <li>Keys idle for longer than the widest window are dropped by
+ * {@link #evictIdle(long)}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class SlidingWindowCounters {
+
+    private static final int TOUCHED = 0;
+
+    /**
+     * One sliding window.
+     *
+     * @param name         label used in metrics and messages (e.g. "minute")
+     * @param bucketMillis width of a bucket
+     * @param buckets      number of buckets; the window spans
+     *                     {@code bucketMillis * buckets}
+     */
+    public record Window(String name, long bucketMillis, int buckets) {
+
+        public Window {
+            if (bucketMillis <= 0 || buckets <= 0) {
+                throw new IllegalArgumentException("Invalid window " + name);
+            }
+        }
+
+        /**
+         * @return the window's span in milliseconds
+         */
+        public long spanMillis() {
+            return bucketMillis * buckets;
+        }
+    }
+
+    /**
+     * Limits of one key, per window in {@link SlidingWindowCounters} order; 0
+     * means unlimited.
+     *
+     * @param maxCounts  most entries per window
+     * @param maxAmounts largest amount total per window
+     */
+    public record Limits(long[] maxCounts, long[] maxAmounts) {
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, long[]> states = new HashMap<>();
+    }
+
+    private final Window[] windows;
+    private final int[] offsets;
+    private final int stateLength;
+    private final long maxSpanMillis;
+    private final Stripe[] stripes;
+
+    /**
+     * @param stripes number of lock stripes (rounded up to a power of two)
+     * @param windows the windows every key is counted over
+     */
+    public SlidingWindowCounters(int stripes, Window... windows) {
+        if (windows.length == 0) {
+            throw new IllegalArgumentException("At least one window is required");
+        }
+        this.windows = windows.clone();
+        this.offsets = new int[windows.length];
+        int offset = 1;
+        long maxSpan = 0;
+        for (int w = 0; w < windows.length; w++) {
+            offsets[w] = offset;
+            offset += 1 + 2 * windows[w].buckets();
+            maxSpan = Math.max(maxSpan, windows[w].spanMillis());
+        }
+        this.stateLength = offset;
+        this.maxSpanMillis = maxSpan;
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return the windows, in the order limits and violations refer to them
+     */
+    public Window[] windows() {
+        return windows.clone();
+    }
+
+    /**
+     * Adds one entry of {@code amount} to every key, unless that would take
+     * any key past one of its limits, in which case nothing is added.
+     *
+     * @param nowMillis current time
+     * @param amount    amount of the entry
+     * @param keys      keys to count the entry against
+     * @param limits    limits of each key, same order as {@code keys}
+     * @return -1 if the entry was added, otherwise
+     *         {@code keyIndex * windows + windowIndex} of the first limit that
+     *         would have been exceeded
+     */
+    public int tryAdd(long nowMillis, long amount, String[] keys, Limits[] limits) {
+        Stripe[] locked = lockAll(keys);
+        try {
+            long[][] states = new long[keys.length][];
+            for (int k = 0; k < keys.length; k++) {
+                states[k] = stripeFor(keys[k]).states.computeIfAbsent(keys[k], key -> new long[stateLength]);
+                for (int w = 0; w < windows.length; w++) {
+                    roll(states[k], w, nowMillis);
+                    long maxCount = limits[k].maxCounts()[w];
+                    long maxAmount = limits[k].maxAmounts()[w];
+                    if ((maxCount > 0 && sum(states[k], w, 0) + 1 > maxCount)
+                            || (maxAmount > 0 && sum(states[k], w, windows[w].buckets()) + amount > maxAmount)) {
+                        return k * windows.length + w;
+                    }
+                }
+            }
+            for (long[] state : states) {
+                add(state, nowMillis, 1, amount);
+            }
+            return -1;
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * Takes back an entry added by {@link #tryAdd} at {@code atMillis}, in the
+     * windows whose rings still hold that bucket.
+     *
+     * @param atMillis time the entry was added
+     * @param amount   amount of the entry
+     * @param keys     keys it was added to
+     */
+    public void subtract(long atMillis, long amount, String... keys) {
+        Stripe[] locked = lockAll(keys);
+        try {
+            for (String key : keys) {
+                long[] state = stripeFor(key).states.get(key);
+                if (state != null) {
+                    add(state, atMillis, -1, -amount);
+                }
+            }
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * Current totals of a key.
+     *
+     * @param key       the key
+     * @param nowMillis current time
+     * @return {@code [count, amount]} per window, in window order
+     */
+    public long[][] totals(String key, long nowMillis) {
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            long[][] totals = new long[windows.length][2];
+            long[] state = stripe.states.get(key);
+            if (state != null) {
+                for (int w = 0; w < windows.length; w++) {
+                    roll(state, w, nowMillis);
+                    totals[w][0] = sum(state, w, 0);
+                    totals[w][1] = sum(state, w, windows[w].buckets());
+                }
+            }
+            return totals;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops keys untouched for longer than the widest window (all their
+     * buckets are empty by then), one stripe at a time.
+     *
+     * @param nowMillis current time
+     * @return number of keys dropped
+     */
+    public int evictIdle(long nowMillis) {
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Iterator<long[]> it = stripe.states.values().iterator();
+                while (it.hasNext()) {
+                    if (nowMillis - it.next()[TOUCHED] > maxSpanMillis) {
+                        it.remove();
+                        evicted++;
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return number of tracked keys (approximate under concurrent updates)
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.states.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Moves window {@code w}'s head to the bucket of {@code nowMillis},
+     * clearing the buckets it passes. A time before the head (clock step
+     * back) leaves the ring as is.
+     */
+    private void roll(long[] state, int w, long nowMillis) {
+        int base = offsets[w];
+        int buckets = windows[w].buckets();
+        long index = nowMillis / windows[w].bucketMillis();
+        long head = state[base];
+        if (index <= head) {
+            return;
+        }
+        if (index - head >= buckets) {
+            Arrays.fill(state, base + 1, base + 1 + 2 * buckets, 0L);
+        } else {
+            for (long i = head + 1; i <= index; i++) {
+                int slot = (int) (i % buckets);
+                state[base + 1 + slot] = 0;
+                state[base + 1 + buckets + slot] = 0;
+            }
+        }
+        state[base] = index;
+    }
+
+    /** Sum of the count ({@code part = 0}) or amount ({@code part = buckets}) buckets. */
+    private long sum(long[] state, int w, int part) {
+        int from = offsets[w] + 1 + part;
+        long total = 0;
+        for (int i = from; i < from + windows[w].buckets(); i++) {
+            total += state[i];
+        }
+        return total;
+    }
+
+    private void add(long[] state, long atMillis, long count, long amount) {
+        for (int w = 0; w < windows.length; w++) {
+            if (count > 0) {
+                roll(state, w, atMillis);
+            }
+            int base = offsets[w];
+            int buckets = windows[w].buckets();
+            long index = atMillis / windows[w].bucketMillis();
+            if (index > state[base] || state[base] - index >= buckets) {
+                continue; // bucket already left the ring
+            }
+            int slot = (int) (index % buckets);
+            state[base + 1 + slot] = Math.max(0, state[base + 1 + slot] + count);
+            state[base + 1 + buckets + slot] = Math.max(0, state[base + 1 + buckets + slot] + amount);
+        }
+        if (count > 0) {
+            state[TOUCHED] = Math.max(state[TOUCHED], atMillis);
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private int stripeIndex(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    private Stripe[] lockAll(String[] keys) {
+        int[] indexes = new int[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            indexes[k] = stripeIndex(keys[k]);
+        }
+        int[] ordered = Arrays.stream(indexes).sorted().distinct().toArray();
+        Stripe[] locked = new Stripe[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            locked[i] = stripes[ordered[i]];
+            locked[i].lock.lock();
+        }
+        return locked;
+    }
+
+    private static void unlockAll(Stripe[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            locked[i].lock.unlock();
+        }
+    }
+}
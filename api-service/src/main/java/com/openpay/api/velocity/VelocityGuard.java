@@ -0,0 +1,307 @@
+package com.openpay.api.velocity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.api.velocity.SlidingWindowCounters.Limits;
+import com.openpay.api.velocity.SlidingWindowCounters.Window;
+import com.openpay.shared.exception.VelocityLimitExceededException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>VelocityGuard</h2>
+ * <p>
+ * Per-sender and per-receiver velocity limits (payment count and amount per
+ * minute, hour and day), checked by
+ * {@link com.openpay.api.service.TransactionApiProducer} before anything is
+ * written, so a rejected payment never reaches Postgres.
+ * </p>
+ *
+ * <ul>
+ * <li><b>local</b> mode: {@link SlidingWindowCounters} of this instance only;
+ * a check costs microseconds, but each API replica sees only its own share of
+ * a sender's traffic</li>
+ * <li><b>redis</b> mode: the local check runs first (its counts never exceed
+ * the fleet's, so its rejections stand without a round trip), then a Lua
+ * script per party checks and adds the same buckets fleet-wide in Redis. If
+ * Redis is unreachable the payment is let through on the local check
+ * alone</li>
+ * <li>Each script call gets every bucket key it touches in KEYS, all under
+ * the party's hash tag, so it runs on Redis Cluster too; the sender is
+ * counted first and taken back if the receiver is over a limit</li>
+ * <li>Windows slide in steps of one bucket: 6 x 10s, 12 x 5min, 24 x 1h</li>
+ * <li>A reservation is taken back with {@link #release(Reservation)} when the
+ * payment is not created after all (e.g. a duplicate Idempotency-Key)</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class VelocityGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(VelocityGuard.class);
+
+    static final String REDIS_KEY_PREFIX = "openpay:velocity:";
+
+    static final Window[] WINDOWS = {
+            new Window("minute", 10_000L, 6),
+            new Window("hour", 300_000L, 12),
+            new Window("day", 3_600_000L, 24) };
+
+    private static final String[] PARTIES = { "sender", "receiver" };
+
+    /**
+     * Checks one party's windows and, only if all are within their limits,
+     * adds the entry to the current bucket of each. KEYS: per window, its
+     * bucket keys oldest to current; ARGV: amount, window count, then
+     * (buckets, bucket ttl, max count, max amount) per window. Returns 0, or
+     * the 1-based index of the first window exceeded.
+     */
+    private static final RedisScript<Long> TRY_ADD = new DefaultRedisScript<>(
+            "local amount = tonumber(ARGV[1]) local nw = tonumber(ARGV[2]) local first = 1 local current = {} "
+                    + "for w = 1, nw do "
+                    + "local buckets = tonumber(ARGV[4 * w - 1]) "
+                    + "local maxc = tonumber(ARGV[4 * w + 1]) local maxa = tonumber(ARGV[4 * w + 2]) "
+                    + "if maxc > 0 or maxa > 0 then "
+                    + "local c = 0 local a = 0 "
+                    + "for i = first, first + buckets - 1 do "
+                    + "local v = redis.call('hmget', KEYS[i], 'c', 'a') "
+                    + "c = c + (tonumber(v[1]) or 0) a = a + (tonumber(v[2]) or 0) end "
+                    + "if (maxc > 0 and c + 1 > maxc) or (maxa > 0 and a + amount > maxa) then return w end "
+                    + "end "
+                    + "current[w] = KEYS[first + buckets - 1] first = first + buckets "
+                    + "end "
+                    + "for w = 1, nw do "
+                    + "redis.call('hincrby', current[w], 'c', 1) redis.call('hincrby', current[w], 'a', amount) "
+                    + "redis.call('pexpire', current[w], tonumber(ARGV[4 * w])) "
+                    + "end return 0",
+            Long.class);
+
+    /** Takes an entry back from the KEYS buckets that still exist; ARGV: amount. */
+    private static final RedisScript<Long> SUBTRACT = new DefaultRedisScript<>(
+            "local amount = tonumber(ARGV[1]) "
+                    + "for k = 1, #KEYS do "
+                    + "if redis.call('exists', KEYS[k]) == 1 then "
+                    + "redis.call('hincrby', KEYS[k], 'c', -1) redis.call('hincrby', KEYS[k], 'a', -amount) end "
+                    + "end return 0",
+            Long.class);
+
+    /**
+     * A payment counted against its sender and receiver.
+     *
+     * @param senderKey   counter key of the sender
+     * @param receiverKey counter key of the receiver
+     * @param amountPaise amount counted
+     * @param atMillis    time it was counted
+     * @param remote      true if it was also counted in Redis
+     */
+    public record Reservation(String senderKey, String receiverKey, long amountPaise, long atMillis,
+            boolean remote) {
+    }
+
+    private final StringRedisTemplate redis;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final boolean redisMode;
+    private final SlidingWindowCounters counters;
+    private final Limits[] limits;
+    private final Counter redisErrors;
+
+    /**
+     * @param redis                  string template for the fleet-wide counters
+     * @param meterRegistry          registry for velocity metrics
+     * @param enabled                master switch
+     * @param mode                   {@code local} or {@code redis}
+     * @param stripes                lock stripes of the local counters
+     * @param senderMaxCounts        sender payments per minute, hour, day (0 =
+     *                               unlimited)
+     * @param senderMaxRupees        sender amount per minute, hour, day
+     * @param receiverMaxCounts      receiver payments per minute, hour, day
+     * @param receiverMaxRupees      receiver amount per minute, hour, day
+     */
+    public VelocityGuard(StringRedisTemplate redis,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.velocity.enabled:true}") boolean enabled,
+            @Value("${openpay.velocity.mode:local}") String mode,
+            @Value("${openpay.velocity.stripes:64}") int stripes,
+            @Value("${openpay.velocity.sender.max-count:20,200,1000}") long[] senderMaxCounts,
+            @Value("${openpay.velocity.sender.max-amount:100000,200000,1000000}") long[] senderMaxRupees,
+            @Value("${openpay.velocity.receiver.max-count:0,0,0}") long[] receiverMaxCounts,
+            @Value("${openpay.velocity.receiver.max-amount:0,0,0}") long[] receiverMaxRupees) {
+        if (!mode.equals("local") && !mode.equals("redis")) {
+            throw new IllegalArgumentException("openpay.velocity.mode must be local or redis: " + mode);
+        }
+        this.redis = redis;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.redisMode = mode.equals("redis");
+        this.counters = new SlidingWindowCounters(stripes, WINDOWS);
+        this.limits = new Limits[] {
+                new Limits(perWindow(senderMaxCounts, 1), perWindow(senderMaxRupees, 100)),
+                new Limits(perWindow(receiverMaxCounts, 1), perWindow(receiverMaxRupees, 100)) };
+        this.redisErrors = meterRegistry.counter("openpay.velocity.redis.errors");
+        Gauge.builder("openpay.velocity.keys", counters, SlidingWindowCounters::size)
+                .description("UPI ids with live velocity counters on this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts a payment against its sender and receiver, or rejects it.
+     *
+     * @param senderUpi   payer
+     * @param receiverUpi payee
+     * @param amountPaise amount of the payment
+     * @return the reservation, to {@link #release} if the payment is not
+     *         created after all; null when velocity checks are disabled
+     * @throws VelocityLimitExceededException if a limit would be exceeded
+     */
+    public Reservation reserve(String senderUpi, String receiverUpi, long amountPaise) {
+        if (!enabled) {
+            return null;
+        }
+        String[] keys = { "s:" + normalize(senderUpi), "r:" + normalize(receiverUpi) };
+        long now = System.currentTimeMillis();
+        int violation = counters.tryAdd(now, amountPaise, keys, limits);
+        if (violation >= 0) {
+            throw rejected(violation);
+        }
+        boolean remote = false;
+        if (redisMode) {
+            int added = 0;
+            try {
+                for (; added < keys.length; added++) {
+                    Long result = redis.execute(TRY_ADD, windowKeys(keys[added], now),
+                            tryAddArgs(amountPaise, limits[added]));
+                    if (result != null && result > 0) {
+                        counters.subtract(now, amountPaise, keys);
+                        subtractRemote(keys, added, amountPaise, now);
+                        throw rejected(added * WINDOWS.length + result.intValue() - 1);
+                    }
+                }
+                remote = true;
+            } catch (DataAccessException e) {
+                redisErrors.increment();
+                log.warn("[VELOCITY] Redis check failed, using local counters only: {}", e.getMessage());
+                subtractRemote(keys, added, amountPaise, now);
+            }
+        }
+        return new Reservation(keys[0], keys[1], amountPaise, now, remote);
+    }
+
+    /**
+     * Takes back a reservation whose payment was not created.
+     *
+     * @param reservation what {@link #reserve} returned (null is ignored)
+     */
+    public void release(Reservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        String[] keys = { reservation.senderKey(), reservation.receiverKey() };
+        counters.subtract(reservation.atMillis(), reservation.amountPaise(), keys);
+        if (reservation.remote()) {
+            subtractRemote(keys, keys.length, reservation.amountPaise(), reservation.atMillis());
+        }
+    }
+
+    /**
+     * Takes an entry back from the Redis buckets of the first {@code count}
+     * keys. Best effort: a failure only leaves the entry to expire.
+     */
+    private void subtractRemote(String[] keys, int count, long amountPaise, long atMillis) {
+        for (int k = 0; k < count; k++) {
+            List<String> current = new ArrayList<>(WINDOWS.length);
+            for (Window window : WINDOWS) {
+                current.add(bucketKey(keys[k], window, Math.floorDiv(atMillis, window.bucketMillis())));
+            }
+            try {
+                redis.execute(SUBTRACT, current, String.valueOf(amountPaise));
+            } catch (DataAccessException e) {
+                redisErrors.increment();
+                log.warn("[VELOCITY] Redis release failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops local counters of UPI ids idle for a whole day.
+     */
+    @Scheduled(fixedDelayString = "${openpay.velocity.evict-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = counters.evictIdle(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.debug("[VELOCITY] Evicted {} idle counters", evicted);
+        }
+    }
+
+    private VelocityLimitExceededException rejected(int violation) {
+        String party = PARTIES[violation / WINDOWS.length];
+        String window = WINDOWS[violation % WINDOWS.length].name();
+        meterRegistry.counter("openpay.velocity.rejected", "party", party, "window", window).increment();
+        return new VelocityLimitExceededException("Velocity limit exceeded for " + party + " (per " + window + ")");
+    }
+
+    private static Object[] tryAddArgs(long amountPaise, Limits partyLimits) {
+        List<String> args = new ArrayList<>(2 + 4 * WINDOWS.length);
+        args.add(String.valueOf(amountPaise));
+        args.add(String.valueOf(WINDOWS.length));
+        for (int w = 0; w < WINDOWS.length; w++) {
+            Window window = WINDOWS[w];
+            args.add(String.valueOf(window.buckets()));
+            args.add(String.valueOf(window.bucketMillis() * (window.buckets() + 1)));
+            args.add(String.valueOf(partyLimits.maxCounts()[w]));
+            args.add(String.valueOf(partyLimits.maxAmounts()[w]));
+        }
+        return args.toArray();
+    }
+
+    /**
+     * @return every bucket key of one party at {@code now}, per window oldest
+     *         to current, in the order {@link #TRY_ADD} expects
+     */
+    private static List<String> windowKeys(String key, long now) {
+        List<String> keys = new ArrayList<>();
+        for (Window window : WINDOWS) {
+            long current = Math.floorDiv(now, window.bucketMillis());
+            for (long bucket = current - window.buckets() + 1; bucket <= current; bucket++) {
+                keys.add(bucketKey(key, window, bucket));
+            }
+        }
+        return keys;
+    }
+
+    private static String bucketKey(String key, Window window, long bucket) {
+        // hash tag keeps all buckets of one party on one cluster slot
+        return REDIS_KEY_PREFIX + "{" + key + "}:" + window.bucketMillis() + ":" + bucket;
+    }
+
+    private static long[] perWindow(long[] configured, long scale) {
+        if (configured.length != WINDOWS.length) {
+            throw new IllegalArgumentException("Velocity limits need one value per window (minute, hour, day)");
+        }
+        long[] scaled = new long[configured.length];
+        for (int i = 0; i < configured.length; i++) {
+            scaled[i] = Math.multiplyExact(configured[i], scale);
+        }
+        return scaled;
+    }
+
+    private static String normalize(String upi) {
+        return upi.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,78 @@
+-- ============================================================================
+-- V10__ledger.sql
+-- Append-only double-entry ledger. Every completed payment is posted by the
+-- worker (LedgerPoster) as two entries that sum to zero: a debit of the
+-- sender's account and a credit of the receiver's. Accounts are UPI ids.
+--
+-- Balances are maintained incrementally, never by summing the ledger:
+--   - account_balance_deltas: striped counters; each posting adds its amounts
+--     to one of a few stripe rows per account, so a busy merchant account is
+--     not a single hot row
+--   - account_balances: periodic snapshot; the worker folds the stripes into
+--     it (LedgerSnapshotter). Balance = snapshot + sum of the account's stripes
+--
+-- All three tables are hash-partitioned on the account with the same modulus,
+-- so the verification job (LedgerVerifier) recomputes one partition per task
+-- in parallel, each against the matching balance partitions.
+-- ============================================================================
+
+CREATE TABLE ledger_entries (
+  id              BIGSERIAL,
+  transaction_id  BIGINT          NOT NULL,          -- Payment (transactions.id)
+  account         VARCHAR(100)    NOT NULL,          -- UPI id
+  entry_type      SMALLINT        NOT NULL,          -- 1 = debit, 2 = credit
+  amount_paise    BIGINT          NOT NULL,          -- Signed: debit < 0 < credit
+  created_at      TIMESTAMPTZ     NOT NULL DEFAULT NOW(),
+  PRIMARY KEY (account, transaction_id, entry_type), -- one posting per payment
+  CHECK ((entry_type = 1 AND amount_paise < 0) OR (entry_type = 2 AND amount_paise > 0))
+) PARTITION BY HASH (account);
+
+CREATE TABLE account_balance_deltas (
+  account         VARCHAR(100)    NOT NULL,
+  stripe          SMALLINT        NOT NULL,
+  delta_paise     BIGINT          NOT NULL,
+  PRIMARY KEY (account, stripe)
+) PARTITION BY HASH (account);
+
+CREATE TABLE account_balances (
+  account         VARCHAR(100)    NOT NULL,
+  balance_paise   BIGINT          NOT NULL,
+  snapshot_at     TIMESTAMPTZ     NOT NULL,          -- Last fold that changed it
+  PRIMARY KEY (account)
+) PARTITION BY HASH (account);
+
+DO $$
+BEGIN
+  FOR p IN 0..15 LOOP
+    EXECUTE format('CREATE TABLE ledger_entries_p%s PARTITION OF ledger_entries '
+                   'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', p, p);
+    EXECUTE format('CREATE TABLE account_balance_deltas_p%s PARTITION OF account_balance_deltas '
+                   'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', p, p);
+    EXECUTE format('CREATE TABLE account_balances_p%s PARTITION OF account_balances '
+                   'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', p, p);
+  END LOOP;
+END $$;
+
+CREATE INDEX idx_ledger_entries_txn ON ledger_entries (transaction_id);
+
+-- Immutability: entries can be inserted, never changed or removed
+CREATE FUNCTION ledger_entries_immutable() RETURNS trigger AS $$
+BEGIN
+  RAISE EXCEPTION 'ledger_entries is append-only (% rejected)', TG_OP;
+END $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_ledger_entries_immutable
+  BEFORE UPDATE OR DELETE ON ledger_entries
+  FOR EACH ROW EXECUTE FUNCTION ledger_entries_immutable();
+
+CREATE TRIGGER trg_ledger_entries_no_truncate
+  BEFORE TRUNCATE ON ledger_entries
+  FOR EACH STATEMENT EXECUTE FUNCTION ledger_entries_immutable();
+
+-- ============================================================================
+-- Notes:
+-- - The partition count (16) is also in LedgerVerifier.PARTITIONS; changing
+--   it means re-partitioning all three tables together.
+-- - Posting is one statement (insert entries ON CONFLICT DO NOTHING, then add
+--   the inserted amounts to a stripe), so a retried posting changes nothing.
+-- ============================================================================
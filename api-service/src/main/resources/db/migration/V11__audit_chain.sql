@@ -0,0 +1,76 @@
+-- ============================================================================
+-- V11__audit_chain.sql
+-- Hash chain over transaction_history. Rows are still plain inserts from
+-- every writer; the worker leader (AuditChainSealer) seals them afterwards,
+-- in batches, into CHAINS independent chains (chain = transaction_id % 16):
+--
+--   row_hash = SHA-256(previous row_hash of the chain || canonical row)
+--
+-- so inserts never wait on a chain head, and chains are sealed and verified
+-- independently. The first row of a chain hashes against 32 zero bytes.
+--
+-- Altering or deleting a sealed row breaks its own hash (or the next row's);
+-- rewriting a whole chain tail must also rewrite audit_chain_heads and
+-- audit_chain_batches, whose hashes are the anchors to export elsewhere.
+-- ============================================================================
+
+ALTER TABLE transaction_history
+  ADD COLUMN chain      SMALLINT,                     -- Set when sealed
+  ADD COLUMN chain_seq  BIGINT,                       -- 1, 2, ... per chain
+  ADD COLUMN row_hash   BYTEA;                        -- SHA-256, 32 bytes
+
+-- Segment reads of the verifier, and one position per row
+CREATE UNIQUE INDEX idx_history_chain_seq ON transaction_history (chain, chain_seq);
+
+-- Unsealed rows per chain in insert order; stays small once sealing keeps up
+CREATE INDEX idx_history_unsealed ON transaction_history ((transaction_id % 16), history_id)
+  WHERE chain_seq IS NULL;
+
+-- Last sealed position of every chain; locked by the sealer while it extends it
+CREATE TABLE audit_chain_heads (
+  chain       SMALLINT     PRIMARY KEY,
+  seq         BIGINT       NOT NULL,
+  hash        BYTEA        NOT NULL,
+  updated_at  TIMESTAMPTZ  NOT NULL DEFAULT NOW()
+);
+
+INSERT INTO audit_chain_heads (chain, seq, hash)
+SELECT c, 0, '\x0000000000000000000000000000000000000000000000000000000000000000'::bytea
+FROM generate_series(0, 15) c;
+
+-- One row per sealed batch: lets the verifier find a day's segment of every
+-- chain without scanning history by time
+CREATE TABLE audit_chain_batches (
+  chain       SMALLINT     NOT NULL,
+  first_seq   BIGINT       NOT NULL,
+  last_seq    BIGINT       NOT NULL,
+  last_hash   BYTEA        NOT NULL,
+  sealed_at   TIMESTAMPTZ  NOT NULL,
+  PRIMARY KEY (chain, first_seq)
+);
+
+CREATE INDEX idx_audit_chain_batches_sealed ON audit_chain_batches (sealed_at);
+
+-- History is insert-only; the seal columns may be set once, nothing else
+CREATE FUNCTION transaction_history_immutable() RETURNS trigger AS $$
+BEGIN
+  IF TG_OP = 'UPDATE'
+     AND OLD.chain_seq IS NULL
+     AND (NEW.history_id, NEW.transaction_id, NEW.prev_status, NEW.new_status, NEW.reason, NEW.changed_at)
+         IS NOT DISTINCT FROM
+         (OLD.history_id, OLD.transaction_id, OLD.prev_status, OLD.new_status, OLD.reason, OLD.changed_at) THEN
+    RETURN NEW;
+  END IF;
+  RAISE EXCEPTION 'transaction_history is append-only (% rejected)', TG_OP;
+END $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_transaction_history_immutable
+  BEFORE UPDATE OR DELETE ON transaction_history
+  FOR EACH ROW EXECUTE FUNCTION transaction_history_immutable();
+
+-- ============================================================================
+-- Notes:
+-- - The chain count (16) is also in AuditChain.CHAINS; the unsealed index
+--   expression must use the same modulus.
+-- - Existing rows are sealed by the same job, oldest first, batch by batch.
+-- ============================================================================
@@ -0,0 +1,53 @@
+-- ============================================================================
+-- V12__cold_archive.sql
+-- Closed months of transactions (with their history) are moved by the
+-- worker leader (ColdTransactionArchiver) into immutable columnar segment
+-- files, then purged here in id batches:
+--   - archive_segments records every archived month: the files, the id range
+--     and the row counts the purge re-checks before deleting anything
+--   - history stays append-only for everyone else; the purge opts in per
+--     transaction with SET LOCAL openpay.archive_purge = 'on', and only
+--     sealed rows (chain_seq set) can be deleted, their hashes being archived
+-- ============================================================================
+
+CREATE TABLE archive_segments (
+  month             DATE          PRIMARY KEY,        -- First day of the month (server time zone)
+  first_id          BIGINT        NOT NULL,           -- Transaction ids [first_id, end_id)
+  end_id            BIGINT        NOT NULL,
+  transactions      BIGINT        NOT NULL,           -- Rows in the transactions segment
+  history_rows      BIGINT        NOT NULL,           -- Rows in the history segment
+  amount_paise      BIGINT        NOT NULL,           -- Sum over the archived transactions
+  directory         VARCHAR(500)  NOT NULL,           -- Segment directory on the archiving host
+  archived_at       TIMESTAMPTZ   NOT NULL DEFAULT NOW(),
+  purged_at         TIMESTAMPTZ                       -- NULL until the rows are deleted
+);
+
+-- Each purged transaction is checked against idempotency_keys (FK); without
+-- an index that is a scan of every partition per row. Non-concurrent on a
+-- partitioned parent, but keys only live for their TTL, so the build is short.
+CREATE INDEX IF NOT EXISTS idx_idem_tx ON idempotency_keys (transaction_id);
+
+CREATE OR REPLACE FUNCTION transaction_history_immutable() RETURNS trigger AS $$
+BEGIN
+  IF TG_OP = 'UPDATE'
+     AND OLD.chain_seq IS NULL
+     AND (NEW.history_id, NEW.transaction_id, NEW.prev_status, NEW.new_status, NEW.reason, NEW.changed_at)
+         IS NOT DISTINCT FROM
+         (OLD.history_id, OLD.transaction_id, OLD.prev_status, OLD.new_status, OLD.reason, OLD.changed_at) THEN
+    RETURN NEW;
+  END IF;
+  IF TG_OP = 'DELETE'
+     AND OLD.chain_seq IS NOT NULL
+     AND current_setting('openpay.archive_purge', true) = 'on' THEN
+    RETURN OLD;
+  END IF;
+  RAISE EXCEPTION 'transaction_history is append-only (% rejected)', TG_OP;
+END $$ LANGUAGE plpgsql;
+
+-- ============================================================================
+-- Notes:
+-- - Purged history can no longer be verified in the database; the history
+--   segment keeps chain, chain_seq and row_hash of every row for that.
+-- - A month still referenced by webhook_callbacks fails its purge (FK) and
+--   stays archived but unpurged until the callbacks are dealt with.
+-- ============================================================================
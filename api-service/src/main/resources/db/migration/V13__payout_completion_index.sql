@@ -0,0 +1,18 @@
+-- ============================================================================
+-- V13__payout_completion_index.sql
+-- The daily payout file (worker PayoutFileGenerator) selects transactions by
+-- the day they completed, i.e. by their COMPLETED history row, so a payment
+-- created one day and completed the next still lands in exactly one file.
+-- Built CONCURRENTLY so live history inserts are never blocked; this script
+-- runs outside a transaction (see V13__payout_completion_index.sql.conf).
+-- Guarded by QueryPlanRegressionTest (api-service tests).
+-- ============================================================================
+
+-- ============================================================================
+-- transaction_history: completions by time. Partial (new_status = COMPLETED)
+-- so it holds one entry per completed payment, not one per status change.
+-- ============================================================================
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_history_completed_at
+  ON transaction_history (changed_at)
+  INCLUDE (transaction_id)
+  WHERE new_status = 3;
@@ -0,0 +1,57 @@
+-- ============================================================================
+-- V3__partition_idempotency_keys.sql
+-- Converts idempotency_keys into a daily RANGE-partitioned table on created_at.
+-- Expiry becomes a cheap DETACH + DROP of a whole day instead of a massive
+-- DELETE, and lookups bounded by the TTL only probe the live partitions.
+-- Requires PostgreSQL 14+ (DETACH PARTITION ... CONCURRENTLY).
+-- ============================================================================
+
+-- Keep the old table aside while the partitioned replacement is built
+ALTER TABLE idempotency_keys RENAME TO idempotency_keys_legacy;
+ALTER INDEX idempotency_keys_pkey RENAME TO idempotency_keys_legacy_pkey;
+
+-- ============================================================================
+-- idempotency_keys: Partitioned by day; partition key must be part of the PK
+-- ============================================================================
+CREATE TABLE idempotency_keys (
+  idempotency_key   VARCHAR(64)     NOT NULL,        -- External idempotency key
+  transaction_id    BIGINT          NOT NULL,        -- FK to transactions.id
+  created_at        TIMESTAMPTZ     NOT NULL DEFAULT NOW(), -- When key was stored (partition key)
+  CONSTRAINT pk_idempotency_keys PRIMARY KEY (idempotency_key, created_at),
+  CONSTRAINT fk_idem_tx_part FOREIGN KEY(transaction_id) REFERENCES transactions(id)
+) PARTITION BY RANGE (created_at);
+
+-- ============================================================================
+-- Initial partitions: one week back (covers any sane TTL) and one week ahead.
+-- No DEFAULT partition on purpose: it would block CONCURRENTLY detaches.
+-- Partitions are named idempotency_keys_pYYYYMMDD (UTC day boundaries).
+-- ============================================================================
+DO $$
+DECLARE
+  d DATE := (NOW() AT TIME ZONE 'UTC')::date - 7;
+BEGIN
+  WHILE d <= (NOW() AT TIME ZONE 'UTC')::date + 7 LOOP
+    EXECUTE format(
+      'CREATE TABLE IF NOT EXISTS %I PARTITION OF idempotency_keys FOR VALUES FROM (%L) TO (%L)',
+      'idempotency_keys_p' || to_char(d, 'YYYYMMDD'),
+      d::timestamp AT TIME ZONE 'UTC',
+      (d + 1)::timestamp AT TIME ZONE 'UTC');
+    d := d + 1;
+  END LOOP;
+END $$;
+
+-- Carry over keys that are still inside the partitioned window; anything older
+-- is past every supported TTL and is intentionally dropped with the legacy table.
+INSERT INTO idempotency_keys (idempotency_key, transaction_id, created_at)
+SELECT idempotency_key, transaction_id, created_at
+  FROM idempotency_keys_legacy
+ WHERE created_at >= ((NOW() AT TIME ZONE 'UTC')::date - 7)::timestamp AT TIME ZONE 'UTC';
+
+DROP TABLE idempotency_keys_legacy;
+
+-- ============================================================================
+-- Notes:
+-- - Future partitions are pre-created and expired ones dropped by
+--   IdempotencyKeyPurgeService (api-service); never DELETE from this table.
+-- - Lookups must bound created_at by the TTL so the planner prunes partitions.
+-- ============================================================================
@@ -0,0 +1,39 @@
+-- ============================================================================
+-- V4__hot_path_indexes.sql
+-- Adds the indexes the real hot queries need (history lookups, FK checks on
+-- delete, sweeps over non-terminal transactions).
+-- Built CONCURRENTLY so live /pay writes are never blocked; this script runs
+-- outside a transaction (see V4__hot_path_indexes.sql.conf).
+-- Guarded by QueryPlanRegressionTest (api-service tests).
+-- ============================================================================
+
+-- ============================================================================
+-- transaction_history: history lookup per transaction, ordered by time.
+-- Covering (INCLUDE) so "show me this payment's timeline" is index-only, and
+-- the same index serves the FK check when a transaction row is deleted.
+-- ============================================================================
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_history_tx_changed
+  ON transaction_history (transaction_id, changed_at)
+  INCLUDE (prev_status, new_status);
+
+-- ============================================================================
+-- transactions: partial index over non-terminal statuses only.
+-- Terminal rows (completed/failed) are the vast majority and never swept, so
+-- this stays tiny while (status, created_at) keeps serving dashboards.
+-- Queries must spell the status list as literals for the planner to use it.
+-- ============================================================================
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tx_active_created
+  ON transactions (created_at)
+  WHERE status IN ('queued', 'processing', 'requested');
+
+-- ============================================================================
+-- webhook_callbacks: FK check on transaction delete / per-payment lookups
+-- ============================================================================
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_webhook_tx
+  ON webhook_callbacks (transaction_id);
+
+-- ============================================================================
+-- Notes:
+-- - idempotency_keys is served by its (idempotency_key, created_at) PK + pruning.
+-- - Any new hot query should get an entry in QueryPlanRegressionTest.
+-- ============================================================================
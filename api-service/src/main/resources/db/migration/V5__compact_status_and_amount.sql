@@ -0,0 +1,65 @@
+-- ============================================================================
+-- V5__compact_status_and_amount.sql
+-- Narrows the hot tables:
+--   - status columns: VARCHAR(10) free-form strings -> SMALLINT codes of the
+--     shared Java enum com.openpay.shared.model.TransactionStatus
+--   - amount: NUMERIC(15,2) rupees -> BIGINT paise (amount_paise)
+-- Rows get narrower, indexes smaller, and BigDecimal leaves the hot path.
+-- NOTE: rewrites transactions/transaction_history under an exclusive lock;
+-- run in a maintenance window on large installations.
+-- ============================================================================
+
+-- Session-local mapping; raises on any value outside the known lifecycle
+CREATE FUNCTION pg_temp.status_code(s TEXT) RETURNS SMALLINT AS $$
+BEGIN
+  RETURN CASE lower(s)
+    WHEN 'none'       THEN 0
+    WHEN 'queued'     THEN 1
+    WHEN 'processing' THEN 2
+    WHEN 'completed'  THEN 3
+    WHEN 'failed'     THEN 4
+    WHEN 'requested'  THEN 5
+  END;
+END $$ LANGUAGE plpgsql IMMUTABLE STRICT;
+
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM transactions WHERE pg_temp.status_code(status) IS NULL)
+     OR EXISTS (SELECT 1 FROM transaction_history
+                 WHERE pg_temp.status_code(prev_status) IS NULL
+                    OR pg_temp.status_code(new_status) IS NULL) THEN
+    RAISE EXCEPTION 'Unknown status value found; extend the mapping before migrating';
+  END IF;
+END $$;
+
+-- Partial index predicate references the old string values
+DROP INDEX IF EXISTS idx_tx_active_created;
+
+-- ============================================================================
+-- transactions: single rewrite for both column changes
+-- ============================================================================
+ALTER TABLE transactions
+  ALTER COLUMN status TYPE SMALLINT USING pg_temp.status_code(status),
+  ALTER COLUMN amount TYPE BIGINT   USING round(amount * 100)::BIGINT;
+
+ALTER TABLE transactions RENAME COLUMN amount TO amount_paise;   -- Amount in paise (1 INR = 100)
+
+-- ============================================================================
+-- transaction_history: status codes (covering index is rebuilt automatically)
+-- ============================================================================
+ALTER TABLE transaction_history
+  ALTER COLUMN prev_status TYPE SMALLINT USING pg_temp.status_code(prev_status),
+  ALTER COLUMN new_status  TYPE SMALLINT USING pg_temp.status_code(new_status);
+
+-- ============================================================================
+-- Non-terminal partial index, now over codes: QUEUED=1, PROCESSING=2, REQUESTED=5
+-- ============================================================================
+CREATE INDEX idx_tx_active_created
+  ON transactions (created_at)
+  WHERE status IN (1, 2, 5);
+
+-- ============================================================================
+-- Notes:
+-- - Codes are owned by TransactionStatus; never renumber, only append.
+-- - Queries that must hit idx_tx_active_created spell the codes as literals.
+-- ============================================================================
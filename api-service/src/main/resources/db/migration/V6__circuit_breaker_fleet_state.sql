@@ -0,0 +1,35 @@
+-- ============================================================================
+-- V6__circuit_breaker_fleet_state.sql
+-- Puts service_circuit_breakers to use: workers flush their in-memory breaker
+-- state here so an open circuit is visible to the whole fleet, and every
+-- state transition is kept for audit.
+-- ============================================================================
+
+-- ============================================================================
+-- service_circuit_breakers: latest fleet-wide state per service
+-- ============================================================================
+ALTER TABLE service_circuit_breakers
+  ADD COLUMN opened_at   TIMESTAMPTZ,                      -- When the circuit last opened
+  ADD COLUMN updated_at  TIMESTAMPTZ NOT NULL DEFAULT NOW(), -- Last flush that changed the state
+  ADD COLUMN updated_by  VARCHAR(64);                      -- Worker id that wrote it
+
+-- ============================================================================
+-- service_circuit_breaker_events: append-only transition log (audit)
+-- ============================================================================
+CREATE TABLE service_circuit_breaker_events (
+  event_id          BIGSERIAL      PRIMARY KEY,      -- Unique event id
+  service_name      VARCHAR(50)    NOT NULL,         -- External service name
+  from_state        VARCHAR(10)    NOT NULL,         -- closed, open, half-open
+  to_state          VARCHAR(10)    NOT NULL,         -- closed, open, half-open
+  failure_count     INTEGER        NOT NULL,         -- Failures in the window at transition time
+  worker_id         VARCHAR(64)    NOT NULL,         -- Worker that observed the transition
+  occurred_at       TIMESTAMPTZ    NOT NULL          -- Transition time (worker clock)
+);
+
+CREATE INDEX idx_cb_events_service_time ON service_circuit_breaker_events (service_name, occurred_at);
+
+-- ============================================================================
+-- Notes:
+-- - Written by CircuitBreakerStateStore (worker-service); the breaker itself
+--   is in-memory and never waits on this table.
+-- ============================================================================
@@ -0,0 +1,20 @@
+-- ============================================================================
+-- V7__failure_reason_codes.sql
+-- Records why a payment failed (or is stuck), so operators and the DLQ can
+-- tell permanent failures (declined, unknown transaction) from retryable or
+-- unknown gateway outcomes.
+--   - Codes of the shared Java enum com.openpay.shared.model.FailureReason
+--   - NULL = no failure
+-- Nullable ADD COLUMN without default: metadata-only, no table rewrite.
+-- ============================================================================
+
+ALTER TABLE transactions
+  ADD COLUMN failure_reason SMALLINT;          -- Latest failure reason (NULL if none)
+
+ALTER TABLE transaction_history
+  ADD COLUMN reason SMALLINT;                  -- Reason of this transition (NULL if none)
+
+-- ============================================================================
+-- Notes:
+-- - Written by the worker (TransactionWorkerConsumer); never renumber codes.
+-- ============================================================================
@@ -0,0 +1,23 @@
+-- ============================================================================
+-- V8__stream_archive.sql
+-- Archive for Redis stream entries trimmed by the worker's retention manager
+-- (openpay.retention.archive=postgres). Redis keeps a bounded window of each
+-- stream; what falls out of it lands here first.
+-- ============================================================================
+
+CREATE TABLE stream_archive (
+  stream_name   VARCHAR(64)    NOT NULL,             -- e.g. transactions.main.3, transactions.dlq
+  entry_id      VARCHAR(41)    NOT NULL,             -- Redis stream entry id (<ms>-<seq>)
+  entry_time    TIMESTAMPTZ    NOT NULL,             -- Millisecond part of the entry id
+  fields        JSONB          NOT NULL,             -- Entry fields as written by api/worker
+  archived_at   TIMESTAMPTZ    NOT NULL DEFAULT NOW(),
+  PRIMARY KEY (stream_name, entry_id)
+);
+
+CREATE INDEX idx_stream_archive_time ON stream_archive (entry_time);
+
+-- ============================================================================
+-- Notes:
+-- - Inserts are ON CONFLICT DO NOTHING: an entry archived twice (retry after a
+--   crash between archive and trim) is stored once.
+-- ============================================================================
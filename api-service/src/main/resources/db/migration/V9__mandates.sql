@@ -0,0 +1,41 @@
+-- ============================================================================
+-- V9__mandates.sql
+-- Recurring payment mandates (UPI AutoPay style). Each due occurrence is fired
+-- by the API's MandateScheduler as an ordinary payment on transactions.main.
+--   - frequency / status: codes of the shared Java enums
+--     com.openpay.shared.model.MandateFrequency / MandateStatus
+--   - due_bucket: next_due_at in whole minutes since the epoch, the key of the
+--     due index the scheduler claims from
+-- ============================================================================
+
+CREATE TABLE mandates (
+  id                BIGSERIAL       PRIMARY KEY,
+  idempotency_key   VARCHAR(64)     NOT NULL UNIQUE,  -- Registration key (Idempotency-Key header)
+  sender_upi        VARCHAR(100)    NOT NULL,         -- Payer, debited on every occurrence
+  receiver_upi      VARCHAR(100)    NOT NULL,         -- Payee
+  amount_paise      BIGINT          NOT NULL CHECK (amount_paise > 0),
+  frequency         SMALLINT        NOT NULL,
+  status            SMALLINT        NOT NULL,
+  start_at          TIMESTAMPTZ     NOT NULL,         -- First occurrence; anchors the schedule
+  end_at            TIMESTAMPTZ,                      -- No occurrence after this (NULL = open-ended)
+  max_debits        INT,                              -- Debit cap (NULL = unlimited)
+  debits            INT             NOT NULL DEFAULT 0,  -- Occurrences fired
+  occurrences       INT             NOT NULL DEFAULT 0,  -- Occurrences passed (fired or skipped)
+  next_due_at       TIMESTAMPTZ     NOT NULL,
+  due_bucket        BIGINT          NOT NULL,
+  claimed_by        VARCHAR(100),                     -- API instance firing it right now
+  claimed_until     TIMESTAMPTZ,                      -- Claim lapses after this (crashed instance)
+  last_transaction_id BIGINT,                         -- Payment of the latest fired occurrence
+  created_at        TIMESTAMPTZ     DEFAULT NOW(),
+  updated_at        TIMESTAMPTZ
+);
+
+-- Due index: only live mandates, in firing order
+CREATE INDEX idx_mandates_due ON mandates (due_bucket, id) WHERE status = 1;
+
+-- ============================================================================
+-- Notes:
+-- - Never scanned: the scheduler reads the head of idx_mandates_due only.
+-- - Occurrences are computed from start_at (start_at + n periods), so monthly
+--   mandates anchored on the 31st do not drift after a short month.
+-- ============================================================================
@@ -0,0 +1,253 @@
+package com.openpay.api.db;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Query-plan regression guard for the hot SQL paths.
+ * <p>
+ * Migrates a scratch schema on a local Postgres with the real Flyway scripts,
+ * seeds it with a realistic skew (mostly terminal rows, a thin non-terminal
+ * tail), and EXPLAINs every hot query as a generic prepared plan (what the JDBC
+ * driver ends up with). Fails if any of them degrades to a Seq Scan on a
+ * non-trivial table.
+ * </p>
+ *
+ * <pre>
+ * OPENPAY_PLAN_TEST_DB_URL=jdbc:postgresql://localhost:5432/openpay \
+ * OPENPAY_PLAN_TEST_DB_USER=postgres OPENPAY_PLAN_TEST_DB_PASSWORD=postgres \
+ * mvn test -pl api-service -Dtest=QueryPlanRegressionTest
+ * </pre>
+ *
+ * Skipped when {@code OPENPAY_PLAN_TEST_DB_URL} is not set.
+ */
+@EnabledIfEnvironmentVariable(named = "OPENPAY_PLAN_TEST_DB_URL", matches = ".+")
+public class QueryPlanRegressionTest {
+
+    private static final String SCHEMA = "plan_regression";
+    private static final long SEED_TRANSACTIONS = 200_000L;
+    private static final long TRIVIAL_TABLE_ROWS = 1_000L;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static Connection connection;
+
+    /**
+     * One hot query: a prepared statement text with its parameter types and
+     * sample arguments.
+     */
+    private record HotQuery(String name, String paramTypes, String sql, String args) {
+    }
+
+    private static final List<HotQuery> HOT_QUERIES = List.of(
+            new HotQuery("status lookup by id", "bigint",
+                    "SELECT * FROM transactions WHERE id = $1", "4242"),
+            new HotQuery("history timeline", "bigint",
+                    "SELECT history_id, prev_status, new_status, changed_at FROM transaction_history "
+                            + "WHERE transaction_id = $1 ORDER BY changed_at",
+                    "4242"),
+            new HotQuery("stuck sweep", "timestamptz, int",
+                    "SELECT * FROM transactions WHERE status IN (1, 2) "
+                            + "AND created_at < $1 ORDER BY created_at LIMIT $2",
+                    "now() - interval '5 minutes', 500"),
+            new HotQuery("stuck sweep page", "timestamptz, timestamptz, int",
+                    "SELECT * FROM transactions WHERE status IN (1, 2) "
+                            + "AND created_at > $1 AND created_at < $2 ORDER BY created_at LIMIT $3",
+                    "now() - interval '2 hours', now() - interval '5 minutes', 500"),
+            new HotQuery("pending collects page", "timestamptz, bigint, int",
+                    "SELECT id, created_at FROM transactions WHERE status = 5 AND created_at >= $1 "
+                            + "AND (created_at, id) > ($1, $2) ORDER BY created_at, id LIMIT $3",
+                    "now() - interval '1 hour', 4242, 1000"),
+            new HotQuery("collect expiry batch", "smallint, smallint, bigint[], smallint",
+                    "WITH expired AS (UPDATE transactions SET status = $1, failure_reason = $2, "
+                            + "updated_at = now() WHERE id = ANY($3) AND status = $4 RETURNING id) "
+                            + "INSERT INTO transaction_history (transaction_id, prev_status, new_status, "
+                            + "reason, changed_at) SELECT id, $4, $1, $2, now() FROM expired",
+                    "4, 11, ARRAY[4242, 4243, 4244]::bigint[], 5"),
+            new HotQuery("audit unsealed batch", "int, int",
+                    "SELECT history_id, transaction_id, prev_status, new_status, reason, changed_at "
+                            + "FROM transaction_history WHERE (transaction_id % 16) = $1 "
+                            + "AND chain_seq IS NULL ORDER BY history_id LIMIT $2",
+                    "3, 5000"),
+            new HotQuery("audit chain segment", "smallint, bigint, bigint",
+                    "SELECT chain_seq, history_id, transaction_id, prev_status, new_status, reason, changed_at, "
+                            + "row_hash FROM transaction_history WHERE chain = $1 "
+                            + "AND chain_seq BETWEEN $2 AND $3 ORDER BY chain_seq",
+                    "3, 10001, 30000"),
+            new HotQuery("recon id probe", "bigint",
+                    "SELECT created_at FROM transactions WHERE id >= $1 ORDER BY id LIMIT 1",
+                    "100000"),
+            new HotQuery("recon range export", "bigint, bigint",
+                    "SELECT id, amount_paise, status FROM transactions WHERE id >= $1 AND id < $2 ORDER BY id",
+                    "40000, 60000"),
+            new HotQuery("payout export", "timestamptz, timestamptz",
+                    "SELECT t.id, t.receiver_upi, t.amount_paise "
+                            + "FROM transaction_history h JOIN transactions t ON t.id = h.transaction_id "
+                            + "WHERE h.new_status = 3 AND h.changed_at >= $1 AND h.changed_at < $2 "
+                            + "AND t.status = 3 AND h.history_id = (SELECT min(e.history_id) "
+                            + "FROM transaction_history e WHERE e.transaction_id = h.transaction_id "
+                            + "AND e.new_status = 3) ORDER BY t.id",
+                    "now() - interval '2 days', now() - interval '1 day'"),
+            new HotQuery("archive open before", "timestamptz",
+                    "SELECT EXISTS (SELECT 1 FROM transactions WHERE status IN (1, 2, 5) AND created_at < $1)",
+                    "now() - interval '20 days'"),
+            new HotQuery("archive unsealed before", "bigint",
+                    "SELECT EXISTS (SELECT 1 FROM transaction_history WHERE chain_seq IS NULL "
+                            + "AND transaction_id < $1)",
+                    "100000"),
+            new HotQuery("archive history export", "bigint, bigint",
+                    "SELECT history_id, transaction_id, prev_status, new_status, reason, changed_at, chain, "
+                            + "chain_seq, row_hash FROM transaction_history "
+                            + "WHERE transaction_id >= $1 AND transaction_id < $2 ORDER BY transaction_id, changed_at",
+                    "40000, 60000"),
+            new HotQuery("mandate oldest due", "",
+                    "SELECT min(due_bucket) FROM mandates "
+                            + "WHERE status = 1 AND (claimed_until IS NULL OR claimed_until < now())",
+                    ""),
+            new HotQuery("mandate claim", "varchar, float8, bigint, int",
+                    "UPDATE mandates m SET claimed_by = $1, claimed_until = now() + make_interval(secs => $2) "
+                            + "FROM (SELECT id FROM mandates WHERE status = 1 AND due_bucket <= $3 "
+                            + "AND next_due_at <= now() AND (claimed_until IS NULL OR claimed_until < now()) "
+                            + "ORDER BY due_bucket, id LIMIT $4 FOR UPDATE SKIP LOCKED) due "
+                            + "WHERE m.id = due.id RETURNING m.id",
+                    "'api-1', 60, (extract(epoch FROM now()) / 60)::bigint, 200"),
+            new HotQuery("status dashboard", "smallint, timestamptz",
+                    "SELECT * FROM transactions WHERE status = $1 AND created_at > $2",
+                    "4, now() - interval '1 hour'"),
+            new HotQuery("idempotency check", "varchar, timestamptz",
+                    "SELECT 1 FROM idempotency_keys WHERE idempotency_key = $1 AND created_at > $2 LIMIT 1",
+                    "'k-4244', now() - interval '24 hours'"));
+
+    @BeforeAll
+    static void migrateAndSeed() throws Exception {
+        String url = System.getenv("OPENPAY_PLAN_TEST_DB_URL");
+        String user = System.getenv().getOrDefault("OPENPAY_PLAN_TEST_DB_USER", "postgres");
+        String password = System.getenv().getOrDefault("OPENPAY_PLAN_TEST_DB_PASSWORD", "postgres");
+
+        Flyway flyway = Flyway.configure()
+                .dataSource(url, user, password)
+                .schemas(SCHEMA)
+                .cleanDisabled(false)
+                .locations("classpath:db/migration")
+                // same as spring.flyway.postgresql.transactional-lock=false (CONCURRENTLY index builds)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load();
+        flyway.clean();
+        flyway.migrate();
+
+        connection = DriverManager.getConnection(url, user, password);
+        try (Statement st = connection.createStatement()) {
+            st.execute("SET search_path TO " + SCHEMA);
+            // status codes: QUEUED=1, PROCESSING=2, COMPLETED=3, FAILED=4
+            st.execute("INSERT INTO transactions (sender_upi, receiver_upi, amount_paise, status, created_at) "
+                    + "SELECT 'sender' || (g % 5000) || '@upi', 'receiver' || (g % 7000) || '@upi', "
+                    + "(g % 100000) + 100, "
+                    + "CASE WHEN g % 200 = 0 THEN 1 WHEN g % 200 = 1 THEN 2 "
+                    + "WHEN g % 10 = 2 THEN 4 ELSE 3 END, "
+                    + "now() - (g % 43200) * interval '1 minute' "
+                    + "FROM generate_series(1, " + SEED_TRANSACTIONS + ") g");
+            st.execute("INSERT INTO transaction_history (transaction_id, prev_status, new_status, changed_at) "
+                    + "SELECT id, 0, 1, created_at FROM transactions "
+                    + "UNION ALL SELECT id, 1, 2, created_at + interval '1 second' FROM transactions "
+                    + "UNION ALL SELECT id, 2, status, created_at + interval '2 seconds' FROM transactions");
+            // audit chains: all but the newest rows sealed (stand-in hashes)
+            st.execute("UPDATE transaction_history SET chain = transaction_id % 16, "
+                    + "chain_seq = history_id, row_hash = sha256(history_id::text::bytea) "
+                    + "WHERE history_id <= (SELECT max(history_id) - 2000 FROM transaction_history)");
+            st.execute("INSERT INTO idempotency_keys (idempotency_key, transaction_id, created_at) "
+                    + "SELECT 'k-' || id, id, now() - (id % 1440) * interval '1 minute' "
+                    + "FROM transactions WHERE id % 4 = 0");
+            // mandates: due buckets spread over the next 30 days, a tenth revoked or completed
+            st.execute("INSERT INTO mandates (idempotency_key, sender_upi, receiver_upi, amount_paise, frequency, "
+                    + "status, start_at, next_due_at, due_bucket) "
+                    + "SELECT 'm-' || g, 'sender' || (g % 5000) || '@upi', 'merchant' || (g % 300) || '@upi', "
+                    + "49900, 5, CASE WHEN g % 10 = 0 THEN 2 ELSE 1 END, due, due, "
+                    + "(extract(epoch FROM due) / 60)::bigint "
+                    + "FROM (SELECT g, now() + (g % 43200) * interval '1 minute' AS due "
+                    + "FROM generate_series(1, " + SEED_TRANSACTIONS / 2 + ") g) s");
+            st.execute("ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    // Every hot query must stay on an index for every non-trivial table it touches
+    @Test
+    void hotQueriesNeverSeqScanLargeTables() throws Exception {
+        List<String> regressions = new ArrayList<>();
+        for (HotQuery query : HOT_QUERIES) {
+            JsonNode plan = explainGeneric(query);
+            List<String> seqScans = new ArrayList<>();
+            collectSeqScans(plan, seqScans);
+            for (String relation : seqScans) {
+                if (estimatedRows(relation) >= TRIVIAL_TABLE_ROWS) {
+                    regressions.add(query.name() + " -> Seq Scan on " + relation + " in plan " + plan);
+                }
+            }
+        }
+        assertTrue(regressions.isEmpty(), "Hot query plan regressions: " + regressions);
+    }
+
+    /**
+     * EXPLAINs the query as a generic prepared plan, i.e. without the planner
+     * seeing the actual parameter values, which is what long-lived JDBC
+     * statements end up executing.
+     */
+    private JsonNode explainGeneric(HotQuery query) throws Exception {
+        try (Statement st = connection.createStatement()) {
+            st.execute("SET plan_cache_mode = force_generic_plan");
+            boolean hasParams = !query.paramTypes().isEmpty();
+            st.execute("PREPARE hot_q" + (hasParams ? "(" + query.paramTypes() + ")" : "") + " AS " + query.sql());
+            try (ResultSet rs = st.executeQuery("EXPLAIN (FORMAT JSON) EXECUTE hot_q"
+                    + (hasParams ? "(" + query.args() + ")" : ""))) {
+                rs.next();
+                return MAPPER.readTree(rs.getString(1)).get(0).get("Plan");
+            } finally {
+                st.execute("DEALLOCATE hot_q");
+                st.execute("RESET plan_cache_mode");
+            }
+        }
+    }
+
+    private static void collectSeqScans(JsonNode node, List<String> out) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            out.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, out);
+        }
+    }
+
+    private long estimatedRows(String relation) throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class c "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE n.nspname = ? AND c.relname = ?")) {
+            ps.setString(1, SCHEMA);
+            ps.setString(2, relation);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.openpay.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openpay.api.velocity.VelocityGuard;
+import com.openpay.shared.dto.PaymentRequest;
+import com.openpay.shared.exception.OpenPayException;
+
+/**
+ * Concurrent {@code /pay} calls carrying one Idempotency-Key against a real
+ * Postgres: the key alone is not unique in the partitioned
+ * {@code idempotency_keys}, so exactly one call may create a payment and the
+ * others must fail as duplicates.
+ *
+ * <pre>
+ * OPENPAY_PLAN_TEST_DB_URL=jdbc:postgresql://localhost:5432/openpay \
+ * mvn test -pl api-service -Dtest=IdempotencyRaceTest
+ * </pre>
+ *
+ * Skipped when {@code OPENPAY_PLAN_TEST_DB_URL} is not set.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ IdempotencyServiceImpl.class, TransactionApiProducer.class, IdempotencyRaceTest.CleanSchema.class })
+@EnabledIfEnvironmentVariable(named = "OPENPAY_PLAN_TEST_DB_URL", matches = ".+")
+public class IdempotencyRaceTest {
+
+    private static final String SCHEMA = "idempotency_race";
+    private static final int ROUNDS = 20;
+    private static final int CALLERS = 4;
+
+    @MockBean(answer = Answers.RETURNS_DEEP_STUBS)
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    @MockBean
+    private VelocityGuard velocityGuard;
+
+    @Autowired
+    private TransactionApiProducer producer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        String url = System.getenv("OPENPAY_PLAN_TEST_DB_URL");
+        registry.add("spring.datasource.url", () -> url + (url.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA);
+        registry.add("spring.datasource.username",
+                () -> System.getenv().getOrDefault("OPENPAY_PLAN_TEST_DB_USER", "postgres"));
+        registry.add("spring.datasource.password",
+                () -> System.getenv().getOrDefault("OPENPAY_PLAN_TEST_DB_PASSWORD", "postgres"));
+        registry.add("spring.flyway.schemas", () -> SCHEMA);
+        registry.add("spring.flyway.clean-disabled", () -> "false");
+    }
+
+    /** Fresh schema per run, so the daily idempotency partitions cover today. */
+    @TestConfiguration
+    static class CleanSchema {
+        @Bean
+        FlywayMigrationStrategy cleanThenMigrate() {
+            return flyway -> {
+                flyway.clean();
+                flyway.migrate();
+            };
+        }
+    }
+
+    // Every round races CALLERS requests with one key: one payment, the rest duplicates
+    @Test
+    void concurrentRequestsWithOneKeyCreateOnePayment() throws Exception {
+        PaymentRequest request = new PaymentRequest();
+        request.setSenderUpi("race-sender@upi");
+        request.setReceiverUpi("race-receiver@upi");
+        request.setAmount(new BigDecimal("10.00"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                String key = "race-" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> calls = new ArrayList<>();
+                for (int c = 0; c < CALLERS; c++) {
+                    calls.add(pool.submit(() -> {
+                        start.await();
+                        return producer.createTransaction(request, key);
+                    }));
+                }
+                start.countDown();
+
+                int created = 0;
+                for (Future<Long> call : calls) {
+                    try {
+                        call.get();
+                        created++;
+                    } catch (ExecutionException e) {
+                        assertInstanceOf(OpenPayException.class, e.getCause());
+                    }
+                }
+                assertEquals(1, created, "payments created for key " + key);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(ROUNDS, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transactions WHERE sender_upi = 'race-sender@upi'", Integer.class));
+        assertEquals(ROUNDS, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM idempotency_keys WHERE idempotency_key LIKE 'race-%'", Integer.class));
+    }
+}
@@ -0,0 +1,91 @@
+package com.openpay.api.velocity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openpay.api.velocity.SlidingWindowCounters.Limits;
+import com.openpay.api.velocity.SlidingWindowCounters.Window;
+
+/**
+ * Unit tests for {@link SlidingWindowCounters}: limits hold per window, the
+ * window slides bucket by bucket, multi-key adds are all-or-nothing and
+ * concurrent adds never overshoot a limit.
+ */
+public class SlidingWindowCountersTest {
+
+    private static final Window MINUTE = new Window("minute", 10_000, 6);
+    private static final Window HOUR = new Window("hour", 300_000, 12);
+
+    @Test
+    void countLimitSlidesWithTheWindow() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(4, MINUTE, HOUR);
+        Limits limits = new Limits(new long[] { 3, 0 }, new long[] { 0, 0 });
+        String[] keys = { "s:alice@upi" };
+
+        long t = 1_000_000;
+        assertEquals(-1, counters.tryAdd(t, 100, keys, new Limits[] { limits }));
+        assertEquals(-1, counters.tryAdd(t + 20_000, 100, keys, new Limits[] { limits }));
+        assertEquals(-1, counters.tryAdd(t + 40_000, 100, keys, new Limits[] { limits }));
+        assertEquals(0, counters.tryAdd(t + 50_000, 100, keys, new Limits[] { limits }));
+        // the first entry's bucket leaves the minute window
+        assertEquals(-1, counters.tryAdd(t + 60_000, 100, keys, new Limits[] { limits }));
+        assertArrayEquals(new long[] { 4, 400 }, counters.totals("s:alice@upi", t + 60_000)[1]);
+        assertArrayEquals(new long[] { 0, 0 }, counters.totals("s:alice@upi", t + 3_600_000)[1]);
+    }
+
+    @Test
+    void multiKeyAddIsAllOrNothing() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(4, MINUTE, HOUR);
+        Limits sender = new Limits(new long[] { 0, 0 }, new long[] { 0, 1_000 });
+        Limits receiver = new Limits(new long[] { 0, 0 }, new long[] { 500, 0 });
+        String[] keys = { "s:alice@upi", "r:bob@upi" };
+        Limits[] limits = { sender, receiver };
+
+        assertEquals(-1, counters.tryAdd(0, 400, keys, limits));
+        // receiver minute amount (index 1 * 2 + 0) would be exceeded: sender untouched too
+        assertEquals(2, counters.tryAdd(1, 200, keys, limits));
+        assertArrayEquals(new long[] { 1, 400 }, counters.totals("s:alice@upi", 1)[1]);
+
+        counters.subtract(0, 400, keys);
+        assertArrayEquals(new long[] { 0, 0 }, counters.totals("r:bob@upi", 1)[0]);
+        assertEquals(-1, counters.tryAdd(2, 500, keys, limits));
+    }
+
+    @Test
+    void idleKeysAreEvicted() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(4, MINUTE, HOUR);
+        Limits none = new Limits(new long[] { 0, 0 }, new long[] { 0, 0 });
+        counters.tryAdd(0, 1, new String[] { "a" }, new Limits[] { none });
+        counters.tryAdd(3_000_000, 1, new String[] { "b" }, new Limits[] { none });
+        assertEquals(1, counters.evictIdle(3_600_001));
+        assertEquals(1, counters.size());
+    }
+
+    @Test
+    void concurrentAddsNeverOvershoot() throws Exception {
+        SlidingWindowCounters counters = new SlidingWindowCounters(8, MINUTE, HOUR);
+        Limits limits = new Limits(new long[] { 0, 1_000 }, new long[] { 0, 0 });
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 5_000; i++) {
+            String receiver = "r:merchant" + (i % 3) + "@upi";
+            pool.execute(() -> {
+                if (counters.tryAdd(42, 1, new String[] { "s:hot@upi", receiver },
+                        new Limits[] { limits, limits }) < 0) {
+                    accepted.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.SECONDS);
+        assertEquals(1_000, accepted.get());
+        assertEquals(1_000, counters.totals("s:hot@upi", 42)[1][0]);
+    }
+}
@@ -0,0 +1,123 @@
+package com.openpay.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <h2>LatencyDistribution</h2>
+ * <p>
+ * Response-time model of the simulated NPCI switch, parsed from a compact
+ * spec string.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code fixed:50} - always 50 ms</li>
+ * <li>{@code uniform:20-200} - uniform between 20 and 200 ms</li>
+ * <li>{@code lognormal:80,900} - log-normal with median 80 ms and p99 900 ms
+ * (the long right tail real payment switches show)</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public sealed interface LatencyDistribution {
+
+    /** z-score of the 99th percentile of the standard normal distribution. */
+    double Z_99 = 2.3263;
+
+    /**
+     * @return next latency sample in milliseconds (never negative)
+     */
+    long sampleMillis();
+
+    /**
+     * @return the spec string this distribution was parsed from
+     */
+    String spec();
+
+    record Fixed(long millis) implements LatencyDistribution {
+        @Override
+        public long sampleMillis() {
+            return millis;
+        }
+
+        @Override
+        public String spec() {
+            return "fixed:" + millis;
+        }
+    }
+
+    record Uniform(long minMillis, long maxMillis) implements LatencyDistribution {
+        @Override
+        public long sampleMillis() {
+            return ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+        }
+
+        @Override
+        public String spec() {
+            return "uniform:" + minMillis + "-" + maxMillis;
+        }
+    }
+
+    record LogNormal(double medianMillis, double p99Millis) implements LatencyDistribution {
+        @Override
+        public long sampleMillis() {
+            double mu = Math.log(medianMillis);
+            double sigma = Math.log(p99Millis / medianMillis) / Z_99;
+            return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+
+        @Override
+        public String spec() {
+            return "lognormal:" + (long) medianMillis + "," + (long) p99Millis;
+        }
+    }
+
+    /**
+     * Parses a spec string (see class docs).
+     *
+     * @param spec e.g. {@code uniform:20-200}
+     * @return the distribution
+     * @throws IllegalArgumentException on a malformed spec
+     */
+    static LatencyDistribution parse(String spec) {
+        String[] kind = spec.trim().split(":", 2);
+        if (kind.length != 2) {
+            throw new IllegalArgumentException("Latency spec must be <kind>:<params>, got '" + spec + "'");
+        }
+        try {
+            switch (kind[0]) {
+                case "fixed":
+                    return new Fixed(nonNegative(Long.parseLong(kind[1])));
+                case "uniform": {
+                    String[] range = kind[1].split("-", 2);
+                    long min = nonNegative(Long.parseLong(range[0]));
+                    long max = Long.parseLong(range[1]);
+                    if (max < min) {
+                        throw new IllegalArgumentException("uniform max < min in '" + spec + "'");
+                    }
+                    return new Uniform(min, max);
+                }
+                case "lognormal": {
+                    String[] params = kind[1].split(",", 2);
+                    double median = Double.parseDouble(params[0]);
+                    double p99 = Double.parseDouble(params[1]);
+                    if (median <= 0 || p99 < median) {
+                        throw new IllegalArgumentException("lognormal needs 0 < median <= p99 in '" + spec + "'");
+                    }
+                    return new LogNormal(median, p99);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown latency kind '" + kind[0] + "'");
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed latency spec '" + spec + "'", e);
+        }
+    }
+
+    private static long nonNegative(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Latency must not be negative: " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,267 @@
+package com.openpay.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <h2>NpciSimulator</h2>
+ * <p>
+ * Local stand-in for the NPCI/UPI switch so the worker's HTTP gateway client
+ * can be load-tested against realistic latency and failure without a real
+ * bank. JDK only: {@link HttpServer} with one virtual thread per request, so
+ * thousands of slow in-flight payments cost almost nothing.
+ * </p>
+ *
+ * <h3>Endpoints:</h3>
+ * <ul>
+ * <li>{@code POST /upi/pay} - body {@code {"txnId":..,...}}; answers
+ * {@code {"txnId":..,"status":"SUCCESS|FAILURE"}}, 503 on an injected error, or
+ * nothing at all on an injected timeout. Idempotent per {@code txnId}: a
+ * replay returns the recorded outcome and never pays twice</li>
+ * <li>{@code GET /upi/status/{txnId}} - status inquiry: {@code SUCCESS},
+ * {@code FAILURE}, {@code PENDING} (still in flight) or 404</li>
+ * <li>{@code POST /admin/config?latency=uniform:5-50&error-rate=0.1} - live
+ * reconfiguration; {@code GET} returns the current settings</li>
+ * <li>{@code GET /admin/stats} - request counters</li>
+ * </ul>
+ *
+ * <h3>Usage:</h3>
+ *
+ * <pre>
+ * java -jar npci-simulator/target/npci-simulator-1.0-SNAPSHOT.jar \
+ *      --port=8089 --latency=lognormal:80,900 --error-rate=0.02 --timeout-rate=0.01
+ * </pre>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class NpciSimulator {
+
+    private static final Logger log = Logger.getLogger(NpciSimulator.class.getName());
+
+    private static final Pattern TXN_ID = Pattern.compile("\"txnId\"\\s*:\\s*\"?(\\d+)");
+    private static final String PENDING = "PENDING";
+    private static final String SUCCESS = "SUCCESS";
+    private static final String FAILURE = "FAILURE";
+
+    private final Map<Long, String> outcomes = new ConcurrentHashMap<>();
+    private final AtomicLong payRequests = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong replays = new AtomicLong();
+    private final AtomicLong inquiries = new AtomicLong();
+    private volatile SimulatorConfig config;
+    private HttpServer server;
+
+    public NpciSimulator(SimulatorConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> flags = parseFlags(args);
+        int port = Integer.parseInt(flags.getOrDefault("port", "8089"));
+        NpciSimulator simulator = new NpciSimulator(SimulatorConfig.DEFAULT.with(flags));
+        simulator.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+    }
+
+    /**
+     * Binds and starts serving.
+     *
+     * @param port TCP port (0 picks a free one)
+     * @return the bound port
+     * @throws IOException if the port cannot be bound
+     */
+    public int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/upi/pay", this::guarded);
+        server.createContext("/upi/status/", this::guarded);
+        server.createContext("/admin/config", this::guarded);
+        server.createContext("/admin/stats", this::guarded);
+        server.start();
+        int bound = server.getAddress().getPort();
+        log.info("NPCI simulator listening on :" + bound + " with " + config.toJson());
+        return bound;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+        }
+    }
+
+    private void guarded(HttpExchange exchange) throws IOException {
+        // the error reply is sent inside the try: closing the exchange first
+        // would leave the client with an empty reply
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "{\"error\":\"" + e.getMessage().replace("\"", "'") + "\"}");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException, InterruptedException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (path.equals("/upi/pay") && method.equals("POST")) {
+            pay(exchange);
+        } else if (path.startsWith("/upi/status/") && method.equals("GET")) {
+            status(exchange, path.substring("/upi/status/".length()));
+        } else if (path.equals("/admin/config")) {
+            config(exchange, method);
+        } else if (path.equals("/admin/stats") && method.equals("GET")) {
+            respond(exchange, 200, stats());
+        } else {
+            respond(exchange, 404, "{\"error\":\"not found\"}");
+        }
+    }
+
+    private void pay(HttpExchange exchange) throws IOException, InterruptedException {
+        payRequests.incrementAndGet();
+        SimulatorConfig c = config;
+        long txnId = txnId(readBody(exchange));
+
+        String recorded = outcomes.putIfAbsent(txnId, PENDING);
+        if (recorded != null) {
+            replays.incrementAndGet();
+            Thread.sleep(c.latency().sampleMillis());
+            respond(exchange, 200, outcome(txnId, recorded));
+            return;
+        }
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < c.errorRate()) {
+            outcomes.remove(txnId);
+            errors.incrementAndGet();
+            Thread.sleep(c.latency().sampleMillis());
+            respond(exchange, 503, "{\"error\":\"switch unavailable\"}");
+            return;
+        }
+        roll -= c.errorRate();
+        boolean timeout = roll < c.timeoutRate();
+        // a lost answer hides an ordinary outcome, so draw that independently
+        roll = timeout ? ThreadLocalRandom.current().nextDouble() : roll - c.timeoutRate();
+        String result = roll < c.declineRate() ? FAILURE : SUCCESS;
+
+        Thread.sleep(c.latency().sampleMillis());
+        outcomes.put(txnId, result);
+        (result.equals(SUCCESS) ? succeeded : declined).incrementAndGet();
+
+        if (timeout) {
+            // executed at the bank, but the answer is lost on the way back
+            timeouts.incrementAndGet();
+            Thread.sleep(c.timeoutMillis());
+            return; // closed without a response
+        }
+        respond(exchange, 200, outcome(txnId, result));
+    }
+
+    private void status(HttpExchange exchange, String rawId) throws IOException, InterruptedException {
+        inquiries.incrementAndGet();
+        long txnId;
+        try {
+            txnId = Long.parseLong(rawId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid txnId '" + rawId + "'");
+        }
+        Thread.sleep(config.latency().sampleMillis());
+        String recorded = outcomes.get(txnId);
+        if (recorded == null) {
+            respond(exchange, 404, "{\"txnId\":" + txnId + ",\"status\":\"NOT_FOUND\"}");
+        } else {
+            respond(exchange, 200, outcome(txnId, recorded));
+        }
+    }
+
+    private void config(HttpExchange exchange, String method) throws IOException {
+        if (method.equals("POST")) {
+            Map<String, String> overrides = parseQuery(exchange.getRequestURI().getRawQuery());
+            config = config.with(overrides);
+            log.info("NPCI simulator reconfigured: " + config.toJson());
+        }
+        respond(exchange, 200, config.toJson());
+    }
+
+    private String stats() {
+        return "{\"payRequests\":" + payRequests.get() + ",\"succeeded\":" + succeeded.get()
+                + ",\"declined\":" + declined.get() + ",\"errors\":" + errors.get()
+                + ",\"timeouts\":" + timeouts.get() + ",\"replays\":" + replays.get()
+                + ",\"inquiries\":" + inquiries.get() + ",\"recorded\":" + outcomes.size()
+                + ",\"config\":" + config.toJson() + "}";
+    }
+
+    private static String outcome(long txnId, String status) {
+        return "{\"txnId\":" + txnId + ",\"status\":\"" + status + "\"}";
+    }
+
+    private static long txnId(String body) {
+        Matcher m = TXN_ID.matcher(body);
+        if (!m.find()) {
+            throw new IllegalArgumentException("Request body has no txnId");
+        }
+        return Long.parseLong(m.group(1));
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseFlags(String[] args) {
+        Map<String, String> flags = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got '" + arg + "'");
+            }
+            String[] kv = arg.substring(2).split("=", 2);
+            flags.put(kv[0], kv[1]);
+        }
+        return flags;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (query == null || query.isBlank()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            String[] kv = pair.split("=", 2);
+            params.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8),
+                    kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+        }
+        return params;
+    }
+}
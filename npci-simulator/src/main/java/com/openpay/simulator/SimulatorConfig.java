@@ -0,0 +1,92 @@
+package com.openpay.simulator;
+
+import java.util.Map;
+
+/**
+ * <h2>SimulatorConfig</h2>
+ * <p>
+ * Immutable fault-injection settings of the simulator. Built from
+ * {@code --key=value} command-line flags and replaced wholesale (never
+ * mutated) by {@code POST /admin/config}, so every request sees one
+ * consistent configuration.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code latency} - see {@link LatencyDistribution}</li>
+ * <li>{@code error-rate} - share of payments answered with HTTP 503 (nothing
+ * recorded; safe to retry)</li>
+ * <li>{@code decline-rate} - share of payments declined by the bank
+ * ({@code FAILURE})</li>
+ * <li>{@code timeout-rate} - share of payments that are executed but never
+ * answered; the connection is held for {@code timeout-ms} and then dropped,
+ * and only a status inquiry reveals the outcome</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public record SimulatorConfig(LatencyDistribution latency, double errorRate, double declineRate,
+        double timeoutRate, long timeoutMillis) {
+
+    /** Defaults: moderate tail latency, a clean switch. */
+    public static final SimulatorConfig DEFAULT = new SimulatorConfig(
+            new LatencyDistribution.LogNormal(80, 900), 0.0, 0.2, 0.0, 10_000);
+
+    public SimulatorConfig {
+        rate("error-rate", errorRate);
+        rate("decline-rate", declineRate);
+        rate("timeout-rate", timeoutRate);
+        if (errorRate + declineRate + timeoutRate > 1.0) {
+            throw new IllegalArgumentException("error-rate + decline-rate + timeout-rate must not exceed 1");
+        }
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeout-ms must not be negative");
+        }
+    }
+
+    /**
+     * Returns a copy with the given settings overridden; unknown keys are
+     * rejected.
+     *
+     * @param overrides setting name to value
+     * @return new configuration
+     */
+    public SimulatorConfig with(Map<String, String> overrides) {
+        LatencyDistribution l = latency;
+        double e = errorRate;
+        double d = declineRate;
+        double t = timeoutRate;
+        long tm = timeoutMillis;
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "latency" -> l = LatencyDistribution.parse(value);
+                case "error-rate" -> e = Double.parseDouble(value);
+                case "decline-rate" -> d = Double.parseDouble(value);
+                case "timeout-rate" -> t = Double.parseDouble(value);
+                case "timeout-ms" -> tm = Long.parseLong(value);
+                case "port" -> {
+                    // startup only
+                }
+                default -> throw new IllegalArgumentException("Unknown setting '" + entry.getKey() + "'");
+            }
+        }
+        return new SimulatorConfig(l, e, d, t, tm);
+    }
+
+    /**
+     * @return JSON representation for {@code /admin/config} and
+     *         {@code /admin/stats}
+     */
+    public String toJson() {
+        return "{\"latency\":\"" + latency.spec() + "\",\"errorRate\":" + errorRate
+                + ",\"declineRate\":" + declineRate + ",\"timeoutRate\":" + timeoutRate
+                + ",\"timeoutMs\":" + timeoutMillis + "}";
+    }
+
+    private static void rate(String name, double value) {
+        if (value < 0.0 || value > 1.0) {
+            throw new IllegalArgumentException(name + " must be within [0, 1], got " + value);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.openpay.simulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link NpciSimulator} endpoints, over HTTP against a
+ * simulator with no latency and no injected faults.
+ */
+public class NpciSimulatorTest {
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private NpciSimulator simulator;
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        simulator = new NpciSimulator(new SimulatorConfig(new LatencyDistribution.Fixed(0), 0.0, 0.0, 0.0, 0));
+        baseUrl = "http://localhost:" + simulator.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        simulator.stop();
+    }
+
+    // A payment is recorded once; a replay and a status inquiry return the recorded outcome
+    @Test
+    void payIsIdempotentAndVisibleToInquiry() throws Exception {
+        String body = "{\"txnId\":42,\"senderUpi\":\"a@upi\",\"receiverUpi\":\"b@upi\",\"amountPaise\":100}";
+
+        HttpResponse<String> paid = post("/upi/pay", body);
+        assertEquals(200, paid.statusCode());
+        assertEquals("{\"txnId\":42,\"status\":\"SUCCESS\"}", paid.body());
+        assertEquals(paid.body(), post("/upi/pay", body).body());
+
+        HttpResponse<String> status = get("/upi/status/42");
+        assertEquals(200, status.statusCode());
+        assertEquals(paid.body(), status.body());
+        assertTrue(get("/admin/stats").body().contains("\"replays\":1"));
+    }
+
+    // A malformed request gets a 400 with the reason, not an empty reply
+    @Test
+    void malformedRequestsAreAnswered() throws Exception {
+        HttpResponse<String> noTxnId = post("/upi/pay", "{\"amountPaise\":100}");
+        assertEquals(400, noTxnId.statusCode());
+        assertEquals("{\"error\":\"Request body has no txnId\"}", noTxnId.body());
+
+        HttpResponse<String> badId = get("/upi/status/abc");
+        assertEquals(400, badId.statusCode());
+        assertTrue(badId.body().contains("Invalid txnId"));
+
+        assertEquals(404, get("/upi/status/7").statusCode());
+        assertEquals(404, get("/upi/unknown").statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,92 @@
+#!/usr/bin/env bash
+#
+# CLI for the DLQ admin endpoints of api-service (/admin/dlq).
+#
+# Usage:
+#   scripts/dlq_redrive.sh summary
+#   scripts/dlq_redrive.sh entries [REASON] [AFTER_ID] [LIMIT]
+#   scripts/dlq_redrive.sh redrive REASON[,REASON...] [LIMIT] [RATE_PER_SEC] [--dry-run]
+#   scripts/dlq_redrive.sh redrive-ids ENTRY_ID[,ENTRY_ID...] [RATE_PER_SEC]
+#   scripts/dlq_redrive.sh status JOB_ID
+#   scripts/dlq_redrive.sh cancel JOB_ID
+#
+# Environment:
+#   OPENPAY_API          base URL (default http://localhost:8080)
+#   OPENPAY_ADMIN_TOKEN  must match openpay.admin.token of the api-service
+#
+# 'redrive' starts the job and then polls its progress every 2s until it ends.
+# The rate is capped server-side by openpay.dlq.redrive.max-rate-per-second.
+
+set -euo pipefail
+
+API="${OPENPAY_API:-http://localhost:8080}"
+TOKEN="${OPENPAY_ADMIN_TOKEN:?set OPENPAY_ADMIN_TOKEN}"
+
+call() {
+  local method="$1" path="$2" body="${3:-}"
+  if [[ -n "$body" ]]; then
+    curl -sS -X "$method" "$API$path" -H "X-Admin-Token: $TOKEN" \
+      -H "Content-Type: application/json" -d "$body"
+  else
+    curl -sS -X "$method" "$API$path" -H "X-Admin-Token: $TOKEN"
+  fi
+  echo
+}
+
+json_list() {
+  # a,b,c -> "a","b","c"
+  local IFS=','
+  local out="" item
+  for item in $1; do out+="${out:+,}\"$item\""; done
+  echo "$out"
+}
+
+follow() {
+  local job="$1" state
+  while true; do
+    local progress
+    progress=$(call GET "/admin/dlq/redrive/$job")
+    echo "$progress"
+    state=$(sed -n 's/.*"state":"\([A-Z]*\)".*/\1/p' <<<"$progress")
+    [[ "$state" == "RUNNING" ]] || break
+    sleep 2
+  done
+}
+
+start() {
+  local response job
+  response=$(call POST /admin/dlq/redrive "$1")
+  echo "$response"
+  job=$(sed -n 's/.*"id":"\([^"]*\)".*/\1/p' <<<"$response")
+  [[ -n "$job" ]] && follow "$job"
+}
+
+case "${1:-summary}" in
+  summary)
+    call GET /admin/dlq/summary
+    ;;
+  entries)
+    call GET "/admin/dlq/entries?reason=${2:-}&after=${3:-}&limit=${4:-50}"
+    ;;
+  redrive)
+    dry=false
+    [[ " $* " == *" --dry-run "* ]] && dry=true
+    limit="${3:-null}"; rate="${4:-null}"
+    [[ "$limit" == "--dry-run" ]] && limit=null
+    [[ "$rate" == "--dry-run" ]] && rate=null
+    start "{\"reasons\":[$(json_list "${2:?reason(s) required}")],\"limit\":$limit,\"ratePerSecond\":$rate,\"dryRun\":$dry}"
+    ;;
+  redrive-ids)
+    start "{\"entryIds\":[$(json_list "${2:?entry id(s) required}")],\"ratePerSecond\":${3:-null}}"
+    ;;
+  status)
+    call GET "/admin/dlq/redrive/${2:?job id required}"
+    ;;
+  cancel)
+    call DELETE "/admin/dlq/redrive/${2:?job id required}"
+    ;;
+  *)
+    sed -n '3,19p' "$0"
+    exit 1
+    ;;
+esac
@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+#
+# Local two-Postgres setup for testing read-replica routing.
+#   primary : localhost:5432  (takes writes + Flyway)
+#   replica : localhost:5433  (streaming hot standby)
+#
+# Usage: scripts/local_replica.sh up|down|lag
+# Then run api-service with:
+#   --openpay.datasource.replicas.enabled=true
+#   --openpay.datasource.replicas.nodes[0].url=jdbc:postgresql://localhost:5433/openpay
+#   --openpay.datasource.replicas.nodes[0].username=openpay
+#   --openpay.datasource.replicas.nodes[0].password=openpay
+#
+# Simulate lag with: docker pause openpay-pg-replica (reads fall back to primary
+# once lag exceeds openpay.datasource.replicas.max-lag-ms).
+
+set -euo pipefail
+
+NET=openpay-pg
+IMAGE=bitnami/postgresql:16
+
+case "${1:-up}" in
+  up)
+    docker network inspect "$NET" >/dev/null 2>&1 || docker network create "$NET"
+
+    echo "🐘 Starting primary on :5432..."
+    docker run -d --name openpay-pg-primary --network "$NET" -p 5432:5432 \
+      -e POSTGRESQL_REPLICATION_MODE=master \
+      -e POSTGRESQL_REPLICATION_USER=repl -e POSTGRESQL_REPLICATION_PASSWORD=repl \
+      -e POSTGRESQL_USERNAME=openpay -e POSTGRESQL_PASSWORD=openpay \
+      -e POSTGRESQL_DATABASE=openpay \
+      "$IMAGE"
+
+    echo "🐘 Starting replica on :5433..."
+    docker run -d --name openpay-pg-replica --network "$NET" -p 5433:5432 \
+      -e POSTGRESQL_REPLICATION_MODE=slave \
+      -e POSTGRESQL_MASTER_HOST=openpay-pg-primary -e POSTGRESQL_MASTER_PORT_NUMBER=5432 \
+      -e POSTGRESQL_REPLICATION_USER=repl -e POSTGRESQL_REPLICATION_PASSWORD=repl \
+      -e POSTGRESQL_PASSWORD=openpay \
+      "$IMAGE"
+
+    echo "✅ Primary/replica starting (give the replica a few seconds to sync)"
+    ;;
+  down)
+    docker rm -f openpay-pg-replica openpay-pg-primary >/dev/null 2>&1 || true
+    docker network rm "$NET" >/dev/null 2>&1 || true
+    echo "🧹 Removed local primary/replica"
+    ;;
+  lag)
+    docker exec -e PGPASSWORD=openpay openpay-pg-replica psql -U openpay -d openpay -Atc \
+      "SELECT now() - pg_last_xact_replay_timestamp() AS replay_lag"
+    ;;
+  *)
+    echo "Usage: $0 up|down|lag" >&2
+    exit 1
+    ;;
+esac
@@ -0,0 +1,191 @@
+package com.openpay.shared.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.openpay.shared.model.MandateFrequency;
+import com.openpay.shared.validation.ValidUpi;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * <h2>MandateRequest</h2>
+ * <p>
+ * Data Transfer Object (DTO) for registering a recurring payment mandate
+ * (UPI AutoPay style) with {@code POST /mandates}.
+ * </p>
+ *
+ * <pre>
+ * POST /mandates
+ * Content-Type: application/json
+ * {
+ *   "senderUpi":   "alice@upi",
+ *   "receiverUpi": "netflix@upi",
+ *   "amount":      649.00,
+ *   "frequency":   "MONTHLY",
+ *   "startAt":     "2025-01-31T09:00:00",
+ *   "maxDebits":   12
+ * }
+ * </pre>
+ *
+ * <ul>
+ * <li>Times are local date-times in the server's zone</li>
+ * <li>{@code endAt} and {@code maxDebits} are optional; without either the
+ * mandate runs until revoked</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ * @see com.openpay.shared.model.MandateEntity
+ */
+public class MandateRequest {
+
+    /**
+     * UPI ID of the payer whose account is debited on every occurrence.
+     */
+    @ValidUpi
+    @NotBlank(message = "Sender UPI is required and must be a valid UPI ID")
+    private String senderUpi;
+
+    /**
+     * UPI ID of the payee.
+     */
+    @ValidUpi
+    @NotBlank(message = "Receiver UPI is required and must be a valid UPI ID")
+    private String receiverUpi;
+
+    /**
+     * Amount of each debit; same rules as {@link PaymentRequest#getAmount()}.
+     */
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    @Digits(integer = 13, fraction = 2, message = "Amount must have at most 2 decimal places")
+    private BigDecimal amount;
+
+    /**
+     * How often the payer is debited (e.g. {@code MONTHLY}).
+     */
+    @NotNull(message = "Frequency is required")
+    private MandateFrequency frequency;
+
+    /**
+     * First debit; later debits fall on the same day and time each period.
+     */
+    @NotNull(message = "Start time is required")
+    private LocalDateTime startAt;
+
+    /**
+     * Optional: no debit after this time.
+     */
+    private LocalDateTime endAt;
+
+    /**
+     * Optional: the mandate completes after this many debits.
+     */
+    @Min(value = 1, message = "maxDebits must be at least 1")
+    private Integer maxDebits;
+
+    // --- Getters & Setters ---
+
+    /**
+     * @return payer's UPI ID
+     */
+    public String getSenderUpi() {
+        return senderUpi;
+    }
+
+    /**
+     * @param senderUpi payer's UPI ID
+     */
+    public void setSenderUpi(String senderUpi) {
+        this.senderUpi = senderUpi;
+    }
+
+    /**
+     * @return payee's UPI ID
+     */
+    public String getReceiverUpi() {
+        return receiverUpi;
+    }
+
+    /**
+     * @param receiverUpi payee's UPI ID
+     */
+    public void setReceiverUpi(String receiverUpi) {
+        this.receiverUpi = receiverUpi;
+    }
+
+    /**
+     * @return amount of each debit
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @param amount amount of each debit
+     */
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * @return debit frequency
+     */
+    public MandateFrequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @param frequency debit frequency
+     */
+    public void setFrequency(MandateFrequency frequency) {
+        this.frequency = frequency;
+    }
+
+    /**
+     * @return time of the first debit
+     */
+    public LocalDateTime getStartAt() {
+        return startAt;
+    }
+
+    /**
+     * @param startAt time of the first debit
+     */
+    public void setStartAt(LocalDateTime startAt) {
+        this.startAt = startAt;
+    }
+
+    /**
+     * @return last allowed debit time, or null
+     */
+    public LocalDateTime getEndAt() {
+        return endAt;
+    }
+
+    /**
+     * @param endAt last allowed debit time, or null
+     */
+    public void setEndAt(LocalDateTime endAt) {
+        this.endAt = endAt;
+    }
+
+    /**
+     * @return debit cap, or null
+     */
+    public Integer getMaxDebits() {
+        return maxDebits;
+    }
+
+    /**
+     * @param maxDebits debit cap, or null
+     */
+    public void setMaxDebits(Integer maxDebits) {
+        this.maxDebits = maxDebits;
+    }
+}
@@ -5,6 +5,7 @@ import java.math.BigDecimal;
 import com.openpay.shared.validation.ValidUpi;
 
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
@@ -84,10 +85,12 @@ public class PaymentRequest {
      * Amount to be transferred in the transaction.
      * <p>
      * Populated from JSON field <code>amount</code> in the POST request body.
-     * Must not be null and must be at least 0.01.
+     * Must not be null, must be at least 0.01 and carry at most two decimals
+     * (it is converted to whole paise at the API boundary).
      */
     @NotNull(message = "Amount is required")
     @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    @Digits(integer = 13, fraction = 2, message = "Amount must have at most 2 decimal places")
     private BigDecimal amount;
 
     // --- Getters & Setters ---
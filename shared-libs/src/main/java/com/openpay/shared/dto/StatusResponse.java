@@ -46,8 +46,9 @@ public class StatusResponse {
     private Long id;
 
     /**
-     * Current status of the transaction (e.g., "queued", "processing", "success",
-     * "failed").
+     * Current status of the transaction, as a
+     * {@link com.openpay.shared.model.TransactionStatus} name (e.g., "QUEUED",
+     * "PROCESSING", "COMPLETED", "FAILED").
      */
     private String status;
 
@@ -109,7 +110,7 @@ public class StatusResponse {
     /**
      * Gets the current status of the transaction.
      * 
-     * @return status (e.g., "success", "failed")
+     * @return status (e.g., "COMPLETED", "FAILED")
      */
     public String getStatus() {
         return status;
@@ -118,7 +119,7 @@ public class StatusResponse {
     /**
      * Sets the current status of the transaction.
      * 
-     * @param status status (e.g., "success", "failed")
+     * @param status status (e.g., "COMPLETED", "FAILED")
      */
     public void setStatus(String status) {
         this.status = status;
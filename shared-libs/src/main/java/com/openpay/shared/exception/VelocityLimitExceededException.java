@@ -0,0 +1,29 @@
+package com.openpay.shared.exception;
+
+/**
+ * <h2>VelocityLimitExceededException</h2>
+ * <p>
+ * Exception thrown when a payment would take its sender or receiver past a
+ * configured velocity limit (payment count or amount per minute, hour or
+ * day). The payment is rejected before anything is persisted.
+ * </p>
+ *
+ * <p>
+ * This exception is a specialized form of {@link OpenPayException}; the API
+ * answers it with {@code 429 Too Many Requests}.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ * @see com.openpay.shared.exception.OpenPayException
+ */
+public class VelocityLimitExceededException extends OpenPayException {
+    /**
+     * Constructs a new VelocityLimitExceededException naming the limit hit.
+     *
+     * @param message which party and which limit was exceeded
+     */
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,84 @@
+package com.openpay.shared.model;
+
+/**
+ * ====================================================================
+ * FailureReason (Shared: API + Worker)
+ * --------------------------------------------------------------------
+ * Why a payment did not (yet) complete.
+ * <p>
+ * Persisted as a compact {@code SMALLINT} code (see
+ * {@link FailureReasonConverter}) in {@code transactions.failure_reason} and
+ * {@code transaction_history.reason}; {@code NULL} means no failure. Exposed
+ * to operators and the DLQ by {@link #name()}.
+ * </p>
+ *
+ * <h3>Rules:</h3>
+ * <ul>
+ * <li>Codes are part of the schema: never renumber, only append</li>
+ * <li>Whether a reason is retryable is decided by the worker, not stored
+ * here</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public enum FailureReason {
+
+    /** Stream payload unusable (missing or non-numeric txnId). */
+    MALFORMED_PAYLOAD((short) 1),
+    /** No transaction row for the payload's txnId. */
+    TRANSACTION_NOT_FOUND((short) 2),
+    /** The payer's bank / switch declined the payment. */
+    DECLINED((short) 3),
+    /** The gateway refused the request itself (4xx). */
+    GATEWAY_REJECTED((short) 4),
+    /** Gateway unreachable or overloaded; the payment was not executed. */
+    GATEWAY_UNAVAILABLE((short) 5),
+    /** No answer in time; the payment may or may not have executed. */
+    GATEWAY_TIMEOUT((short) 6),
+    /** Unexpected gateway error or response; outcome unknown. */
+    GATEWAY_ERROR((short) 7),
+    /** The switch reports the payment as still in progress. */
+    GATEWAY_PENDING((short) 8),
+    /** The payment's processing deadline passed. */
+    DEADLINE_EXCEEDED((short) 9),
+    /** Worker-side failure (database, serialization, ...). */
+    INTERNAL_ERROR((short) 10),
+    /** The payer did not approve the collect request before it expired. */
+    COLLECT_EXPIRED((short) 11);
+
+    private static final FailureReason[] BY_CODE = new FailureReason[values().length + 1];
+
+    static {
+        for (FailureReason reason : values()) {
+            BY_CODE[reason.code] = reason;
+        }
+    }
+
+    private final short code;
+
+    FailureReason(short code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the persisted SMALLINT code of this reason
+     */
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * Resolves a persisted code back to its reason.
+     *
+     * @param code the SMALLINT code read from the database
+     * @return the matching reason
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static FailureReason fromCode(short code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown failure reason code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
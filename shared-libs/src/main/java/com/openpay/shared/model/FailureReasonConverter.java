@@ -0,0 +1,29 @@
+package com.openpay.shared.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * ====================================================================
+ * FailureReasonConverter
+ * --------------------------------------------------------------------
+ * JPA converter mapping {@link FailureReason} to its {@code SMALLINT} code.
+ * Applied automatically to every {@code FailureReason} attribute in the
+ * shared entities.
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Converter(autoApply = true)
+public class FailureReasonConverter implements AttributeConverter<FailureReason, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(FailureReason reason) {
+        return reason == null ? null : reason.getCode();
+    }
+
+    @Override
+    public FailureReason convertToEntityAttribute(Short code) {
+        return code == null ? null : FailureReason.fromCode(code);
+    }
+}
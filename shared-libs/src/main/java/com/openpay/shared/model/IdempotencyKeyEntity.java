@@ -1,11 +1,19 @@
 package com.openpay.shared.model;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Objects;
+
+import org.springframework.data.domain.Persistable;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 /**
  * ====================================================================
@@ -22,20 +30,30 @@ import jakarta.persistence.Table;
  * <h3>Database Mapping:</h3>
  * <ul>
  * <li>Table: <b>idempotency_keys</b></li>
- * <li>Primary key: {@code idempotency_key}</li>
+ * <li>Primary key: {@code (idempotency_key, created_at)}, mapped as
+ * {@link Key}; the partition key has to be part of it</li>
  * <li>Associates the key with a transaction and creation timestamp</li>
+ * <li>Table is range-partitioned by {@code created_at}; expiry drops whole
+ * partitions (see V3 migration)</li>
  * </ul>
  *
+ * <p>
+ * Implements {@link Persistable} so that {@code save()} of a fresh key is a
+ * plain INSERT instead of a merge (which would first SELECT across every live
+ * partition on the {@code /pay} hot path).
+ * </p>
+ *
  * @author David Grace
  * @since 1.0
  */
 @Entity
 @Table(name = "idempotency_keys")
-public class IdempotencyKeyEntity {
+@IdClass(IdempotencyKeyEntity.Key.class)
+public class IdempotencyKeyEntity implements Persistable<IdempotencyKeyEntity.Key> {
 
     /**
      * Unique idempotency key for the request/operation.
-     * Primary key for the entity.
+     * First part of the primary key.
      */
     @Id
     @Column(name = "idempotency_key")
@@ -50,11 +68,43 @@ public class IdempotencyKeyEntity {
 
     /**
      * The timestamp when the idempotency key was created/stored.
-     * Useful for expiry and audit purposes.
+     * Partition key and second part of the primary key.
      */
-    @Column(name = "created_at")
+    @Id
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    /**
+     * Set once the entity has been loaded from or written to the database.
+     */
+    @Transient
+    private boolean persisted;
+
+    /**
+     * Marks the entity as persisted after load/insert so later saves merge.
+     */
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Key getId() {
+        return new Key(idempotencyKey, createdAt);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
     // Getters and Setters
 
     /**
@@ -110,4 +160,44 @@ public class IdempotencyKeyEntity {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    /**
+     * Composite primary key: the same key string may exist once per
+     * {@code created_at}, i.e. once more after its partition expired. Live
+     * keys are kept unique by the writers, which serialize on
+     * {@code IdempotencyKeyRepository.lockKey} before checking and inserting.
+     */
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String idempotencyKey;
+        private LocalDateTime createdAt;
+
+        /**
+         * Required by JPA.
+         */
+        public Key() {
+        }
+
+        /**
+         * @param idempotencyKey the idempotency key
+         * @param createdAt      when the key was stored
+         */
+        public Key(String idempotencyKey, LocalDateTime createdAt) {
+            this.idempotencyKey = idempotencyKey;
+            this.createdAt = createdAt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Objects.equals(idempotencyKey, other.idempotencyKey)
+                    && Objects.equals(createdAt, other.createdAt);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idempotencyKey, createdAt);
+        }
+    }
 }
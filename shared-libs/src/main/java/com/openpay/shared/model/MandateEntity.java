@@ -0,0 +1,295 @@
+package com.openpay.shared.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * ====================================================================
+ * MandateEntity (Shared: API + Worker)
+ * --------------------------------------------------------------------
+ * JPA entity of a recurring payment mandate (UPI AutoPay style): the payer's
+ * standing authorisation to debit a fixed amount to a payee on a schedule.
+ * <p>
+ * Each due occurrence is fired as an ordinary payment (a
+ * {@link TransactionEntity} on {@code transactions.main}) by the API's
+ * mandate scheduler.
+ * </p>
+ *
+ * <h3>Database Mapping:</h3>
+ * <ul>
+ *   <li>Table: <b>mandates</b> (see {@code V9__mandates.sql})</li>
+ *   <li>Primary key: {@code id} (auto-generated, BIGSERIAL)</li>
+ *   <li>Due index: {@code (due_bucket, id) WHERE status = ACTIVE}</li>
+ *   <li>The claim columns ({@code claimed_by}, {@code claimed_until}) are
+ *   written by the scheduler's SQL only and are not mapped</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Entity
+@Table(name = "mandates")
+public class MandateEntity {
+
+    /** Width of a due bucket. */
+    public static final long BUCKET_SECONDS = 60;
+
+    /**
+     * Unique identifier for the mandate (DB PK, auto-generated).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Client Idempotency-Key of the registration (unique).
+     */
+    @Column(name = "idempotency_key", nullable = false, unique = true)
+    private String idempotencyKey;
+
+    /**
+     * UPI ID of the payer, debited on every occurrence.
+     */
+    @Column(nullable = false)
+    private String senderUpi;
+
+    /**
+     * UPI ID of the payee.
+     */
+    @Column(nullable = false)
+    private String receiverUpi;
+
+    /**
+     * Amount of each debit, in paise.
+     */
+    @Column(name = "amount_paise", nullable = false)
+    private long amountPaise;
+
+    /**
+     * How often the mandate debits, stored as a SMALLINT code.
+     */
+    @Column(nullable = false)
+    private MandateFrequency frequency;
+
+    /**
+     * Current status, stored as a SMALLINT code.
+     */
+    @Column(nullable = false)
+    private MandateStatus status;
+
+    /**
+     * First occurrence; every later occurrence is computed from it.
+     */
+    @Column(name = "start_at", nullable = false)
+    private LocalDateTime startAt;
+
+    /**
+     * No occurrence after this instant (null = open-ended).
+     */
+    @Column(name = "end_at")
+    private LocalDateTime endAt;
+
+    /**
+     * Maximum number of debits (null = unlimited).
+     */
+    @Column(name = "max_debits")
+    private Integer maxDebits;
+
+    /**
+     * Occurrences fired so far.
+     */
+    @Column(nullable = false)
+    private int debits;
+
+    /**
+     * Occurrences passed so far, fired or skipped; index of {@link #nextDueAt}.
+     */
+    @Column(nullable = false)
+    private int occurrences;
+
+    /**
+     * Next occurrence to fire.
+     */
+    @Column(name = "next_due_at", nullable = false)
+    private LocalDateTime nextDueAt;
+
+    /**
+     * {@link #nextDueAt} in whole minutes since the epoch (see {@link #dueBucketOf}).
+     */
+    @Column(name = "due_bucket", nullable = false)
+    private long dueBucket;
+
+    /**
+     * Payment created by the latest fired occurrence.
+     */
+    @Column(name = "last_transaction_id")
+    private Long lastTransactionId;
+
+    /**
+     * Timestamp when the mandate was registered.
+     */
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    /**
+     * Timestamp when the mandate was last updated.
+     */
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * Due bucket of an instant: whole minutes since the epoch, in the JVM time
+     * zone that also maps {@code TIMESTAMPTZ} columns.
+     *
+     * @param dueAt occurrence time
+     * @return its bucket
+     */
+    public static long dueBucketOf(LocalDateTime dueAt) {
+        return Math.floorDiv(dueAt.atZone(ZoneId.systemDefault()).toEpochSecond(), BUCKET_SECONDS);
+    }
+
+    // --- Getters and Setters ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getSenderUpi() {
+        return senderUpi;
+    }
+
+    public void setSenderUpi(String senderUpi) {
+        this.senderUpi = senderUpi;
+    }
+
+    public String getReceiverUpi() {
+        return receiverUpi;
+    }
+
+    public void setReceiverUpi(String receiverUpi) {
+        this.receiverUpi = receiverUpi;
+    }
+
+    public long getAmountPaise() {
+        return amountPaise;
+    }
+
+    public void setAmountPaise(long amountPaise) {
+        this.amountPaise = amountPaise;
+    }
+
+    public MandateFrequency getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(MandateFrequency frequency) {
+        this.frequency = frequency;
+    }
+
+    public MandateStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(MandateStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getStartAt() {
+        return startAt;
+    }
+
+    public void setStartAt(LocalDateTime startAt) {
+        this.startAt = startAt;
+    }
+
+    public LocalDateTime getEndAt() {
+        return endAt;
+    }
+
+    public void setEndAt(LocalDateTime endAt) {
+        this.endAt = endAt;
+    }
+
+    public Integer getMaxDebits() {
+        return maxDebits;
+    }
+
+    public void setMaxDebits(Integer maxDebits) {
+        this.maxDebits = maxDebits;
+    }
+
+    public int getDebits() {
+        return debits;
+    }
+
+    public void setDebits(int debits) {
+        this.debits = debits;
+    }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
+
+    public LocalDateTime getNextDueAt() {
+        return nextDueAt;
+    }
+
+    public void setNextDueAt(LocalDateTime nextDueAt) {
+        this.nextDueAt = nextDueAt;
+    }
+
+    public long getDueBucket() {
+        return dueBucket;
+    }
+
+    public void setDueBucket(long dueBucket) {
+        this.dueBucket = dueBucket;
+    }
+
+    public Long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public void setLastTransactionId(Long lastTransactionId) {
+        this.lastTransactionId = lastTransactionId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
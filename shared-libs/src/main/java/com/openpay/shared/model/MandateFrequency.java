@@ -0,0 +1,99 @@
+package com.openpay.shared.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * ====================================================================
+ * MandateFrequency (Shared: API + Worker)
+ * --------------------------------------------------------------------
+ * How often a recurring payment mandate debits the payer (the UPI AutoPay
+ * frequencies).
+ * <p>
+ * Persisted as a compact {@code SMALLINT} code (see
+ * {@link MandateFrequencyConverter}) in {@code mandates.frequency}.
+ * </p>
+ *
+ * <h3>Rules:</h3>
+ * <ul>
+ * <li>Codes are part of the schema: never renumber, only append</li>
+ * <li>Occurrence {@code n} is always computed from the mandate's start
+ * ({@code start + n periods}), never from the previous occurrence: a monthly
+ * mandate starting on 31 Jan falls on 29 Feb, then 31 Mar again</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public enum MandateFrequency {
+
+    /** A single scheduled debit. */
+    ONE_TIME((short) 1, 0, 0),
+    DAILY((short) 2, 1, 0),
+    WEEKLY((short) 3, 7, 0),
+    FORTNIGHTLY((short) 4, 14, 0),
+    MONTHLY((short) 5, 0, 1),
+    BIMONTHLY((short) 6, 0, 2),
+    QUARTERLY((short) 7, 0, 3),
+    HALF_YEARLY((short) 8, 0, 6),
+    YEARLY((short) 9, 0, 12);
+
+    private static final MandateFrequency[] BY_CODE = new MandateFrequency[values().length + 1];
+
+    static {
+        for (MandateFrequency frequency : values()) {
+            BY_CODE[frequency.code] = frequency;
+        }
+    }
+
+    private final short code;
+    private final int days;
+    private final int months;
+
+    MandateFrequency(short code, int days, int months) {
+        this.code = code;
+        this.days = days;
+        this.months = months;
+    }
+
+    /**
+     * @return the persisted SMALLINT code of this frequency
+     */
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * Computes the {@code n}-th occurrence of a schedule.
+     *
+     * @param start first occurrence (n = 0)
+     * @param n     occurrence index, from 0
+     * @return the occurrence, or null if the schedule has no {@code n}-th
+     *         occurrence ({@link #ONE_TIME} beyond the first)
+     */
+    public LocalDateTime occurrence(LocalDateTime start, int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Occurrence index must not be negative: " + n);
+        }
+        if (n == 0) {
+            return start;
+        }
+        if (this == ONE_TIME) {
+            return null;
+        }
+        return months > 0 ? start.plusMonths((long) months * n) : start.plusDays((long) days * n);
+    }
+
+    /**
+     * Resolves a persisted code back to its frequency.
+     *
+     * @param code the SMALLINT code read from the database
+     * @return the matching frequency
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static MandateFrequency fromCode(short code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown mandate frequency code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
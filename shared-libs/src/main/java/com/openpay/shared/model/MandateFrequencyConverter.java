@@ -0,0 +1,29 @@
+package com.openpay.shared.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * ====================================================================
+ * MandateFrequencyConverter
+ * --------------------------------------------------------------------
+ * JPA converter mapping {@link MandateFrequency} to its {@code SMALLINT} code.
+ * Applied automatically to every {@code MandateFrequency} attribute in the shared
+ * entities.
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Converter(autoApply = true)
+public class MandateFrequencyConverter implements AttributeConverter<MandateFrequency, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(MandateFrequency frequency) {
+        return frequency == null ? null : frequency.getCode();
+    }
+
+    @Override
+    public MandateFrequency convertToEntityAttribute(Short code) {
+        return code == null ? null : MandateFrequency.fromCode(code);
+    }
+}
@@ -0,0 +1,66 @@
+package com.openpay.shared.model;
+
+/**
+ * ====================================================================
+ * MandateStatus (Shared: API + Worker)
+ * --------------------------------------------------------------------
+ * Lifecycle states of a recurring payment mandate.
+ * <p>
+ * Persisted as a compact {@code SMALLINT} code (see
+ * {@link MandateStatusConverter}) in {@code mandates.status}.
+ * </p>
+ *
+ * <h3>Rules:</h3>
+ * <ul>
+ * <li>Codes are part of the schema: never renumber, only append</li>
+ * <li>Only {@link #ACTIVE} mandates are in the due index
+ * ({@code idx_mandates_due WHERE status = 1})</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public enum MandateStatus {
+
+    /** Registered; fires at each due occurrence. */
+    ACTIVE((short) 1),
+    /** Revoked by the payer; never fires again. */
+    REVOKED((short) 2),
+    /** Reached its end date or debit cap. */
+    COMPLETED((short) 3);
+
+    private static final MandateStatus[] BY_CODE = new MandateStatus[values().length + 1];
+
+    static {
+        for (MandateStatus status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final short code;
+
+    MandateStatus(short code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the persisted SMALLINT code of this status
+     */
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * Resolves a persisted code back to its status.
+     *
+     * @param code the SMALLINT code read from the database
+     * @return the matching status
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static MandateStatus fromCode(short code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown mandate status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,29 @@
+package com.openpay.shared.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * ====================================================================
+ * MandateStatusConverter
+ * --------------------------------------------------------------------
+ * JPA converter mapping {@link MandateStatus} to its {@code SMALLINT} code.
+ * Applied automatically to every {@code MandateStatus} attribute in the shared
+ * entities.
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Converter(autoApply = true)
+public class MandateStatusConverter implements AttributeConverter<MandateStatus, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(MandateStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public MandateStatus convertToEntityAttribute(Short code) {
+        return code == null ? null : MandateStatus.fromCode(code);
+    }
+}
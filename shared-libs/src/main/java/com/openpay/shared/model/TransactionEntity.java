@@ -1,6 +1,5 @@
 package com.openpay.shared.model;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
@@ -24,7 +23,7 @@ import jakarta.persistence.Table;
  * <ul>
  *   <li>Table: <b>transactions</b></li>
  *   <li>Primary key: {@code id} (auto-generated, BIGSERIAL)</li>
- *   <li>Schema: Amount, sender/receiver UPI, status, timestamps</li>
+ *   <li>Schema: Amount (paise), sender/receiver UPI, status (SMALLINT code), failure reason (SMALLINT code, nullable), timestamps</li>
  * </ul>
  *
  * <h3>Compliance & OSS Best Practice:</h3>
@@ -49,11 +48,10 @@ public class TransactionEntity {
     private Long id;
 
     /**
-     * Monetary amount involved in the transaction.
-     * (Rupees and paise, precise to 2 decimals)
+     * Monetary amount involved in the transaction, in paise (1 INR = 100).
      */
-    @Column(nullable = false)
-    private BigDecimal amount;
+    @Column(name = "amount_paise", nullable = false)
+    private long amountPaise;
 
     /**
      * UPI ID of the sender initiating the transaction.
@@ -68,10 +66,16 @@ public class TransactionEntity {
     private String receiverUpi;
 
     /**
-     * Current status of the transaction (e.g., queued, processing, completed, failed).
+     * Current status of the transaction, stored as a SMALLINT code.
      */
     @Column(nullable = false)
-    private String status;
+    private TransactionStatus status;
+
+    /**
+     * Why the payment failed or is stuck (null when none).
+     */
+    @Column(name = "failure_reason")
+    private FailureReason failureReason;
 
     /**
      * Timestamp when the transaction was created.
@@ -95,12 +99,12 @@ public class TransactionEntity {
         this.id = id;
     }
 
-    public BigDecimal getAmount() {
-        return amount;
+    public long getAmountPaise() {
+        return amountPaise;
     }
 
-    public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+    public void setAmountPaise(long amountPaise) {
+        this.amountPaise = amountPaise;
     }
 
     public String getSenderUpi() {
@@ -119,14 +123,22 @@ public class TransactionEntity {
         this.receiverUpi = receiverUpi;
     }
 
-    public String getStatus() {
+    public TransactionStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(TransactionStatus status) {
         this.status = status;
     }
 
+    public FailureReason getFailureReason() {
+        return failureReason;
+    }
+
+    public void setFailureReason(FailureReason failureReason) {
+        this.failureReason = failureReason;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
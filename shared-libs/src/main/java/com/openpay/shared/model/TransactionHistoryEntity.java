@@ -26,6 +26,8 @@ import jakarta.persistence.Table;
  * <li>Table: <b>transaction_history</b></li>
  * <li>Primary key: {@code history_id} (auto-generated)</li>
  * <li>Tracks all status transitions for any payment transaction</li>
+ * <li>Statuses stored as SMALLINT codes of {@link TransactionStatus}</li>
+ * <li>Optional reason stored as SMALLINT code of {@link FailureReason}</li>
  * </ul>
  *
  * @author David Grace
@@ -53,13 +55,19 @@ public class TransactionHistoryEntity {
      * Previous status before the change.
      */
     @Column(name = "prev_status", nullable = false)
-    private String prevStatus;
+    private TransactionStatus prevStatus;
 
     /**
      * New status after the change.
      */
     @Column(name = "new_status", nullable = false)
-    private String newStatus;
+    private TransactionStatus newStatus;
+
+    /**
+     * Why the transition happened, for failure transitions (null otherwise).
+     */
+    @Column(name = "reason")
+    private FailureReason reason;
 
     /**
      * Timestamp when the status change occurred.
@@ -90,25 +98,35 @@ public class TransactionHistoryEntity {
     }
 
     /** @return previous status before change */
-    public String getPrevStatus() {
+    public TransactionStatus getPrevStatus() {
         return prevStatus;
     }
 
     /** @param prevStatus previous status to set */
-    public void setPrevStatus(String prevStatus) {
+    public void setPrevStatus(TransactionStatus prevStatus) {
         this.prevStatus = prevStatus;
     }
 
     /** @return new status after change */
-    public String getNewStatus() {
+    public TransactionStatus getNewStatus() {
         return newStatus;
     }
 
     /** @param newStatus new status to set */
-    public void setNewStatus(String newStatus) {
+    public void setNewStatus(TransactionStatus newStatus) {
         this.newStatus = newStatus;
     }
 
+    /** @return reason of this transition, or null */
+    public FailureReason getReason() {
+        return reason;
+    }
+
+    /** @param reason reason of this transition */
+    public void setReason(FailureReason reason) {
+        this.reason = reason;
+    }
+
     /** @return timestamp when change occurred */
     public LocalDateTime getChangedAt() {
         return changedAt;
@@ -0,0 +1,81 @@
+package com.openpay.shared.model;
+
+/**
+ * ====================================================================
+ * TransactionStatus (Shared: API + Worker)
+ * --------------------------------------------------------------------
+ * Canonical lifecycle states of a payment transaction.
+ * <p>
+ * Persisted as a compact {@code SMALLINT} code (see
+ * {@link TransactionStatusConverter}) in both {@code transactions.status} and
+ * the {@code transaction_history} status columns, and exposed to API clients by
+ * {@link #name()} (e.g. {@code "QUEUED"}).
+ * </p>
+ *
+ * <h3>Rules:</h3>
+ * <ul>
+ * <li>Codes are part of the schema: never renumber, only append</li>
+ * <li>{@link #NONE} only appears as the "previous" state of the first history
+ * row</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public enum TransactionStatus {
+
+    /** No prior state (first audit entry only). */
+    NONE((short) 0),
+    /** Accepted by the API and enqueued for the worker. */
+    QUEUED((short) 1),
+    /** Claimed by a worker, gateway call in flight. */
+    PROCESSING((short) 2),
+    /** Gateway confirmed the payment. */
+    COMPLETED((short) 3),
+    /** Payment failed permanently or exhausted its retries. */
+    FAILED((short) 4),
+    /** Collect (pull) request awaiting payer approval. */
+    REQUESTED((short) 5);
+
+    private static final TransactionStatus[] BY_CODE = new TransactionStatus[values().length];
+
+    static {
+        for (TransactionStatus status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final short code;
+
+    TransactionStatus(short code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the persisted SMALLINT code of this status
+     */
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * @return true if no further transition is expected from this status
+     */
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+
+    /**
+     * Resolves a persisted code back to its status.
+     *
+     * @param code the SMALLINT code read from the database
+     * @return the matching status
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static TransactionStatus fromCode(short code) {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown transaction status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,29 @@
+package com.openpay.shared.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * ====================================================================
+ * TransactionStatusConverter
+ * --------------------------------------------------------------------
+ * JPA converter mapping {@link TransactionStatus} to its {@code SMALLINT}
+ * code. Applied automatically to every {@code TransactionStatus} attribute in
+ * the shared entities.
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Converter(autoApply = true)
+public class TransactionStatusConverter implements AttributeConverter<TransactionStatus, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(TransactionStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public TransactionStatus convertToEntityAttribute(Short code) {
+        return code == null ? null : TransactionStatus.fromCode(code);
+    }
+}
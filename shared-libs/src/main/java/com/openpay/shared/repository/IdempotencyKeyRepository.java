@@ -1,6 +1,10 @@
 package com.openpay.shared.repository;
 
+import java.time.LocalDateTime;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.openpay.shared.model.IdempotencyKeyEntity;
 
@@ -20,6 +24,11 @@ import com.openpay.shared.model.IdempotencyKeyEntity;
  * <li>Autowire in services that need to store and check idempotency keys.</li>
  * <li>Custom query {@code existsByIdempotencyKey(String)} efficiently checks
  * for duplicates.</li>
+ * <li>Prefer {@code existsByIdempotencyKeyAndCreatedAtAfter} on hot paths: the
+ * {@code created_at} bound lets Postgres prune expired partitions.</li>
+ * <li>The partitioned table cannot keep {@code idempotency_key} unique on its
+ * own (the primary key includes {@code created_at}); writers serialize on
+ * {@link #lockKey(String)} instead.</li>
  * </ul>
  *
  * <h3>Entity Mapping:</h3>
@@ -29,7 +38,7 @@ import com.openpay.shared.model.IdempotencyKeyEntity;
  * @author David Grace
  * @since 1.0
  */
-public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, String> {
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, IdempotencyKeyEntity.Key> {
 
     /**
      * Checks if a given idempotency key exists in the data store.
@@ -38,4 +47,29 @@ public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEn
      * @return true if the key exists, false otherwise
      */
     boolean existsByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Checks if a given idempotency key was stored after the given instant.
+     * <p>
+     * Used with {@code now - ttl} so that only live (non-expired) keys count as
+     * duplicates and only the matching daily partitions are probed.
+     * </p>
+     *
+     * @param idempotencyKey the unique key to check
+     * @param createdAfter   lower bound (exclusive) on the key's creation time
+     * @return true if a live key exists, false otherwise
+     */
+    boolean existsByIdempotencyKeyAndCreatedAtAfter(String idempotencyKey, LocalDateTime createdAfter);
+
+    /**
+     * Takes a transaction-scoped advisory lock on the key's hash, so requests
+     * carrying the same key check and register it one at a time. Must run in
+     * a transaction; the lock is released at commit or rollback.
+     *
+     * @param idempotencyKey the key to lock
+     * @return always 1
+     */
+    @Query(value = "SELECT count(*) FROM (SELECT pg_advisory_xact_lock(hashtextextended(:key, 0))) l",
+            nativeQuery = true)
+    long lockKey(@Param("key") String idempotencyKey);
 }
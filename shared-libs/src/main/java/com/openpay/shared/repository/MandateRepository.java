@@ -0,0 +1,53 @@
+package com.openpay.shared.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.openpay.shared.model.MandateEntity;
+import com.openpay.shared.model.MandateStatus;
+
+/**
+ * ====================================================================
+ * MandateRepository (Shared: API + Worker)
+ * --------------------------------------------------------------------
+ * JPA repository for the "mandates" table.
+ * <p>
+ * Registration and revocation go through here; firing due mandates does not
+ * (the scheduler claims them with {@code FOR UPDATE SKIP LOCKED} SQL of its
+ * own).
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public interface MandateRepository extends JpaRepository<MandateEntity, Long> {
+
+    /**
+     * Looks up a mandate by its registration key.
+     *
+     * @param idempotencyKey Idempotency-Key of the registration
+     * @return the mandate, if that key was already used
+     */
+    Optional<MandateEntity> findByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Moves a mandate out of a given status; takes it off the due index when
+     * the new status is not {@link MandateStatus#ACTIVE}.
+     *
+     * @param id   mandate id
+     * @param from expected current status
+     * @param to   new status
+     * @param now  update timestamp
+     * @return 1 if the mandate was in {@code from}, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE MandateEntity m SET m.status = :to, m.updatedAt = :now "
+            + "WHERE m.id = :id AND m.status = :from")
+    int transition(@Param("id") Long id, @Param("from") MandateStatus from,
+            @Param("to") MandateStatus to, @Param("now") LocalDateTime now);
+}
@@ -1,5 +1,7 @@
 package com.openpay.shared.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.openpay.shared.model.TransactionHistoryEntity;
@@ -36,5 +38,15 @@ import com.openpay.shared.model.TransactionHistoryEntity;
  * @since 1.0
  */
 public interface TransactionHistoryRepository extends JpaRepository<TransactionHistoryEntity, Long> {
-    // Extend with custom query methods for historical lookups if needed.
+
+    /**
+     * Returns the full status timeline of one transaction, oldest first.
+     * <p>
+     * Served by {@code idx_history_tx_changed (transaction_id, changed_at)}.
+     * </p>
+     *
+     * @param transactionId the transaction whose history is requested
+     * @return history rows ordered by change time
+     */
+    List<TransactionHistoryEntity> findByTransactionIdOrderByChangedAtAsc(Long transactionId);
 }
@@ -1,8 +1,16 @@
 package com.openpay.shared.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.openpay.shared.model.FailureReason;
 import com.openpay.shared.model.TransactionEntity;
+import com.openpay.shared.model.TransactionStatus;
 
 /**
  * ====================================================================
@@ -29,5 +37,60 @@ import com.openpay.shared.model.TransactionEntity;
  * @since 1.0
  */
 public interface TransactionRepository extends JpaRepository<TransactionEntity, Long> {
-    // Extend with custom queries as needed (for API, worker, or shared use)
+
+    /**
+     * Returns in-progress transactions (queued, processing) created before the
+     * given time, oldest first. Collect requests awaiting approval
+     * (REQUESTED) are left out: their expiry is owned by the collect handler.
+     * <p>
+     * The status list is spelled as literal codes on purpose (QUEUED=1,
+     * PROCESSING=2): only then can the planner prove it implies the predicate
+     * of the partial index {@code idx_tx_active_created}.
+     * </p>
+     *
+     * @param before upper bound (exclusive) on {@code created_at}
+     * @param limit  maximum number of rows to return
+     * @return oldest in-progress transactions
+     */
+    @Query(value = "SELECT * FROM transactions "
+            + "WHERE status IN (1, 2) AND created_at < :before "
+            + "ORDER BY created_at LIMIT :limit", nativeQuery = true)
+    List<TransactionEntity> findActiveCreatedBefore(@Param("before") LocalDateTime before,
+            @Param("limit") int limit);
+
+    /**
+     * Next page of {@link #findActiveCreatedBefore(LocalDateTime, int)}:
+     * in-progress transactions created after {@code after} and before
+     * {@code before}, oldest first. Same literal status codes, same index.
+     *
+     * @param after  lower bound (exclusive) on {@code created_at}, the last
+     *               row of the previous page
+     * @param before upper bound (exclusive) on {@code created_at}
+     * @param limit  maximum number of rows to return
+     * @return next oldest in-progress transactions
+     */
+    @Query(value = "SELECT * FROM transactions "
+            + "WHERE status IN (1, 2) AND created_at > :after AND created_at < :before "
+            + "ORDER BY created_at LIMIT :limit", nativeQuery = true)
+    List<TransactionEntity> findActiveCreatedBetween(@Param("after") LocalDateTime after,
+            @Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /**
+     * Moves a transaction from {@code from} to {@code to} and sets its
+     * failure reason, but only if it is still in {@code from}. A concurrent
+     * writer that already moved the row wins; the caller sees 0.
+     *
+     * @param id     transaction id
+     * @param from   expected current status
+     * @param to     new status
+     * @param reason new failure reason, or null to clear it
+     * @param now    update timestamp
+     * @return 1 if the row was moved, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE TransactionEntity t SET t.status = :to, t.failureReason = :reason, t.updatedAt = :now "
+            + "WHERE t.id = :id AND t.status = :from")
+    int transition(@Param("id") Long id, @Param("from") TransactionStatus from,
+            @Param("to") TransactionStatus to, @Param("reason") FailureReason reason,
+            @Param("now") LocalDateTime now);
 }
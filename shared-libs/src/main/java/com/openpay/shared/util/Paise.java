@@ -0,0 +1,52 @@
+package com.openpay.shared.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * <h2>Paise</h2>
+ * <p>
+ * Conversions between rupee amounts as accepted by the public API
+ * ({@link BigDecimal}, two decimals) and the {@code long} paise carried through
+ * the database, the Redis stream payload and the worker.
+ * </p>
+ *
+ * <ul>
+ * <li>Convert exactly once, at the API boundary</li>
+ * <li>Never round: sub-paise input is rejected</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class Paise {
+
+    private Paise() {
+    }
+
+    /**
+     * Converts a rupee amount to paise.
+     *
+     * @param rupees amount in rupees with at most two decimals
+     * @return the same amount in paise
+     * @throws IllegalArgumentException if the amount has sub-paise precision or
+     *                                  overflows a long
+     */
+    public static long fromRupees(BigDecimal rupees) {
+        try {
+            return rupees.movePointRight(2).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must be a whole number of paise: " + rupees, e);
+        }
+    }
+
+    /**
+     * Converts paise back to rupees (for display and external formats only).
+     *
+     * @param paise amount in paise
+     * @return the same amount in rupees, scale 2
+     */
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+}
@@ -0,0 +1,102 @@
+package com.openpay.shared.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * <h2>StreamPartitioner</h2>
+ * <p>
+ * Maps a payment to one of N partition streams {@code transactions.main.{p}}
+ * by a stable hash of its sender UPI. All payments of one sender land on the
+ * same partition, so a single partition owner processes them in order, while
+ * different senders spread across partitions (and workers).
+ * </p>
+ *
+ * <ul>
+ * <li>The hash (FNV-1a 32 with a murmur3 finalizer over the lower-cased UTF-8
+ * handle) is part of the wire contract: api-service and worker-service must
+ * agree on it and on the partition count</li>
+ * <li>Changing the partition count re-maps senders; drain the streams
+ * first</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class StreamPartitioner {
+
+    /** Prefix of the partition streams; also the legacy single stream name. */
+    public static final String MAIN_STREAM = "transactions.main";
+
+    /**
+     * Lifecycle events of collect (pull) requests: {@code type=collect} when
+     * created, {@code collect-approved} / {@code collect-declined} when the
+     * payer answers. Not partitioned; consumed by the worker-side collect
+     * handler.
+     */
+    public static final String COLLECT_STREAM = "transactions.collect";
+
+    /** Redis key where api-service publishes the partition count it writes with. */
+    public static final String PARTITION_COUNT_KEY = "openpay:streams:partitions";
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private StreamPartitioner() {
+    }
+
+    /**
+     * Picks the partition for a sender.
+     *
+     * @param senderUpi  sender UPI handle (case-insensitive)
+     * @param partitions partition count, &gt; 0
+     * @return partition index in {@code [0, partitions)}
+     */
+    public static int partitionOf(String senderUpi, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive: " + partitions);
+        }
+        return Math.floorMod(hash(senderUpi.toLowerCase(Locale.ROOT)), partitions);
+    }
+
+    /**
+     * @param partition partition index
+     * @return the stream name of that partition
+     */
+    public static String streamFor(int partition) {
+        return MAIN_STREAM + "." + partition;
+    }
+
+    /**
+     * @param senderUpi  sender UPI handle
+     * @param partitions partition count
+     * @return the stream a payment from this sender must be written to
+     */
+    public static String streamForSender(String senderUpi, int partitions) {
+        return streamFor(partitionOf(senderUpi, partitions));
+    }
+
+    /**
+     * @param partitions partition count
+     * @return all partition stream names, in partition order
+     */
+    public static String[] allStreams(int partitions) {
+        return IntStream.range(0, partitions).mapToObj(StreamPartitioner::streamFor).toArray(String[]::new);
+    }
+
+    private static int hash(String key) {
+        int h = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        // murmur3 fmix32: FNV alone clusters on handles sharing a long suffix (@okhdfc...)
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
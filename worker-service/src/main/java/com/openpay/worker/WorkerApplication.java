@@ -3,7 +3,12 @@ package com.openpay.worker;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.openpay.worker.recon.ReconciliationProperties;
+import com.openpay.worker.retention.StreamRetentionProperties;
 
 /**
  * <h2>WorkerApplication</h2>
@@ -15,6 +20,9 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
  * <ul>
  * <li>Scans for all worker-specific components/configs</li>
  * <li>Should be launched as a background/job service, not as a web API</li>
+ * <li>Enables scheduling for background jobs (partition lease heartbeats and
+ * rebalancing, stream retention, settlement reconciliation, payout files,
+ * cold archive)</li>
  * </ul>
  *
  * <h3>Usage:</h3>
@@ -27,10 +35,12 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
  * @since 1.0
  */
 @SpringBootApplication
+@EnableScheduling
 @EnableJpaRepositories(basePackages = "com.openpay.shared.repository")
 @EntityScan(basePackages = {
     "com.openpay.shared.model"
 })
+@EnableConfigurationProperties({ StreamRetentionProperties.class, ReconciliationProperties.class })
 public class WorkerApplication {
     public static void main(String[] args) {
         SpringApplication.run(WorkerApplication.class, args);
@@ -0,0 +1,86 @@
+package com.openpay.worker.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.archive.ArchiveScanner.Group;
+import com.openpay.worker.archive.ArchiveScanner.Result;
+
+/**
+ * <h2>ArchiveQueryEndpoint</h2>
+ * <p>
+ * Actuator endpoint {@code archive} for ad-hoc analytics over the cold
+ * archive (exposed over JMX with the other worker endpoints). Without a
+ * query it lists the archived months; with one it runs a {@link ScanQuery}
+ * in its text form.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@Endpoint(id = "archive")
+@ConditionalOnProperty(name = "openpay.archive.enabled", havingValue = "true")
+public class ArchiveQueryEndpoint {
+
+    private final ColdArchive archive;
+
+    public ArchiveQueryEndpoint(ColdArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * @param query e.g. {@code transactions where status = 4 group by
+     *              failure_reason sum amount_paise}
+     */
+    @ReadOperation
+    public Map<String, Object> query(@Nullable String query) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        try {
+            if (query == null || query.isBlank()) {
+                response.put("months", archive.months(ColdArchive.TRANSACTIONS).stream().map(Object::toString)
+                        .toList());
+                return response;
+            }
+            ScanQuery scan = ScanQuery.parse(query);
+            Result result = archive.query(scan);
+            List<Map<String, Object>> groups = new ArrayList<>(result.groups().size());
+            for (Group group : result.groups()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                if (scan.groupBy() != null) {
+                    row.put(scan.groupBy(), group.key());
+                }
+                row.put("count", group.count());
+                for (int m = 0; m < scan.measures().size(); m++) {
+                    String measure = scan.measures().get(m);
+                    boolean any = group.mins()[m] <= group.maxs()[m];
+                    row.put("sum_" + measure, group.sums()[m]);
+                    row.put("min_" + measure, any ? group.mins()[m] : null);
+                    row.put("max_" + measure, any ? group.maxs()[m] : null);
+                }
+                groups.add(row);
+            }
+            response.put("groups", groups);
+            response.put("rowsMatched", result.rowsMatched());
+            response.put("blocksScanned", result.blocksScanned());
+            response.put("blocksSkipped", result.blocksSkipped());
+            response.put("elapsedMs", result.elapsed().toMillis());
+            return response;
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            response.put("error", e.getMessage());
+            return response;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.openpay.worker.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.openpay.worker.archive.Column.Encoding;
+import com.openpay.worker.archive.ScanQuery.Filter;
+
+/**
+ * <h2>ArchiveScanner</h2>
+ * <p>
+ * Answers a {@link ScanQuery} over any number of segments of one table.
+ * Blocks whose min/max cannot match a filter are skipped from the index
+ * alone; the others are memory-mapped and decoded by {@code parallelism}
+ * workers pulling blocks from a shared counter, each aggregating into its
+ * own groups, merged at the end.
+ * </p>
+ *
+ * <ul>
+ * <li>Filter columns are decoded first and narrow a row selection; group and
+ * measure columns are decoded only for blocks with matches</li>
+ * <li>A text filter absent from a segment's dictionary skips the whole
+ * segment</li>
+ * <li>NULL never matches a filter and is left out of sum, min and max;
+ * {@code count} counts rows; a sum overflowing {@code long} fails the scan
+ * with an {@link ArithmeticException}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class ArchiveScanner {
+
+    /**
+     * One group: its key (a {@link Long}, a {@link String} for dictionary
+     * columns, null for NULL or when not grouped) and per measure, in query
+     * order, sum, min and max.
+     */
+    public record Group(Object key, long count, long[] sums, long[] mins, long[] maxs) {
+    }
+
+    /**
+     * Groups largest first, plus what the scan touched.
+     */
+    public record Result(List<Group> groups, long rowsMatched, long blocksScanned, long blocksSkipped,
+            Duration elapsed) {
+    }
+
+    /**
+     * A query resolved against one segment's schema and dictionaries.
+     */
+    private record Plan(Segment segment, int[] filterColumns, long[] mins, long[] maxs, int groupColumn,
+            int[] measureColumns) {
+    }
+
+    private record Work(Plan plan, int block) {
+    }
+
+    private final ExecutorService pool;
+    private final int parallelism;
+
+    /**
+     * @param pool        runs the scan workers
+     * @param parallelism workers per scan
+     */
+    public ArchiveScanner(ExecutorService pool, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query names a column the
+     *                                  segments lack or cannot use it that way
+     */
+    public Result scan(List<Segment> segments, ScanQuery query) throws IOException {
+        long started = System.nanoTime();
+        List<Work> work = new ArrayList<>();
+        long skipped = 0;
+        for (Segment segment : segments) {
+            Plan plan = plan(segment, query);
+            for (int b = 0; b < segment.blockCount(); b++) {
+                if (plan != null && mayMatch(plan, segment.block(b))) {
+                    work.add(new Work(plan, b));
+                } else {
+                    skipped++;
+                }
+            }
+        }
+
+        int measures = query.measures().size();
+        AtomicInteger next = new AtomicInteger();
+        List<Future<Map<Object, Acc>>> workers = new ArrayList<>(parallelism);
+        for (int w = 0; w < Math.min(parallelism, Math.max(1, work.size())); w++) {
+            workers.add(pool.submit(() -> {
+                Map<Object, Acc> groups = new HashMap<>();
+                for (int i = next.getAndIncrement(); i < work.size(); i = next.getAndIncrement()) {
+                    scanBlock(work.get(i), measures, groups);
+                }
+                return groups;
+            }));
+        }
+        Map<Object, Acc> merged = new HashMap<>();
+        try {
+            for (Future<Map<Object, Acc>> worker : workers) {
+                worker.get().forEach((key, acc) -> merged.merge(key, acc, Acc::merge));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(w -> w.cancel(true));
+            throw new IOException("Archive scan interrupted", e);
+        } catch (ExecutionException e) {
+            workers.forEach(w -> w.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Archive scan failed", e.getCause());
+        }
+
+        long matched = 0;
+        List<Group> groups = new ArrayList<>(merged.size());
+        for (Map.Entry<Object, Acc> entry : merged.entrySet()) {
+            Acc acc = entry.getValue();
+            matched += acc.count;
+            groups.add(new Group(entry.getKey(), acc.count, acc.sums, acc.mins, acc.maxs));
+        }
+        groups.sort(Comparator.comparingLong(Group::count).reversed());
+        return new Result(List.copyOf(groups.subList(0, Math.min(query.limit(), groups.size()))), matched,
+                work.size(), skipped, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    /**
+     * @return null if no row of the segment can match
+     */
+    private static Plan plan(Segment segment, ScanQuery query) {
+        List<Filter> filters = query.filters();
+        int[] filterColumns = new int[filters.size()];
+        long[] mins = new long[filters.size()];
+        long[] maxs = new long[filters.size()];
+        boolean possible = true;
+        for (int f = 0; f < filters.size(); f++) {
+            Filter filter = filters.get(f);
+            int column = column(segment, filter.column());
+            Encoding encoding = segment.columns().get(column).encoding();
+            filterColumns[f] = column;
+            if (filter.text() != null) {
+                if (encoding != Encoding.DICT) {
+                    throw new IllegalArgumentException(filter.column() + " is not a text column");
+                }
+                long code = segment.code(column, filter.text());
+                possible &= code > 0;
+                mins[f] = code;
+                maxs[f] = code;
+            } else {
+                if (encoding == Encoding.DICT || encoding == Encoding.BYTES32) {
+                    throw new IllegalArgumentException(filter.column() + " only takes a quoted text value");
+                }
+                mins[f] = Math.max(filter.min(), Column.NULL + 1);
+                maxs[f] = filter.max();
+            }
+        }
+        int groupColumn = -1;
+        if (query.groupBy() != null) {
+            groupColumn = column(segment, query.groupBy());
+            if (!segment.columns().get(groupColumn).encoding().numeric()) {
+                throw new IllegalArgumentException("Cannot group by " + query.groupBy());
+            }
+        }
+        int[] measureColumns = new int[query.measures().size()];
+        for (int m = 0; m < measureColumns.length; m++) {
+            measureColumns[m] = column(segment, query.measures().get(m));
+            Encoding encoding = segment.columns().get(measureColumns[m]).encoding();
+            if (encoding == Encoding.DICT || encoding == Encoding.BYTES32) {
+                throw new IllegalArgumentException("Cannot sum " + query.measures().get(m));
+            }
+        }
+        return possible ? new Plan(segment, filterColumns, mins, maxs, groupColumn, measureColumns) : null;
+    }
+
+    private static int column(Segment segment, String name) {
+        int column = segment.columnIndex(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("Unknown column " + name + " in " + segment.path().getFileName());
+        }
+        return column;
+    }
+
+    private static boolean mayMatch(Plan plan, Segment.Block block) {
+        for (int f = 0; f < plan.filterColumns.length; f++) {
+            int column = plan.filterColumns[f];
+            if (block.mins()[column] > plan.maxs[f] || block.maxs()[column] < plan.mins[f]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void scanBlock(Work work, int measures, Map<Object, Acc> groups) throws IOException {
+        Plan plan = work.plan;
+        Segment segment = plan.segment;
+        ByteBuffer mapped = segment.map(work.block);
+        int rows = segment.block(work.block).rows();
+        long[] values = new long[rows];
+        int[] selection = new int[rows];
+        int selected = rows;
+        for (int r = 0; r < rows; r++) {
+            selection[r] = r;
+        }
+        for (int f = 0; f < plan.filterColumns.length && selected > 0; f++) {
+            segment.decode(mapped, work.block, plan.filterColumns[f], values);
+            long min = plan.mins[f];
+            long max = plan.maxs[f];
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                long value = values[selection[i]];
+                if (value >= min && value <= max) {
+                    selection[kept++] = selection[i];
+                }
+            }
+            selected = kept;
+        }
+        if (selected == 0) {
+            return;
+        }
+
+        long[] keys = null;
+        if (plan.groupColumn >= 0) {
+            keys = new long[rows];
+            segment.decode(mapped, work.block, plan.groupColumn, keys);
+        }
+        long[][] measured = new long[measures][];
+        for (int m = 0; m < measures; m++) {
+            measured[m] = m == 0 ? values : new long[rows];
+            segment.decode(mapped, work.block, plan.measureColumns[m], measured[m]);
+        }
+
+        Map<Long, Acc> local = new HashMap<>();
+        for (int i = 0; i < selected; i++) {
+            int r = selection[i];
+            Acc acc = local.computeIfAbsent(keys == null ? 0L : keys[r], k -> new Acc(measures));
+            acc.count++;
+            for (int m = 0; m < measures; m++) {
+                long value = measured[m][r];
+                if (value != Column.NULL) {
+                    acc.sums[m] = Math.addExact(acc.sums[m], value);
+                    acc.mins[m] = Math.min(acc.mins[m], value);
+                    acc.maxs[m] = Math.max(acc.maxs[m], value);
+                }
+            }
+        }
+        boolean text = plan.groupColumn >= 0
+                && segment.columns().get(plan.groupColumn).encoding() == Encoding.DICT;
+        for (Map.Entry<Long, Acc> entry : local.entrySet()) {
+            long key = entry.getKey();
+            Object groupKey;
+            if (keys == null) {
+                groupKey = null;
+            } else if (text) {
+                groupKey = segment.text(plan.groupColumn, key);
+            } else {
+                groupKey = key == Column.NULL ? null : key;
+            }
+            groups.merge(groupKey, entry.getValue(), Acc::merge);
+        }
+    }
+
+    /**
+     * Running aggregate of one group.
+     */
+    private static final class Acc {
+
+        long count;
+        final long[] sums;
+        final long[] mins;
+        final long[] maxs;
+
+        Acc(int measures) {
+            sums = new long[measures];
+            mins = new long[measures];
+            maxs = new long[measures];
+            Arrays.fill(mins, Long.MAX_VALUE);
+            Arrays.fill(maxs, Long.MIN_VALUE);
+        }
+
+        Acc merge(Acc other) {
+            count += other.count;
+            for (int m = 0; m < sums.length; m++) {
+                sums[m] = Math.addExact(sums[m], other.sums[m]);
+                mins[m] = Math.min(mins[m], other.mins[m]);
+                maxs[m] = Math.max(maxs[m], other.maxs[m]);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.openpay.worker.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.archive.Column.Encoding;
+import com.openpay.worker.archive.ArchiveScanner.Result;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>ColdArchive</h2>
+ * <p>
+ * The local store of archived months: one directory per month,
+ * {@code <archive-dir>/YYYY-MM/}, holding one segment per table
+ * ({@code transactions.seg}, {@code history.seg}), and the entry point for
+ * queries over all of them.
+ * </p>
+ *
+ * <ul>
+ * <li>Segments are opened per query and closed after it; only footers are
+ * read up front</li>
+ * <li>Only months present on this host are seen; point {@code archive-dir}
+ * at shared storage when the leader can move</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "openpay.archive.enabled", havingValue = "true")
+public class ColdArchive {
+
+    public static final String TRANSACTIONS = "transactions";
+    public static final String HISTORY = "history";
+
+    /** Columns of {@code transactions.seg}, in id order; times in epoch micros. */
+    public static final List<Column> TRANSACTION_COLUMNS = List.of(
+            new Column("id", Encoding.DELTA),
+            new Column("sender_upi", Encoding.DICT),
+            new Column("receiver_upi", Encoding.DICT),
+            new Column("amount_paise", Encoding.PLAIN),
+            new Column("status", Encoding.INT8),
+            new Column("failure_reason", Encoding.INT8),
+            new Column("created_at", Encoding.DELTA),
+            new Column("updated_at", Encoding.DELTA));
+
+    /** Columns of {@code history.seg}, in (transaction_id, changed_at) order. */
+    public static final List<Column> HISTORY_COLUMNS = List.of(
+            new Column("history_id", Encoding.DELTA),
+            new Column("transaction_id", Encoding.DELTA),
+            new Column("prev_status", Encoding.INT8),
+            new Column("new_status", Encoding.INT8),
+            new Column("reason", Encoding.INT8),
+            new Column("changed_at", Encoding.DELTA),
+            new Column("chain", Encoding.INT8),
+            new Column("chain_seq", Encoding.DELTA),
+            new Column("row_hash", Encoding.BYTES32));
+
+    private final Path root;
+    private final ExecutorService pool;
+    private final ArchiveScanner scanner;
+
+    /**
+     * @param root        archive directory
+     * @param parallelism blocks scanned at a time per query
+     */
+    public ColdArchive(@Value("${openpay.archive.dir:./archive}") Path root,
+            @Value("${openpay.archive.scan.parallelism:4}") int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("openpay.archive.scan.parallelism must be positive");
+        }
+        this.root = root;
+        this.pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "archive-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scanner = new ArchiveScanner(pool, parallelism);
+    }
+
+    /**
+     * @return the scanner behind {@link #query(ScanQuery)}, for segments the
+     *         caller holds open
+     */
+    public ArchiveScanner scanner() {
+        return scanner;
+    }
+
+    /**
+     * @return directory of {@code month}'s segments (may not exist yet)
+     */
+    public Path directory(YearMonth month) {
+        return root.resolve(month.toString());
+    }
+
+    /**
+     * @return path of one table's segment of {@code month}
+     */
+    public Path segment(YearMonth month, String table) {
+        return directory(month).resolve(table + ".seg");
+    }
+
+    /**
+     * @return months with a segment of {@code table}, oldest first
+     */
+    public List<YearMonth> months(String table) throws IOException {
+        List<YearMonth> months = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return months;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                try {
+                    YearMonth month = YearMonth.parse(dir.getFileName().toString());
+                    if (Files.isRegularFile(segment(month, table))) {
+                        months.add(month);
+                    }
+                } catch (DateTimeParseException e) {
+                    // not a month directory
+                }
+            }
+        }
+        months.sort(null);
+        return months;
+    }
+
+    /**
+     * Runs {@code query} over every archived month of its table.
+     *
+     * @throws IllegalArgumentException for an unknown table or column
+     */
+    public Result query(ScanQuery query) throws IOException {
+        if (!query.table().equals(TRANSACTIONS) && !query.table().equals(HISTORY)) {
+            throw new IllegalArgumentException("Unknown table " + query.table() + "; use " + TRANSACTIONS
+                    + " or " + HISTORY);
+        }
+        return scan(months(query.table()), query);
+    }
+
+    /**
+     * Runs {@code query} over the given months of its table.
+     */
+    public Result scan(List<YearMonth> months, ScanQuery query) throws IOException {
+        List<Segment> segments = new ArrayList<>(months.size());
+        try {
+            for (YearMonth month : months) {
+                segments.add(Segment.open(segment(month, query.table())));
+            }
+            return scanner.scan(segments, query);
+        } finally {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
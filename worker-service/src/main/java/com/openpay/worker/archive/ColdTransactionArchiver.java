@@ -0,0 +1,427 @@
+package com.openpay.worker.archive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openpay.worker.archive.ArchiveScanner.Group;
+import com.openpay.worker.archive.ArchiveScanner.Result;
+import com.openpay.worker.archive.ScanQuery.Filter;
+import com.openpay.worker.leader.LeaderElection;
+import com.openpay.worker.recon.TransactionIdWindow;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <h2>ColdTransactionArchiver</h2>
+ * <p>
+ * Moves closed months of {@code transactions} and {@code transaction_history}
+ * out of Postgres into {@link ColdArchive} segments. Runs on the elected
+ * leader only, one month per run, oldest first: the next month is the one
+ * after the last recorded segment.
+ * </p>
+ *
+ * <ul>
+ * <li>A month is closed once it is {@code keep-months} full months old, no
+ * transaction created up to its end is still open and all its history is
+ * sealed into the audit chains</li>
+ * <li>Both tables are exported from one repeatable-read snapshot through
+ * id-ordered cursors over the month's id range ({@link TransactionIdWindow});
+ * the written segments are re-read, checksummed and re-counted before the
+ * month is recorded in {@code archive_segments}</li>
+ * <li>The purge then deletes the month in id batches, each in its own DB
+ * transaction that rolls back unless it deleted exactly the rows and amount
+ * the segments hold for that batch; an interrupted purge resumes on the
+ * next run</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "openpay.archive.enabled", havingValue = "true")
+public class ColdTransactionArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(ColdTransactionArchiver.class);
+
+    private static final String LAST_RECORDED = "SELECT month, end_id FROM archive_segments "
+            + "ORDER BY end_id DESC LIMIT 1";
+
+    private static final String FIRST_FROM = "SELECT created_at FROM transactions WHERE id >= ? ORDER BY id LIMIT 1";
+
+    private static final String OPEN_BEFORE = "SELECT EXISTS (SELECT 1 FROM transactions "
+            + "WHERE status IN (1, 2, 5) AND created_at < ?)";
+
+    private static final String UNSEALED_BEFORE = "SELECT EXISTS (SELECT 1 FROM transaction_history "
+            + "WHERE chain_seq IS NULL AND transaction_id < ?)";
+
+    private static final String EXPORT_TRANSACTIONS = "SELECT id, sender_upi, receiver_upi, amount_paise, status, "
+            + "failure_reason, created_at, updated_at FROM transactions WHERE id >= ? AND id < ? ORDER BY id";
+
+    private static final String EXPORT_HISTORY = "SELECT history_id, transaction_id, prev_status, new_status, "
+            + "reason, changed_at, chain, chain_seq, row_hash FROM transaction_history "
+            + "WHERE transaction_id >= ? AND transaction_id < ? ORDER BY transaction_id, changed_at";
+
+    private static final String UNPURGED = "SELECT month FROM archive_segments WHERE purged_at IS NULL ORDER BY month";
+
+    private static final String RECORDED = "SELECT first_id, end_id FROM archive_segments WHERE month = ?";
+
+    private static final String RECORD = "INSERT INTO archive_segments "
+            + "(month, first_id, end_id, transactions, history_rows, amount_paise, directory) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String PURGE_HISTORY = "WITH d AS (DELETE FROM transaction_history "
+            + "WHERE transaction_id >= ? AND transaction_id < ? RETURNING 1) SELECT count(*) FROM d";
+
+    private static final String PURGE_TRANSACTIONS = "WITH d AS (DELETE FROM transactions "
+            + "WHERE id >= ? AND id < ? RETURNING amount_paise) "
+            + "SELECT count(*) AS n, coalesce(sum(amount_paise), 0) AS paise FROM d";
+
+    private static final String MARK_PURGED = "UPDATE archive_segments SET purged_at = now() WHERE month = ?";
+
+    /** Margin past a month's end in which no open transaction may remain. */
+    private static final long OPEN_MARGIN_HOURS = 1;
+
+    /**
+     * What one month's export wrote.
+     */
+    record Export(long transactions, long amountPaise, long historyRows) {
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionIdWindow idWindow;
+    private final LeaderElection leaderElection;
+    private final ColdArchive archive;
+    private final int keepMonths;
+    private final int blockRows;
+    private final int fetchSize;
+    private final int purgeBatch;
+    private final Counter archived;
+    private final Counter purged;
+    private final Counter failures;
+    private final Timer duration;
+
+    /**
+     * @param dataSource          primary datasource (export cursors)
+     * @param jdbcTemplate        JDBC template bound to the primary datasource
+     * @param transactionTemplate one DB transaction per purge batch
+     * @param idWindow            maps a month to an id range
+     * @param leaderElection      runs only on the leader
+     * @param archive             segment store
+     * @param meterRegistry       metrics registry
+     * @param keepMonths          full months kept in Postgres
+     * @param blockRows           rows per segment block
+     * @param fetchSize           rows fetched per round trip by the export
+     * @param purgeBatch          transaction ids deleted per DB transaction
+     */
+    public ColdTransactionArchiver(DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            TransactionIdWindow idWindow,
+            LeaderElection leaderElection,
+            ColdArchive archive,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.archive.keep-months:3}") int keepMonths,
+            @Value("${openpay.archive.block-rows:65536}") int blockRows,
+            @Value("${openpay.archive.fetch-size:10000}") int fetchSize,
+            @Value("${openpay.archive.purge-batch:10000}") int purgeBatch) {
+        if (keepMonths < 1 || blockRows <= 0 || fetchSize <= 0 || purgeBatch <= 0) {
+            throw new IllegalArgumentException("openpay.archive.keep-months must be at least 1, "
+                    + "block-rows, fetch-size and purge-batch positive");
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idWindow = idWindow;
+        this.leaderElection = leaderElection;
+        this.archive = archive;
+        this.keepMonths = keepMonths;
+        this.blockRows = blockRows;
+        this.fetchSize = fetchSize;
+        this.purgeBatch = purgeBatch;
+        this.archived = meterRegistry.counter("openpay.archive.transactions");
+        this.purged = meterRegistry.counter("openpay.archive.purged");
+        this.failures = meterRegistry.counter("openpay.archive.failures");
+        this.duration = meterRegistry.timer("openpay.archive.duration");
+    }
+
+    /**
+     * Scheduled entry point: finishes interrupted purges, then archives and
+     * purges the oldest closed month. Never throws.
+     */
+    @Scheduled(cron = "${openpay.archive.cron:0 0 3 * * *}", scheduler = "jobScheduler")
+    public void run() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            for (LocalDate month : jdbcTemplate.queryForList(UNPURGED, LocalDate.class)) {
+                purge(YearMonth.from(month));
+            }
+            YearMonth month = nextMonth();
+            if (month != null && month.isBefore(YearMonth.now().minusMonths(keepMonths)) && archive(month)) {
+                purge(month);
+            }
+        } catch (IOException | DataAccessException | IllegalStateException e) {
+            failures.increment();
+            log.error("[ARCHIVE] Run failed: {}", e.getMessage());
+        } finally {
+            duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * The month to archive next: that of the first transaction past the last
+     * recorded segment ({@code max(end_id)}), never the last recorded month
+     * again. Rows left below that id (outside every recorded month's range)
+     * therefore never hold the archive back.
+     *
+     * @return next month, or null if there is nothing past the archive
+     */
+    private YearMonth nextMonth() {
+        List<Map.Entry<LocalDate, Long>> last = jdbcTemplate.query(LAST_RECORDED,
+                (rs, n) -> Map.entry(rs.getObject(1, LocalDate.class), rs.getLong(2)));
+        long fromId = last.isEmpty() ? Long.MIN_VALUE : last.get(0).getValue();
+        List<Timestamp> first = jdbcTemplate.queryForList(FIRST_FROM, Timestamp.class, fromId);
+        if (first.isEmpty() || first.get(0) == null) {
+            return null;
+        }
+        YearMonth month = YearMonth.from(first.get(0).toInstant().atZone(ZoneId.systemDefault()));
+        if (!last.isEmpty()) {
+            YearMonth afterLast = YearMonth.from(last.get(0).getKey()).plusMonths(1);
+            month = month.isBefore(afterLast) ? afterLast : month;
+        }
+        return month;
+    }
+
+    /**
+     * Writes, verifies and records the segments of {@code month}, unless it
+     * is recorded already.
+     *
+     * @return whether the month is archived (now or before)
+     */
+    boolean archive(YearMonth month) throws IOException {
+        LocalDate first = month.atDay(1);
+        if (!jdbcTemplate.queryForList(RECORDED, first).isEmpty()) {
+            return true;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        Instant from = first.atStartOfDay(zone).toInstant();
+        Instant to = month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant();
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(OPEN_BEFORE, Boolean.class,
+                Timestamp.from(to.plus(OPEN_MARGIN_HOURS, ChronoUnit.HOURS))))) {
+            log.warn("[ARCHIVE] {} not archived: transactions created up to its end are still open", month);
+            return false;
+        }
+        TransactionIdWindow.Range range = idWindow.between(from, to);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(UNSEALED_BEFORE, Boolean.class, range.toId()))) {
+            log.warn("[ARCHIVE] {} not archived: history not yet sealed into the audit chains", month);
+            return false;
+        }
+
+        Path directory = archive.directory(month);
+        Files.createDirectories(directory);
+        Path transactions = archive.segment(month, ColdArchive.TRANSACTIONS);
+        Path history = archive.segment(month, ColdArchive.HISTORY);
+        Export export = export(range, transactions, history);
+        verify(month, export);
+        transactions.toFile().setReadOnly();
+        history.toFile().setReadOnly();
+
+        jdbcTemplate.update(RECORD, first, range.fromId(), range.toId(), export.transactions(),
+                export.historyRows(), export.amountPaise(), directory.toAbsolutePath().toString());
+        archived.increment(export.transactions());
+        log.info("[ARCHIVE] {}: {} transactions ({} paise) and {} history rows in ids [{}, {}), {} + {} bytes",
+                month, export.transactions(), export.amountPaise(), export.historyRows(), range.fromId(),
+                range.toId(), Files.size(transactions), Files.size(history));
+        return true;
+    }
+
+    /**
+     * Deletes an archived month from Postgres, batch by batch.
+     */
+    void purge(YearMonth month) throws IOException {
+        Map<String, Object> recorded = jdbcTemplate.queryForMap(RECORDED, month.atDay(1));
+        long firstId = ((Number) recorded.get("first_id")).longValue();
+        long endId = ((Number) recorded.get("end_id")).longValue();
+        long deleted = 0;
+        try (Segment transactions = Segment.open(archive.segment(month, ColdArchive.TRANSACTIONS));
+                Segment history = Segment.open(archive.segment(month, ColdArchive.HISTORY))) {
+            for (long from = firstId; from < endId; from += purgeBatch) {
+                long to = Math.min(endId, from + purgeBatch);
+                long[] expected = count(transactions, "id", "amount_paise", from, to);
+                long expectedHistory = count(history, "transaction_id", null, from, to)[0];
+                deleted += purgeBatch(from, to, expected[0], expected[1], expectedHistory);
+            }
+        }
+        jdbcTemplate.update(MARK_PURGED, month.atDay(1));
+        purged.increment(deleted);
+        log.info("[ARCHIVE] {}: purged {} transactions from Postgres", month, deleted);
+    }
+
+    private long purgeBatch(long from, long to, long transactions, long amountPaise, long historyRows) {
+        Long deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('openpay.archive_purge', 'on', true)", String.class);
+            Long history = jdbcTemplate.queryForObject(PURGE_HISTORY, Long.class, from, to);
+            Map<String, Object> tx = jdbcTemplate.queryForMap(PURGE_TRANSACTIONS, from, to);
+            long rows = ((Number) tx.get("n")).longValue();
+            long paise = ((Number) tx.get("paise")).longValue();
+            boolean alreadyPurged = rows == 0 && history != null && history == 0;
+            if (!alreadyPurged && (rows != transactions || paise != amountPaise || history == null
+                    || history != historyRows)) {
+                throw new IllegalStateException("Purge of ids [" + from + ", " + to + ") deleted " + rows
+                        + " transactions / " + paise + " paise / " + history + " history rows, archived "
+                        + transactions + " / " + amountPaise + " / " + historyRows + "; rolled back");
+            }
+            return rows;
+        });
+        return deleted == null ? 0 : deleted;
+    }
+
+    /**
+     * @return rows of {@code segment} with {@code idColumn} in
+     *         {@code [from, to)}, and the sum of {@code measure} (0 if null)
+     */
+    private long[] count(Segment segment, String idColumn, String measure, long from, long to)
+            throws IOException {
+        ScanQuery query = new ScanQuery(segment.path().getFileName().toString(),
+                List.of(Filter.range(idColumn, from, to - 1)), null, measure == null ? List.of() : List.of(measure),
+                1);
+        Result result = archive.scanner().scan(List.of(segment), query);
+        if (result.groups().isEmpty()) {
+            return new long[] { 0, 0 };
+        }
+        Group all = result.groups().get(0);
+        return new long[] { all.count(), measure == null ? 0 : all.sums()[0] };
+    }
+
+    private Export export(TransactionIdWindow.Range range, Path transactionsPath, Path historyPath)
+            throws IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            int isolation = connection.getTransactionIsolation();
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                long transactions = 0;
+                long amountPaise = 0;
+                try (SegmentWriter out = new SegmentWriter(transactionsPath, ColdArchive.TRANSACTION_COLUMNS,
+                        blockRows);
+                        ResultSet rows = query(connection, EXPORT_TRANSACTIONS, range)) {
+                    while (rows.next()) {
+                        long amount = rows.getLong(4);
+                        out.set(0, rows.getLong(1));
+                        out.set(1, rows.getString(2));
+                        out.set(2, rows.getString(3));
+                        out.set(3, amount);
+                        out.set(4, rows.getShort(5));
+                        out.set(5, nullableShort(rows, 6));
+                        out.set(6, micros(rows, 7));
+                        out.set(7, micros(rows, 8));
+                        out.endRow();
+                        amountPaise = Math.addExact(amountPaise, amount);
+                    }
+                    out.finish();
+                    transactions = out.rows();
+                }
+                long historyRows;
+                try (SegmentWriter out = new SegmentWriter(historyPath, ColdArchive.HISTORY_COLUMNS, blockRows);
+                        ResultSet rows = query(connection, EXPORT_HISTORY, range)) {
+                    while (rows.next()) {
+                        out.set(0, rows.getLong(1));
+                        out.set(1, rows.getLong(2));
+                        out.set(2, rows.getShort(3));
+                        out.set(3, rows.getShort(4));
+                        out.set(4, nullableShort(rows, 5));
+                        out.set(5, micros(rows, 6));
+                        out.set(6, nullableShort(rows, 7));
+                        long seq = rows.getLong(8);
+                        out.set(7, rows.wasNull() ? Column.NULL : seq);
+                        out.set(8, rows.getBytes(9));
+                        out.endRow();
+                    }
+                    out.finish();
+                    historyRows = out.rows();
+                }
+                return new Export(transactions, amountPaise, historyRows);
+            } finally {
+                connection.rollback();
+                connection.setTransactionIsolation(isolation);
+                connection.setReadOnly(false);
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Archive export failed", e);
+        }
+    }
+
+    /**
+     * Re-reads both segments: every chunk checksum, and the row counts and
+     * amount total against what was exported.
+     */
+    private void verify(YearMonth month, Export export) throws IOException {
+        try (Segment transactions = Segment.open(archive.segment(month, ColdArchive.TRANSACTIONS));
+                Segment history = Segment.open(archive.segment(month, ColdArchive.HISTORY))) {
+            transactions.verify();
+            history.verify();
+            long[] tx = count(transactions, "id", "amount_paise", Long.MIN_VALUE + 1, Long.MAX_VALUE);
+            long historyRows = count(history, "transaction_id", null, Long.MIN_VALUE + 1, Long.MAX_VALUE)[0];
+            if (tx[0] != export.transactions() || tx[1] != export.amountPaise()
+                    || historyRows != export.historyRows()) {
+                throw new IOException("Segments of " + month + " do not read back as written");
+            }
+        }
+    }
+
+    private ResultSet query(Connection connection, String sql, TransactionIdWindow.Range range)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setFetchSize(fetchSize);
+        statement.setLong(1, range.fromId());
+        statement.setLong(2, range.toId());
+        statement.closeOnCompletion();
+        return statement.executeQuery();
+    }
+
+    private static long nullableShort(ResultSet rows, int column) throws SQLException {
+        short value = rows.getShort(column);
+        return rows.wasNull() ? Column.NULL : value;
+    }
+
+    private static long micros(ResultSet rows, int column) throws SQLException {
+        OffsetDateTime time = rows.getObject(column, OffsetDateTime.class);
+        return time == null ? Column.NULL : ChronoUnit.MICROS.between(Instant.EPOCH, time.toInstant());
+    }
+}
@@ -0,0 +1,53 @@
+package com.openpay.worker.archive;
+
+/**
+ * <h2>Column</h2>
+ * <p>
+ * One column of a columnar segment: its name and how its values are encoded
+ * on disk. Every encoding except {@link Encoding#BYTES32} decodes to
+ * {@code long}, with {@link #NULL} standing for SQL NULL.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public record Column(String name, Encoding encoding) {
+
+    /** Decoded value of a NULL; never matches a filter, never aggregated. */
+    public static final long NULL = Long.MIN_VALUE;
+
+    /**
+     * On-disk encoding of a column chunk (one block of one column).
+     */
+    public enum Encoding {
+
+        /** 8-byte little-endian values; amounts in paise. */
+        PLAIN,
+
+        /**
+         * Varint of the zigzag difference to the previous non-null value,
+         * plus one (0 is NULL); ids and timestamps in microseconds, which
+         * mostly ascend, take one to three bytes.
+         */
+        DELTA,
+
+        /** One byte per value in [-127, 127], -128 is NULL; status codes. */
+        INT8,
+
+        /**
+         * Varint index into the segment's dictionary of the column, plus one
+         * (0 is NULL); UPI handles, repeated across many rows.
+         */
+        DICT,
+
+        /** Raw 32 bytes per value, not filterable; hashes. */
+        BYTES32;
+
+        /**
+         * @return whether values decode to {@code long}
+         */
+        public boolean numeric() {
+            return this != BYTES32;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.openpay.worker.archive;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h2>ScanQuery</h2>
+ * <p>
+ * A filter/aggregate query over one archived table: rows matching every
+ * filter are counted, optionally per value of one column, with sum, min and
+ * max of the measure columns.
+ * </p>
+ *
+ * <h3>Text form ({@link #parse(String)}):</h3>
+ *
+ * <pre>
+ * transactions where created_at &gt;= 2026-01-01 and status = 3
+ *     group by receiver_upi sum amount_paise limit 20
+ * </pre>
+ *
+ * <ul>
+ * <li>Operators {@code = < <= > >=}; values are integers, quoted strings
+ * (dictionary columns, {@code =} only), or dates / ISO instants, which
+ * become epoch microseconds (dates at the server time zone's midnight)</li>
+ * <li>Groups are returned largest first, at most {@code limit}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public record ScanQuery(String table, List<Filter> filters, String groupBy, List<String> measures, int limit) {
+
+    /** Groups returned when no limit is given. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * Inclusive range {@code [min, max]} on a numeric column, or equality
+     * with {@code text} on a dictionary column.
+     */
+    public record Filter(String column, long min, long max, String text) {
+
+        public static Filter range(String column, long min, long max) {
+            return new Filter(column, min, max, null);
+        }
+
+        public static Filter equalTo(String column, long value) {
+            return new Filter(column, value, value, null);
+        }
+
+        public static Filter equalTo(String column, String text) {
+            return new Filter(column, 0, 0, text);
+        }
+    }
+
+    public ScanQuery {
+        filters = List.copyOf(filters);
+        measures = List.copyOf(measures);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code text} does not follow the
+     *                                  form above
+     */
+    public static ScanQuery parse(String text) {
+        List<String> tokens = tokenize(text);
+        int[] at = { 0 };
+        String table = word(tokens, at, "table name");
+        List<Filter> filters = new ArrayList<>();
+        String groupBy = null;
+        List<String> measures = new ArrayList<>();
+        int limit = DEFAULT_LIMIT;
+        if (keyword(tokens, at, "where")) {
+            do {
+                filters.add(condition(tokens, at));
+            } while (keyword(tokens, at, "and"));
+        }
+        if (keyword(tokens, at, "group")) {
+            expect(tokens, at, "by");
+            groupBy = word(tokens, at, "group column");
+        }
+        if (keyword(tokens, at, "sum")) {
+            do {
+                measures.add(word(tokens, at, "measure column"));
+            } while (keyword(tokens, at, ","));
+        }
+        if (keyword(tokens, at, "limit")) {
+            limit = (int) number(word(tokens, at, "limit"));
+        }
+        if (at[0] < tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + tokens.get(at[0]) + "'");
+        }
+        return new ScanQuery(table, filters, groupBy, measures, limit);
+    }
+
+    private static Filter condition(List<String> tokens, int[] at) {
+        String column = word(tokens, at, "column");
+        String op = word(tokens, at, "operator");
+        String value = word(tokens, at, "value");
+        if (value.startsWith("'")) {
+            if (!op.equals("=")) {
+                throw new IllegalArgumentException("Only = applies to text values");
+            }
+            return Filter.equalTo(column, value.substring(1, value.length() - 1));
+        }
+        long v = value(value);
+        return switch (op) {
+            case "=" -> Filter.equalTo(column, v);
+            case "<" -> Filter.range(column, Long.MIN_VALUE + 1, Math.subtractExact(v, 1));
+            case "<=" -> Filter.range(column, Long.MIN_VALUE + 1, v);
+            case ">" -> Filter.range(column, Math.addExact(v, 1), Long.MAX_VALUE);
+            case ">=" -> Filter.range(column, v, Long.MAX_VALUE);
+            default -> throw new IllegalArgumentException("Unknown operator '" + op + "'");
+        };
+    }
+
+    private static long value(String value) {
+        if (value.indexOf('-', 1) < 0) {
+            return number(value);
+        }
+        try {
+            Instant instant = value.length() == 10
+                    ? LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant()
+                    : Instant.parse(value);
+            return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not a date or instant: " + value);
+        }
+    }
+
+    private static long number(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static boolean keyword(List<String> tokens, int[] at, String keyword) {
+        if (at[0] < tokens.size() && tokens.get(at[0]).equalsIgnoreCase(keyword)) {
+            at[0]++;
+            return true;
+        }
+        return false;
+    }
+
+    private static void expect(List<String> tokens, int[] at, String keyword) {
+        if (!keyword(tokens, at, keyword)) {
+            throw new IllegalArgumentException("Expected '" + keyword + "'");
+        }
+    }
+
+    private static String word(List<String> tokens, int[] at, String what) {
+        if (at[0] >= tokens.size()) {
+            throw new IllegalArgumentException("Missing " + what);
+        }
+        return tokens.get(at[0]++);
+    }
+
+    /**
+     * Words, quoted strings (quotes kept), operators and commas.
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                int end = text.indexOf('\'', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated string");
+                }
+                tokens.add(text.substring(i, end + 1));
+                i = end + 1;
+            } else if (c == '<' || c == '>' || c == '=') {
+                int end = i + 1 < text.length() && text.charAt(i + 1) == '=' && c != '=' ? i + 2 : i + 1;
+                tokens.add(text.substring(i, end));
+                i = end;
+            } else if (c == ',') {
+                tokens.add(",");
+                i++;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end))
+                        && "<>=,'".indexOf(text.charAt(end)) < 0) {
+                    end++;
+                }
+                tokens.add(text.substring(i, end));
+                i = end;
+            }
+        }
+        return tokens;
+    }
+}
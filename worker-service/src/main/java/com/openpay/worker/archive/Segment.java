@@ -0,0 +1,301 @@
+package com.openpay.worker.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import com.openpay.worker.archive.Column.Encoding;
+
+/**
+ * <h2>Segment</h2>
+ * <p>
+ * Read side of a {@link SegmentWriter} file. Opening reads only the footer
+ * (schema, dictionaries, block index); blocks are memory-mapped one at a
+ * time by whoever scans them and decoded column by column.
+ * </p>
+ *
+ * <ul>
+ * <li>Thread-safe: any number of scan tasks may map and decode blocks of one
+ * segment concurrently</li>
+ * <li>The footer is checked against its CRC-32C on open; {@link #verify()}
+ * checks every column chunk</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class Segment implements Closeable {
+
+    /**
+     * Index entry of one block: per column, where its chunk is and the
+     * range of its non-null values ({@code min > max} if there are none).
+     */
+    record Block(int rows, long[] offsets, int[] lengths, int[] crcs, long[] mins, long[] maxs) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<Column> columns;
+    private final long rows;
+    private final List<List<String>> dictionaries;
+    private final List<Block> blocks;
+    private final Map<Integer, Map<String, Long>> codes = new HashMap<>();
+
+    private Segment(Path path, FileChannel channel, List<Column> columns, long rows,
+            List<List<String>> dictionaries, List<Block> blocks) {
+        this.path = path;
+        this.channel = channel;
+        this.columns = columns;
+        this.rows = rows;
+        this.dictionaries = dictionaries;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Opens a finished segment.
+     *
+     * @throws IOException if the file is not a complete, intact segment
+     */
+    public static Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 8 + SegmentWriter.TAIL_LENGTH) {
+                throw new IOException(path + " is not a segment (too short)");
+            }
+            ByteBuffer tail = read(channel, size - SegmentWriter.TAIL_LENGTH, SegmentWriter.TAIL_LENGTH);
+            long footerOffset = tail.getLong();
+            int footerCrc = tail.getInt();
+            if (tail.getLong() != SegmentWriter.TAIL_MAGIC || read(channel, 0, 8).getLong() != SegmentWriter.MAGIC
+                    || footerOffset < 8 || footerOffset > size - SegmentWriter.TAIL_LENGTH) {
+                throw new IOException(path + " is not a complete segment");
+            }
+            ByteBuffer footer = read(channel, footerOffset, (int) (size - SegmentWriter.TAIL_LENGTH - footerOffset));
+            CRC32C crc = new CRC32C();
+            crc.update(footer.duplicate());
+            if ((int) crc.getValue() != footerCrc) {
+                throw new IOException(path + " has a corrupt footer");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            int columnCount = in.readInt();
+            List<Column> columns = new ArrayList<>(columnCount);
+            for (int c = 0; c < columnCount; c++) {
+                columns.add(new Column(in.readUTF(), Encoding.values()[in.readByte()]));
+            }
+            long rows = in.readLong();
+            in.readInt(); // block rows
+            List<List<String>> dictionaries = new ArrayList<>(columnCount);
+            for (Column column : columns) {
+                if (column.encoding() == Encoding.DICT) {
+                    int entries = in.readInt();
+                    List<String> dictionary = new ArrayList<>(entries);
+                    for (int e = 0; e < entries; e++) {
+                        dictionary.add(in.readUTF());
+                    }
+                    dictionaries.add(dictionary);
+                } else {
+                    dictionaries.add(null);
+                }
+            }
+            int blockCount = in.readInt();
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int b = 0; b < blockCount; b++) {
+                Block block = new Block(in.readInt(), new long[columnCount], new int[columnCount],
+                        new int[columnCount], new long[columnCount], new long[columnCount]);
+                for (int c = 0; c < columnCount; c++) {
+                    block.offsets[c] = in.readLong();
+                    block.lengths[c] = in.readInt();
+                    block.crcs[c] = in.readInt();
+                    block.mins[c] = in.readLong();
+                    block.maxs[c] = in.readLong();
+                }
+                blocks.add(block);
+            }
+            return new Segment(path, channel, List.copyOf(columns), rows, dictionaries, blocks);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException(path + " is not a valid segment", e);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * @return position of {@code name} in the schema, or -1
+     */
+    public int columnIndex(String name) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    Block block(int block) {
+        return blocks.get(block);
+    }
+
+    /**
+     * @return dictionary code of {@code value} in a {@link Encoding#DICT}
+     *         column, or -1 if no row holds it
+     */
+    public long code(int column, String value) {
+        Map<String, Long> lookup;
+        synchronized (codes) {
+            lookup = codes.computeIfAbsent(column, c -> {
+                List<String> dictionary = dictionaries.get(c);
+                Map<String, Long> map = new HashMap<>(dictionary.size() * 2);
+                for (int i = 0; i < dictionary.size(); i++) {
+                    map.put(dictionary.get(i), (long) i + 1);
+                }
+                return map;
+            });
+        }
+        return lookup.getOrDefault(value, -1L);
+    }
+
+    /**
+     * @return the string behind a dictionary code; null for the NULL code
+     */
+    public String text(int column, long code) {
+        return code == 0 ? null : dictionaries.get(column).get((int) code - 1);
+    }
+
+    /**
+     * Maps every chunk of {@code block} at once.
+     */
+    ByteBuffer map(int block) throws IOException {
+        Block entry = blocks.get(block);
+        int last = columns.size() - 1;
+        long start = entry.offsets[0];
+        long end = entry.offsets[last] + entry.lengths[last];
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    /**
+     * Decodes a numeric column of a block mapped by {@link #map(int)}; NULL
+     * decodes to {@link Column#NULL}, or 0 for dictionary codes.
+     */
+    void decode(ByteBuffer mapped, int block, int column, long[] out) {
+        Block entry = blocks.get(block);
+        ByteBuffer in = chunk(mapped, entry, column);
+        int rows = entry.rows;
+        switch (columns.get(column).encoding()) {
+            case PLAIN -> {
+                for (int r = 0; r < rows; r++) {
+                    out[r] = in.getLong();
+                }
+            }
+            case INT8 -> {
+                for (int r = 0; r < rows; r++) {
+                    byte value = in.get();
+                    out[r] = value == Byte.MIN_VALUE ? Column.NULL : value;
+                }
+            }
+            case DICT -> {
+                for (int r = 0; r < rows; r++) {
+                    out[r] = varint(in);
+                }
+            }
+            case DELTA -> {
+                long previous = 0;
+                for (int r = 0; r < rows; r++) {
+                    long code = varint(in);
+                    if (code == 0) {
+                        out[r] = Column.NULL;
+                    } else {
+                        long zigzag = code - 1;
+                        previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                        out[r] = previous;
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException(columns.get(column).name() + " is not numeric");
+        }
+    }
+
+    /**
+     * Copies a {@link Encoding#BYTES32} column of a mapped block.
+     */
+    void decode(ByteBuffer mapped, int block, int column, byte[] out) {
+        Block entry = blocks.get(block);
+        chunk(mapped, entry, column).get(out, 0, entry.rows * 32);
+    }
+
+    /**
+     * Checks every column chunk against its CRC-32C.
+     *
+     * @throws IOException naming the first corrupt block
+     */
+    public void verify() throws IOException {
+        CRC32C crc = new CRC32C();
+        for (int b = 0; b < blocks.size(); b++) {
+            ByteBuffer mapped = map(b);
+            Block entry = blocks.get(b);
+            for (int c = 0; c < columns.size(); c++) {
+                crc.reset();
+                crc.update(chunk(mapped, entry, c));
+                if ((int) crc.getValue() != entry.crcs[c]) {
+                    throw new IOException(path + ": block " + b + " column " + columns.get(c).name() + " is corrupt");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ByteBuffer chunk(ByteBuffer mapped, Block entry, int column) {
+        int from = (int) (entry.offsets[column] - entry.offsets[0]);
+        return mapped.slice(from, entry.lengths[column]);
+    }
+
+    private static long varint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+        return buffer.flip();
+    }
+}
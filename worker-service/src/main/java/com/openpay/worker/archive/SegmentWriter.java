@@ -0,0 +1,312 @@
+package com.openpay.worker.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import com.openpay.worker.archive.Column.Encoding;
+
+/**
+ * <h2>SegmentWriter</h2>
+ * <p>
+ * Writes one immutable columnar segment file, row by row. Rows are buffered
+ * one block ({@code blockRows}) at a time; a full block is encoded column by
+ * column and appended, with its per-column min/max and CRC-32C going to the
+ * block index in the footer.
+ * </p>
+ *
+ * <pre>
+ * magic(8) | block 0: chunk col 0 .. chunk col n | block 1 ... |
+ * footer: schema, row count, dictionaries, block index |
+ * footer offset(8) footer crc32c(4) tail magic(8)
+ * </pre>
+ *
+ * <ul>
+ * <li>Memory is one block of every column plus the dictionaries</li>
+ * <li>Written as {@code .tmp}, fsync'ed and renamed by {@link #finish()};
+ * closing an unfinished writer removes the temp file</li>
+ * <li>Not thread-safe</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class SegmentWriter implements Closeable {
+
+    static final long MAGIC = 0x4f50534547303031L; // "OPSEG001"
+    static final long TAIL_MAGIC = 0x4f50534547454e44L; // "OPSEGEND"
+    static final int TAIL_LENGTH = 20;
+
+    private final Path target;
+    private final Path tmp;
+    private final List<Column> columns;
+    private final int blockRows;
+    private final FileChannel channel;
+    private final long[][] values;
+    private final byte[][] bytes;
+    private final List<Map<String, Integer>> codes = new ArrayList<>();
+    private final List<List<String>> dictionaries = new ArrayList<>();
+    private final ByteBuffer chunk;
+    private final List<long[]> index = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private int row;
+    private long rows;
+    private long position;
+    private boolean finished;
+
+    /**
+     * @param target    final path of the segment
+     * @param columns   schema, in chunk order
+     * @param blockRows rows per block; the unit of pruning and of parallel
+     *                  scans
+     */
+    public SegmentWriter(Path target, List<Column> columns, int blockRows) throws IOException {
+        if (blockRows <= 0 || columns.isEmpty()) {
+            throw new IllegalArgumentException("A segment needs columns and a positive block size");
+        }
+        this.target = target;
+        this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.columns = List.copyOf(columns);
+        this.blockRows = blockRows;
+        this.values = new long[columns.size()][];
+        this.bytes = new byte[columns.size()][];
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).encoding() == Encoding.BYTES32) {
+                bytes[c] = new byte[blockRows * 32];
+            } else {
+                values[c] = new long[blockRows];
+            }
+            codes.add(columns.get(c).encoding() == Encoding.DICT ? new HashMap<>() : null);
+            dictionaries.add(columns.get(c).encoding() == Encoding.DICT ? new ArrayList<>() : null);
+        }
+        this.chunk = ByteBuffer.allocateDirect(blockRows * 32);
+        this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        ByteBuffer magic = ByteBuffer.allocate(8).putLong(MAGIC).flip();
+        while (magic.hasRemaining()) {
+            position += channel.write(magic);
+        }
+    }
+
+    /**
+     * Sets a numeric column of the current row; {@link Column#NULL} for NULL.
+     */
+    public void set(int column, long value) {
+        Encoding encoding = columns.get(column).encoding();
+        if (encoding == Encoding.DICT || encoding == Encoding.BYTES32) {
+            throw new IllegalArgumentException(columns.get(column).name() + " is not numeric");
+        }
+        if (encoding == Encoding.INT8 && value != Column.NULL && (value < -127 || value > 127)) {
+            throw new IllegalArgumentException(value + " does not fit INT8 column " + columns.get(column).name());
+        }
+        values[column][row] = value;
+    }
+
+    /**
+     * Sets a {@link Encoding#DICT} column of the current row; null for NULL.
+     */
+    public void set(int column, String value) {
+        Map<String, Integer> dictionary = codes.get(column);
+        if (dictionary == null) {
+            throw new IllegalArgumentException(columns.get(column).name() + " is not a dictionary column");
+        }
+        if (value == null) {
+            values[column][row] = 0;
+            return;
+        }
+        Integer code = dictionary.get(value);
+        if (code == null) {
+            List<String> entries = dictionaries.get(column);
+            entries.add(value);
+            code = entries.size();
+            dictionary.put(value, code);
+        }
+        values[column][row] = code;
+    }
+
+    /**
+     * Sets a {@link Encoding#BYTES32} column of the current row; null is
+     * stored as zeros.
+     */
+    public void set(int column, byte[] value) {
+        byte[] block = bytes[column];
+        if (block == null) {
+            throw new IllegalArgumentException(columns.get(column).name() + " is not a BYTES32 column");
+        }
+        if (value == null) {
+            Arrays.fill(block, row * 32, row * 32 + 32, (byte) 0);
+        } else if (value.length != 32) {
+            throw new IllegalArgumentException(columns.get(column).name() + " needs 32 bytes, got " + value.length);
+        } else {
+            System.arraycopy(value, 0, block, row * 32, 32);
+        }
+    }
+
+    /**
+     * Completes the current row; every column must have been set.
+     */
+    public void endRow() throws IOException {
+        row++;
+        rows++;
+        if (row == blockRows) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * @return rows written so far
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * Writes the last block and the footer, forces the file to disk and
+     * moves it into place.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Segment already finished");
+        }
+        if (row > 0) {
+            flushBlock();
+        }
+        long footerOffset = position;
+        CRC32C footerCrc = new CRC32C();
+        CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), footerCrc);
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(columns.size());
+        for (Column column : columns) {
+            out.writeUTF(column.name());
+            out.writeByte(column.encoding().ordinal());
+        }
+        out.writeLong(rows);
+        out.writeInt(blockRows);
+        for (List<String> dictionary : dictionaries) {
+            if (dictionary != null) {
+                out.writeInt(dictionary.size());
+                for (String entry : dictionary) {
+                    out.writeUTF(entry);
+                }
+            }
+        }
+        out.writeInt(index.size());
+        for (long[] block : index) {
+            out.writeInt((int) block[0]);
+            for (int c = 0; c < columns.size(); c++) {
+                int at = 1 + c * 5;
+                out.writeLong(block[at]);
+                out.writeInt((int) block[at + 1]);
+                out.writeInt((int) block[at + 2]);
+                out.writeLong(block[at + 3]);
+                out.writeLong(block[at + 4]);
+            }
+        }
+        out.flush();
+        int footerChecksum = (int) footerCrc.getValue();
+        out.writeLong(footerOffset);
+        out.writeInt(footerChecksum);
+        out.writeLong(TAIL_MAGIC);
+        out.flush();
+        channel.force(true);
+        channel.close();
+        finished = true;
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Index entry: rows, then per column offset, length, crc, min, max.
+     */
+    private void flushBlock() throws IOException {
+        long[] entry = new long[1 + columns.size() * 5];
+        entry[0] = row;
+        for (int c = 0; c < columns.size(); c++) {
+            chunk.clear();
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            Encoding encoding = columns.get(c).encoding();
+            if (encoding == Encoding.BYTES32) {
+                chunk.put(bytes[c], 0, row * 32);
+            } else {
+                long[] block = values[c];
+                long previous = 0;
+                for (int r = 0; r < row; r++) {
+                    long value = block[r];
+                    boolean isNull = encoding == Encoding.DICT ? value == 0 : value == Column.NULL;
+                    if (!isNull) {
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                    switch (encoding) {
+                        case PLAIN -> chunk.putLong(value);
+                        case INT8 -> chunk.put(isNull ? Byte.MIN_VALUE : (byte) value);
+                        case DICT -> putVarint(value);
+                        case DELTA -> {
+                            if (isNull) {
+                                putVarint(0);
+                            } else {
+                                long delta = value - previous;
+                                long zigzag = (delta << 1) ^ (delta >> 63);
+                                if (zigzag == -1L) {
+                                    throw new IllegalArgumentException("Delta out of range in "
+                                            + columns.get(c).name());
+                                }
+                                putVarint(zigzag + 1);
+                                previous = value;
+                            }
+                        }
+                        default -> throw new IllegalStateException(encoding.name());
+                    }
+                }
+            }
+            chunk.flip();
+            crc.reset();
+            crc.update(chunk);
+            chunk.rewind();
+            int at = 1 + c * 5;
+            entry[at] = position;
+            entry[at + 1] = chunk.remaining();
+            entry[at + 2] = (int) crc.getValue();
+            entry[at + 3] = min;
+            entry[at + 4] = max;
+            while (chunk.hasRemaining()) {
+                position += channel.write(chunk);
+            }
+        }
+        index.add(entry);
+        row = 0;
+    }
+
+    private void putVarint(long value) {
+        long rest = value;
+        while ((rest & ~0x7fL) != 0) {
+            chunk.put((byte) ((rest & 0x7f) | 0x80));
+            rest >>>= 7;
+        }
+        chunk.put((byte) rest);
+    }
+}
@@ -0,0 +1,237 @@
+package com.openpay.worker.audit;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <h2>AuditChain</h2>
+ * <p>
+ * Hashing and segment verification of the {@code transaction_history} hash
+ * chains (see {@code V11__audit_chain.sql}). Shared by the sealer, which
+ * extends the chains, and the verifier, which recomputes them.
+ * </p>
+ *
+ * <ul>
+ * <li>A row's hash is SHA-256 over the previous row's hash and a fixed-width
+ * encoding of the row, including its chain and position</li>
+ * <li>Every sealed row stores its hash, so any segment can be checked on its
+ * own from the stored hash just before it: verification splits a chain into
+ * segments and checks them in parallel ({@link SegmentCheck})</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class AuditChain {
+
+    /** Independent chains; a row belongs to chain {@code transaction_id % CHAINS}. Must match V11. */
+    public static final int CHAINS = 16;
+
+    /** Hash the first row of every chain is chained to. */
+    static final byte[] GENESIS = new byte[32];
+
+    /** Stand-in for a null {@code changed_at} in the encoding. */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int ENCODED_BYTES = 2 + 8 + 8 + 8 + 2 + 2 + 2 + 8;
+
+    private AuditChain() {
+    }
+
+    /**
+     * One history row as it is hashed.
+     *
+     * @param seq             position in its chain, from 1
+     * @param historyId       history_id
+     * @param transactionId   transaction_id
+     * @param prevStatus      prev_status code
+     * @param newStatus       new_status code
+     * @param reason          reason code, 0 if none
+     * @param changedAtMicros changed_at in epoch microseconds
+     * @param hash            stored row_hash (null before sealing)
+     */
+    public record Row(long seq, long historyId, long transactionId, short prevStatus, short newStatus,
+            short reason, long changedAtMicros, byte[] hash) {
+
+        /**
+         * @return this row at {@code seq} with {@code hash}
+         */
+        Row sealed(long seq, byte[] hash) {
+            return new Row(seq, historyId, transactionId, prevStatus, newStatus, reason, changedAtMicros, hash);
+        }
+    }
+
+    /**
+     * Rows of one chain between two positions, with the stored hash of the
+     * row just before them.
+     *
+     * @param seed hash preceding the first position; null if that row is
+     *             missing
+     * @param rows rows found, ascending by position
+     */
+    public record Segment(byte[] seed, List<Row> rows) {
+    }
+
+    /**
+     * Reads segments; called concurrently from the verification tasks.
+     */
+    @FunctionalInterface
+    public interface SegmentSource {
+
+        /**
+         * @return the rows of {@code chain} at positions
+         *         {@code fromSeq..toSeq}, both inclusive
+         */
+        Segment load(int chain, long fromSeq, long toSeq);
+    }
+
+    /**
+     * Outcome of checking part of a chain.
+     *
+     * @param rows        positions checked
+     * @param mismatches  positions whose row is missing or whose hash does
+     *                    not match
+     * @param firstBadSeq lowest bad position, or -1
+     */
+    public record Result(long rows, long mismatches, long firstBadSeq) {
+
+        static final Result EMPTY = new Result(0, 0, -1);
+
+        Result merge(Result other) {
+            long first;
+            if (firstBadSeq < 0) {
+                first = other.firstBadSeq;
+            } else if (other.firstBadSeq < 0) {
+                first = firstBadSeq;
+            } else {
+                first = Math.min(firstBadSeq, other.firstBadSeq);
+            }
+            return new Result(rows + other.rows, mismatches + other.mismatches, first);
+        }
+    }
+
+    /**
+     * Checks positions {@code fromSeq..toSeq} of one chain, splitting the
+     * range in halves down to {@code leafSize} positions, each leaf read and
+     * checked on its own.
+     */
+    public static final class SegmentCheck extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient SegmentSource source;
+        private final int chain;
+        private final long fromSeq;
+        private final long toSeq;
+        private final int leafSize;
+
+        /**
+         * @param source   segment reader
+         * @param chain    chain to check
+         * @param fromSeq  first position, at least 1
+         * @param toSeq    last position
+         * @param leafSize positions read and checked by one task
+         */
+        public SegmentCheck(SegmentSource source, int chain, long fromSeq, long toSeq, int leafSize) {
+            if (fromSeq < 1 || leafSize < 1) {
+                throw new IllegalArgumentException("fromSeq and leafSize must be positive");
+            }
+            this.source = source;
+            this.chain = chain;
+            this.fromSeq = fromSeq;
+            this.toSeq = toSeq;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Result compute() {
+            if (toSeq < fromSeq) {
+                return Result.EMPTY;
+            }
+            if (toSeq - fromSeq + 1 <= leafSize) {
+                return check(chain, fromSeq, toSeq, source.load(chain, fromSeq, toSeq));
+            }
+            long mid = fromSeq + (toSeq - fromSeq) / 2;
+            SegmentCheck left = new SegmentCheck(source, chain, fromSeq, mid, leafSize);
+            SegmentCheck right = new SegmentCheck(source, chain, mid + 1, toSeq, leafSize);
+            left.fork();
+            Result rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+
+    /**
+     * Checks one loaded segment. Each row is hashed against the stored hash
+     * of the row before it, so a changed row fails at its own position and
+     * rows after it still verify. A missing row counts as a gap, and the row
+     * after a gap counts as unverifiable.
+     */
+    static Result check(int chain, long fromSeq, long toSeq, Segment segment) {
+        MessageDigest digest = sha256();
+        byte[] previous = segment.seed();
+        long expected = fromSeq;
+        long mismatches = 0;
+        long firstBad = -1;
+        for (Row row : segment.rows()) {
+            if (row.seq() < expected || row.seq() > toSeq) {
+                throw new IllegalArgumentException("Row " + row.seq() + " outside " + expected + ".." + toSeq);
+            }
+            if (row.seq() > expected) {
+                mismatches += row.seq() - expected;
+                firstBad = firstBad < 0 ? expected : firstBad;
+            }
+            if (previous == null || row.hash() == null
+                    || !MessageDigest.isEqual(hash(digest, previous, chain, row), row.hash())) {
+                mismatches++;
+                firstBad = firstBad < 0 ? row.seq() : firstBad;
+            }
+            previous = row.hash();
+            expected = row.seq() + 1;
+        }
+        if (expected <= toSeq) {
+            mismatches += toSeq - expected + 1;
+            firstBad = firstBad < 0 ? expected : firstBad;
+        }
+        return new Result(toSeq - fromSeq + 1, mismatches, firstBad);
+    }
+
+    /**
+     * @return SHA-256 of {@code previous} followed by the encoded row
+     */
+    static byte[] hash(MessageDigest digest, byte[] previous, int chain, Row row) {
+        ByteBuffer encoded = ByteBuffer.allocate(ENCODED_BYTES)
+                .putShort((short) chain)
+                .putLong(row.seq())
+                .putLong(row.historyId())
+                .putLong(row.transactionId())
+                .putShort(row.prevStatus())
+                .putShort(row.newStatus())
+                .putShort(row.reason())
+                .putLong(row.changedAtMicros());
+        digest.reset();
+        digest.update(previous);
+        digest.update(encoded.array());
+        return digest.digest();
+    }
+
+    /**
+     * @return changed_at as hashed
+     */
+    static long micros(OffsetDateTime changedAt) {
+        return changedAt == null ? NO_TIME : ChronoUnit.MICROS.between(Instant.EPOCH, changedAt.toInstant());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
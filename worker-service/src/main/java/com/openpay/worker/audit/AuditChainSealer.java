@@ -0,0 +1,163 @@
+package com.openpay.worker.audit;
+
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openpay.worker.audit.AuditChain.Row;
+import com.openpay.worker.leader.LeaderElection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>AuditChainSealer</h2>
+ * <p>
+ * Extends the {@code transaction_history} hash chains with the rows inserted
+ * since the last run. Writers insert history rows as before; sealing happens
+ * here, in batches, so no insert ever waits for a chain head. Runs on the
+ * elected leader only.
+ * </p>
+ *
+ * <ul>
+ * <li>Each chain is sealed in its own DB transaction: its head row in
+ * {@code audit_chain_heads} is locked, up to {@code batch-size} unsealed rows
+ * are read in insert order, hashed, and written back with their positions,
+ * and the head and a batch record move forward</li>
+ * <li>Chain order is seal order: a row committed late (lower id, later
+ * commit) is simply sealed in a later batch</li>
+ * <li>The head lock makes a second sealer (leader handover) wait instead of
+ * forking a chain</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class AuditChainSealer {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditChainSealer.class);
+
+    private static final String LOCK_HEAD = "SELECT seq, hash FROM audit_chain_heads WHERE chain = ? FOR UPDATE";
+
+    // The expression must match idx_history_unsealed
+    private static final String UNSEALED = "SELECT history_id, transaction_id, prev_status, new_status, reason, "
+            + "changed_at FROM transaction_history WHERE (transaction_id % " + AuditChain.CHAINS + ") = ? "
+            + "AND chain_seq IS NULL ORDER BY history_id LIMIT ?";
+
+    private static final String SEAL = "UPDATE transaction_history SET chain = ?, chain_seq = ?, row_hash = ? "
+            + "WHERE history_id = ? AND chain_seq IS NULL";
+
+    private static final String MOVE_HEAD = "UPDATE audit_chain_heads SET seq = ?, hash = ?, updated_at = ? "
+            + "WHERE chain = ?";
+
+    private static final String RECORD_BATCH = "INSERT INTO audit_chain_batches "
+            + "(chain, first_seq, last_seq, last_hash, sealed_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LeaderElection leaderElection;
+    private final int batchSize;
+    private final Counter sealed;
+    private final Counter failures;
+
+    /**
+     * @param jdbcTemplate        JDBC template bound to the primary datasource
+     * @param transactionTemplate one DB transaction per chain batch
+     * @param leaderElection      runs only on the leader
+     * @param meterRegistry       metrics registry
+     * @param batchSize           rows sealed per chain and run
+     */
+    public AuditChainSealer(JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.audit.seal.batch-size:5000}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("openpay.audit.seal.batch-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.leaderElection = leaderElection;
+        this.batchSize = batchSize;
+        this.sealed = meterRegistry.counter("openpay.audit.sealed");
+        this.failures = meterRegistry.counter("openpay.audit.seal.failures");
+    }
+
+    /**
+     * Seals one batch per chain. Never throws; a failed chain is retried next
+     * run.
+     */
+    @Scheduled(initialDelayString = "${openpay.audit.seal.initial-delay-ms:10000}",
+            fixedDelayString = "${openpay.audit.seal.interval-ms:1000}",
+            scheduler = "jobScheduler")
+    public void seal() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        for (int chain = 0; chain < AuditChain.CHAINS; chain++) {
+            try {
+                Integer rows = sealBatch(chain);
+                if (rows != null && rows > 0) {
+                    sealed.increment(rows);
+                    log.debug("[AUDIT] Sealed {} history rows into chain {}", rows, chain);
+                }
+            } catch (DataAccessException | IllegalStateException e) {
+                failures.increment();
+                log.warn("[AUDIT] Sealing chain {} failed, will retry: {}", chain, e.getMessage());
+            }
+        }
+    }
+
+    private Integer sealBatch(int chain) {
+        return transactionTemplate.execute(tx -> {
+            Map<String, Object> head = jdbcTemplate.queryForMap(LOCK_HEAD, (short) chain);
+            long seq = ((Number) head.get("seq")).longValue();
+            byte[] previous = (byte[]) head.get("hash");
+
+            List<Row> rows = jdbcTemplate.query(UNSEALED, (rs, i) -> new Row(0,
+                    rs.getLong("history_id"),
+                    rs.getLong("transaction_id"),
+                    rs.getShort("prev_status"),
+                    rs.getShort("new_status"),
+                    rs.getShort("reason"),
+                    AuditChain.micros(rs.getObject("changed_at", OffsetDateTime.class)),
+                    null), chain, batchSize);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            MessageDigest digest = AuditChain.sha256();
+            long firstSeq = seq + 1;
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                seq++;
+                previous = AuditChain.hash(digest, previous, chain, row.sealed(seq, null));
+                updates.add(new Object[] { (short) chain, seq, previous, row.historyId() });
+            }
+            for (int count : jdbcTemplate.batchUpdate(SEAL, updates)) {
+                if (count == 0) {
+                    // sealed by someone else meanwhile: discard the whole batch
+                    throw new IllegalStateException("History row sealed concurrently in chain " + chain);
+                }
+            }
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbcTemplate.update(MOVE_HEAD, seq, previous, now, (short) chain);
+            jdbcTemplate.update(RECORD_BATCH, (short) chain, firstSeq, seq, previous, now);
+            return rows.size();
+        });
+    }
+}
@@ -0,0 +1,215 @@
+package com.openpay.worker.audit;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.audit.AuditChain.Result;
+import com.openpay.worker.audit.AuditChain.Row;
+import com.openpay.worker.audit.AuditChain.Segment;
+import com.openpay.worker.audit.AuditChain.SegmentCheck;
+import com.openpay.worker.leader.LeaderElection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>AuditChainVerifier</h2>
+ * <p>
+ * Recomputes the hash chains sealed during one day and reports any row that
+ * no longer matches. Runs daily on the elected leader for the previous day.
+ * </p>
+ *
+ * <ul>
+ * <li>The day's range of every chain comes from {@code audit_chain_batches};
+ * each range is checked as a fork/join {@link SegmentCheck}, split into
+ * segments of {@code segment-size} positions read and hashed in
+ * parallel</li>
+ * <li>The last hash of every batch sealed that day is compared with the row
+ * it names, so a rewritten chain tail is caught too</li>
+ * <li>Rows verified per second is logged and exported as
+ * {@code openpay.audit.verify.rows-per-second}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class AuditChainVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditChainVerifier.class);
+
+    private static final String DAY_RANGES = "SELECT chain, min(first_seq) AS first_seq, max(last_seq) AS last_seq "
+            + "FROM audit_chain_batches WHERE sealed_at >= ? AND sealed_at < ? GROUP BY chain";
+
+    private static final String BAD_ANCHORS = "SELECT count(*) FROM audit_chain_batches b "
+            + "LEFT JOIN transaction_history h ON h.chain = b.chain AND h.chain_seq = b.last_seq "
+            + "WHERE b.sealed_at >= ? AND b.sealed_at < ? AND h.row_hash IS DISTINCT FROM b.last_hash";
+
+    private static final String SEED = "SELECT row_hash FROM transaction_history WHERE chain = ? AND chain_seq = ?";
+
+    private static final String SEGMENT = "SELECT chain_seq, history_id, transaction_id, prev_status, new_status, "
+            + "reason, changed_at, row_hash FROM transaction_history "
+            + "WHERE chain = ? AND chain_seq BETWEEN ? AND ? ORDER BY chain_seq";
+
+    /**
+     * Outcome of verifying one day.
+     *
+     * @param day        day verified
+     * @param rows       chain positions checked
+     * @param mismatches positions missing or failing their hash
+     * @param badAnchors batches whose recorded last hash differs from the row
+     * @param elapsed    wall time
+     */
+    public record Report(LocalDate day, long rows, long mismatches, long badAnchors, Duration elapsed) {
+
+        /**
+         * @return rows verified per second
+         */
+        public long rowsPerSecond() {
+            long micros = Math.max(1, elapsed.toNanos() / 1_000);
+            return rows * 1_000_000 / micros;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LeaderElection leaderElection;
+    private final ForkJoinPool pool;
+    private final int segmentSize;
+    private final Counter runs;
+    private final AtomicLong mismatches = new AtomicLong();
+    private final AtomicLong rowsPerSecond = new AtomicLong();
+
+    /**
+     * @param jdbcTemplate   JDBC template bound to the primary datasource
+     * @param leaderElection runs only on the leader
+     * @param meterRegistry  metrics registry
+     * @param parallelism    segments read and hashed at a time (one DB
+     *                       connection each)
+     * @param segmentSize    chain positions per segment
+     */
+    public AuditChainVerifier(JdbcTemplate jdbcTemplate,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.audit.verify.parallelism:4}") int parallelism,
+            @Value("${openpay.audit.verify.segment-size:20000}") int segmentSize) {
+        if (parallelism <= 0 || segmentSize <= 0) {
+            throw new IllegalArgumentException("openpay.audit.verify parallelism and segment-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaderElection = leaderElection;
+        this.pool = new ForkJoinPool(parallelism);
+        this.segmentSize = segmentSize;
+        this.runs = meterRegistry.counter("openpay.audit.verify.runs");
+        Gauge.builder("openpay.audit.verify.mismatches", mismatches, AtomicLong::get)
+                .description("Chain positions and batch anchors that failed the last verification")
+                .register(meterRegistry);
+        Gauge.builder("openpay.audit.verify.rows-per-second", rowsPerSecond, AtomicLong::get)
+                .description("Throughput of the last verification")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Verifies the previous day. Never throws; a failed run is logged.
+     */
+    @Scheduled(cron = "${openpay.audit.verify.cron:0 15 0 * * *}", scheduler = "jobScheduler")
+    public void verifyYesterday() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        try {
+            verifyDay(LocalDate.now().minusDays(1));
+        } catch (DataAccessException e) {
+            log.warn("[AUDIT] Chain verification failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Verifies every chain position sealed on {@code day} (server time zone).
+     *
+     * @param day day to verify
+     * @return what was checked and found
+     */
+    public Report verifyDay(LocalDate day) {
+        long started = System.nanoTime();
+        ZoneId zone = ZoneId.systemDefault();
+        Timestamp from = Timestamp.from(day.atStartOfDay(zone).toInstant());
+        Timestamp to = Timestamp.from(day.plusDays(1).atStartOfDay(zone).toInstant());
+
+        List<Integer> chains = new ArrayList<>(AuditChain.CHAINS);
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(AuditChain.CHAINS);
+        jdbcTemplate.query(DAY_RANGES, rs -> {
+            int chain = rs.getInt("chain");
+            chains.add(chain);
+            tasks.add(pool.submit(new SegmentCheck(this::load, chain, rs.getLong("first_seq"),
+                    rs.getLong("last_seq"), segmentSize)));
+        }, from, to);
+        Long badAnchors = jdbcTemplate.queryForObject(BAD_ANCHORS, Long.class, from, to);
+
+        Result total = Result.EMPTY;
+        for (int i = 0; i < tasks.size(); i++) {
+            Result result = tasks.get(i).join();
+            if (result.mismatches() > 0) {
+                log.error("[AUDIT] Chain {}: {} bad position(s) on {}, first at {}", chains.get(i),
+                        result.mismatches(), day, result.firstBadSeq());
+            }
+            total = total.merge(result);
+        }
+        Report report = new Report(day, total.rows(), total.mismatches(), badAnchors == null ? 0 : badAnchors,
+                Duration.ofNanos(System.nanoTime() - started));
+
+        runs.increment();
+        mismatches.set(report.mismatches() + report.badAnchors());
+        rowsPerSecond.set(report.rowsPerSecond());
+        if (report.mismatches() > 0 || report.badAnchors() > 0) {
+            log.error("[AUDIT] Chain verification of {} FAILED: {} bad position(s), {} bad batch anchor(s)",
+                    day, report.mismatches(), report.badAnchors());
+        } else {
+            log.info("[AUDIT] Verified {} history rows sealed on {} in {} ms ({} rows/s)", report.rows(), day,
+                    report.elapsed().toMillis(), report.rowsPerSecond());
+        }
+        return report;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private Segment load(int chain, long fromSeq, long toSeq) {
+        byte[] seed;
+        if (fromSeq == 1) {
+            seed = AuditChain.GENESIS;
+        } else {
+            List<byte[]> found = jdbcTemplate.queryForList(SEED, byte[].class, (short) chain, fromSeq - 1);
+            seed = found.isEmpty() ? null : found.get(0);
+        }
+        List<Row> rows = jdbcTemplate.query(SEGMENT, (rs, i) -> new Row(
+                rs.getLong("chain_seq"),
+                rs.getLong("history_id"),
+                rs.getLong("transaction_id"),
+                rs.getShort("prev_status"),
+                rs.getShort("new_status"),
+                rs.getShort("reason"),
+                AuditChain.micros(rs.getObject("changed_at", OffsetDateTime.class)),
+                rs.getBytes("row_hash")), (short) chain, fromSeq, toSeq);
+        return new Segment(seed, rows);
+    }
+}
@@ -0,0 +1,32 @@
+package com.openpay.worker.client;
+
+import com.openpay.shared.exception.OpenPayException;
+
+/**
+ * <h2>GatewayException</h2>
+ * <p>
+ * The UPI gateway could not give an answer: connection failure, timeout or an
+ * unexpected HTTP status. Distinct from a declined payment, which is a normal
+ * {@code false} result.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class GatewayException extends OpenPayException {
+
+    /**
+     * @param message what went wrong
+     */
+    public GatewayException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param message what went wrong
+     * @param cause   underlying transport error
+     */
+    public GatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,28 @@
+package com.openpay.worker.client;
+
+/**
+ * <h2>GatewayStatus</h2>
+ * <p>
+ * Outcome of a payment as reported by a status inquiry.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #SUCCESS} / {@link #FAILURE}: final, the payment was executed or
+ * declined</li>
+ * <li>{@link #PENDING}: the switch is still working on it</li>
+ * <li>{@link #NOT_FOUND}: the switch never received it</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public enum GatewayStatus {
+    SUCCESS, FAILURE, PENDING, NOT_FOUND;
+
+    /**
+     * @return true for an outcome that will not change any more
+     */
+    public boolean isFinal() {
+        return this == SUCCESS || this == FAILURE;
+    }
+}
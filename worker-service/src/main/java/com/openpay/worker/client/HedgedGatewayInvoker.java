@@ -0,0 +1,276 @@
+package com.openpay.worker.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openpay.shared.model.FailureReason;
+import com.openpay.worker.metrics.LatencyRecorder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * <h2>HedgedGatewayInvoker</h2>
+ * <p>
+ * Deadline-bounded, optionally hedged payment calls on top of
+ * {@link UpiGatewayClient}. Every call is bounded by the payment's deadline;
+ * if the answer has not arrived once the gateway's recent p95 latency has
+ * passed, a second request (the hedge) is fired and whichever gives a final
+ * answer (success or decline) first wins; if neither does, the first
+ * non-final {@link PaymentOutcome} is reported. This trims the p99 of payment
+ * completion at the cost of a few percent extra requests.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code openpay.gateway.hedge.mode=inquiry}: the hedge is a status
+ * inquiry; only a final SUCCESS/FAILURE counts, PENDING/NOT_FOUND is
+ * ignored</li>
+ * <li>{@code duplicate}: the hedge re-sends the payment with the same
+ * {@code txnId}, which the switch treats as idempotent</li>
+ * <li>{@code off}: deadline only</li>
+ * <li>Hedges are capped at {@code budget-percent} of recent calls so a slow
+ * gateway is not hit with double load: every call earns
+ * {@code budget-percent / 100} of a token, a hedge spends a whole one, and
+ * the bucket holds at most {@code budget-burst} tokens, so a quiet spell
+ * never saves up for a burst of hedges when the gateway slows down</li>
+ * <li>HdrHistogram series {@code call} (single request RTT) and
+ * {@code completion} (hedged answer) are exported as
+ * {@code openpay.gateway.latency}, which shows what hedging buys</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class HedgedGatewayInvoker implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedGatewayInvoker.class);
+
+    private static final double[] EXPORTED_PERCENTILES = { 50.0, 95.0, 99.0, 99.9 };
+
+    /**
+     * What a hedge sends.
+     */
+    public enum HedgeMode {
+        OFF, INQUIRY, DUPLICATE
+    }
+
+    private final UpiGatewayClient client;
+    private final HedgeMode mode;
+    private final long minHedgeDelayMillis;
+    private final double tokensPerCall;
+    private final double maxTokens;
+    private final long minSamples;
+    private final LatencyRecorder callLatency;
+    private final LatencyRecorder completionLatency;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong deadlineMisses = new AtomicLong();
+
+    private final ReentrantLock budgetLock = new ReentrantLock();
+    // guarded by budgetLock
+    private double hedgeTokens;
+
+    /**
+     * @param client              the gateway client
+     * @param mode                off | inquiry | duplicate
+     * @param minHedgeDelayMillis never hedge earlier than this
+     * @param budgetPercent       max hedges as a percentage of calls
+     * @param budgetBurst         max hedges saved up by calls that did not
+     *                            need one
+     * @param minSamples          calls in the last interval before p95 is trusted
+     * @param intervalMillis      rolling latency interval
+     */
+    public HedgedGatewayInvoker(UpiGatewayClient client,
+            @Value("${openpay.gateway.hedge.mode:inquiry}") String mode,
+            @Value("${openpay.gateway.hedge.min-delay-ms:50}") long minHedgeDelayMillis,
+            @Value("${openpay.gateway.hedge.budget-percent:10}") int budgetPercent,
+            @Value("${openpay.gateway.hedge.budget-burst:10}") int budgetBurst,
+            @Value("${openpay.gateway.hedge.min-samples:100}") long minSamples,
+            @Value("${openpay.gateway.latency.interval-ms:10000}") long intervalMillis) {
+        this.client = client;
+        this.mode = HedgeMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        if (budgetPercent < 0 || budgetBurst < 1) {
+            throw new IllegalArgumentException("openpay.gateway.hedge.budget-percent must not be negative "
+                    + "and budget-burst must be positive");
+        }
+        this.tokensPerCall = budgetPercent / 100.0;
+        this.maxTokens = budgetBurst;
+        this.minSamples = minSamples;
+        this.callLatency = new LatencyRecorder("call", intervalMillis);
+        this.completionLatency = new LatencyRecorder("completion", intervalMillis);
+    }
+
+    /**
+     * Sends a payment, bounded by its deadline and hedged per configuration.
+     *
+     * @param senderUpi   Sender's UPI ID
+     * @param receiverUpi Receiver's UPI ID
+     * @param amountPaise Amount to transfer, in paise
+     * @param txnId       Unique transaction ID (idempotency reference)
+     * @param deadline    time by which a final answer is needed
+     * @return future with the outcome; never completes exceptionally. A
+     *         deadline already past on entry gives retryable
+     *         {@code DEADLINE_EXCEEDED} (nothing sent), one passing mid-call
+     *         gives unknown {@code DEADLINE_EXCEEDED}
+     */
+    public CompletableFuture<PaymentOutcome> pay(String senderUpi, String receiverUpi, long amountPaise, Long txnId,
+            Instant deadline) {
+        long remainingMillis = Duration.between(Instant.now(), deadline).toMillis();
+        if (remainingMillis <= 0) {
+            deadlineMisses.incrementAndGet();
+            return CompletableFuture.completedFuture(PaymentOutcome.retryable(FailureReason.DEADLINE_EXCEEDED));
+        }
+        Duration remaining = Duration.ofMillis(remainingMillis);
+        calls.incrementAndGet();
+        earnHedgeBudget();
+
+        CompletableFuture<PaymentOutcome> result = new CompletableFuture<>();
+        AtomicInteger legs = new AtomicInteger(1);
+        AtomicReference<PaymentOutcome> firstNonFinal = new AtomicReference<>();
+        long started = System.nanoTime();
+
+        client.initiateUpiPayment(senderUpi, receiverUpi, amountPaise, txnId, remaining)
+                .whenComplete((answer, error) -> {
+                    if (answer != null && answer.reason() != FailureReason.GATEWAY_TIMEOUT) {
+                        callLatency.record(System.nanoTime() - started);
+                    }
+                    settle(result, legs, firstNonFinal, answer, error, false);
+                });
+
+        long hedgeDelay = hedgeDelayMillis();
+        if (hedgeDelay >= 0 && hedgeDelay < remainingMillis) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (result.isDone() || !takeHedgeBudget()) {
+                    return;
+                }
+                legs.incrementAndGet();
+                Duration left = Duration.between(Instant.now(), deadline);
+                if (left.isNegative() || left.isZero()) {
+                    settle(result, legs, firstNonFinal, PaymentOutcome.unknown(FailureReason.DEADLINE_EXCEEDED),
+                            null, true);
+                    return;
+                }
+                log.debug("[NPCI-HEDGE] txnId={} slower than {} ms, sending {} hedge", txnId, hedgeDelay, mode);
+                hedge(senderUpi, receiverUpi, amountPaise, txnId, left)
+                        .whenComplete((answer, error) -> settle(result, legs, firstNonFinal, answer, error, true));
+            });
+        }
+
+        CompletableFuture.delayedExecutor(remainingMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.complete(PaymentOutcome.unknown(FailureReason.DEADLINE_EXCEEDED))) {
+                deadlineMisses.incrementAndGet();
+            }
+        });
+
+        return result.whenComplete((answer, error) -> {
+            if (answer.isFinal()) {
+                completionLatency.record(System.nanoTime() - started);
+            }
+        });
+    }
+
+    private CompletableFuture<PaymentOutcome> hedge(String senderUpi, String receiverUpi, long amountPaise, Long txnId,
+            Duration timeout) {
+        if (mode == HedgeMode.DUPLICATE) {
+            return client.initiateUpiPayment(senderUpi, receiverUpi, amountPaise, txnId, timeout);
+        }
+        return client.inquireStatus(txnId, timeout).thenApply(status -> switch (status) {
+            case SUCCESS -> PaymentOutcome.success();
+            case FAILURE -> PaymentOutcome.permanent(FailureReason.DECLINED);
+            default -> PaymentOutcome.unknown(FailureReason.GATEWAY_PENDING);
+        });
+    }
+
+    /**
+     * A leg finished: a final answer completes the call; a non-final one (or an
+     * error) only completes it once no other leg is still running, reporting
+     * the first non-final outcome.
+     */
+    private void settle(CompletableFuture<PaymentOutcome> result, AtomicInteger legs,
+            AtomicReference<PaymentOutcome> firstNonFinal, PaymentOutcome answer, Throwable error,
+            boolean hedgeLeg) {
+        if (error != null) {
+            log.warn("[NPCI-HEDGE] Gateway leg failed unexpectedly: {}", error.toString());
+            answer = PaymentOutcome.unknown(FailureReason.GATEWAY_ERROR);
+        }
+        if (answer.isFinal()) {
+            if (result.complete(answer) && hedgeLeg) {
+                hedgeWins.incrementAndGet();
+            }
+            legs.decrementAndGet();
+            return;
+        }
+        firstNonFinal.compareAndSet(null, answer);
+        if (legs.decrementAndGet() == 0) {
+            result.complete(firstNonFinal.get());
+        }
+    }
+
+    /**
+     * @return delay after which to hedge, or -1 for no hedging (disabled, or
+     *         too few recent samples to trust the p95)
+     */
+    private long hedgeDelayMillis() {
+        if (mode == HedgeMode.OFF || callLatency.intervalCount() < minSamples) {
+            return -1L;
+        }
+        return Math.max(minHedgeDelayMillis, (long) Math.ceil(callLatency.percentileMillis(95.0)));
+    }
+
+    private void earnHedgeBudget() {
+        budgetLock.lock();
+        try {
+            hedgeTokens = Math.min(maxTokens, hedgeTokens + tokensPerCall);
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    private boolean takeHedgeBudget() {
+        budgetLock.lock();
+        try {
+            if (hedgeTokens < 1.0) {
+                return false;
+            }
+            hedgeTokens -= 1.0;
+        } finally {
+            budgetLock.unlock();
+        }
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (LatencyRecorder recorder : new LatencyRecorder[] { callLatency, completionLatency }) {
+            for (double p : EXPORTED_PERCENTILES) {
+                Gauge.builder("openpay.gateway.latency", recorder, r -> r.percentileMillis(p))
+                        .tag("series", recorder.getName())
+                        .tag("percentile", String.valueOf(p))
+                        .baseUnit("milliseconds")
+                        .register(registry);
+            }
+        }
+        FunctionCounter.builder("openpay.gateway.hedge.fired", hedges, AtomicLong::get).register(registry);
+        FunctionCounter.builder("openpay.gateway.hedge.won", hedgeWins, AtomicLong::get).register(registry);
+        FunctionCounter.builder("openpay.gateway.deadline.exceeded", deadlineMisses, AtomicLong::get)
+                .register(registry);
+    }
+}
@@ -0,0 +1,224 @@
+package com.openpay.worker.client;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openpay.shared.model.FailureReason;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>HttpUpiGatewayClient</h2>
+ * <p>
+ * {@link UpiGatewayClient} over HTTP using the JDK {@link HttpClient}: fully
+ * asynchronous ({@code sendAsync}), HTTP/2 preferred (multiplexed on one
+ * connection over TLS, falling back to pooled keep-alive HTTP/1.1 connections
+ * on plain {@code http://}), one shared client for connection reuse.
+ * </p>
+ *
+ * <h3>Wire contract (implemented by {@code npci-simulator}):</h3>
+ *
+ * <pre>
+ * POST {base-url}/upi/pay
+ * {"txnId":42,"senderUpi":"a@upi","receiverUpi":"b@upi","amountPaise":10000}
+ *
+ * 200 {"txnId":42,"status":"SUCCESS"}   -&gt; success
+ * 200 {"txnId":42,"status":"FAILURE"}   -&gt; permanent DECLINED
+ * 200 {"txnId":42,"status":"PENDING"}   -&gt; unknown GATEWAY_PENDING
+ * 429 / 502 / 503, connection refused   -&gt; retryable GATEWAY_UNAVAILABLE
+ * 408, response timeout                 -&gt; unknown GATEWAY_TIMEOUT
+ * 409 (txnId already in flight)         -&gt; unknown GATEWAY_PENDING
+ * other 4xx                             -&gt; permanent GATEWAY_REJECTED
+ * other 5xx, unreadable body, I/O error -&gt; unknown GATEWAY_ERROR
+ *
+ * GET {base-url}/upi/status/{txnId}
+ * 200 {"txnId":42,"status":"SUCCESS|FAILURE|PENDING"}, 404 -&gt; NOT_FOUND
+ * </pre>
+ *
+ * <ul>
+ * <li>Active when {@code openpay.gateway.client=http}</li>
+ * <li>Every request times out after the caller's timeout, capped by
+ * {@code openpay.gateway.http.request-timeout}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "openpay.gateway.client", havingValue = "http")
+public class HttpUpiGatewayClient implements UpiGatewayClient {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpUpiGatewayClient.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService callbackExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    private final URI payUri;
+    private final String statusUri;
+    private final Duration requestTimeout;
+
+    /**
+     * @param baseUrl        gateway base URL, e.g. {@code http://localhost:8089}
+     * @param connectTimeout TCP/TLS connect timeout
+     * @param requestTimeout per-request response timeout
+     */
+    public HttpUpiGatewayClient(
+            @Value("${openpay.gateway.http.base-url:http://localhost:8089}") String baseUrl,
+            @Value("${openpay.gateway.http.connect-timeout:PT2S}") Duration connectTimeout,
+            @Value("${openpay.gateway.http.request-timeout:PT5S}") Duration requestTimeout) {
+        String base = baseUrl.replaceAll("/+$", "");
+        this.payUri = URI.create(base + "/upi/pay");
+        this.statusUri = base + "/upi/status/";
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(callbackExecutor)
+                .build();
+        log.info("[NPCI-HTTP] Gateway client targeting {}", payUri);
+    }
+
+    @Override
+    public CompletableFuture<PaymentOutcome> initiateUpiPayment(String senderUpi, String receiverUpi, long amountPaise,
+            Long txnId, Duration timeout) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("txnId", txnId);
+        body.put("senderUpi", senderUpi);
+        body.put("receiverUpi", receiverUpi);
+        body.put("amountPaise", amountPaise);
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(payUri)
+                    .timeout(cap(timeout))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            log.error("[NPCI-HTTP] Cannot encode payment txnId={}", txnId, e);
+            return CompletableFuture.completedFuture(PaymentOutcome.retryable(FailureReason.INTERNAL_ERROR));
+        }
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> error != null ? classify(txnId, error) : classify(txnId, response));
+    }
+
+    @Override
+    public CompletableFuture<GatewayStatus> inquireStatus(Long txnId, Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(statusUri + txnId))
+                .timeout(cap(timeout))
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new GatewayException("Status inquiry failed for txnId=" + txnId + ": " + error, error);
+                    }
+                    if (response.statusCode() == 404) {
+                        return GatewayStatus.NOT_FOUND;
+                    }
+                    String status = status(txnId, response);
+                    try {
+                        return GatewayStatus.valueOf(status);
+                    } catch (IllegalArgumentException e) {
+                        throw new GatewayException("Unknown gateway status '" + status + "' for txnId=" + txnId);
+                    }
+                });
+    }
+
+    private Duration cap(Duration timeout) {
+        return timeout.compareTo(requestTimeout) < 0 ? timeout : requestTimeout;
+    }
+
+    private PaymentOutcome classify(Long txnId, HttpResponse<String> response) {
+        int code = response.statusCode();
+        if (code == 429 || code == 502 || code == 503) {
+            return PaymentOutcome.retryable(FailureReason.GATEWAY_UNAVAILABLE);
+        }
+        // The switch may already hold the payment: a timed-out request may have
+        // been read, a conflict is an earlier send of this txnId. Only a status
+        // inquiry can tell, so neither is a rejection
+        if (code == 408) {
+            return PaymentOutcome.unknown(FailureReason.GATEWAY_TIMEOUT);
+        }
+        if (code == 409) {
+            log.warn("[NPCI-HTTP] Gateway reports txnId={} already in flight (HTTP 409)", txnId);
+            return PaymentOutcome.unknown(FailureReason.GATEWAY_PENDING);
+        }
+        if (code >= 400 && code < 500) {
+            log.warn("[NPCI-HTTP] Gateway rejected txnId={} with HTTP {}", txnId, code);
+            return PaymentOutcome.permanent(FailureReason.GATEWAY_REJECTED);
+        }
+        String status;
+        try {
+            status = status(txnId, response);
+        } catch (GatewayException e) {
+            log.warn("[NPCI-HTTP] {}", e.getMessage());
+            return PaymentOutcome.unknown(FailureReason.GATEWAY_ERROR);
+        }
+        return switch (status) {
+            case "SUCCESS" -> PaymentOutcome.success();
+            case "FAILURE" -> PaymentOutcome.permanent(FailureReason.DECLINED);
+            case "PENDING" -> PaymentOutcome.unknown(FailureReason.GATEWAY_PENDING);
+            default -> {
+                log.warn("[NPCI-HTTP] Unknown gateway status '{}' for txnId={}", status, txnId);
+                yield PaymentOutcome.unknown(FailureReason.GATEWAY_ERROR);
+            }
+        };
+    }
+
+    /**
+     * Transport failures: nothing was sent if the connection never came up;
+     * anything later may have reached the switch.
+     */
+    private static PaymentOutcome classify(Long txnId, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        log.warn("[NPCI-HTTP] Gateway call failed for txnId={}: {}", txnId, cause.toString());
+        if (cause instanceof HttpConnectTimeoutException || cause instanceof ConnectException) {
+            return PaymentOutcome.retryable(FailureReason.GATEWAY_UNAVAILABLE);
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return PaymentOutcome.unknown(FailureReason.GATEWAY_TIMEOUT);
+        }
+        return PaymentOutcome.unknown(FailureReason.GATEWAY_ERROR);
+    }
+
+    private String status(Long txnId, HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new GatewayException("Gateway returned HTTP " + response.statusCode() + " for txnId=" + txnId);
+        }
+        try {
+            JsonNode json = objectMapper.readTree(response.body());
+            return json.path("status").asText();
+        } catch (JsonProcessingException e) {
+            throw new GatewayException("Unreadable gateway response for txnId=" + txnId, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.close();
+        callbackExecutor.close();
+    }
+}
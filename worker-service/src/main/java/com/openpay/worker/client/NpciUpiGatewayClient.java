@@ -26,52 +26,93 @@
  */
 package com.openpay.worker.client;
 
-import java.math.BigDecimal;
-import java.util.Random;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import com.openpay.shared.model.FailureReason;
+
 /**
  * Simulates interaction with the NPCI UPI gateway.
- * In real-world: replace with actual HTTP or ISO 8583 integration.
- * For MVP: randomly returns success or failure to test workflow.
+ * In real-world: replace with actual HTTP or ISO 8583 integration
+ * ({@link HttpUpiGatewayClient}).
+ * For MVP: randomly returns success or failure to test workflow, and
+ * remembers recent outcomes so replays and status inquiries are consistent.
+ * Active unless {@code openpay.gateway.client=http}.
  */
 @Component
-public class NpciUpiGatewayClient {
+@ConditionalOnProperty(name = "openpay.gateway.client", havingValue = "mock", matchIfMissing = true)
+public class NpciUpiGatewayClient implements UpiGatewayClient {
     private static final Logger log = LoggerFactory.getLogger(NpciUpiGatewayClient.class);
-    private static final Random RANDOM = new Random();
+    private static final long SIMULATED_RTT_MS = 600L;
+    private static final long INQUIRY_RTT_MS = 50L;
+    private static final int MAX_REMEMBERED = 100_000;
+
+    private final Map<Long, GatewayStatus> outcomes = new ConcurrentHashMap<>();
 
     /**
-     * Simulate sending a payment request to NPCI/UPI network.
+     * Simulate sending a payment request to NPCI/UPI network. The simulated
+     * round trip is a delayed completion, not a sleeping thread.
      * 
      * @param senderUpi   Sender's UPI ID
      * @param receiverUpi Receiver's UPI ID
-     * @param amount      Amount to transfer
+     * @param amountPaise Amount to transfer, in paise
      * @param txnId       Unique transaction ID
-     * @return true if payment succeeded, false otherwise
+     * @param timeout     longest time to wait for the answer
+     * @return future with success, a decline, or an unknown outcome on timeout
      */
-    public boolean initiateUpiPayment(String senderUpi, String receiverUpi, BigDecimal amount, Long txnId) {
-        // Simulate network delay
-        try {
-            Thread.sleep(600); // 600ms to simulate network RTT
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
+    @Override
+    public CompletableFuture<PaymentOutcome> initiateUpiPayment(String senderUpi, String receiverUpi, long amountPaise,
+            Long txnId, Duration timeout) {
         // Log payload as if calling a real UPI API
-        log.info("[NPCI-UPI] Initiating payment: senderUpi={}, receiverUpi={}, amount={}, txnId={}",
-                senderUpi, receiverUpi, amount, txnId);
-
-        // Simulate random success/failure (80% success rate for realism)
-        boolean success = RANDOM.nextInt(100) < 80;
+        log.info("[NPCI-UPI] Initiating payment: senderUpi={}, receiverUpi={}, amountPaise={}, txnId={}",
+                senderUpi, receiverUpi, amountPaise, txnId);
 
-        if (success) {
-            log.info("[NPCI-UPI] Payment SUCCESS for txnId={}", txnId);
-        } else {
-            log.warn("[NPCI-UPI] Payment FAILURE for txnId={}", txnId);
+        // Simulate network delay (600ms RTT) without holding a thread
+        if (outcomes.size() > MAX_REMEMBERED) {
+            outcomes.clear();
         }
-        return success;
+        outcomes.putIfAbsent(txnId, GatewayStatus.PENDING);
+        return CompletableFuture.supplyAsync(() -> {
+            // Simulate random success/failure (80% success rate for realism);
+            // a replayed txnId gets its recorded outcome
+            GatewayStatus recorded = outcomes.compute(txnId, (id, s) -> s != null && s.isFinal() ? s
+                    : ThreadLocalRandom.current().nextInt(100) < 80 ? GatewayStatus.SUCCESS : GatewayStatus.FAILURE);
+            boolean success = recorded == GatewayStatus.SUCCESS;
+
+            if (success) {
+                log.info("[NPCI-UPI] Payment SUCCESS for txnId={}", txnId);
+            } else {
+                log.warn("[NPCI-UPI] Payment FAILURE for txnId={}", txnId);
+            }
+            return success ? PaymentOutcome.success() : PaymentOutcome.permanent(FailureReason.DECLINED);
+        }, CompletableFuture.delayedExecutor(SIMULATED_RTT_MS, TimeUnit.MILLISECONDS))
+                .completeOnTimeout(PaymentOutcome.unknown(FailureReason.GATEWAY_TIMEOUT), timeout.toMillis(),
+                        TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Simulated status inquiry against the remembered outcomes.
+     *
+     * @param txnId   Unique transaction ID
+     * @param timeout longest time to wait for the answer
+     * @return future with the recorded status
+     */
+    @Override
+    public CompletableFuture<GatewayStatus> inquireStatus(Long txnId, Duration timeout) {
+        return CompletableFuture.supplyAsync(
+                () -> outcomes.getOrDefault(txnId, GatewayStatus.NOT_FOUND),
+                CompletableFuture.delayedExecutor(INQUIRY_RTT_MS, TimeUnit.MILLISECONDS))
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(
+                        new GatewayException("Simulated status inquiry timed out for txnId=" + txnId, e)));
     }
 }
@@ -0,0 +1,69 @@
+package com.openpay.worker.client;
+
+import com.openpay.shared.model.FailureReason;
+
+/**
+ * <h2>PaymentOutcome</h2>
+ * <p>
+ * Structured result of a gateway call or of processing one payment, so the
+ * worker can decide what to do next without guessing from a boolean.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link Kind#SUCCESS}: the payment went through</li>
+ * <li>{@link Kind#PERMANENT}: it can never succeed as is (declined, unknown
+ * transaction, malformed payload); fail it now, do not retry</li>
+ * <li>{@link Kind#RETRYABLE}: it was certainly not executed (gateway
+ * unavailable, worker error); safe to try again</li>
+ * <li>{@link Kind#UNKNOWN}: it may have executed (timeout); only retry with the
+ * same idempotency reference and never mark it failed</li>
+ * </ul>
+ *
+ * @param kind   outcome class
+ * @param reason failure reason, null for {@link Kind#SUCCESS}
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public record PaymentOutcome(Kind kind, FailureReason reason) {
+
+    /**
+     * Outcome classes.
+     */
+    public enum Kind {
+        SUCCESS, PERMANENT, RETRYABLE, UNKNOWN
+    }
+
+    private static final PaymentOutcome SUCCESS = new PaymentOutcome(Kind.SUCCESS, null);
+
+    public static PaymentOutcome success() {
+        return SUCCESS;
+    }
+
+    public static PaymentOutcome permanent(FailureReason reason) {
+        return new PaymentOutcome(Kind.PERMANENT, reason);
+    }
+
+    public static PaymentOutcome retryable(FailureReason reason) {
+        return new PaymentOutcome(Kind.RETRYABLE, reason);
+    }
+
+    public static PaymentOutcome unknown(FailureReason reason) {
+        return new PaymentOutcome(Kind.UNKNOWN, reason);
+    }
+
+    /**
+     * @return true if the gateway gave a final answer (success or a permanent
+     *         failure such as a decline)
+     */
+    public boolean isFinal() {
+        return kind == Kind.SUCCESS || kind == Kind.PERMANENT;
+    }
+
+    /**
+     * @return true if trying again may help
+     */
+    public boolean isRetryable() {
+        return kind == Kind.RETRYABLE || kind == Kind.UNKNOWN;
+    }
+}
@@ -0,0 +1,53 @@
+package com.openpay.worker.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <h2>UpiGatewayClient</h2>
+ * <p>
+ * Asynchronous connector to the UPI/NPCI switch. Calls return immediately
+ * with a {@link CompletableFuture}; no thread is parked on the network
+ * round trip, so the worker can keep many payments in flight and pipeline them
+ * over few connections.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link NpciUpiGatewayClient}: in-process mock (default,
+ * {@code openpay.gateway.client=mock})</li>
+ * <li>{@link HttpUpiGatewayClient}: HTTP/2 client against a real endpoint or
+ * the local {@code npci-simulator} ({@code openpay.gateway.client=http})</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public interface UpiGatewayClient {
+
+    /**
+     * Sends a payment to the UPI network.
+     *
+     * @param senderUpi   Sender's UPI ID
+     * @param receiverUpi Receiver's UPI ID
+     * @param amountPaise Amount to transfer, in paise
+     * @param txnId       Unique transaction ID (the switch's idempotency
+     *                    reference; a repeated call never pays twice)
+     * @param timeout     longest time to wait for the answer
+     * @return future with the classified outcome: success, a permanent
+     *         failure (decline, rejected request), retryable (not executed) or
+     *         unknown (timeout); gateway problems are reported here, not as an
+     *         exceptional completion
+     */
+    CompletableFuture<PaymentOutcome> initiateUpiPayment(String senderUpi, String receiverUpi, long amountPaise,
+            Long txnId, Duration timeout);
+
+    /**
+     * Asks the switch what became of an earlier payment (status inquiry).
+     *
+     * @param txnId   transaction ID used as idempotency reference
+     * @param timeout longest time to wait for the answer
+     * @return future with the switch's view of the payment; completes
+     *         exceptionally with {@link GatewayException} on transport errors
+     */
+    CompletableFuture<GatewayStatus> inquireStatus(Long txnId, Duration timeout);
+}
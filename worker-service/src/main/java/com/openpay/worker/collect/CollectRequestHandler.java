@@ -0,0 +1,458 @@
+package com.openpay.worker.collect;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openpay.shared.model.FailureReason;
+import com.openpay.shared.model.TransactionEntity;
+import com.openpay.shared.model.TransactionHistoryEntity;
+import com.openpay.shared.model.TransactionStatus;
+import com.openpay.shared.repository.TransactionHistoryRepository;
+import com.openpay.shared.repository.TransactionRepository;
+import com.openpay.shared.util.StreamPartitioner;
+import com.openpay.worker.leader.LeaderElection;
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>CollectRequestHandler</h2>
+ * <p>
+ * Drives collect (pull) requests through their pending-approval lifecycle,
+ * separately from push payments: a collect sits in REQUESTED until the payer
+ * approves it (then it becomes an ordinary queued payment), declines it
+ * (FAILED, DECLINED) or lets it expire (FAILED, COLLECT_EXPIRED).
+ * </p>
+ *
+ * <ul>
+ * <li>Runs on the elected leader only (see {@link LeaderElection}), reading
+ * {@link StreamPartitioner#COLLECT_STREAM} on its own thread</li>
+ * <li>{@code collect}: schedules the expiry ({@code openpay.collect.expiry}
+ * after the event) in a {@link HierarchicalTimingWheel}, so millions of
+ * pending collects cost O(1) each and no polling of the table</li>
+ * <li>{@code collect-approved}: REQUESTED → QUEUED, then the payment is
+ * enqueued to the payer's partition stream</li>
+ * <li>{@code collect-declined}: REQUESTED → FAILED (DECLINED)</li>
+ * <li>Fired expiries are buffered and marked in batches: one
+ * {@code UPDATE ... WHERE id = ANY(?) AND status = REQUESTED} per batch, with
+ * the audit rows written by the same statement; collects answered in the
+ * meantime are skipped by the status condition</li>
+ * <li>The id of the last handled event is kept in Redis
+ * ({@value #CURSOR_KEY}); on taking leadership the wheel is rebuilt from the
+ * REQUESTED rows (paged through {@code idx_tx_active_created}) and the stream
+ * is read on from that cursor, so approvals and declines written during a
+ * failover are not skipped. Replayed events are harmless: every decision is
+ * conditional on REQUESTED. Without a cursor (first run) reading starts at
+ * the stream's end as of just before the rebuild</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class CollectRequestHandler implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(CollectRequestHandler.class);
+
+    static final String TYPE_CREATED = "collect";
+    static final String TYPE_APPROVED = "collect-approved";
+    static final String TYPE_DECLINED = "collect-declined";
+
+    static final String CURSOR_KEY = "openpay:collect:cursor";
+
+    private static final String EXPIRE = "WITH expired AS ("
+            + " UPDATE transactions SET status = ?, failure_reason = ?, updated_at = now()"
+            + " WHERE id = ANY(?) AND status = ? RETURNING id)"
+            + " INSERT INTO transaction_history (transaction_id, prev_status, new_status, reason, changed_at)"
+            + " SELECT id, ?, ?, ?, now() FROM expired";
+
+    // status = 5 (REQUESTED) as a literal, so idx_tx_active_created applies
+    private static final String PENDING_PAGE = "SELECT id, created_at FROM transactions"
+            + " WHERE status = 5 AND created_at >= ? AND (created_at, id) > (?, ?)"
+            + " ORDER BY created_at, id LIMIT ?";
+
+    private final RedisTemplate<Object, Object> redisWorkerTemplate;
+    private final StringRedisTemplate redis;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final LeaderElection leaderElection;
+    private final MeterRegistry meterRegistry;
+    private final Duration expiry;
+    private final long tickMillis;
+    private final int wheelBits;
+    private final int wheelLevels;
+    private final int readBatchSize;
+    private final int expireBatchSize;
+    private final int partitions;
+
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+    private final AtomicLong pending = new AtomicLong();
+    private volatile Thread reader;
+    private volatile boolean running;
+
+    private record PendingRow(long id, Timestamp createdAt) {
+    }
+
+    // confined to the reader thread
+    private HierarchicalTimingWheel wheel;
+    private String cursor;
+    private long[] expired = new long[1024];
+    private int expiredCount;
+
+    /**
+     * @param redisWorkerTemplate          template the streams are written
+     *                                     with
+     * @param redis                        persists the stream cursor
+     * @param jdbcTemplate                 batch expiry and wheel rebuild
+     * @param transactionTemplate          one DB transaction per decision
+     * @param transactionRepository        transactions
+     * @param transactionHistoryRepository audit trail
+     * @param leaderElection               runs only on the leader
+     * @param meterRegistry                metrics registry
+     * @param expiry                       how long a payer has to answer
+     * @param tick                         timing wheel resolution
+     * @param wheelBits                    log2 of the slots per wheel
+     * @param wheelLevels                  number of wheels
+     * @param readBatchSize                events per XREAD
+     * @param expireBatchSize              expiries per UPDATE
+     * @param partitions                   number of partition streams
+     */
+    public CollectRequestHandler(RedisTemplate<Object, Object> redisWorkerTemplate,
+            StringRedisTemplate redis,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            TransactionRepository transactionRepository,
+            TransactionHistoryRepository transactionHistoryRepository,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.collect.expiry:PT30M}") Duration expiry,
+            @Value("${openpay.collect.wheel.tick:PT1S}") Duration tick,
+            @Value("${openpay.collect.wheel.bits:6}") int wheelBits,
+            @Value("${openpay.collect.wheel.levels:4}") int wheelLevels,
+            @Value("${openpay.collect.read-batch-size:500}") int readBatchSize,
+            @Value("${openpay.collect.expire-batch-size:1000}") int expireBatchSize,
+            @Value("${openpay.streams.partitions:8}") int partitions) {
+        if (expireBatchSize <= 0 || readBatchSize <= 0) {
+            throw new IllegalArgumentException("openpay.collect batch sizes must be positive");
+        }
+        this.redisWorkerTemplate = redisWorkerTemplate;
+        this.redis = redis;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionRepository = transactionRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.leaderElection = leaderElection;
+        this.meterRegistry = meterRegistry;
+        this.expiry = expiry;
+        this.tickMillis = tick.toMillis();
+        this.wheelBits = wheelBits;
+        this.wheelLevels = wheelLevels;
+        this.readBatchSize = readBatchSize;
+        this.expireBatchSize = expireBatchSize;
+        this.partitions = partitions;
+        // validates the wheel shape at startup rather than on first leadership
+        new HierarchicalTimingWheel(tickMillis, wheelBits, wheelLevels, 0);
+        Gauge.builder("openpay.collect.timers", pending, AtomicLong::get)
+                .description("Collect expiry timers held by this worker")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        reader = Thread.ofPlatform().name("collect-handler").start(this::run);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        stopSignal.countDown();
+        try {
+            reader.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (stopSignal.getCount() > 0) {
+            try {
+                if (!leaderElection.isLeader()) {
+                    if (wheel != null) {
+                        log.info("[COLLECT] Not leader any more, dropping {} timers", wheel.size());
+                        deactivate();
+                    }
+                    if (awaitStop(tickMillis)) {
+                        break;
+                    }
+                    continue;
+                }
+                if (wheel == null) {
+                    activate();
+                }
+                int read = readEvents();
+                wheel.advance(System.currentTimeMillis(), this::onExpired);
+                pending.set(wheel.size());
+                flushExpired();
+                if (read < readBatchSize && awaitStop(tickMillis)) {
+                    break;
+                }
+            } catch (RuntimeException e) {
+                log.error("[COLLECT] Handler cycle failed, retrying", e);
+                if (awaitStop(tickMillis)) {
+                    break;
+                }
+            }
+        }
+        log.info("[COLLECT] Handler stopped");
+    }
+
+    /**
+     * Becomes the active handler: resumes from the persisted cursor (or
+     * remembers the end of the stream), then loads every pending collect into
+     * a fresh wheel.
+     */
+    private void activate() {
+        String startAt = redis.opsForValue().get(CURSOR_KEY);
+        if (startAt == null) {
+            List<MapRecord<Object, Object, Object>> last = redisWorkerTemplate.opsForStream()
+                    .reverseRange(StreamPartitioner.COLLECT_STREAM, Range.unbounded(), Limit.limit().count(1));
+            startAt = last == null || last.isEmpty() ? PartitionLeaseManager.INITIAL_OFFSET
+                    : last.get(0).getId().getValue();
+        }
+
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel rebuilt = new HierarchicalTimingWheel(tickMillis, wheelBits, wheelLevels, now);
+        long loaded = 0;
+        PendingRow after = new PendingRow(0, new Timestamp(0));
+        while (true) {
+            List<PendingRow> page = jdbcTemplate.query(PENDING_PAGE,
+                    (rs, i) -> new PendingRow(rs.getLong(1), rs.getTimestamp(2)),
+                    after.createdAt(), after.createdAt(), after.id(), expireBatchSize);
+            for (PendingRow row : page) {
+                if (!rebuilt.schedule(row.id(), row.createdAt().getTime() + expiry.toMillis())) {
+                    onExpired(row.id());
+                }
+            }
+            loaded += page.size();
+            if (page.size() < expireBatchSize) {
+                break;
+            }
+            after = page.get(page.size() - 1);
+        }
+        wheel = rebuilt;
+        cursor = startAt;
+        pending.set(wheel.size());
+        log.info("[COLLECT] Leading collect handling: {} pending collects loaded, reading from {}", loaded,
+                startAt);
+    }
+
+    private void deactivate() {
+        wheel = null;
+        cursor = null;
+        expiredCount = 0;
+        pending.set(0);
+    }
+
+    /**
+     * @return number of events read
+     */
+    private int readEvents() {
+        @SuppressWarnings("unchecked")
+        List<MapRecord<Object, Object, Object>> events = redisWorkerTemplate.opsForStream().read(
+                StreamReadOptions.empty().count(readBatchSize),
+                StreamOffset.create(StreamPartitioner.COLLECT_STREAM, ReadOffset.from(cursor)));
+        if (events == null) {
+            return 0;
+        }
+        for (MapRecord<Object, Object, Object> event : events) {
+            handle(event);
+            cursor = event.getId().getValue();
+            redis.opsForValue().set(CURSOR_KEY, cursor);
+        }
+        return events.size();
+    }
+
+    private void handle(MapRecord<Object, Object, Object> event) {
+        Map<Object, Object> payload = event.getValue();
+        Long txnId = txnIdOf(payload.get("txnId"));
+        String type = String.valueOf(payload.get("type"));
+        if (txnId == null) {
+            log.warn("[COLLECT] Ignoring event {} without txnId: {}", event.getId(), payload);
+            return;
+        }
+        Counter.builder("openpay.collect.events").tag("type", type).register(meterRegistry).increment();
+        switch (type) {
+            case TYPE_CREATED -> {
+                long createdAt = event.getId().getTimestamp();
+                if (!wheel.schedule(txnId, createdAt + expiry.toMillis())) {
+                    onExpired(txnId);
+                }
+                log.debug("[COLLECT] Collect {} awaiting payer approval", txnId);
+            }
+            case TYPE_APPROVED -> approve(txnId);
+            case TYPE_DECLINED -> decide(txnId, TransactionStatus.FAILED, FailureReason.DECLINED);
+            default -> log.warn("[COLLECT] Unknown event type '{}' for txnId={}", type, txnId);
+        }
+    }
+
+    /**
+     * Approved: the collect becomes a queued payment of the payer and joins the
+     * push pipeline. Its timer stays in the wheel and is skipped on expiry.
+     */
+    private void approve(Long txnId) {
+        if (!decide(txnId, TransactionStatus.QUEUED, null)) {
+            return;
+        }
+        TransactionEntity txn = transactionRepository.findById(txnId).orElse(null);
+        if (txn == null) {
+            return;
+        }
+        Map<Object, Object> payment = new HashMap<>();
+        payment.put("txnId", txn.getId());
+        payment.put("senderUpi", txn.getSenderUpi());
+        payment.put("receiverUpi", txn.getReceiverUpi());
+        payment.put("amountPaise", String.valueOf(txn.getAmountPaise()));
+        String stream = StreamPartitioner.streamForSender(txn.getSenderUpi(), partitions);
+        redisWorkerTemplate.opsForStream().add(stream, payment);
+        log.info("[COLLECT] Collect {} approved, enqueued to {}", txnId, stream);
+    }
+
+    /**
+     * Moves a collect out of REQUESTED, unless it was already answered or
+     * expired.
+     *
+     * @return true if this call moved it
+     */
+    private boolean decide(Long txnId, TransactionStatus to, FailureReason reason) {
+        Boolean moved = transactionTemplate.execute(tx -> {
+            if (transactionRepository.transition(txnId, TransactionStatus.REQUESTED, to, reason,
+                    LocalDateTime.now()) != 1) {
+                return false;
+            }
+            TransactionHistoryEntity audit = new TransactionHistoryEntity();
+            audit.setTransactionId(txnId);
+            audit.setPrevStatus(TransactionStatus.REQUESTED);
+            audit.setNewStatus(to);
+            audit.setReason(reason);
+            audit.setChangedAt(LocalDateTime.now());
+            transactionHistoryRepository.save(audit);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(moved)) {
+            log.info("[COLLECT] Collect {} is no longer awaiting approval, {} ignored", txnId, to);
+            return false;
+        }
+        return true;
+    }
+
+    private void onExpired(long txnId) {
+        if (expiredCount == expired.length) {
+            expired = Arrays.copyOf(expired, expired.length * 2);
+        }
+        expired[expiredCount++] = txnId;
+    }
+
+    /**
+     * Marks buffered expiries in batches. A failed batch stays buffered and is
+     * retried on the next cycle.
+     */
+    private void flushExpired() {
+        int done = 0;
+        try {
+            while (done < expiredCount) {
+                int n = Math.min(expireBatchSize, expiredCount - done);
+                Long[] ids = new Long[n];
+                for (int i = 0; i < n; i++) {
+                    ids[i] = expired[done + i];
+                }
+                int marked = jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(EXPIRE);
+                    Array array = connection.createArrayOf("bigint", ids);
+                    ps.setShort(1, TransactionStatus.FAILED.getCode());
+                    ps.setShort(2, FailureReason.COLLECT_EXPIRED.getCode());
+                    ps.setArray(3, array);
+                    ps.setShort(4, TransactionStatus.REQUESTED.getCode());
+                    ps.setShort(5, TransactionStatus.REQUESTED.getCode());
+                    ps.setShort(6, TransactionStatus.FAILED.getCode());
+                    ps.setShort(7, FailureReason.COLLECT_EXPIRED.getCode());
+                    return ps;
+                });
+                done += n;
+                Counter.builder("openpay.collect.expired").register(meterRegistry).increment(marked);
+                if (marked > 0) {
+                    log.info("[COLLECT] Expired {} collect requests ({} already answered)", marked, n - marked);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("[COLLECT] Expiry batch failed, will retry: {}", e.getMessage());
+        } finally {
+            System.arraycopy(expired, done, expired, 0, expiredCount - done);
+            expiredCount -= done;
+        }
+    }
+
+    /**
+     * Waits up to {@code millis}, returning early on shutdown.
+     *
+     * @return true if the handler is stopping
+     */
+    private boolean awaitStop(long millis) {
+        try {
+            return stopSignal.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private static Long txnIdOf(Object value) {
+        if (value instanceof Long id) {
+            return id;
+        }
+        try {
+            return value == null ? null : Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
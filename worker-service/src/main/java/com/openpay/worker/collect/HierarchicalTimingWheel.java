@@ -0,0 +1,190 @@
+package com.openpay.worker.collect;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * <h2>HierarchicalTimingWheel</h2>
+ * <p>
+ * Timer store for a very large number of expiries keyed by a {@code long} id
+ * (the pending collect requests). Scheduling is O(1) and advancing the clock
+ * costs O(1) per tick plus O(1) amortised per timer, however many timers are
+ * pending; a priority queue would be O(log n) for both.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code levels} wheels of {@code 2^bits} slots each; a slot of level
+ * {@code l} covers {@code 2^(bits*l)} ticks. A timer lives in the lowest level
+ * whose current rotation contains its deadline</li>
+ * <li>When a lower wheel wraps, the next slot of the wheel above is cascaded:
+ * its timers are re-placed one level down (or fired if due)</li>
+ * <li>Deadlines beyond the top wheel's span are parked in the top wheel and
+ * re-placed each time their slot comes round</li>
+ * <li>A timer is two {@code long}s in a growable array per slot (ids and
+ * deadline ticks), so millions of timers cost tens of MB and no per-timer
+ * objects</li>
+ * <li>There is no cancel: a fired id whose request was resolved meanwhile is
+ * filtered out by the caller</li>
+ * <li>Not thread-safe; confined to one thread</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class HierarchicalTimingWheel {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final Bucket[][] wheels;
+
+    private long currentTick;
+    private long size;
+
+    /**
+     * Timers of one slot, as two parallel arrays.
+     */
+    private static final class Bucket {
+        private static final long[] EMPTY = new long[0];
+
+        long[] ids = EMPTY;
+        long[] ticks = EMPTY;
+        int size;
+
+        void add(long id, long tick) {
+            if (size == ids.length) {
+                int capacity = Math.max(8, size + (size >> 1));
+                ids = Arrays.copyOf(ids, capacity);
+                ticks = Arrays.copyOf(ticks, capacity);
+            }
+            ids[size] = id;
+            ticks[size] = tick;
+            size++;
+        }
+    }
+
+    /**
+     * @param tickMillis  resolution; deadlines are rounded up to a tick
+     * @param bits        log2 of the slots per wheel (1..16)
+     * @param levels      number of wheels (1..8)
+     * @param startMillis current time
+     */
+    public HierarchicalTimingWheel(long tickMillis, int bits, int levels, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        if (bits < 1 || bits > 16 || levels < 1 || levels > 8 || (long) bits * levels > 62) {
+            throw new IllegalArgumentException("Unsupported wheel shape: bits=" + bits + ", levels=" + levels);
+        }
+        this.tickMillis = tickMillis;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.wheels = new Bucket[levels][1 << bits];
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Adds a timer.
+     *
+     * @param id             timer id, handed back on expiry
+     * @param deadlineMillis expiry time
+     * @return false if the deadline has already passed (the timer is not
+     *         stored; the caller should expire it at once)
+     */
+    public boolean schedule(long id, long deadlineMillis) {
+        long tick = Math.ceilDiv(deadlineMillis, tickMillis);
+        if (tick <= currentTick) {
+            return false;
+        }
+        place(id, tick);
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the clock forward, firing every timer due by {@code nowMillis}.
+     *
+     * @param nowMillis current time; earlier than the wheel's time is a no-op
+     * @param expired   receives the id of each fired timer
+     * @return number of fired timers
+     */
+    public int advance(long nowMillis, LongConsumer expired) {
+        long target = nowMillis / tickMillis;
+        int fired = 0;
+        while (currentTick < target) {
+            if (size == 0) {
+                currentTick = target;
+                break;
+            }
+            currentTick++;
+            // cascade from the top so that timers moved down can cascade again this tick
+            for (int level = wheels.length - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    fired += cascade(level, expired);
+                }
+            }
+            Bucket due = wheels[0][(int) (currentTick & mask)];
+            if (due.size > 0) {
+                wheels[0][(int) (currentTick & mask)] = new Bucket();
+                for (int i = 0; i < due.size; i++) {
+                    expired.accept(due.ids[i]);
+                }
+                fired += due.size;
+                size -= due.size;
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * @return number of pending timers
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the wheel's current time, rounded down to a tick
+     */
+    public long currentMillis() {
+        return currentTick * tickMillis;
+    }
+
+    private int cascade(int level, LongConsumer expired) {
+        int slot = (int) ((currentTick >>> (bits * level)) & mask);
+        Bucket bucket = wheels[level][slot];
+        if (bucket.size == 0) {
+            return 0;
+        }
+        wheels[level][slot] = new Bucket();
+        int fired = 0;
+        for (int i = 0; i < bucket.size; i++) {
+            if (bucket.ticks[i] <= currentTick) {
+                expired.accept(bucket.ids[i]);
+                fired++;
+                size--;
+            } else {
+                place(bucket.ids[i], bucket.ticks[i]);
+            }
+        }
+        return fired;
+    }
+
+    private void place(long id, long tick) {
+        int top = wheels.length - 1;
+        for (int level = 0; level < top; level++) {
+            int shift = bits * (level + 1);
+            if ((tick >>> shift) == (currentTick >>> shift)) {
+                wheels[level][(int) ((tick >>> (bits * level)) & mask)].add(id, tick);
+                return;
+            }
+        }
+        // top wheel; beyond its span the timer comes round again and is re-placed
+        wheels[top][(int) ((tick >>> (bits * top)) & mask)].add(id, tick);
+    }
+}
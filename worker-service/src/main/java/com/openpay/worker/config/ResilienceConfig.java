@@ -0,0 +1,80 @@
+package com.openpay.worker.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.openpay.worker.resilience.AdaptiveConcurrencyLimiter;
+import com.openpay.worker.resilience.CircuitBreaker;
+
+/**
+ * <h2>ResilienceConfig</h2>
+ * <p>
+ * Declares the resilience guards placed in front of external dependencies.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code npciCircuitBreaker}: wraps
+ * {@link com.openpay.worker.client.NpciUpiGatewayClient}; tuned via
+ * {@code openpay.circuit-breaker.npci.*}</li>
+ * <li>{@code npciConcurrencyLimiter}: adaptive in-flight limit for the same
+ * gateway; tuned via {@code openpay.concurrency.npci.*}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Configuration
+public class ResilienceConfig {
+
+    /** {@code service_circuit_breakers.service_name} of the NPCI/UPI gateway. */
+    public static final String NPCI_SERVICE = "npci-upi";
+
+    /**
+     * Circuit breaker around the NPCI/UPI gateway.
+     *
+     * @param failureRateThreshold failure percentage that opens the circuit
+     * @param windowSize           calls in the sliding window
+     * @param minimumCalls         calls needed before the circuit can open
+     * @param openDuration         how long the circuit stays open
+     * @param halfOpenCalls        trial calls while half-open
+     * @return the gateway circuit breaker
+     */
+    @Bean
+    public CircuitBreaker npciCircuitBreaker(
+            @Value("${openpay.circuit-breaker.npci.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${openpay.circuit-breaker.npci.window-size:50}") int windowSize,
+            @Value("${openpay.circuit-breaker.npci.minimum-calls:20}") int minimumCalls,
+            @Value("${openpay.circuit-breaker.npci.open-duration:PT30S}") Duration openDuration,
+            @Value("${openpay.circuit-breaker.npci.half-open-calls:3}") int halfOpenCalls) {
+        return new CircuitBreaker(NPCI_SERVICE, failureRateThreshold, windowSize, minimumCalls,
+                openDuration, halfOpenCalls);
+    }
+
+    /**
+     * Adaptive in-flight limit for NPCI/UPI gateway calls.
+     *
+     * @param initialLimit       starting limit
+     * @param minLimit           floor
+     * @param maxLimit           ceiling
+     * @param rttTolerance       tolerated RTT inflation over the baseline
+     * @param smoothing          weight of each new target
+     * @param backoffRatio       multiplier on a dropped call
+     * @param minRttResetSamples samples between RTT baseline re-learns
+     * @return the gateway concurrency limiter
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter npciConcurrencyLimiter(
+            @Value("${openpay.concurrency.npci.initial-limit:20}") int initialLimit,
+            @Value("${openpay.concurrency.npci.min-limit:4}") int minLimit,
+            @Value("${openpay.concurrency.npci.max-limit:500}") int maxLimit,
+            @Value("${openpay.concurrency.npci.rtt-tolerance:1.5}") double rttTolerance,
+            @Value("${openpay.concurrency.npci.smoothing:0.2}") double smoothing,
+            @Value("${openpay.concurrency.npci.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${openpay.concurrency.npci.min-rtt-reset-samples:1000}") int minRttResetSamples) {
+        return new AdaptiveConcurrencyLimiter(NPCI_SERVICE, initialLimit, minLimit, maxLimit, rttTolerance,
+                smoothing, backoffRatio, minRttResetSamples);
+    }
+}
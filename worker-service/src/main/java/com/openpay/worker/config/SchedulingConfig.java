@@ -0,0 +1,77 @@
+package com.openpay.worker.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * <h2>SchedulingConfig</h2>
+ * <p>
+ * Splits the worker's {@code @Scheduled} jobs over three schedulers, so a
+ * long-running job can never hold up a lease renewal.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code leaseScheduler}: partition lease and leader lease renewals
+ * only, one thread each; missing them for a TTL loses the partitions or
+ * the leadership</li>
+ * <li>{@code jobScheduler}: the long, blocking jobs (sweeps, retention,
+ * audit sealing and verification, ledger snapshots and verification,
+ * reconciliation, payout files, cold archive); sized
+ * ({@code openpay.scheduling.jobs.pool-size}) for one thread per job, so
+ * none waits for another</li>
+ * <li>{@code taskScheduler}: the default for everything else (short state
+ * syncs), configured by {@code spring.task.scheduling.*}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Configuration
+public class SchedulingConfig {
+
+    /**
+     * Default scheduler for short jobs; declared here because defining the
+     * other schedulers switches off Spring Boot's own.
+     *
+     * @param builder Spring Boot's builder, bound to
+     *                {@code spring.task.scheduling.*}
+     * @return scheduler for jobs without an explicit one
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Scheduler dedicated to lease renewals.
+     *
+     * @return two-thread scheduler (partition leases, leader lease)
+     */
+    @Bean
+    public ThreadPoolTaskScheduler leaseScheduler() {
+        return scheduler("lease-", 2);
+    }
+
+    /**
+     * Scheduler for long-running jobs.
+     *
+     * @param poolSize threads; keep at least the number of jobs on it
+     * @return scheduler for sweeps, verifications and exports
+     */
+    @Bean
+    public ThreadPoolTaskScheduler jobScheduler(
+            @Value("${openpay.scheduling.jobs.pool-size:10}") int poolSize) {
+        return scheduler("job-", poolSize);
+    }
+
+    private static ThreadPoolTaskScheduler scheduler(String threadNamePrefix, int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+}
@@ -0,0 +1,38 @@
+package com.openpay.worker.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.openpay.worker.executor.KeyedSerialExecutor;
+
+/**
+ * <h2>WorkerExecutorConfig</h2>
+ * <p>
+ * Declares the executors the worker dispatches stream records onto.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code senderMailboxes}: one serial mailbox per sender UPI, drained on
+ * virtual threads; bounded by {@code openpay.worker.mailbox.max-queued}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Configuration
+public class WorkerExecutorConfig {
+
+    /**
+     * Per-sender serial executor used by the stream consumer.
+     *
+     * @param maxQueued upper bound on payments queued or in flight across all
+     *                  senders
+     * @return keyed executor; closed with the context
+     */
+    @Bean(destroyMethod = "close")
+    public KeyedSerialExecutor<String> senderMailboxes(
+            @Value("${openpay.worker.mailbox.max-queued:256}") int maxQueued) {
+        return new KeyedSerialExecutor<>(maxQueued);
+    }
+}
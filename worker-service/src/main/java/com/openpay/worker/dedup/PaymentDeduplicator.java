@@ -0,0 +1,226 @@
+package com.openpay.worker.dedup;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * <h2>PaymentDeduplicator</h2>
+ * <p>
+ * Guards against processing one stream message twice. Delivery is
+ * at-least-once: after a crash, a drain timeout or a lease handover the same
+ * payment can be read again, and without this guard it would be sent to the
+ * gateway a second time.
+ * </p>
+ *
+ * <ul>
+ * <li>A bounded in-memory set of recently finished payments answers most
+ * duplicates in O(1) without a Redis round trip</li>
+ * <li>Otherwise a Redis claim {@code openpay:txn-claim:<key>} is taken
+ * atomically: {@code P:<worker>} while processing (expires after
+ * {@code claim-ttl}), {@code D:<worker>} once finished (kept for
+ * {@code done-ttl})</li>
+ * <li>A handed-back payment releases its claim so the next owner can take it
+ * at once</li>
+ * <li>The key is the {@code txnId}; a DLQ redrive or a sweeper re-enqueue
+ * ({@code redriveOf} field) is a new delivery on purpose and gets its own
+ * key</li>
+ * <li>If Redis is unreachable the guard fails open: the gateway call is still
+ * idempotent by {@code txnId}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class PaymentDeduplicator implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentDeduplicator.class);
+
+    static final String KEY_PREFIX = "openpay:txn-claim:";
+
+    /**
+     * Result of {@link #tryClaim(String)}.
+     */
+    public enum Claim {
+        /** This worker may process the payment. */
+        CLAIMED,
+        /** Already finished; skip it. */
+        DONE,
+        /** Being processed by another worker; skip it. */
+        IN_FLIGHT
+    }
+
+    /** KEYS[1] = claim; ARGV = worker id, claim ttl ms. */
+    private static final RedisScript<String> CLAIM = new DefaultRedisScript<>(
+            "local v = redis.call('get', KEYS[1]) "
+                    + "if not v or v == 'P:' .. ARGV[1] then "
+                    + "  redis.call('set', KEYS[1], 'P:' .. ARGV[1], 'PX', ARGV[2]) return 'CLAIMED' "
+                    + "end "
+                    + "if string.sub(v, 1, 2) == 'D:' then return 'DONE' end "
+                    + "return 'IN_FLIGHT'",
+            String.class);
+
+    /** KEYS[1] = claim; ARGV = worker id. */
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == 'P:' .. ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final String workerId;
+    private final Duration claimTtl;
+    private final Duration doneTtl;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock; access order = LRU eviction beyond recentSize
+    private final Map<String, Boolean> recent;
+
+    private final AtomicLong suppressedDone = new AtomicLong();
+    private final AtomicLong suppressedInFlight = new AtomicLong();
+    private final AtomicLong suppressedCompleted = new AtomicLong();
+
+    /**
+     * @param redis                 string template for the claims
+     * @param partitionLeaseManager id of this worker (claim owner)
+     * @param claimTtl              how long a processing claim blocks other
+     *                              workers
+     * @param doneTtl               how long a finished payment is remembered in
+     *                              Redis
+     * @param recentSize            finished payments remembered in memory
+     */
+    public PaymentDeduplicator(StringRedisTemplate redis,
+            PartitionLeaseManager partitionLeaseManager,
+            @Value("${openpay.dedup.claim-ttl:PT5M}") Duration claimTtl,
+            @Value("${openpay.dedup.done-ttl:PT24H}") Duration doneTtl,
+            @Value("${openpay.dedup.recent-size:100000}") int recentSize) {
+        this.redis = redis;
+        this.workerId = partitionLeaseManager.getWorkerId();
+        this.claimTtl = claimTtl;
+        this.doneTtl = doneTtl;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentSize;
+            }
+        };
+    }
+
+    /**
+     * @param payload stream message
+     * @return dedup key, or null for payloads without a txnId (not guarded)
+     */
+    public static String keyOf(Map<Object, Object> payload) {
+        Object txnId = payload.get("txnId");
+        if (txnId == null) {
+            return null;
+        }
+        Object redriveOf = payload.get("redriveOf");
+        return redriveOf == null ? txnId.toString() : txnId + ":" + redriveOf;
+    }
+
+    /**
+     * Claims a payment for processing.
+     *
+     * @param key dedup key from {@link #keyOf(Map)}
+     * @return whether to process it; duplicates are counted
+     */
+    public Claim tryClaim(String key) {
+        if (isRecent(key)) {
+            suppressedDone.incrementAndGet();
+            return Claim.DONE;
+        }
+        String result;
+        try {
+            result = redis.execute(CLAIM, List.of(KEY_PREFIX + key), workerId, String.valueOf(claimTtl.toMillis()));
+        } catch (DataAccessException e) {
+            log.warn("[DEDUP] Claim on {} failed, processing anyway: {}", key, e.getMessage());
+            return Claim.CLAIMED;
+        }
+        Claim claim = result == null ? Claim.CLAIMED : Claim.valueOf(result);
+        if (claim == Claim.DONE) {
+            remember(key);
+            suppressedDone.incrementAndGet();
+        } else if (claim == Claim.IN_FLIGHT) {
+            suppressedInFlight.incrementAndGet();
+        }
+        return claim;
+    }
+
+    /**
+     * Marks a claimed payment finished (any final handling, including DLQ).
+     */
+    public void complete(String key) {
+        remember(key);
+        try {
+            redis.opsForValue().set(KEY_PREFIX + key, "D:" + workerId, doneTtl);
+        } catch (DataAccessException e) {
+            log.warn("[DEDUP] Could not mark {} done: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Gives a claim back unprocessed (handed back on drain, or failed).
+     */
+    public void release(String key) {
+        try {
+            redis.execute(RELEASE, List.of(KEY_PREFIX + key), workerId);
+        } catch (DataAccessException e) {
+            log.debug("[DEDUP] Could not release {}, it will expire: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Counts a duplicate caught later, by the transaction already being
+     * COMPLETED in the database.
+     */
+    public void recordCompletedDuplicate() {
+        suppressedCompleted.incrementAndGet();
+    }
+
+    private boolean isRecent(String key) {
+        lock.lock();
+        try {
+            return recent.get(key) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remember(String key) {
+        lock.lock();
+        try {
+            recent.put(key, Boolean.TRUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("openpay.dedup.suppressed", suppressedDone, AtomicLong::get)
+                .tag("reason", "done").register(registry);
+        FunctionCounter.builder("openpay.dedup.suppressed", suppressedInFlight, AtomicLong::get)
+                .tag("reason", "in_flight").register(registry);
+        FunctionCounter.builder("openpay.dedup.suppressed", suppressedCompleted, AtomicLong::get)
+                .tag("reason", "completed").register(registry);
+    }
+}
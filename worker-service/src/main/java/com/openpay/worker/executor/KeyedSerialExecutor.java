@@ -0,0 +1,189 @@
+package com.openpay.worker.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <h2>KeyedSerialExecutor</h2>
+ * <p>
+ * Runs tasks serially per key and in parallel across keys. Each key gets a
+ * lock-free mailbox (an MPSC queue plus a pending counter); the first task
+ * into an empty mailbox starts a drainer on a fresh virtual thread, which runs
+ * that key's tasks one after another in submission order and exits when the
+ * mailbox is empty again.
+ * </p>
+ *
+ * <ul>
+ * <li><b>Ordering</b>: tasks of one key never overlap and run in submit
+ * order</li>
+ * <li><b>Parallelism</b>: unrelated keys run concurrently, no global lock</li>
+ * <li><b>Bounded memory</b>: at most {@code maxQueued} tasks are queued or
+ * running across all keys; {@link #submit} blocks beyond that, which pushes
+ * back on the stream reader</li>
+ * <li><b>Reclamation</b>: a mailbox removes itself from the map the moment it
+ * drains empty, so idle senders cost nothing</li>
+ * </ul>
+ *
+ * @param <K> key type (e.g. sender UPI)
+ * @author David Grace
+ * @since 1.0
+ */
+public class KeyedSerialExecutor<K> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    /** Pending-count sentinel of a mailbox that has been unlinked from the map. */
+    private static final int DEAD = -1;
+
+    private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final int maxQueued;
+    private final ExecutorService drainers = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
+
+    /**
+     * One key's queue. {@code pending} counts submitted-but-unfinished tasks:
+     * the submitter that moves it 0 -&gt; 1 starts the drainer, the drainer
+     * that moves it 1 -&gt; 0 stops, and an idle mailbox is retired by moving
+     * it 0 -&gt; {@link #DEAD}.
+     */
+    private final class Mailbox implements Runnable {
+        private final K key;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Mailbox(K key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if this mailbox is dead and the caller must retry with a
+         *         fresh one
+         */
+        boolean enqueue(Runnable task) {
+            while (true) {
+                int p = pending.get();
+                if (p == DEAD) {
+                    return false;
+                }
+                if (pending.compareAndSet(p, p + 1)) {
+                    queue.offer(task);
+                    if (p == 0) {
+                        drainers.execute(this);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    // A submitter has counted its task but not offered it yet
+                    Thread.yield();
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("[MAILBOX] Task for key={} failed: {}", key, e.getMessage(), e);
+                } finally {
+                    capacity.release();
+                }
+                if (pending.decrementAndGet() == 0) {
+                    // Idle: retire unless a submitter slipped in meanwhile (then it
+                    // has already started a new drainer for us)
+                    if (pending.compareAndSet(0, DEAD)) {
+                        mailboxes.remove(key, this);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param maxQueued upper bound on tasks queued or running across all keys
+     */
+    public KeyedSerialExecutor(int maxQueued) {
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException("maxQueued must be positive: " + maxQueued);
+        }
+        this.maxQueued = maxQueued;
+        this.capacity = new Semaphore(maxQueued);
+    }
+
+    /**
+     * Queues a task behind all earlier tasks of the same key. Blocks while the
+     * executor is at capacity.
+     *
+     * @param key  serialization key
+     * @param task task to run
+     * @throws InterruptedException       if interrupted while waiting for
+     *                                    capacity
+     * @throws RejectedExecutionException after {@link #close()}
+     */
+    public void submit(K key, Runnable task) throws InterruptedException {
+        if (closed) {
+            throw new RejectedExecutionException("KeyedSerialExecutor is closed");
+        }
+        capacity.acquire();
+        while (!mailboxes.computeIfAbsent(key, Mailbox::new).enqueue(task)) {
+            // raced with the retirement of an idle mailbox; the retiring drainer
+            // unlinks it, computeIfAbsent then creates a fresh one
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return tasks currently queued or running across all keys
+     */
+    public int queuedTasks() {
+        return maxQueued - capacity.availablePermits();
+    }
+
+    /**
+     * @return keys that currently have a live mailbox
+     */
+    public int activeMailboxes() {
+        return mailboxes.size();
+    }
+
+    /**
+     * Stops accepting tasks and waits up to {@code timeout} for the queued ones.
+     *
+     * @param timeout max wait
+     * @param unit    unit of {@code timeout}
+     * @return true if every queued task finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        closed = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (queuedTasks() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        drainers.close();
+    }
+}
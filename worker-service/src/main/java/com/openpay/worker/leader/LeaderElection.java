@@ -0,0 +1,140 @@
+package com.openpay.worker.leader;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>LeaderElection</h2>
+ * <p>
+ * Elects one worker of the fleet to run the singleton background jobs (stuck
+ * transaction sweep, collect request handling, stream retention). Leadership
+ * is a Redis lease, the same protocol as the partition leases of
+ * {@link PartitionLeaseManager}.
+ * </p>
+ *
+ * <ul>
+ * <li><b>Lease</b>: {@code openpay:leader} = worker id, taken with
+ * {@code SET NX PX}; renewed and released only by its holder (compare-and-set
+ * scripts)</li>
+ * <li><b>Local view</b>: this worker trusts its leadership until the renew
+ * time plus the TTL, measured before the Redis call; once Redis stops
+ * answering it steps down on its own before another worker can take over</li>
+ * <li><b>Failover</b>: a clean shutdown releases the lease at once; a crashed
+ * leader's lease expires after the TTL</li>
+ * <li>Jobs call {@link #isLeader()} at the start of each run; their writes
+ * must still be safe under a brief overlap (conditional updates)</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class LeaderElection {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderElection.class);
+
+    static final String LEADER_KEY = "openpay:leader";
+
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final String workerId;
+    private final Duration leaseTtl;
+
+    /** Leadership is trusted until this instant; 0 = not leader. */
+    private volatile long validUntilNanos;
+    private volatile boolean leader;
+
+    /**
+     * @param redis                 string template for the leader key
+     * @param partitionLeaseManager id of this worker (lease holder)
+     * @param meterRegistry         metrics registry
+     * @param leaseTtl              leader lease TTL
+     */
+    public LeaderElection(StringRedisTemplate redis,
+            PartitionLeaseManager partitionLeaseManager,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.leader.lease-ttl:PT15S}") Duration leaseTtl) {
+        this.redis = redis;
+        this.workerId = partitionLeaseManager.getWorkerId();
+        this.leaseTtl = leaseTtl;
+        Gauge.builder("openpay.leader", this, e -> e.isLeader() ? 1 : 0)
+                .description("1 while this worker runs the singleton jobs")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Renews the lease if held, otherwise tries to take it. Never throws; if
+     * Redis is unreachable the local leadership simply runs out.
+     */
+    @Scheduled(fixedDelayString = "${openpay.leader.renew-interval-ms:3000}", scheduler = "leaseScheduler")
+    public void campaign() {
+        long start = System.nanoTime();
+        try {
+            if (leader) {
+                Long renewed = redis.execute(RENEW, List.of(LEADER_KEY), workerId,
+                        String.valueOf(leaseTtl.toMillis()));
+                if (renewed != null && renewed == 1L) {
+                    validUntilNanos = start + leaseTtl.toNanos();
+                } else {
+                    leader = false;
+                    log.warn("[LEADER] Worker {} lost leadership", workerId);
+                }
+            } else if (Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(LEADER_KEY, workerId, leaseTtl))) {
+                validUntilNanos = start + leaseTtl.toNanos();
+                leader = true;
+                log.info("[LEADER] Worker {} elected leader", workerId);
+            }
+        } catch (DataAccessException e) {
+            log.warn("[LEADER] Campaign failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return true while this worker holds an unexpired leader lease
+     */
+    public boolean isLeader() {
+        return leader && System.nanoTime() - validUntilNanos < 0;
+    }
+
+    /**
+     * Steps down on shutdown so another worker takes over immediately.
+     */
+    @PreDestroy
+    public void resign() {
+        if (!leader) {
+            return;
+        }
+        leader = false;
+        try {
+            redis.execute(RELEASE, List.of(LEADER_KEY), workerId);
+            log.info("[LEADER] Worker {} resigned", workerId);
+        } catch (DataAccessException e) {
+            log.warn("[LEADER] Resign failed, lease will expire: {}", e.getMessage());
+        }
+    }
+}
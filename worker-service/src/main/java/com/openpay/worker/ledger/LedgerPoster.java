@@ -0,0 +1,104 @@
+package com.openpay.worker.ledger;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>LedgerPoster</h2>
+ * <p>
+ * Posts a completed payment to the double-entry ledger (see
+ * {@code V10__ledger.sql}): a debit of the sender's account and a credit of
+ * the receiver's, and the same amounts added to the accounts' balance
+ * stripes. Accounts are the lower-cased UPI ids.
+ * </p>
+ *
+ * <ul>
+ * <li>One statement: the entries are inserted {@code ON CONFLICT DO NOTHING}
+ * and only the inserted ones reach the stripes, so posting a payment twice
+ * (redelivery, sweeper and worker racing) changes nothing</li>
+ * <li>Each posting picks one of {@code stripes} rows per account at random;
+ * concurrent credits to one busy account do not queue on a single row</li>
+ * <li>Stripe rows are updated in account order, so two postings between the
+ * same pair of accounts cannot deadlock</li>
+ * <li>Joins the caller's DB transaction if there is one</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class LedgerPoster {
+
+    static final short DEBIT = 1;
+    static final short CREDIT = 2;
+
+    private static final String POST = "WITH posted AS ("
+            + "INSERT INTO ledger_entries (transaction_id, account, entry_type, amount_paise) "
+            + "VALUES (?, ?, " + DEBIT + ", ?), (?, ?, " + CREDIT + ", ?) "
+            + "ON CONFLICT DO NOTHING RETURNING account, amount_paise) "
+            + "INSERT INTO account_balance_deltas (account, stripe, delta_paise) "
+            + "SELECT account, ?, amount_paise FROM posted ORDER BY account "
+            + "ON CONFLICT (account, stripe) DO UPDATE "
+            + "SET delta_paise = account_balance_deltas.delta_paise + EXCLUDED.delta_paise";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int stripes;
+    private final Counter posted;
+    private final Counter duplicates;
+
+    /**
+     * @param jdbcTemplate  JDBC template bound to the primary datasource
+     * @param meterRegistry metrics registry
+     * @param stripes       balance stripes per account
+     */
+    public LedgerPoster(JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.ledger.stripes:8}") int stripes) {
+        if (stripes <= 0 || stripes > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("openpay.ledger.stripes must be in 1.." + Short.MAX_VALUE);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.stripes = stripes;
+        this.posted = meterRegistry.counter("openpay.ledger.postings", "result", "posted");
+        this.duplicates = meterRegistry.counter("openpay.ledger.postings", "result", "duplicate");
+    }
+
+    /**
+     * Posts a completed payment.
+     *
+     * @param transactionId payment id
+     * @param senderUpi     debited account
+     * @param receiverUpi   credited account
+     * @param amountPaise   amount, positive
+     * @return true if posted now, false if it had been posted before
+     */
+    public boolean post(long transactionId, String senderUpi, String receiverUpi, long amountPaise) {
+        if (amountPaise <= 0) {
+            throw new IllegalArgumentException("Ledger amount must be positive: " + amountPaise);
+        }
+        int updated = jdbcTemplate.update(POST,
+                transactionId, account(senderUpi), -amountPaise,
+                transactionId, account(receiverUpi), amountPaise,
+                (short) ThreadLocalRandom.current().nextInt(stripes));
+        if (updated == 0) {
+            duplicates.increment();
+            return false;
+        }
+        posted.increment();
+        return true;
+    }
+
+    /**
+     * @return the ledger account of a UPI id
+     */
+    static String account(String upi) {
+        return upi.trim().toLowerCase(Locale.ROOT);
+    }
+}
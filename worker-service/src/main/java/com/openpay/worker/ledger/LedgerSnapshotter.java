@@ -0,0 +1,92 @@
+package com.openpay.worker.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.leader.LeaderElection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>LedgerSnapshotter</h2>
+ * <p>
+ * Periodically folds the balance stripes ({@code account_balance_deltas})
+ * into the balance snapshot ({@code account_balances}), so the stripes stay
+ * a few rows per recently active account and a balance is one snapshot row
+ * plus at most {@code stripes} delta rows. Runs on the elected leader only.
+ * </p>
+ *
+ * <ul>
+ * <li>One statement per hash partition: the partition's stripe rows are
+ * deleted and their sums added to the snapshot, atomically</li>
+ * <li>A posting racing the fold either lands before the delete (and is
+ * folded) or re-creates its stripe row after it (and waits for the next
+ * fold); nothing is counted twice or lost</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class LedgerSnapshotter {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerSnapshotter.class);
+
+    private static final String FOLD = "WITH folded AS ("
+            + "DELETE FROM account_balance_deltas_p%d RETURNING account, delta_paise) "
+            + "INSERT INTO account_balances (account, balance_paise, snapshot_at) "
+            + "SELECT account, sum(delta_paise), now() FROM folded GROUP BY account "
+            + "ON CONFLICT (account) DO UPDATE "
+            + "SET balance_paise = account_balances.balance_paise + EXCLUDED.balance_paise, "
+            + "snapshot_at = EXCLUDED.snapshot_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LeaderElection leaderElection;
+    private final Counter foldedAccounts;
+    private final Counter failures;
+
+    /**
+     * @param jdbcTemplate   JDBC template bound to the primary datasource
+     * @param leaderElection runs only on the leader
+     * @param meterRegistry  metrics registry
+     */
+    public LedgerSnapshotter(JdbcTemplate jdbcTemplate,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaderElection = leaderElection;
+        this.foldedAccounts = meterRegistry.counter("openpay.ledger.snapshot.accounts");
+        this.failures = meterRegistry.counter("openpay.ledger.snapshot.failures");
+    }
+
+    /**
+     * Folds every partition's stripes into the snapshot. Never throws; a
+     * failed partition is retried next run.
+     */
+    @Scheduled(initialDelayString = "${openpay.ledger.snapshot.initial-delay-ms:30000}",
+            fixedDelayString = "${openpay.ledger.snapshot.interval-ms:60000}",
+            scheduler = "jobScheduler")
+    public void snapshot() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        int accounts = 0;
+        for (int p = 0; p < LedgerVerifier.PARTITIONS; p++) {
+            try {
+                accounts += jdbcTemplate.update(String.format(FOLD, p));
+            } catch (DataAccessException e) {
+                failures.increment();
+                log.warn("[LEDGER] Folding balance partition {} failed, will retry: {}", p, e.getMessage());
+            }
+        }
+        foldedAccounts.increment(accounts);
+        if (accounts > 0) {
+            log.debug("[LEDGER] Folded balance stripes of {} accounts", accounts);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.openpay.worker.ledger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.leader.LeaderElection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>LedgerVerifier</h2>
+ * <p>
+ * Recomputes every account balance from the ledger and compares it with the
+ * incrementally maintained one (snapshot plus stripes). Runs on the elected
+ * leader only, one hash partition per task, {@code parallelism} tasks at a
+ * time.
+ * </p>
+ *
+ * <ul>
+ * <li>All tasks read one exported snapshot ({@code pg_export_snapshot()} /
+ * {@code SET TRANSACTION SNAPSHOT}), so the partitions are compared at the
+ * same instant while postings and folds go on</li>
+ * <li>Per partition one statement joins the ledger sums with the balance
+ * rows of the same partition (all tables are hash-partitioned alike)</li>
+ * <li>The ledger sums of all partitions must add up to zero (double
+ * entry)</li>
+ * <li>Mismatches are logged (a sample per partition) and exported as
+ * {@code openpay.ledger.verify.mismatches}; nothing is corrected
+ * automatically</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class LedgerVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerVerifier.class);
+
+    /** Hash partitions of the ledger and balance tables; must match V10. */
+    static final int PARTITIONS = 16;
+
+    private static final int SAMPLE_SIZE = 10;
+
+    private static final String VERIFY = "WITH l AS ("
+            + "SELECT account, sum(amount_paise) AS total FROM ledger_entries_p%1$d GROUP BY account), "
+            + "m AS (SELECT account, sum(paise) AS total FROM ("
+            + "SELECT account, balance_paise AS paise FROM account_balances_p%1$d "
+            + "UNION ALL SELECT account, delta_paise FROM account_balance_deltas_p%1$d) b GROUP BY account), "
+            + "diff AS (SELECT coalesce(l.account, m.account) AS account, coalesce(l.total, 0) AS ledger, "
+            + "coalesce(m.total, 0) AS maintained FROM l FULL JOIN m ON m.account = l.account "
+            + "WHERE coalesce(l.total, 0) <> coalesce(m.total, 0)) "
+            + "SELECT (SELECT coalesce(sum(total), 0) FROM l) AS ledger_sum, "
+            + "(SELECT count(*) FROM diff) AS mismatches, "
+            + "(SELECT string_agg(account || ' ledger=' || ledger || ' maintained=' || maintained, ', ') "
+            + "FROM (SELECT * FROM diff ORDER BY account LIMIT " + SAMPLE_SIZE + ") s) AS sample";
+
+    /**
+     * Outcome of one partition.
+     */
+    private record PartitionResult(int partition, long ledgerSum, long mismatches, String sample) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LeaderElection leaderElection;
+    private final ExecutorService executor;
+    private final Counter runs;
+    private final Counter failures;
+    private final Timer duration;
+    private final AtomicLong mismatches = new AtomicLong();
+    private final AtomicLong ledgerImbalance = new AtomicLong();
+
+    /**
+     * @param jdbcTemplate   JDBC template bound to the primary datasource
+     * @param leaderElection runs only on the leader
+     * @param meterRegistry  metrics registry
+     * @param parallelism    partitions verified at a time (one DB connection
+     *                       each, plus one holding the snapshot)
+     */
+    public LedgerVerifier(JdbcTemplate jdbcTemplate,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.ledger.verify.parallelism:4}") int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("openpay.ledger.verify.parallelism must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaderElection = leaderElection;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-verify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.runs = meterRegistry.counter("openpay.ledger.verify.runs");
+        this.failures = meterRegistry.counter("openpay.ledger.verify.failures");
+        this.duration = meterRegistry.timer("openpay.ledger.verify.duration");
+        Gauge.builder("openpay.ledger.verify.mismatches", mismatches, AtomicLong::get)
+                .description("Accounts whose maintained balance differs from the ledger (last run)")
+                .register(meterRegistry);
+        Gauge.builder("openpay.ledger.verify.imbalance", ledgerImbalance, AtomicLong::get)
+                .description("Sum of all ledger entries at the last run; non-zero breaks double entry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled entry point. Never throws; a failed run is retried at the
+     * next interval.
+     */
+    @Scheduled(initialDelayString = "${openpay.ledger.verify.initial-delay-ms:300000}",
+            fixedDelayString = "${openpay.ledger.verify.interval-ms:3600000}",
+            scheduler = "jobScheduler")
+    public void verify() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<PartitionResult> results = jdbcTemplate.execute(
+                    (ConnectionCallback<List<PartitionResult>>) this::verifyAtOneSnapshot);
+            long total = 0;
+            long sum = 0;
+            for (PartitionResult result : results) {
+                total += result.mismatches();
+                sum += result.ledgerSum();
+                if (result.mismatches() > 0) {
+                    log.error("[LEDGER] Partition {}: {} balance mismatch(es), e.g. {}", result.partition(),
+                            result.mismatches(), result.sample());
+                }
+            }
+            mismatches.set(total);
+            ledgerImbalance.set(sum);
+            runs.increment();
+            if (sum != 0) {
+                log.error("[LEDGER] Ledger entries sum to {} paise instead of 0", sum);
+            } else if (total == 0) {
+                log.info("[LEDGER] Verified {} partitions: balances match the ledger", PARTITIONS);
+            }
+        } catch (DataAccessException e) {
+            failures.increment();
+            log.warn("[LEDGER] Verification failed, will retry next run: {}", e.getMessage());
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Holds a repeatable-read transaction open on {@code coordinator}, exports
+     * its snapshot and verifies all partitions against it in parallel.
+     */
+    private List<PartitionResult> verifyAtOneSnapshot(Connection coordinator) throws SQLException {
+        boolean autoCommit = coordinator.getAutoCommit();
+        coordinator.setAutoCommit(false);
+        try (Statement st = coordinator.createStatement()) {
+            st.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            String snapshot;
+            try (ResultSet rs = st.executeQuery("SELECT pg_export_snapshot()")) {
+                rs.next();
+                snapshot = rs.getString(1);
+            }
+            List<Future<PartitionResult>> futures = new ArrayList<>(PARTITIONS);
+            for (int p = 0; p < PARTITIONS; p++) {
+                int partition = p;
+                futures.add(executor.submit(() -> jdbcTemplate.execute(
+                        (ConnectionCallback<PartitionResult>) c -> verifyPartition(c, snapshot, partition))));
+            }
+            List<PartitionResult> results = new ArrayList<>(PARTITIONS);
+            try {
+                for (Future<PartitionResult> future : futures) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new SQLException("Ledger verification interrupted", e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof DataAccessException dae) {
+                    throw dae;
+                }
+                throw new SQLException("Ledger partition verification failed", e.getCause());
+            }
+            return results;
+        } finally {
+            coordinator.rollback();
+            coordinator.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static PartitionResult verifyPartition(Connection connection, String snapshot, int partition)
+            throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement st = connection.createStatement()) {
+            st.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            st.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+            try (ResultSet rs = st.executeQuery(String.format(VERIFY, partition))) {
+                rs.next();
+                return new PartitionResult(partition, rs.getLong("ledger_sum"), rs.getLong("mismatches"),
+                        rs.getString("sample"));
+            }
+        } finally {
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.openpay.worker.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * <h2>LatencyRecorder</h2>
+ * <p>
+ * Rolling latency distribution backed by an HdrHistogram {@link Recorder}.
+ * Recording is wait-free; percentiles are read from the last complete
+ * interval (e.g. the previous 10 seconds), so they react to a changing
+ * gateway within one interval without being skewed by a half-filled one.
+ * </p>
+ *
+ * <ul>
+ * <li>Values are tracked in microseconds from 1 µs to 10 minutes at 3
+ * significant digits; larger values are clamped</li>
+ * <li>Percentiles are {@code -1} until the first interval has samples</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class LatencyRecorder {
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final String name;
+    private final long intervalNanos;
+    private final Recorder recorder = new Recorder(1, MAX_MICROS, 3);
+    private final ReentrantLock rollLock = new ReentrantLock();
+
+    private volatile Histogram lastInterval;
+    private volatile long intervalStartNanos = System.nanoTime();
+
+    /**
+     * @param name           series name (metrics tag)
+     * @param intervalMillis length of one rolling interval
+     */
+    public LatencyRecorder(String name, long intervalMillis) {
+        this.name = name;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Records one latency sample.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(1L, Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        recorder.recordValue(micros);
+        roll();
+    }
+
+    /**
+     * @param percentile e.g. {@code 95.0}
+     * @return latency at that percentile in milliseconds over the last complete
+     *         interval, or {@code -1} if there is none yet
+     */
+    public double percentileMillis(double percentile) {
+        roll();
+        Histogram h = lastInterval;
+        if (h == null || h.getTotalCount() == 0) {
+            return -1;
+        }
+        return h.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * @return samples in the last complete interval
+     */
+    public long intervalCount() {
+        roll();
+        Histogram h = lastInterval;
+        return h == null ? 0 : h.getTotalCount();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void roll() {
+        if (System.nanoTime() - intervalStartNanos < intervalNanos || !rollLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            if (now - intervalStartNanos < intervalNanos) {
+                return;
+            }
+            // fresh histogram each interval: readers may still hold the old one
+            lastInterval = recorder.getIntervalHistogram();
+            intervalStartNanos = now;
+        } finally {
+            rollLock.unlock();
+        }
+    }
+}
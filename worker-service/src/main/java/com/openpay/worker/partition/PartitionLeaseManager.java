@@ -0,0 +1,356 @@
+package com.openpay.worker.partition;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.shared.util.StreamPartitioner;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>PartitionLeaseManager</h2>
+ * <p>
+ * Lease-based assignment of the {@code transactions.main.{p}} partition
+ * streams to live workers. Each partition is consumed by at most one worker at
+ * a time, which is what keeps a sender's payments in order while throughput
+ * scales with the partition count.
+ * </p>
+ *
+ * <h3>Protocol (all state in Redis):</h3>
+ * <ul>
+ * <li><b>Membership</b>: every worker heartbeats into the sorted set
+ * {@code openpay:workers} (score = last heartbeat); members silent for longer
+ * than the lease TTL are pruned</li>
+ * <li><b>Target</b>: live members sorted by id; partition {@code p} belongs to
+ * member {@code p % members}. Every worker computes the same target from the
+ * same member list</li>
+ * <li><b>Lease</b>: {@code openpay:lease:{transactions.main.<p>}} = worker id,
+ * taken with {@code SET NX PX} and renewed/released only by its holder
+ * (compare-and-set scripts)</li>
+ * <li><b>Rebalance on join</b>: partitions no longer targeted at this worker
+ * are revoked: no new records are started, and the lease is released once the
+ * in-flight record finishes; the new target owner picks it up on its next
+ * cycle</li>
+ * <li><b>Rebalance on leave</b>: a clean shutdown releases leases at once; a
+ * crashed worker's leases expire after the TTL</li>
+ * <li><b>Offsets</b>: the last processed record id per partition is committed
+ * to {@code openpay:offset:{transactions.main.<p>}}, fenced by the lease, so a
+ * new owner resumes exactly where the previous one stopped. Lease and offset
+ * share the partition's hash tag, so the fenced commit runs on Redis Cluster
+ * and the partitions' commits spread over the shards</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class PartitionLeaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionLeaseManager.class);
+
+    static final String MEMBERS_KEY = "openpay:workers";
+    static final String LEASE_PREFIX = "openpay:lease:";
+    static final String OFFSET_PREFIX = "openpay:offset:";
+    /** Single hash the offsets lived in before they moved next to the leases; read-only fallback. */
+    static final String LEGACY_OFFSETS_KEY = "openpay:stream:offsets";
+
+    /** Start of a stream, for partitions that have never been committed. */
+    public static final String INITIAL_OFFSET = "0-0";
+
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> COMMIT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "redis.call('set', KEYS[2], ARGV[2]) return 1 else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final String workerId;
+    private final int partitions;
+    private final Duration leaseTtl;
+    private final List<String> streams;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Local view of one held lease.
+     */
+    private static final class Lease {
+        /** Lease is trusted until this instant; renewed by every successful cycle. */
+        volatile long validUntilNanos;
+        /** Set when the partition moved to another worker; no new work starts. */
+        volatile boolean revoking;
+        final AtomicInteger inFlight = new AtomicInteger();
+    }
+
+    /**
+     * @param redis      string template for lease/membership keys
+     * @param workerId   unique id of this worker (defaults to host + random
+     *                   suffix)
+     * @param partitions partition count; must match api-service
+     * @param leaseTtl   lease and membership TTL
+     */
+    public PartitionLeaseManager(StringRedisTemplate redis,
+            @Value("${openpay.worker.id:}") String workerId,
+            @Value("${openpay.streams.partitions:8}") int partitions,
+            @Value("${openpay.streams.lease.ttl:PT15S}") Duration leaseTtl) {
+        this.redis = redis;
+        this.workerId = workerId.isBlank() ? defaultWorkerId() : workerId;
+        this.partitions = partitions;
+        this.leaseTtl = leaseTtl;
+        this.streams = List.of(StreamPartitioner.allStreams(partitions));
+    }
+
+    /**
+     * Warns loudly if the API writes with a different partition count: the
+     * surplus partitions would never be consumed.
+     */
+    @PostConstruct
+    public void verifyPartitionCount() {
+        try {
+            String published = redis.opsForValue().get(StreamPartitioner.PARTITION_COUNT_KEY);
+            if (published != null && !published.equals(String.valueOf(partitions))) {
+                log.error("[PARTITION] openpay.streams.partitions mismatch: api-service={}, worker={}",
+                        published, partitions);
+            }
+        } catch (DataAccessException e) {
+            log.warn("[PARTITION] Could not read published partition count: {}", e.getMessage());
+        }
+        log.info("[PARTITION] Worker {} joining, {} partitions, lease ttl {}", workerId, partitions, leaseTtl);
+    }
+
+    /**
+     * Heartbeat + rebalance cycle: refreshes membership, computes this worker's
+     * target partitions, revokes/releases the ones that moved away, renews the
+     * ones still held and tries to acquire the missing ones. Never throws; if
+     * Redis is unreachable the local leases simply run out.
+     */
+    @Scheduled(fixedDelayString = "${openpay.streams.lease.renew-interval-ms:3000}", scheduler = "leaseScheduler")
+    public void rebalance() {
+        try {
+            Set<String> target = targetStreams(liveMembers());
+
+            for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+                String stream = entry.getKey();
+                Lease lease = entry.getValue();
+                if (!target.contains(stream)) {
+                    lease.revoking = true;
+                    if (lease.inFlight.get() == 0) {
+                        release(stream);
+                        log.info("[PARTITION] Released {} (rebalanced away)", stream);
+                    } else {
+                        renew(stream, lease); // keep it until the in-flight record is done
+                    }
+                }
+            }
+
+            for (String stream : target) {
+                Lease lease = leases.get(stream);
+                long start = System.nanoTime();
+                if (lease != null) {
+                    if (renew(stream, lease)) {
+                        lease.revoking = false;
+                    }
+                } else if (Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(leaseKey(stream), workerId, leaseTtl))) {
+                    Lease acquired = new Lease();
+                    acquired.validUntilNanos = start + leaseTtl.toNanos();
+                    leases.put(stream, acquired);
+                    log.info("[PARTITION] Acquired {}", stream);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("[PARTITION] Rebalance failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return partition streams this worker may currently read, in partition
+     *         order
+     */
+    public List<String> ownedStreams() {
+        long now = System.nanoTime();
+        return streams.stream()
+                .filter(stream -> {
+                    Lease lease = leases.get(stream);
+                    return lease != null && !lease.revoking && now - lease.validUntilNanos < 0;
+                })
+                .toList();
+    }
+
+    /**
+     * Marks the start of processing one record of {@code stream}. Must be
+     * paired with {@link #endWork(String)} when it returns {@code true}.
+     *
+     * @param stream partition stream
+     * @return false if the lease is gone, expiring or being handed over
+     */
+    public boolean tryBeginWork(String stream) {
+        Lease lease = leases.get(stream);
+        if (lease == null) {
+            return false;
+        }
+        lease.inFlight.incrementAndGet();
+        // re-check after publishing inFlight; pairs with revoking-then-inFlight in rebalance()
+        if (lease.revoking || System.nanoTime() - lease.validUntilNanos >= 0) {
+            lease.inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the end of processing one record of {@code stream}.
+     *
+     * @param stream partition stream
+     */
+    public void endWork(String stream) {
+        Lease lease = leases.get(stream);
+        if (lease != null) {
+            lease.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param stream partition stream
+     * @return last committed record id, or {@link #INITIAL_OFFSET}
+     */
+    public String committedOffset(String stream) {
+        String offset = redis.opsForValue().get(offsetKey(stream));
+        if (offset == null) {
+            // not committed since the move to per-partition keys
+            Object legacy = redis.opsForHash().get(LEGACY_OFFSETS_KEY, stream);
+            offset = legacy == null ? null : legacy.toString();
+        }
+        return offset == null ? INITIAL_OFFSET : offset;
+    }
+
+    /**
+     * Commits the last processed record id of a partition, but only while this
+     * worker still holds its lease.
+     *
+     * @param stream   partition stream
+     * @param recordId processed record id
+     * @return false if the lease was lost (the caller must stop reading it)
+     */
+    public boolean commitOffset(String stream, String recordId) {
+        Long ok = redis.execute(COMMIT, List.of(leaseKey(stream), offsetKey(stream)), workerId, recordId);
+        if (ok == null || ok != 1L) {
+            leases.remove(stream);
+            log.warn("[PARTITION] Offset commit on {} rejected: lease lost", stream);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Leaves the group: releases every lease and the membership entry so the
+     * remaining workers take over immediately instead of after the TTL.
+     */
+    @PreDestroy
+    public void leave() {
+        try {
+            for (String stream : new ArrayList<>(leases.keySet())) {
+                release(stream);
+            }
+            redis.opsForZSet().remove(MEMBERS_KEY, workerId);
+            log.info("[PARTITION] Worker {} left the group", workerId);
+        } catch (DataAccessException e) {
+            log.warn("[PARTITION] Clean leave failed, leases will expire: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return this worker's id in the membership set
+     */
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    private List<String> liveMembers() {
+        long now = System.currentTimeMillis();
+        redis.opsForZSet().add(MEMBERS_KEY, workerId, now);
+        redis.opsForZSet().removeRangeByScore(MEMBERS_KEY, 0, now - leaseTtl.toMillis());
+        Set<String> members = redis.opsForZSet().range(MEMBERS_KEY, 0, -1);
+        List<String> sorted = new ArrayList<>(members == null ? Set.of(workerId) : members);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    private Set<String> targetStreams(List<String> members) {
+        int me = members.indexOf(workerId);
+        Set<String> target = new HashSet<>();
+        if (me < 0) {
+            return target;
+        }
+        for (int p = 0; p < streams.size(); p++) {
+            if (p % members.size() == me) {
+                target.add(streams.get(p));
+            }
+        }
+        return target;
+    }
+
+    private boolean renew(String stream, Lease lease) {
+        long start = System.nanoTime();
+        Long renewed = redis.execute(RENEW, List.of(leaseKey(stream)), workerId,
+                String.valueOf(leaseTtl.toMillis()));
+        if (renewed != null && renewed == 1L) {
+            lease.validUntilNanos = start + leaseTtl.toNanos();
+            return true;
+        }
+        leases.remove(stream);
+        log.warn("[PARTITION] Lost lease on {}", stream);
+        return false;
+    }
+
+    private void release(String stream) {
+        leases.remove(stream);
+        redis.execute(RELEASE, List.of(leaseKey(stream)), workerId);
+    }
+
+    /** Lease and offset of one partition share its hash tag (one cluster slot). */
+    private static String leaseKey(String stream) {
+        return LEASE_PREFIX + "{" + stream + "}";
+    }
+
+    private static String offsetKey(String stream) {
+        return OFFSET_PREFIX + "{" + stream + "}";
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "worker";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,211 @@
+package com.openpay.worker.payout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.leader.LeaderElection;
+import com.openpay.worker.payout.PayoutFileWriter.Totals;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <h2>PayoutFileGenerator</h2>
+ * <p>
+ * Writes the daily bank payout file: every transaction that completed on
+ * the day (its COMPLETED history row), one {@link PayoutFileWriter} line
+ * each, in id order. Runs on the elected leader only.
+ * </p>
+ *
+ * <ul>
+ * <li>Selecting by completion, not creation, puts every completed payment in
+ * exactly one file, including ones created the day before (retries, collect
+ * approvals, late gateway outcomes); only a payment's first COMPLETED row
+ * (lowest history id) counts, should a race have written two</li>
+ * <li>Rows stream from an id-ordered JDBC cursor over the day's completions
+ * (partial index {@code idx_history_completed_at}), {@code fetch-size} rows
+ * per round trip, into one reused direct buffer: memory stays constant
+ * whatever the number of records</li>
+ * <li>The file is written as {@code .tmp}, fsync'ed and renamed, so a
+ * visible {@code payout-YYYY-MM-DD.txt} is always complete; an existing
+ * file for the day is never regenerated by the schedule</li>
+ * <li>Payees the bank format cannot carry are skipped, logged and counted
+ * ({@code openpay.payout.skipped})</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "openpay.payout.enabled", havingValue = "true")
+public class PayoutFileGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(PayoutFileGenerator.class);
+
+    private static final String EXPORT = "SELECT t.id, t.receiver_upi, t.amount_paise "
+            + "FROM transaction_history h JOIN transactions t ON t.id = h.transaction_id "
+            + "WHERE h.new_status = 3 AND h.changed_at >= ? AND h.changed_at < ? AND t.status = 3 "
+            + "AND h.history_id = (SELECT min(e.history_id) FROM transaction_history e "
+            + "WHERE e.transaction_id = h.transaction_id AND e.new_status = 3) ORDER BY t.id";
+
+    private static final DateTimeFormatter BATCH_DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final DataSource dataSource;
+    private final LeaderElection leaderElection;
+    private final Path outputDir;
+    private final String batchPrefix;
+    private final int fetchSize;
+    private final ByteBuffer buffer;
+    private final Counter written;
+    private final Counter skipped;
+    private final Counter failures;
+    private final Timer duration;
+
+    /**
+     * @param dataSource     primary datasource (export cursor)
+     * @param leaderElection runs only on the leader
+     * @param meterRegistry  metrics registry
+     * @param outputDir      directory the payout files are written to
+     * @param batchPrefix    batch id in the header is the prefix plus the
+     *                       day ({@code yyyyMMdd})
+     * @param fetchSize      rows fetched per round trip
+     * @param bufferBytes    size of the direct write buffer
+     */
+    public PayoutFileGenerator(DataSource dataSource,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.payout.output-dir:./payouts}") Path outputDir,
+            @Value("${openpay.payout.batch-prefix:OPENPAY}") String batchPrefix,
+            @Value("${openpay.payout.fetch-size:10000}") int fetchSize,
+            @Value("${openpay.payout.buffer-bytes:1048576}") int bufferBytes) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("openpay.payout.fetch-size must be positive");
+        }
+        if (batchPrefix.length() > 12) {
+            throw new IllegalArgumentException("openpay.payout.batch-prefix must be at most 12 characters");
+        }
+        this.dataSource = dataSource;
+        this.leaderElection = leaderElection;
+        this.outputDir = outputDir;
+        this.batchPrefix = batchPrefix;
+        this.fetchSize = fetchSize;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.written = meterRegistry.counter("openpay.payout.records");
+        this.skipped = meterRegistry.counter("openpay.payout.skipped");
+        this.failures = meterRegistry.counter("openpay.payout.failures");
+        this.duration = meterRegistry.timer("openpay.payout.duration");
+    }
+
+    /**
+     * Scheduled entry point: yesterday's file, unless it exists. Never
+     * throws; a failed run is retried at the next trigger.
+     */
+    @Scheduled(cron = "${openpay.payout.cron:0 30 0 * * *}", scheduler = "jobScheduler")
+    public void generateYesterday() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        LocalDate day = LocalDate.now().minusDays(1);
+        if (Files.exists(fileFor(day))) {
+            return;
+        }
+        try {
+            generate(day);
+        } catch (IOException | DataAccessException e) {
+            failures.increment();
+            log.error("[PAYOUT] {} not generated: {}", day, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes (or rewrites) the payout file of {@code day}.
+     *
+     * @return what the trailer states
+     */
+    public synchronized Totals generate(LocalDate day) throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        Timestamp from = Timestamp.from(day.atStartOfDay(zone).toInstant());
+        Timestamp to = Timestamp.from(day.plusDays(1).atStartOfDay(zone).toInstant());
+        Files.createDirectories(outputDir);
+        Path target = fileFor(day);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        long started = System.nanoTime();
+        long skippedRows = 0;
+        Totals totals;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                Connection connection = dataSource.getConnection()) {
+            PayoutFileWriter writer = new PayoutFileWriter(channel, buffer);
+            writer.header(day, batchPrefix + day.format(BATCH_DAY));
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement(EXPORT)) {
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, from);
+                statement.setTimestamp(2, to);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        long id = rows.getLong(1);
+                        String vpa = rows.getString(2);
+                        if (!writer.record(id, vpa, rows.getLong(3))) {
+                            skippedRows++;
+                            log.warn("[PAYOUT] Transaction {} skipped: payee VPA not representable", id);
+                        }
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(autoCommit);
+            }
+            totals = writer.finish();
+            channel.force(true);
+        } catch (SQLException e) {
+            Files.deleteIfExists(tmp);
+            throw new IOException("Payout export failed for " + day, e);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long elapsed = System.nanoTime() - started;
+        duration.record(elapsed, TimeUnit.NANOSECONDS);
+        written.increment(totals.records());
+        skipped.increment(skippedRows);
+        log.info("[PAYOUT] {}: {} records, {} paise, crc32c={}, {} bytes, {} skipped in {} ms", target.getFileName(),
+                totals.records(), totals.totalPaise(), Long.toHexString(totals.crc32c()), totals.bytes(),
+                skippedRows, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return totals;
+    }
+
+    private Path fileFor(LocalDate day) {
+        return outputDir.resolve("payout-" + day + ".txt");
+    }
+}
@@ -0,0 +1,219 @@
+package com.openpay.worker.payout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+/**
+ * <h2>PayoutFileWriter</h2>
+ * <p>
+ * Encodes a bank payout file straight into a caller-owned (typically
+ * direct) {@link ByteBuffer} and drains it into a {@link FileChannel}
+ * whenever the next record would not fit. No per-record objects are
+ * allocated, so a file of any length is written in the buffer's memory.
+ * </p>
+ *
+ * <p>
+ * Fixed-width ASCII, every line {@value #RECORD_LENGTH} bytes plus LF:
+ * </p>
+ *
+ * <pre>
+ * H yyyyMMdd batch-id(20)                            header
+ * D seq(9) txn-id(20) payee-vpa(100) amount-paise(15)  one per payout
+ * T records(9) total-paise(18) crc32c(8, hex)        trailer
+ * </pre>
+ *
+ * <ul>
+ * <li>Numbers are zero-padded on the left, text is space-padded on the
+ * right, unused trailing columns are spaces</li>
+ * <li>Record count, amount total and the CRC-32C of every byte before the
+ * trailer are computed while writing, from the buffer as it is drained</li>
+ * <li>Not thread-safe; one writer per file</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public final class PayoutFileWriter {
+
+    /** Bytes per line, excluding the line feed. */
+    public static final int RECORD_LENGTH = 145;
+
+    static final int VPA_LENGTH = 100;
+
+    private static final int LINE = RECORD_LENGTH + 1;
+
+    private static final long MAX_AMOUNT = 999_999_999_999_999L;
+
+    private static final long MAX_RECORDS = 999_999_999L;
+
+    /**
+     * What a finished file contains, as stated in its trailer.
+     */
+    public record Totals(long records, long totalPaise, long crc32c, long bytes) {
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private long records;
+    private long totalPaise;
+    private long bytes;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * @param channel file opened for writing, positioned where the file
+     *                starts
+     * @param buffer  staging buffer, at least one line long; cleared here and
+     *                reusable once the writer is finished
+     */
+    public PayoutFileWriter(FileChannel channel, ByteBuffer buffer) {
+        if (buffer.capacity() < LINE) {
+            throw new IllegalArgumentException("Payout buffer must hold at least " + LINE + " bytes");
+        }
+        this.channel = channel;
+        this.buffer = buffer.clear();
+    }
+
+    /**
+     * Writes the header; must be called once, first.
+     */
+    public void header(LocalDate day, String batchId) throws IOException {
+        if (started) {
+            throw new IllegalStateException("Header already written");
+        }
+        started = true;
+        reserve();
+        int line = buffer.position();
+        buffer.put((byte) 'H');
+        digits(day.getYear(), 4);
+        digits(day.getMonthValue(), 2);
+        digits(day.getDayOfMonth(), 2);
+        if (!text(batchId, 20)) {
+            throw new IllegalArgumentException("Batch id must be printable ASCII of at most 20 characters");
+        }
+        endLine(line);
+    }
+
+    /**
+     * Appends one payout line.
+     *
+     * @return false, with nothing written, if the VPA is longer than
+     *         {@value #VPA_LENGTH} characters or not printable ASCII
+     */
+    public boolean record(long txnId, String payeeVpa, long amountPaise) throws IOException {
+        if (!started || finished) {
+            throw new IllegalStateException("Records go between header and trailer");
+        }
+        if (amountPaise < 0 || amountPaise > MAX_AMOUNT || txnId < 0) {
+            throw new IllegalArgumentException("Payout of transaction " + txnId + " not representable");
+        }
+        if (records == MAX_RECORDS) {
+            throw new IllegalStateException("Payout file full at " + MAX_RECORDS + " records");
+        }
+        reserve();
+        int line = buffer.position();
+        buffer.put((byte) 'D');
+        digits(records + 1, 9);
+        digits(txnId, 20);
+        if (!text(payeeVpa, VPA_LENGTH)) {
+            buffer.position(line);
+            return false;
+        }
+        digits(amountPaise, 15);
+        endLine(line);
+        records++;
+        totalPaise = Math.addExact(totalPaise, amountPaise);
+        return true;
+    }
+
+    /**
+     * Writes the trailer and drains the buffer. The channel is neither
+     * forced nor closed.
+     */
+    public Totals finish() throws IOException {
+        if (!started || finished) {
+            throw new IllegalStateException("Trailer goes after the header, once");
+        }
+        finished = true;
+        drain(true);
+        long checksum = crc.getValue();
+        int line = buffer.position();
+        buffer.put((byte) 'T');
+        digits(records, 9);
+        digits(totalPaise, 18);
+        hex(checksum, 8);
+        endLine(line);
+        drain(false);
+        return new Totals(records, totalPaise, checksum, bytes);
+    }
+
+    /** Makes room for one line. */
+    private void reserve() throws IOException {
+        if (buffer.remaining() < LINE) {
+            drain(true);
+        }
+    }
+
+    private void drain(boolean checksummed) throws IOException {
+        buffer.flip();
+        if (checksummed) {
+            crc.update(buffer);
+            buffer.rewind();
+        }
+        while (buffer.hasRemaining()) {
+            bytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void endLine(int line) {
+        int end = line + RECORD_LENGTH;
+        while (buffer.position() < end) {
+            buffer.put((byte) ' ');
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private void digits(long value, int width) {
+        int at = buffer.position();
+        long rest = value;
+        for (int i = width - 1; i >= 0; i--) {
+            buffer.put(at + i, (byte) ('0' + rest % 10));
+            rest /= 10;
+        }
+        if (rest != 0 || value < 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + width + " digits");
+        }
+        buffer.position(at + width);
+    }
+
+    private void hex(long value, int width) {
+        for (int shift = (width - 1) * 4; shift >= 0; shift -= 4) {
+            buffer.put((byte) Character.toUpperCase(Character.forDigit((int) (value >>> shift) & 0xf, 16)));
+        }
+    }
+
+    /**
+     * @return false if {@code value} is too long or not printable ASCII
+     */
+    private boolean text(String value, int width) {
+        if (value.length() > width) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7e) {
+                return false;
+            }
+            buffer.put((byte) c);
+        }
+        for (int i = value.length(); i < width; i++) {
+            buffer.put((byte) ' ');
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package com.openpay.worker.processor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h2>PartitionProgress</h2>
+ * <p>
+ * Tracks the records of one partition that have been dispatched but not yet
+ * committed. Records of different senders finish out of order, but the stream
+ * offset may only move past a record once every earlier record of the
+ * partition is done; {@link #committable()} returns exactly that watermark.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #track(String)} is called by the reader in stream order</li>
+ * <li>{@link #complete(String)} is called by whichever mailbox thread finished
+ * the record</li>
+ * <li>Uses a {@link ReentrantLock}, not {@code synchronized}, so virtual
+ * threads never pin their carrier here</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+final class PartitionProgress {
+
+    private static final class Slot {
+        final String recordId;
+        boolean done;
+
+        Slot(String recordId) {
+            this.recordId = recordId;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Slot> inFlight = new ArrayDeque<>();
+    private String watermark;
+
+    /**
+     * Registers a dispatched record; must be called in stream order.
+     *
+     * @param recordId stream record id
+     */
+    void track(String recordId) {
+        lock.lock();
+        try {
+            inFlight.addLast(new Slot(recordId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a record done and advances the watermark over the contiguous done
+     * prefix.
+     *
+     * @param recordId stream record id
+     */
+    void complete(String recordId) {
+        lock.lock();
+        try {
+            for (Slot slot : inFlight) {
+                if (slot.recordId.equals(recordId)) {
+                    slot.done = true;
+                    break;
+                }
+            }
+            while (!inFlight.isEmpty() && inFlight.peekFirst().done) {
+                watermark = inFlight.pollFirst().recordId;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if no tracked record is still running
+     */
+    boolean isIdle() {
+        lock.lock();
+        try {
+            return inFlight.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the new watermark, if it moved since the last call.
+     *
+     * @return highest record id below which everything is done, or null if
+     *         unchanged
+     */
+    String committable() {
+        lock.lock();
+        try {
+            String result = watermark;
+            watermark = null;
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,25 +1,50 @@
 package com.openpay.worker.processor;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.CommandLineRunner;
-import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
-import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import com.openpay.shared.model.FailureReason;
 import com.openpay.shared.model.TransactionEntity;
 import com.openpay.shared.model.TransactionHistoryEntity;
+import com.openpay.shared.model.TransactionStatus;
 import com.openpay.shared.repository.TransactionHistoryRepository;
 import com.openpay.shared.repository.TransactionRepository;
-import com.openpay.worker.client.NpciUpiGatewayClient;
+import com.openpay.shared.util.StreamPartitioner;
+import com.openpay.worker.client.HedgedGatewayInvoker;
+import com.openpay.worker.client.PaymentOutcome;
+import com.openpay.worker.dedup.PaymentDeduplicator;
+import com.openpay.worker.executor.KeyedSerialExecutor;
+import com.openpay.worker.ledger.LedgerPoster;
+import com.openpay.worker.partition.PartitionLeaseManager;
+import com.openpay.worker.resilience.AdaptiveConcurrencyLimiter;
+import com.openpay.worker.resilience.CallNotPermittedException;
+import com.openpay.worker.resilience.CircuitBreaker;
+import com.openpay.worker.resilience.LimitExceededException;
+import com.openpay.worker.resilience.RetryBudget;
 
 /**
  * ====================================================================
@@ -56,7 +81,7 @@ import com.openpay.worker.client.NpciUpiGatewayClient;
  *           asynchronous UPI
  *           payment transaction processing in FlossPay. It reliably consumes
  *           queued
- *           payment jobs from the Redis Stream ("transactions.main"),
+ *           payment jobs from the Redis partition streams ("transactions.main.{p}"),
  *           transitions
  *           transaction state in the PostgreSQL database, and simulates
  *           UPI/NPCI
@@ -93,46 +118,179 @@ import com.openpay.worker.client.NpciUpiGatewayClient;
  *           </p>
  */
 @Component
-public class TransactionWorkerConsumer {
+public class TransactionWorkerConsumer implements SmartLifecycle {
 
     private static final Logger log = LoggerFactory.getLogger(TransactionWorkerConsumer.class);
 
     private final RedisTemplate<Object, Object> redisWorkerTemplate;
     private final TransactionRepository transactionRepository;
-    private final NpciUpiGatewayClient npciUpiGatewayClient;
+    private final HedgedGatewayInvoker gatewayInvoker;
     private final TransactionHistoryRepository transactionHistoryRepository;
+    private final PartitionLeaseManager partitionLeaseManager;
+    private final KeyedSerialExecutor<String> senderMailboxes;
+    private final CircuitBreaker npciCircuitBreaker;
+    private final AdaptiveConcurrencyLimiter npciConcurrencyLimiter;
+    private final Duration limiterMaxWait;
+    private final Duration paymentDeadline;
+    private final RetryBudget retryBudget;
+    private final PaymentDeduplicator deduplicator;
+    private final LedgerPoster ledgerPoster;
+    private final int readBatchSize;
+    private final long pollIntervalMs;
+    private final Duration drainTimeout;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /** Released once when shutdown starts; every wait in the worker watches it. */
+    private final CountDownLatch drainSignal = new CountDownLatch(1);
+    /** Dispatched-but-uncommitted records per partition (reader thread, then stop()). */
+    private final Map<String, PartitionProgress> progress = new HashMap<>();
+    private final AtomicLong handedBack = new AtomicLong();
+    private volatile boolean running;
+    private Thread reader;
 
     /**
      * Constructor: injects dependencies.
      * 
      * @param redisWorkerTemplate          RedisTemplate for worker stream ops
      * @param transactionRepository        Repository for transaction DB records
-     * @param npciUpiGatewayClient         Client to simulate UPI/NPCI payment
-     *                                     gateway
+     * @param gatewayInvoker               Deadline-bounded, hedged calls to the
+     *                                     UPI/NPCI gateway client
      * @param transactionHistoryRepository Repository for transaction history DB
      *                                     records
+     * @param partitionLeaseManager        Lease-based partition assignment and
+     *                                     offset commits
+     * @param senderMailboxes              Per-sender serial executor
+     * @param npciCircuitBreaker           Circuit breaker guarding gateway calls
+     * @param npciConcurrencyLimiter       Adaptive in-flight limit for gateway
+     *                                     calls
+     * @param limiterMaxWait               Longest wait for a gateway slot
+     * @param paymentDeadline              Time from a payment's first gateway
+     *                                     attempt by which it must have a final
+     *                                     answer
+     * @param retryBudget                  Fleet-wide retry budget
+     * @param deduplicator                 Suppresses redelivered payments
+     * @param ledgerPoster                 Posts completed payments to the
+     *                                     ledger
+     * @param readBatchSize                Max records per XREAD across owned
+     *                                     partitions
+     * @param pollIntervalMs               Sleep between polls when idle
+     * @param drainTimeout                 Longest wait for in-flight payments
+     *                                     on shutdown; keep below the lease TTL
+     * @param eventPublisher               Publishes the readiness flip
      */
     public TransactionWorkerConsumer(
             RedisTemplate<Object, Object> redisWorkerTemplate,
             TransactionRepository transactionRepository,
-            NpciUpiGatewayClient npciUpiGatewayClient,
-            TransactionHistoryRepository transactionHistoryRepository) {
+            HedgedGatewayInvoker gatewayInvoker,
+            TransactionHistoryRepository transactionHistoryRepository,
+            PartitionLeaseManager partitionLeaseManager,
+            KeyedSerialExecutor<String> senderMailboxes,
+            CircuitBreaker npciCircuitBreaker,
+            AdaptiveConcurrencyLimiter npciConcurrencyLimiter,
+            @Value("${openpay.concurrency.npci.max-wait:PT2S}") Duration limiterMaxWait,
+            @Value("${openpay.gateway.payment-deadline:PT60S}") Duration paymentDeadline,
+            RetryBudget retryBudget,
+            PaymentDeduplicator deduplicator,
+            LedgerPoster ledgerPoster,
+            @Value("${openpay.streams.read-batch-size:100}") int readBatchSize,
+            @Value("${openpay.streams.poll-interval-ms:3000}") long pollIntervalMs,
+            @Value("${openpay.worker.drain-timeout:PT10S}") Duration drainTimeout,
+            ApplicationEventPublisher eventPublisher) {
 
         this.redisWorkerTemplate = redisWorkerTemplate;
         this.transactionRepository = transactionRepository;
-        this.npciUpiGatewayClient = npciUpiGatewayClient;
+        this.gatewayInvoker = gatewayInvoker;
         this.transactionHistoryRepository = transactionHistoryRepository;
+        this.partitionLeaseManager = partitionLeaseManager;
+        this.senderMailboxes = senderMailboxes;
+        this.npciCircuitBreaker = npciCircuitBreaker;
+        this.npciConcurrencyLimiter = npciConcurrencyLimiter;
+        this.limiterMaxWait = limiterMaxWait;
+        this.paymentDeadline = paymentDeadline;
+        this.retryBudget = retryBudget;
+        this.deduplicator = deduplicator;
+        this.ledgerPoster = ledgerPoster;
+        this.readBatchSize = readBatchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.drainTimeout = drainTimeout;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
-     * Starts the asynchronous polling and processing loop for queued payment
-     * transactions.
+     * Starts the stream reader thread (see {@link #consume()}).
+     */
+    @Override
+    public void start() {
+        reader = Thread.ofPlatform().name("stream-reader").start(this::consume);
+        running = true;
+    }
+
+    /**
+     * Graceful drain, run on shutdown (SIGTERM) before the partition leases
+     * are released:
+     * <ol>
+     * <li>Readiness flips to {@code REFUSING_TRAFFIC} and the reader stops
+     * pulling records</li>
+     * <li>Payments already in a gateway call are given up to
+     * {@code openpay.worker.drain-timeout} to finish; queued, parked or
+     * backing-off payments are handed back at once</li>
+     * <li>The offset of every partition is committed up to the last finished
+     * record; handed-back records stay above it, so the next owner of the
+     * partition reads them again</li>
+     * </ol>
+     * Nothing is reprocessed that finished here, and nothing is lost that did
+     * not.
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        log.info("[WORKER] Draining: stop reading, waiting up to {} for in-flight payments", drainTimeout);
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        drainSignal.countDown();
+        try {
+            reader.interrupt(); // may be blocked on mailbox capacity
+            reader.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            boolean drained = !reader.isAlive() && senderMailboxes.shutdown(
+                    Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!drained) {
+                log.warn("[WORKER] Drain timed out with {} payments in flight; their records will be redelivered",
+                        senderMailboxes.queuedTasks());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!reader.isAlive()) {
+            commitProgress(progress, List.of());
+        }
+        log.info("[WORKER] Drain complete: {} payments handed back to their partitions", handedBack.get());
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs the asynchronous polling and processing loop for queued payment
+     * transactions until shutdown.
      * <p>
-     * Polls the Redis stream ("transactions.main") for new payment jobs, processes
+     * Polls the partition streams ("transactions.main.{p}") this worker currently
+     * leases (see {@link PartitionLeaseManager}) for new payment jobs, processes
      * each job
-     * with robust retry and DLQ fallback, and advances the stream offset after each
-     * batch.
+     * with robust retry and DLQ fallback, and commits the partition offset as
+     * records complete.
      * <ul>
+     * <li>One sender always maps to one partition with a single owner, and
+     * within the worker each sender has its own serial mailbox
+     * ({@link KeyedSerialExecutor}): a sender's payments never race each other,
+     * while different senders are processed in parallel</li>
+     * <li>The committed offset only passes a record once every earlier record of
+     * its partition has finished; it is durable in Redis, so a restart resumes
+     * from it instead of from the start of the stream</li>
      * <li>On success: updates DB transaction to "completed" and logs audit
      * trail</li>
      * <li>On transient failure: retries up to N times with exponential backoff</li>
@@ -140,71 +298,212 @@ public class TransactionWorkerConsumer {
      * audit/manual replay</li>
      * </ul>
      * <b>Designed for continuous 24x7 operation. Exception-safe and
-     * restartable.</b>
-     *
-     * @return CommandLineRunner entrypoint for Spring Boot app lifecycle
+     * restartable; returns once {@link #stop()} signals the drain.</b>
      */
-    @Bean
-    public CommandLineRunner streamListener() {
-        return args -> {
-            // Redis connectivity sanity check
-            try {
-                redisWorkerTemplate.opsForValue().set("service-check", "WORKER");
-                Object val = redisWorkerTemplate.opsForValue().get("service-check");
-                log.info("[WORKER] service-check key in Redis: {}", val);
-
-                log.info("[WORKER] Redis connection info: {}",
-                        redisWorkerTemplate.getConnectionFactory().getConnection().info("server"));
-            } catch (Exception e) {
-                log.error("[WORKER] Redis sanity check failed", e);
-            }
+    private void consume() {
+        // Redis connectivity sanity check
+        try {
+            redisWorkerTemplate.opsForValue().set("service-check", "WORKER");
+            Object val = redisWorkerTemplate.opsForValue().get("service-check");
+            log.info("[WORKER] service-check key in Redis: {}", val);
 
-            String stream = "transactions.main";
-            String lastSeenId = "0-0"; // Start from beginning (for demo; production: use persisted offset)
+            log.info("[WORKER] Redis connection info: {}",
+                    redisWorkerTemplate.getConnectionFactory().getConnection().info("server"));
+        } catch (Exception e) {
+            log.error("[WORKER] Redis sanity check failed", e);
+        }
 
-            log.info("Starting to consume stream: {}", stream);
+        log.info("Starting to consume partition streams as worker {}", partitionLeaseManager.getWorkerId());
 
-            while (true) {// Poll new messages from stream
+        // Read cursor per owned partition; (re)loaded from the committed offset on acquire
+        Map<String, String> cursors = new HashMap<>();
 
-                StreamOffset<Object> offset = StreamOffset.create(stream, ReadOffset.from(lastSeenId));
-                log.info("About to poll Redis stream...");
-                List<MapRecord<Object, Object, Object>> messages = redisWorkerTemplate.opsForStream().read(offset);
+        while (!draining()) {// Poll new messages from the partitions this worker leases
+            try {
+                List<String> owned = partitionLeaseManager.ownedStreams();
+                commitProgress(progress, owned);
+                cursors.keySet().retainAll(owned);
+                if (owned.isEmpty()) {
+                    log.debug("No partitions leased yet, waiting for rebalance");
+                    drainSignal.await(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    continue;
+                }
 
-                log.info("Polled Redis stream, messages: {}", messages);
+                @SuppressWarnings("unchecked")
+                StreamOffset<Object>[] offsets = owned.stream()
+                        .map(stream -> StreamOffset.<Object>create(stream, ReadOffset.from(
+                                cursors.computeIfAbsent(stream, partitionLeaseManager::committedOffset))))
+                        .toArray(StreamOffset[]::new);
+                List<MapRecord<Object, Object, Object>> messages = redisWorkerTemplate.opsForStream()
+                        .read(StreamReadOptions.empty().count(readBatchSize), offsets);
+
+                if (messages == null || messages.isEmpty()) {
+                    log.debug("No new messages found in partitions: {}", owned);
+                    drainSignal.await(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    continue;
+                }
 
-                if (messages != null && !messages.isEmpty()) {
+                dispatch(messages, cursors);
+            } catch (InterruptedException e) {
+                break; // stop() interrupts a reader blocked on mailbox capacity
+            } catch (Exception e) {
+                log.error("[WORKER] Stream poll failed, retrying", e);
+                if (awaitDrain(pollIntervalMs)) {
+                    break;
+                }
+            }
+        }
+        log.info("[WORKER] Stream reader stopped");
+    }
 
-                    // Process each message in the stream
-                    for (MapRecord<Object, Object, Object> record : messages) {
-                        log.info("🔥 Consumed message: ID={} Payload={}", record.getId(), record.getValue());
-                        Map<Object, Object> payload = record.getValue();
+    /**
+     * Dispatches in stream order to the sender's mailbox: same-sender payments
+     * run one at a time in order, different senders in parallel. A partition
+     * whose lease is lost or revoked stops dispatching at the current record
+     * and drops its progress. A drain stops the whole batch but keeps the
+     * progress, so {@link #stop()} can commit the records that finish.
+     */
+    private void dispatch(List<MapRecord<Object, Object, Object>> messages, Map<String, String> cursors)
+            throws InterruptedException {
+        Set<String> halted = new HashSet<>();
+        for (MapRecord<Object, Object, Object> record : messages) {
+            String stream = String.valueOf(record.getStream());
+            if (draining()) {
+                break; // stop() commits what already finished; the rest stays above the offset
+            }
+            if (halted.contains(stream) || !partitionLeaseManager.tryBeginWork(stream)) {
+                halted.add(stream);
+                cursors.remove(stream);
+                progress.remove(stream);
+                continue;
+            }
+            String recordId = record.getId().getValue();
+            Map<Object, Object> payload = record.getValue();
+            PartitionProgress partitionProgress = progress.computeIfAbsent(stream,
+                    s -> new PartitionProgress());
+            partitionProgress.track(recordId);
+            cursors.put(stream, recordId);
 
-                        // Each payload transaction wrapped in transaction handle and called in retry
-                        // logic
-                        processWithRetry(payload);
+            try {
+                senderMailboxes.submit(mailboxKey(payload, recordId),
+                        () -> processRecord(stream, recordId, payload, partitionProgress));
+            } catch (InterruptedException | RuntimeException e) {
+                partitionLeaseManager.endWork(stream);
+                throw e;
+            }
+        }
+    }
 
-                        // Move the stream offset forward
-                        RecordId recordId = record.getId();
-                        if (recordId != null) {
-                            lastSeenId = recordId.getValue();
-                        }
-                    }
+    /**
+     * Mailbox task for one record: claims it against redelivery, processes it
+     * and marks it finished, or hands it back (left uncommitted, claim
+     * released) if the drain starts first.
+     */
+    private void processRecord(String stream, String recordId, Map<Object, Object> payload,
+            PartitionProgress partitionProgress) {
+        String dedupKey = PaymentDeduplicator.keyOf(payload);
+        boolean claimed = false;
+        boolean finished = false;
+        try {
+            if (draining()) {
+                return;
+            }
+            if ("collect".equals(payload.get("type"))) {
+                // enqueued here before collects had their own stream: never pay it unapproved
+                redisWorkerTemplate.opsForStream().add(StreamPartitioner.COLLECT_STREAM, payload);
+                log.info("Forwarded collect request txnId={} to {}", payload.get("txnId"),
+                        StreamPartitioner.COLLECT_STREAM);
+                finished = true;
+                return;
+            }
+            if (dedupKey != null) {
+                PaymentDeduplicator.Claim claim = deduplicator.tryClaim(dedupKey);
+                if (claim != PaymentDeduplicator.Claim.CLAIMED) {
+                    log.info("Duplicate delivery suppressed: stream={} ID={} txnId={} ({})", stream, recordId,
+                            payload.get("txnId"), claim);
+                    finished = true;
+                    return;
+                }
+                claimed = true;
+            }
+            log.info("🔥 Consumed message: stream={} ID={} Payload={}", stream, recordId, payload);
+
+            // Each payload transaction wrapped in transaction handle and called in retry
+            // logic
+            finished = processWithRetry(payload);
+        } catch (RuntimeException e) {
+            finished = true;
+            throw e;
+        } finally {
+            if (claimed) {
+                if (finished) {
+                    deduplicator.complete(dedupKey);
                 } else {
-                    log.debug("No new messages found in stream: {}", stream);
+                    deduplicator.release(dedupKey);
                 }
-                Thread.sleep(3000); // Poll every 3 seconds
             }
-        };
+            if (finished) {
+                partitionProgress.complete(recordId);
+            } else {
+                handedBack.incrementAndGet();
+            }
+            partitionLeaseManager.endWork(stream);
+        }
+    }
+
+    private boolean draining() {
+        return drainSignal.getCount() == 0;
+    }
+
+    /**
+     * Waits up to {@code millis}, returning early when the drain starts.
+     *
+     * @return true if the drain has started (the caller should hand back)
+     */
+    private boolean awaitDrain(long millis) {
+        try {
+            return drainSignal.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    /**
+     * Commits, per partition, the offset below which every dispatched record
+     * has finished (fenced by the lease). Drops the progress of partitions
+     * whose lease is gone, or that were handed over and have nothing left in
+     * flight.
+     */
+    private void commitProgress(Map<String, PartitionProgress> progress, List<String> owned) {
+        progress.entrySet().removeIf(entry -> {
+            String stream = entry.getKey();
+            String watermark = entry.getValue().committable();
+            if (watermark != null && !partitionLeaseManager.commitOffset(stream, watermark)) {
+                return true;
+            }
+            return !owned.contains(stream) && entry.getValue().isIdle();
+        });
+    }
 
+    /**
+     * Mailbox key for a record: the sender UPI (case-insensitive, like the
+     * partition hash), or the record itself for payloads without one.
+     */
+    private static String mailboxKey(Map<Object, Object> payload, String recordId) {
+        Object sender = payload.get("senderUpi");
+        return sender != null ? sender.toString().toLowerCase(Locale.ROOT) : "record:" + recordId;
     }
 
     /* ----------- CHANGE MADE: AUDIT LOGGING HELPER ADDED ----------- */
     // <------- change made: add audit log helper
-    private void logAudit(Long txnId, String prevStatus, String newStatus) {
+    private void logAudit(Long txnId, TransactionStatus prevStatus, TransactionStatus newStatus,
+            FailureReason reason) {
         TransactionHistoryEntity audit = new TransactionHistoryEntity();
         audit.setTransactionId(txnId);
         audit.setPrevStatus(prevStatus);
         audit.setNewStatus(newStatus);
+        audit.setReason(reason);
         audit.setChangedAt(LocalDateTime.now());
         transactionHistoryRepository.save(audit);
     }
@@ -214,75 +513,136 @@ public class TransactionWorkerConsumer {
      * Processes a single transaction payload (one job from the Redis stream).
      * <p>
      * Handles full transaction state transition from "queued" to "processing", then
-     * either "completed" or "failed",
-     * simulates the UPI/NPCI call, and persists all state transitions to the
+     * "completed", "failed" (permanent failure, e.g. declined) or left in
+     * "processing" with a reason code (retryable or unknown outcome),
+     * calls the UPI/NPCI gateway, and persists all state transitions to the
      * database.
      * <p>
      * <b>Atomic, exception-safe, and fully audited.</b>
      *
-     * @param payload the deserialized job payload (must contain valid "txnId" and
-     *                payment data)
+     * @param payload  the deserialized job payload (must contain valid "txnId"
+     *                 and payment data)
+     * @param deadline time by which the gateway must have answered
      * 
-     * @return true if the transaction was processed successfully; false otherwise
+     * @return the classified outcome; payloads that can never succeed (no txnId,
+     *         unknown transaction) are {@link PaymentOutcome.Kind#PERMANENT}
      */
     /* Helper Methods */
 
     // Wrapping the transaction handling processing
 
-    private boolean handleTransaction(Map<Object, Object> payload) {
-        Long txnId = null;
+    private PaymentOutcome handleTransaction(Map<Object, Object> payload, Instant deadline) {
+        Long txnId = txnIdOf(payload);
+        if (txnId == null) {
+            log.error("txnId missing or invalid in stream payload: {}", payload);
+            return PaymentOutcome.permanent(FailureReason.MALFORMED_PAYLOAD);
+        }
         try {
-            Object txnIdObj = payload.get("txnId");
-            if (txnIdObj != null) {
-                txnId = txnIdObj instanceof Long
-                        ? (Long) txnIdObj
-                        : Long.valueOf(txnIdObj.toString());
-            } else {
-                log.error("txnId missing in stream payload: {}", payload);
-                return false;
-            }
-
             // Find DB entity
             TransactionEntity TransactionEntity = transactionRepository.findById(txnId).orElse(null);
             if (TransactionEntity == null) {
                 log.error("Transaction not found in DB for txnId={}", txnId);
-                return false;
+                return PaymentOutcome.permanent(FailureReason.TRANSACTION_NOT_FOUND);
+            }
+            // Last line of defence against redelivery: never pay a completed payment again
+            if (TransactionEntity.getStatus() == TransactionStatus.COMPLETED) {
+                deduplicator.recordCompletedDuplicate();
+                log.info("Transaction {} already completed, skipping gateway call", txnId);
+                return PaymentOutcome.success();
             }
 
-            // === Audit wrap for "processing" ===
-            // <------- change made: audit before and after status
-            String prevStatus = TransactionEntity.getStatus();
-            TransactionEntity.setStatus("processing");
-            TransactionEntity.setUpdatedAt(LocalDateTime.now());
-            transactionRepository.save(TransactionEntity);
-            logAudit(txnId, prevStatus, "processing"); // <------- change made: audit call
-            log.info("Updated txnId={} to status=processing", txnId);
-
-            // Simulate UPI/NPCI call
-            boolean upiSuccess = npciUpiGatewayClient.initiateUpiPayment(
+            // Gateway saturated: wait (bounded) for a slot under the adaptive limit
+            AdaptiveConcurrencyLimiter.Permit permit = npciConcurrencyLimiter.tryAcquire(limiterMaxWait);
+            if (permit == null) {
+                throw new LimitExceededException(npciConcurrencyLimiter.getName(),
+                        npciConcurrencyLimiter.getLimit());
+            }
+
+            // Circuit open: leave the row untouched and park the payment
+            if (!npciCircuitBreaker.tryAcquirePermission()) {
+                permit.onIgnored();
+                throw new CallNotPermittedException(npciCircuitBreaker.getName());
+            }
+
+            PaymentOutcome outcome;
+            long callStarted;
+            try {
+                // === Audit wrap for "processing" ===
+                // <------- change made: audit before and after status
+                TransactionStatus prevStatus = TransactionEntity.getStatus();
+                if (prevStatus != TransactionStatus.PROCESSING) {
+                    TransactionEntity.setStatus(TransactionStatus.PROCESSING);
+                    TransactionEntity.setUpdatedAt(LocalDateTime.now());
+                    transactionRepository.save(TransactionEntity);
+                    logAudit(txnId, prevStatus, TransactionStatus.PROCESSING, null); // <------- change made: audit call
+                    log.info("Updated txnId={} to status=processing", txnId);
+                }
+
+                // UPI/NPCI call, bounded by the payment deadline and hedged (async;
+                // this mailbox thread is virtual, so waiting on the future is cheap)
+                callStarted = System.nanoTime();
+            } catch (RuntimeException e) {
+                npciCircuitBreaker.onIgnored();
+                permit.onIgnored();
+                throw e;
+            }
+            outcome = gatewayInvoker.pay(
                     TransactionEntity.getSenderUpi(),
                     TransactionEntity.getReceiverUpi(),
-                    TransactionEntity.getAmount(),
-                    txnId);
+                    TransactionEntity.getAmountPaise(),
+                    txnId,
+                    deadline).join();
+
+            // A final answer (including a decline) means the gateway is healthy and
+            // is a valid latency sample; no answer counts against both guards. A
+            // deadline that passed while waiting for the limiter sent nothing, so
+            // it says nothing about the gateway either way
+            if (outcome.kind() == PaymentOutcome.Kind.RETRYABLE
+                    && outcome.reason() == FailureReason.DEADLINE_EXCEEDED) {
+                npciCircuitBreaker.onIgnored();
+                permit.onIgnored();
+            } else if (outcome.isFinal()) {
+                npciCircuitBreaker.onSuccess();
+                permit.onSuccess(System.nanoTime() - callStarted);
+            } else {
+                npciCircuitBreaker.onFailure();
+                permit.onDropped();
+            }
 
           // === Audit wrap for "completed"/"failed" ===
-          prevStatus = TransactionEntity.getStatus();
-          if (upiSuccess) {
-              TransactionEntity.setStatus("completed");
-              logAudit(txnId, prevStatus, "completed"); // <------- change made: audit call
+          TransactionStatus prevStatus = TransactionEntity.getStatus();
+          if (outcome.kind() == PaymentOutcome.Kind.SUCCESS) {
+              // Posted before the status is saved: a failed save retries into a
+              // no-op posting, never a completed payment missing from the ledger
+              ledgerPoster.post(txnId, TransactionEntity.getSenderUpi(), TransactionEntity.getReceiverUpi(),
+                      TransactionEntity.getAmountPaise());
+              TransactionEntity.setStatus(TransactionStatus.COMPLETED);
+              TransactionEntity.setFailureReason(null);
+              logAudit(txnId, prevStatus, TransactionStatus.COMPLETED, null); // <------- change made: audit call
               log.info("Transaction {} completed via UPI", txnId);
+          } else if (outcome.kind() == PaymentOutcome.Kind.PERMANENT) {
+              TransactionEntity.setStatus(TransactionStatus.FAILED);
+              TransactionEntity.setFailureReason(outcome.reason());
+              logAudit(txnId, prevStatus, TransactionStatus.FAILED, outcome.reason()); // <------- change made: audit call
+              log.warn("Transaction {} failed via UPI: {}", txnId, outcome.reason());
           } else {
-              TransactionEntity.setStatus("failed");
-              logAudit(txnId, prevStatus, "failed"); // <------- change made: audit call
-              log.warn("Transaction {} failed via UPI", txnId);
+              // still processing; record why, status stays until retried or resolved
+              TransactionEntity.setFailureReason(outcome.reason());
+              log.warn("Transaction {} not completed via UPI ({} {})", txnId, outcome.kind(), outcome.reason());
           }
           TransactionEntity.setUpdatedAt(LocalDateTime.now());
           transactionRepository.save(TransactionEntity);
 
-            return upiSuccess;
+            return outcome;
+        } catch (CallNotPermittedException | LimitExceededException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PaymentOutcome.retryable(FailureReason.INTERNAL_ERROR);
         } catch (Exception e) {
+            // a failed write after the gateway call is safe to retry: same txnId
             log.error("Exception processing payload: {}, error={}", payload, e.getMessage(), e);
-            return false;
+            return PaymentOutcome.retryable(FailureReason.INTERNAL_ERROR);
         }
     }
 
@@ -290,39 +650,183 @@ public class TransactionWorkerConsumer {
      * Applies retry logic with exponential backoff to transaction processing, and
      * fails over to DLQ on persistent errors.
      * <p>
-     * Invokes {@link #handleTransaction(Map)}. Retries the job up to the configured
-     * limit; if all attempts fail,
-     * the original job payload is atomically pushed to the DLQ ("transactions.dlq")
-     * stream for audit/replay.
+     * Invokes {@link #handleTransaction(Map, Instant)}. Only retryable and
+     * unknown outcomes are retried, up to the configured limit; permanent
+     * failures (declined, unknown transaction, malformed payload) go to the DLQ
+     * at once without further gateway calls or backoff sleeps. The job payload
+     * is pushed to the DLQ ("transactions.dlq") stream with its outcome and
+     * reason code for audit/replay.
+     * <p>
+     * When retries run out, a payment the gateway certainly did not execute is
+     * marked "failed"; one with an unknown outcome stays "processing" (with its
+     * reason) so it is never reported failed after the money moved.
+     * <p>
+     * While the gateway circuit is open, or no slot frees up under the adaptive
+     * concurrency limit, the payment is parked instead: no gateway call is made
+     * and no attempt is consumed.
+     * <p>
+     * The payment deadline starts at the first attempt that gets past the
+     * circuit and the concurrency limit, never at enqueue: a payment that
+     * waited in the stream (backlog, restart, handover, open circuit) is
+     * always sent at least once. Once it has passed, the payment is not sent
+     * again and goes to the DLQ, where it can be replayed.
+     * <p>
+     * Every retry takes a token from the fleet-wide {@link RetryBudget}; while
+     * the budget is exhausted the retry is deferred (parked, not sent), so a
+     * gateway incident is not amplified by retry storms.
+     * <p>
+     * When the worker starts draining, a payment that is parked, deferred or
+     * backing off is handed back instead of waiting: the caller leaves its
+     * record uncommitted so the partition's next owner picks it up.
      * <p>
      * <b>All failures and DLQ moves are logged for compliance.</b>
      *
      * @param payload the transaction job payload to process and retry as needed
+     * @return false if the payment was handed back because of a drain
      */
     // Atomic Retry Logic
-    private void processWithRetry(Map<Object, Object> payload) {
+    private boolean processWithRetry(Map<Object, Object> payload) {
         int maxRetries = 3;
         int attempt = 0;
         long backoff = 2000L; // 2 seconds
 
-        boolean upiSuccess = false;
-        while (attempt < maxRetries && !upiSuccess) {
-            upiSuccess = handleTransaction(payload);
-            if (!upiSuccess) {
-                attempt++;
-                log.warn("Retry {}/{} for payload={} (reason: failed to process)", attempt, maxRetries, payload);
-                try {
-                    Thread.sleep(backoff);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
+        PaymentOutcome outcome = null;
+        Instant deadline = null; // set by the first attempt
+        boolean retryGranted = false;
+        retryBudget.recordAttempt();
+        while (attempt < maxRetries) {
+            parkWhileCircuitOpen();
+            if (attempt > 0 && !retryGranted) {
+                retryGranted = deferWhileRetryBudgetExhausted(deadline);
+            }
+            if (draining()) {
+                log.info("Draining: handing back payload={} after {} attempts", payload, attempt);
+                return false;
+            }
+            if (deadline != null && Instant.now().isAfter(deadline)) {
+                log.warn("Deadline {} passed for payload={}; not sending again", deadline, payload);
+                outcome = outcome != null && outcome.kind() == PaymentOutcome.Kind.UNKNOWN
+                        ? PaymentOutcome.unknown(FailureReason.DEADLINE_EXCEEDED)
+                        : PaymentOutcome.retryable(FailureReason.DEADLINE_EXCEEDED);
+                break;
+            }
+            Instant attemptDeadline = deadline != null ? deadline : Instant.now().plus(paymentDeadline);
+            PaymentOutcome result;
+            try {
+                result = handleTransaction(payload, attemptDeadline);
+            } catch (CallNotPermittedException | LimitExceededException e) {
+                continue; // refused before reaching the gateway: not an attempt
+            }
+            deadline = attemptDeadline;
+            retryGranted = false;
+            // once the outcome was unknown, a later "not executed" cannot prove it
+            outcome = outcome != null && outcome.kind() == PaymentOutcome.Kind.UNKNOWN
+                    && result.kind() == PaymentOutcome.Kind.RETRYABLE ? PaymentOutcome.unknown(result.reason())
+                            : result;
+            if (!outcome.isRetryable()) {
+                break;
+            }
+            attempt++;
+            if (attempt >= maxRetries) {
+                break;
+            }
+            log.warn("Retry {}/{} for payload={} (reason: {} {})", attempt, maxRetries, payload,
+                    outcome.kind(), outcome.reason());
+            if (awaitDrain(backoff)) {
+                log.info("Draining: handing back payload={} after {} attempts", payload, attempt);
+                return false;
+            }
+            backoff *= 2; // Exponential backoff
+        }
+
+        if (outcome == null || outcome.kind() == PaymentOutcome.Kind.SUCCESS) {
+            return true;
+        }
+        if (outcome.kind() == PaymentOutcome.Kind.RETRYABLE) {
+            markFailed(txnIdOf(payload), outcome.reason());
+        }
+        moveToDLQ(payload, outcome);
+        log.error("Moved payload={} to DLQ after {} attempts ({} {})", payload, attempt, outcome.kind(),
+                outcome.reason());
+        return true;
+    }
+
+    /**
+     * Marks a transaction the gateway certainly did not execute as "failed"
+     * after its retries ran out. Never throws: the DLQ entry is the fallback.
+     */
+    private void markFailed(Long txnId, FailureReason reason) {
+        if (txnId == null) {
+            return;
+        }
+        try {
+            transactionRepository.findById(txnId).ifPresent(entity -> {
+                TransactionStatus prevStatus = entity.getStatus();
+                if (prevStatus.isTerminal()) {
+                    return;
                 }
-                backoff *= 2; // Exponential backoff
+                entity.setStatus(TransactionStatus.FAILED);
+                entity.setFailureReason(reason);
+                entity.setUpdatedAt(LocalDateTime.now());
+                transactionRepository.save(entity);
+                logAudit(txnId, prevStatus, TransactionStatus.FAILED, reason);
+            });
+        } catch (Exception e) {
+            log.error("Could not mark txnId={} failed ({}): {}", txnId, reason, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the payload's txnId, or null if missing or not a number
+     */
+    private static Long txnIdOf(Map<Object, Object> payload) {
+        Object txnIdObj = payload.get("txnId");
+        if (txnIdObj instanceof Long id) {
+            return id;
+        }
+        if (txnIdObj == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(txnIdObj.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parks the calling mailbox until the retry budget grants a token, the
+     * payment deadline passes or the worker starts draining.
+     *
+     * @return true if a retry token was taken
+     */
+    private boolean deferWhileRetryBudgetExhausted(Instant deadline) {
+        while (!retryBudget.tryAcquireRetry()) {
+            if (Instant.now().isAfter(deadline)) {
+                return false;
+            }
+            log.debug("Retry budget exhausted, deferring retry");
+            if (awaitDrain(500L)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        if (!upiSuccess) {
-            moveToDLQ(payload);
-            log.error("Moved payload={} to DLQ after {} attempts", payload, maxRetries);
+    /**
+     * Parks the calling mailbox while the gateway circuit is open: the payment
+     * is neither sent nor failed, it simply waits (a cheap virtual-thread sleep)
+     * until the breaker lets a trial call through (or the worker starts
+     * draining). Parked mailboxes hold their capacity permit, so the stream
+     * reader stops pulling new work meanwhile.
+     */
+    private void parkWhileCircuitOpen() {
+        while (!npciCircuitBreaker.isCallPermitted()) {
+            long waitMs = Math.max(100L, Math.min(npciCircuitBreaker.remainingOpenMillis(), 1000L));
+            log.debug("Circuit {} open, parking payment for {} ms", npciCircuitBreaker.getName(), waitMs);
+            if (awaitDrain(waitMs)) {
+                return;
+            }
         }
     }
 
@@ -330,15 +834,20 @@ public class TransactionWorkerConsumer {
      * Moves a failed transaction payload to the Dead Letter Queue (DLQ) stream for
      * manual attention or audit replay.
      * <p>
-     * The payload is written to the "transactions.dlq" Redis stream and the event
-     * is logged.
+     * The payload is written to the "transactions.dlq" Redis stream together with
+     * its outcome class and reason code ("outcome", "failureReason"), and the
+     * event is logged.
      * <b>No transaction is ever silently lost.</b>
      *
      * @param payload the transaction job payload to be stored in DLQ
+     * @param outcome why it ended up there
      */
     // Move to DLQ
-    private void moveToDLQ(Map<Object, Object> payload) {
-        redisWorkerTemplate.opsForStream().add("transactions.dlq", payload);
+    private void moveToDLQ(Map<Object, Object> payload, PaymentOutcome outcome) {
+        Map<Object, Object> entry = new HashMap<>(payload);
+        entry.put("outcome", outcome.kind().name());
+        entry.put("failureReason", outcome.reason().name());
+        redisWorkerTemplate.opsForStream().add("transactions.dlq", entry);
     }
 
-}
\ No newline at end of file
+}
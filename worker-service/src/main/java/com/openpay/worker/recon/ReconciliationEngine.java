@@ -0,0 +1,357 @@
+package com.openpay.worker.recon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.openpay.shared.model.TransactionStatus;
+
+/**
+ * <h2>ReconciliationEngine</h2>
+ * <p>
+ * Sort-merges a settlement file against our transactions of one id window
+ * and writes the outcome as four CSV reports: {@code matched},
+ * {@code missing-in-file} (completed by us, not settled),
+ * {@code missing-internal} (settled, but not completed by us or unknown) and
+ * {@code amount-mismatch}.
+ * </p>
+ *
+ * <ul>
+ * <li>The window {@code [fromId, toId)} is cut into {@code ranges} id ranges
+ * reconciled in parallel; settlement ids outside the window go to the first
+ * or last range and come out as missing-internal</li>
+ * <li>Phase 1: the file is parsed in parallel chunks
+ * ({@link SettlementFileReader}); every chunk routes its records into one
+ * bounded buffer per range, spilled as sorted runs ({@link SortedRuns})</li>
+ * <li>Phase 2: per range, the merged runs and an id-ordered cursor over our
+ * transactions ({@link InternalSource}) are joined in one pass</li>
+ * <li>Memory is {@code chunks x ranges x bufferRecords} records while
+ * parsing, plus one read buffer per run while merging</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class ReconciliationEngine {
+
+    private static final String[] REPORTS = { "matched", "missing-in-file", "missing-internal",
+            "amount-mismatch" };
+    private static final String[] HEADERS = { "txn_id,amount_paise", "txn_id,amount_paise",
+            "txn_id,settled_paise,our_status", "txn_id,our_paise,settled_paise" };
+    private static final int MATCHED = 0;
+    private static final int MISSING_IN_FILE = 1;
+    private static final int MISSING_INTERNAL = 2;
+    private static final int AMOUNT_MISMATCH = 3;
+
+    private static final int COMPLETED = TransactionStatus.COMPLETED.getCode();
+
+    /**
+     * Our side of the reconciliation.
+     */
+    @FunctionalInterface
+    public interface InternalSource {
+
+        /**
+         * @return our transactions with {@code fromId <= id < toId}, in id
+         *         order, all statuses; unchecked failures of the source or its
+         *         cursor (e.g. database errors) reach the caller of
+         *         {@link #reconcile} unwrapped
+         */
+        RecordCursor open(long fromId, long toId) throws IOException;
+    }
+
+    /**
+     * Outcome counts of one reconciliation.
+     *
+     * @param matched          settled and completed with the same amount
+     * @param missingInFile    completed by us, absent from the file
+     * @param missingInternal  in the file, not completed by us (or repeated)
+     * @param amountMismatches settled with a different amount
+     * @param rejectedLines    file lines that were not records
+     * @param elapsed          wall time
+     */
+    public record Summary(long matched, long missingInFile, long missingInternal, long amountMismatches,
+            long rejectedLines, Duration elapsed) {
+
+        /**
+         * @return report lines (all four reports) produced per second
+         */
+        public long recordsPerSecond() {
+            long micros = Math.max(1, elapsed.toNanos() / 1_000);
+            return (matched + missingInFile + missingInternal + amountMismatches) * 1_000_000 / micros;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final int chunks;
+    private final int ranges;
+    private final int bufferRecords;
+
+    /**
+     * @param pool          runs the parse chunks, then the range joins
+     * @param chunks        parallel parse tasks
+     * @param ranges        id ranges joined in parallel
+     * @param bufferRecords records buffered per chunk and range before a
+     *                      spill
+     */
+    public ReconciliationEngine(ExecutorService pool, int chunks, int ranges, int bufferRecords) {
+        if (chunks <= 0 || ranges <= 0 || bufferRecords <= 0) {
+            throw new IllegalArgumentException("chunks, ranges and bufferRecords must be positive");
+        }
+        this.pool = pool;
+        this.chunks = chunks;
+        this.ranges = ranges;
+        this.bufferRecords = bufferRecords;
+    }
+
+    /**
+     * Reconciles {@code file} against our transactions in
+     * {@code [fromId, toId)}, writing the reports into {@code reportDir}.
+     */
+    public Summary reconcile(Path file, SettlementFormat format, long fromId, long toId, InternalSource source,
+            Path reportDir) throws IOException {
+        long started = System.nanoTime();
+        long[] starts = rangeStarts(fromId, Math.max(fromId, toId), ranges);
+        Files.createDirectories(reportDir);
+        Path spillDir = Files.createTempDirectory(reportDir, ".spill");
+        List<SortedRuns> runs = new ArrayList<>(ranges);
+        for (int r = 0; r < ranges; r++) {
+            runs.add(new SortedRuns(spillDir, "range-" + r));
+        }
+        try {
+            List<RangeBuffers> buffers = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                buffers.add(new RangeBuffers(starts, runs, bufferRecords));
+            }
+            long rejected = SettlementFileReader.read(file, format, chunks, buffers, pool);
+            for (RangeBuffers buffer : buffers) {
+                buffer.flush();
+            }
+
+            List<Future<long[]>> joins = new ArrayList<>(ranges);
+            for (int r = 0; r < ranges; r++) {
+                int range = r;
+                long to = r + 1 < ranges ? starts[r + 1] : Math.max(fromId, toId);
+                joins.add(pool.submit(() -> join(runs.get(range), source.open(starts[range], to), reportDir,
+                        range)));
+            }
+            long[] counts = new long[REPORTS.length];
+            for (long[] part : await(joins)) {
+                for (int k = 0; k < counts.length; k++) {
+                    counts[k] += part[k];
+                }
+            }
+            concatenate(reportDir);
+            return new Summary(counts[MATCHED], counts[MISSING_IN_FILE], counts[MISSING_INTERNAL],
+                    counts[AMOUNT_MISMATCH], rejected, Duration.ofNanos(System.nanoTime() - started));
+        } finally {
+            for (SortedRuns run : runs) {
+                run.delete();
+            }
+            Files.deleteIfExists(spillDir);
+        }
+    }
+
+    /**
+     * @return first id of every range; ranges are equally wide, the first
+     *         starts at {@code fromId}
+     */
+    static long[] rangeStarts(long fromId, long toId, int ranges) {
+        long[] starts = new long[ranges];
+        long width = toId - fromId;
+        for (int r = 0; r < ranges; r++) {
+            starts[r] = fromId + width / ranges * r + width % ranges * r / ranges;
+        }
+        return starts;
+    }
+
+    /**
+     * Merge-joins one range, writing its report parts.
+     *
+     * @return counts per report
+     */
+    private static long[] join(SortedRuns runs, RecordCursor ours, Path reportDir, int range) throws IOException {
+        long[] counts = new long[REPORTS.length];
+        BufferedWriter[] out = new BufferedWriter[REPORTS.length];
+        try (ours; RecordCursor settled = runs.merge()) {
+            for (int k = 0; k < REPORTS.length; k++) {
+                out[k] = Files.newBufferedWriter(part(reportDir, k, range), StandardCharsets.US_ASCII);
+            }
+            boolean hasSettled = settled.next();
+            boolean hasOurs = ours.next();
+            long lastJoined = Long.MIN_VALUE;
+            while (hasSettled || hasOurs) {
+                if (hasSettled && (!hasOurs || settled.id() < ours.id())) {
+                    String why = settled.id() == lastJoined ? "DUPLICATE" : "";
+                    write(out[MISSING_INTERNAL], settled.id(), settled.amountPaise(), why);
+                    counts[MISSING_INTERNAL]++;
+                    hasSettled = settled.next();
+                } else if (!hasSettled || ours.id() < settled.id()) {
+                    if (ours.status() == COMPLETED) {
+                        write(out[MISSING_IN_FILE], ours.id(), ours.amountPaise(), null);
+                        counts[MISSING_IN_FILE]++;
+                    }
+                    hasOurs = ours.next();
+                } else {
+                    if (ours.status() != COMPLETED) {
+                        write(out[MISSING_INTERNAL], settled.id(), settled.amountPaise(), statusName(ours.status()));
+                        counts[MISSING_INTERNAL]++;
+                    } else if (ours.amountPaise() == settled.amountPaise()) {
+                        write(out[MATCHED], ours.id(), ours.amountPaise(), null);
+                        counts[MATCHED]++;
+                    } else {
+                        write(out[AMOUNT_MISMATCH], ours.id(), ours.amountPaise(),
+                                Long.toString(settled.amountPaise()));
+                        counts[AMOUNT_MISMATCH]++;
+                    }
+                    lastJoined = settled.id();
+                    hasSettled = settled.next();
+                    hasOurs = ours.next();
+                }
+            }
+        } finally {
+            for (Writer writer : out) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void write(Writer out, long id, long amount, String extra) throws IOException {
+        out.write(Long.toString(id));
+        out.write(',');
+        out.write(Long.toString(amount));
+        if (extra != null) {
+            out.write(',');
+            out.write(extra);
+        }
+        out.write('\n');
+    }
+
+    private static String statusName(int code) {
+        try {
+            return TransactionStatus.fromCode((short) code).name();
+        } catch (IllegalArgumentException e) {
+            return Integer.toString(code);
+        }
+    }
+
+    /**
+     * Joins the range parts of every report, in range order, into
+     * {@code <report>.csv} with a header line.
+     */
+    private void concatenate(Path reportDir) throws IOException {
+        for (int k = 0; k < REPORTS.length; k++) {
+            Path report = reportDir.resolve(REPORTS[k] + ".csv");
+            try (FileChannel target = FileChannel.open(report, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                target.write(StandardCharsets.US_ASCII.encode(HEADERS[k] + "\n"));
+                for (int r = 0; r < ranges; r++) {
+                    Path part = part(reportDir, k, r);
+                    try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                        long position = 0;
+                        long size = source.size();
+                        while (position < size) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                    }
+                    Files.delete(part);
+                }
+            }
+        }
+    }
+
+    private static Path part(Path reportDir, int report, int range) {
+        return reportDir.resolve(REPORTS[report] + ".part-" + range);
+    }
+
+    private static <T> List<T> await(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IOException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException unchecked) {
+                throw unchecked;
+            }
+            throw new IOException("Reconciliation range failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Per parse chunk: one bounded buffer per range, sorted and spilled when
+     * full.
+     */
+    private static final class RangeBuffers implements SettlementFileReader.Sink {
+
+        private final long[] starts;
+        private final List<SortedRuns> runs;
+        private final long[][] ids;
+        private final long[][] amounts;
+        private final int[] sizes;
+
+        RangeBuffers(long[] starts, List<SortedRuns> runs, int capacity) {
+            this.starts = starts;
+            this.runs = runs;
+            this.ids = new long[starts.length][capacity];
+            this.amounts = new long[starts.length][capacity];
+            this.sizes = new int[starts.length];
+        }
+
+        @Override
+        public void accept(long txnId, long amountPaise) throws IOException {
+            int r = Arrays.binarySearch(starts, txnId);
+            if (r < 0) {
+                r = Math.max(0, -r - 2);
+            } else {
+                // equal starts (window narrower than the range count): only the last is not empty
+                while (r + 1 < starts.length && starts[r + 1] == txnId) {
+                    r++;
+                }
+            }
+            int n = sizes[r];
+            ids[r][n] = txnId;
+            amounts[r][n] = amountPaise;
+            sizes[r] = ++n;
+            if (n == ids[r].length) {
+                spill(r);
+            }
+        }
+
+        void flush() throws IOException {
+            for (int r = 0; r < starts.length; r++) {
+                spill(r);
+            }
+        }
+
+        private void spill(int r) throws IOException {
+            SortedRuns.sort(ids[r], amounts[r], sizes[r]);
+            runs.get(r).spill(ids[r], amounts[r], sizes[r]);
+            sizes[r] = 0;
+        }
+    }
+}
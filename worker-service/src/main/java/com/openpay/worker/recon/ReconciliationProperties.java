@@ -0,0 +1,255 @@
+package com.openpay.worker.recon;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <h2>ReconciliationProperties</h2>
+ * <p>
+ * Binds {@code openpay.recon.*}: where settlement files arrive and reports
+ * go, how a settlement line is laid out, and how the work is split.
+ * </p>
+ *
+ * <h3>Example:</h3>
+ *
+ * <pre>
+ * openpay.recon.enabled=true
+ * openpay.recon.inbox-dir=/srv/openpay/settlement-inbox
+ * openpay.recon.format=fixed-width
+ * openpay.recon.amount-unit=rupees
+ * openpay.recon.fixed-width.txn-id-start=12
+ * openpay.recon.fixed-width.txn-id-length=20
+ * openpay.recon.fixed-width.amount-start=32
+ * openpay.recon.fixed-width.amount-length=15
+ * </pre>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "openpay.recon")
+public class ReconciliationProperties {
+
+    /** Master switch for the reconciliation job. */
+    private boolean enabled = false;
+
+    /** Directory polled for {@code settlement-YYYY-MM-DD.*} files. */
+    private Path inboxDir = Path.of("settlement-inbox");
+
+    /** Reports are written to {@code <report-dir>/<day>/}. */
+    private Path reportDir = Path.of("recon-reports");
+
+    /** Line layout: csv | fixed-width. */
+    private String format = "csv";
+
+    /** Unit of settled amounts: paise | rupees (up to two decimals). */
+    private String amountUnit = "paise";
+
+    /** Parse chunks and worker threads. */
+    private int parallelism = 4;
+
+    /** Id ranges reconciled in parallel. */
+    private int ranges = 8;
+
+    /** Settlement records buffered per parse chunk and range before a spill. */
+    private int bufferRecords = 65_536;
+
+    /** Rows fetched per round trip by the transaction export cursor. */
+    private int fetchSize = 10_000;
+
+    private Csv csv = new Csv();
+
+    private FixedWidth fixedWidth = new FixedWidth();
+
+    /**
+     * Layout of {@code format=csv}.
+     */
+    public static class Csv {
+
+        /** Column separator, one character. */
+        private char delimiter = ',';
+
+        /** Zero-based column of the transaction id. */
+        private int txnIdColumn = 0;
+
+        /** Zero-based column of the settled amount. */
+        private int amountColumn = 1;
+
+        public char getDelimiter() {
+            return delimiter;
+        }
+
+        public void setDelimiter(char delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        public int getTxnIdColumn() {
+            return txnIdColumn;
+        }
+
+        public void setTxnIdColumn(int txnIdColumn) {
+            this.txnIdColumn = txnIdColumn;
+        }
+
+        public int getAmountColumn() {
+            return amountColumn;
+        }
+
+        public void setAmountColumn(int amountColumn) {
+            this.amountColumn = amountColumn;
+        }
+    }
+
+    /**
+     * Layout of {@code format=fixed-width}; offsets are in bytes.
+     */
+    public static class FixedWidth {
+
+        private int txnIdStart = 0;
+        private int txnIdLength = 20;
+        private int amountStart = 20;
+        private int amountLength = 15;
+
+        public int getTxnIdStart() {
+            return txnIdStart;
+        }
+
+        public void setTxnIdStart(int txnIdStart) {
+            this.txnIdStart = txnIdStart;
+        }
+
+        public int getTxnIdLength() {
+            return txnIdLength;
+        }
+
+        public void setTxnIdLength(int txnIdLength) {
+            this.txnIdLength = txnIdLength;
+        }
+
+        public int getAmountStart() {
+            return amountStart;
+        }
+
+        public void setAmountStart(int amountStart) {
+            this.amountStart = amountStart;
+        }
+
+        public int getAmountLength() {
+            return amountLength;
+        }
+
+        public void setAmountLength(int amountLength) {
+            this.amountLength = amountLength;
+        }
+    }
+
+    /**
+     * @return the configured line layout
+     */
+    public SettlementFormat settlementFormat() {
+        boolean rupees = switch (amountUnit) {
+            case "paise" -> false;
+            case "rupees" -> true;
+            default -> throw new IllegalArgumentException("openpay.recon.amount-unit must be paise or rupees");
+        };
+        return switch (format) {
+            case "csv" -> {
+                if (csv.delimiter > 0x7f) {
+                    throw new IllegalArgumentException("openpay.recon.csv.delimiter must be ASCII");
+                }
+                yield SettlementFormat.csv((byte) csv.delimiter, csv.txnIdColumn, csv.amountColumn, rupees);
+            }
+            case "fixed-width" -> SettlementFormat.fixedWidth(fixedWidth.txnIdStart, fixedWidth.txnIdLength,
+                    fixedWidth.amountStart, fixedWidth.amountLength, rupees);
+            default -> throw new IllegalArgumentException("openpay.recon.format must be csv or fixed-width");
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getInboxDir() {
+        return inboxDir;
+    }
+
+    public void setInboxDir(Path inboxDir) {
+        this.inboxDir = inboxDir;
+    }
+
+    public Path getReportDir() {
+        return reportDir;
+    }
+
+    public void setReportDir(Path reportDir) {
+        this.reportDir = reportDir;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getAmountUnit() {
+        return amountUnit;
+    }
+
+    public void setAmountUnit(String amountUnit) {
+        this.amountUnit = amountUnit;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(int ranges) {
+        this.ranges = ranges;
+    }
+
+    public int getBufferRecords() {
+        return bufferRecords;
+    }
+
+    public void setBufferRecords(int bufferRecords) {
+        this.bufferRecords = bufferRecords;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public Csv getCsv() {
+        return csv;
+    }
+
+    public void setCsv(Csv csv) {
+        this.csv = csv;
+    }
+
+    public FixedWidth getFixedWidth() {
+        return fixedWidth;
+    }
+
+    public void setFixedWidth(FixedWidth fixedWidth) {
+        this.fixedWidth = fixedWidth;
+    }
+}
@@ -0,0 +1,36 @@
+package com.openpay.worker.recon;
+
+import java.io.IOException;
+
+/**
+ * <h2>RecordCursor</h2>
+ * <p>
+ * Forward-only iteration over payment records in ascending id order, without
+ * allocating per record. Both sides of a reconciliation are read through it:
+ * the merged settlement runs and the exported transactions.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public interface RecordCursor extends AutoCloseable {
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false once exhausted
+     */
+    boolean next() throws IOException;
+
+    /** @return transaction id of the current record */
+    long id();
+
+    /** @return amount of the current record in paise */
+    long amountPaise();
+
+    /** @return status code of the current record (0 for settlement records) */
+    int status();
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,172 @@
+package com.openpay.worker.recon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <h2>SettlementFileReader</h2>
+ * <p>
+ * Reads a settlement file through memory-mapped windows, in parallel: the
+ * file is cut into byte chunks at line boundaries and every chunk is parsed
+ * by its own task into its own {@link Sink}. Nothing is copied to the heap
+ * except the parsed numbers.
+ * </p>
+ *
+ * <ul>
+ * <li>Chunks are mapped {@value #WINDOW} bytes at a time, so files larger
+ * than 2 GiB work and the address space used stays bounded</li>
+ * <li>LF and CRLF line endings; a line must fit in one window</li>
+ * <li>Blank lines are ignored; other lines the format rejects are counted</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+final class SettlementFileReader {
+
+    /** Bytes mapped at a time per chunk. */
+    static final int WINDOW = 64 * 1024 * 1024;
+
+    /**
+     * Receives the records of one chunk, from a single thread.
+     */
+    interface Sink {
+
+        void accept(long txnId, long amountPaise) throws IOException;
+    }
+
+    private SettlementFileReader() {
+    }
+
+    /**
+     * Parses {@code file} in {@code chunks} parallel tasks on {@code pool}.
+     *
+     * @param sinks one sink per chunk, by chunk index
+     * @return number of rejected lines
+     */
+    static long read(Path file, SettlementFormat format, int chunks, List<? extends Sink> sinks,
+            ExecutorService pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size, chunks);
+            List<Future<Long>> parts = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                long from = bounds[c];
+                long to = bounds[c + 1];
+                Sink sink = sinks.get(c);
+                parts.add(pool.submit(() -> readChunk(channel, from, to, format, sink)));
+            }
+            long rejected = 0;
+            try {
+                for (Future<Long> part : parts) {
+                    rejected += part.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                parts.forEach(p -> p.cancel(true));
+                throw new IOException("Settlement file read interrupted", e);
+            } catch (ExecutionException e) {
+                parts.forEach(p -> p.cancel(true));
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("Settlement file read failed", e.getCause());
+            }
+            return rejected;
+        }
+    }
+
+    /**
+     * @return chunk start offsets plus the file size; every inner bound is
+     *         just after a line feed (chunks may be empty)
+     */
+    private static long[] chunkBounds(FileChannel channel, long size, int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        bounds[chunks] = size;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        for (int c = 1; c < chunks; c++) {
+            long pos = Math.max(size * c / chunks, bounds[c - 1]);
+            bounds[c] = size;
+            while (pos < size) {
+                probe.clear();
+                int read = channel.read(probe, pos);
+                if (read <= 0) {
+                    break;
+                }
+                int lf = indexOf(probe, read);
+                if (lf >= 0) {
+                    bounds[c] = pos + lf + 1;
+                    break;
+                }
+                pos += read;
+            }
+        }
+        return bounds;
+    }
+
+    private static int indexOf(ByteBuffer buf, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buf.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long readChunk(FileChannel channel, long from, long to, SettlementFormat format, Sink sink)
+            throws IOException {
+        long[] record = new long[2];
+        long rejected = 0;
+        long pos = from;
+        while (pos < to) {
+            int length = (int) Math.min(WINDOW, to - pos);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            boolean last = pos + length == to;
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') {
+                    rejected += parseLine(window, lineStart, i, format, record, sink);
+                    lineStart = i + 1;
+                }
+            }
+            if (last) {
+                if (lineStart < length) {
+                    rejected += parseLine(window, lineStart, length, format, record, sink);
+                }
+                pos = to;
+            } else if (lineStart == 0) {
+                throw new IOException("Settlement line longer than " + WINDOW + " bytes at offset " + pos);
+            } else {
+                pos += lineStart;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * @return 1 if the line was rejected, else 0
+     */
+    private static int parseLine(ByteBuffer window, int start, int end, SettlementFormat format, long[] record,
+            Sink sink) throws IOException {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return 0;
+        }
+        if (!format.parse(window, start, end, record)) {
+            return 1;
+        }
+        sink.accept(record[0], record[1]);
+        return 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.openpay.worker.recon;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <h2>SettlementFormat</h2>
+ * <p>
+ * Extracts the transaction id and settled amount from one line of a
+ * settlement file, reading the mapped bytes in place.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #csv}: delimited columns, values optionally quoted</li>
+ * <li>{@link #fixedWidth}: values at fixed byte offsets</li>
+ * <li>Amounts are integral paise, or rupees with up to two decimals</li>
+ * <li>Lines that do not parse (headers, trailers, garbage) are rejected, not
+ * fatal; the reader counts them</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public interface SettlementFormat {
+
+    /**
+     * Parses one line, without its line terminator.
+     *
+     * @param line  mapped file window
+     * @param start index of the first byte of the line
+     * @param end   index after the last byte of the line
+     * @param out   receives {@code [txnId, amountPaise]}
+     * @return false if the line is not a settlement record
+     */
+    boolean parse(ByteBuffer line, int start, int end, long[] out);
+
+    /**
+     * @param delimiter    column separator
+     * @param idColumn     zero-based column of the transaction id
+     * @param amountColumn zero-based column of the amount
+     * @param rupees       amounts are rupees (with decimals) instead of paise
+     * @return a delimited format
+     */
+    static SettlementFormat csv(byte delimiter, int idColumn, int amountColumn, boolean rupees) {
+        if (idColumn < 0 || amountColumn < 0 || idColumn == amountColumn) {
+            throw new IllegalArgumentException("CSV id and amount columns must be distinct and non-negative");
+        }
+        return (line, start, end, out) -> {
+            long id = -1;
+            long amount = -1;
+            int column = 0;
+            int from = start;
+            for (int i = start; i <= end && column <= Math.max(idColumn, amountColumn); i++) {
+                if (i == end || line.get(i) == delimiter) {
+                    if (column == idColumn) {
+                        id = number(line, from, i, false);
+                    } else if (column == amountColumn) {
+                        amount = number(line, from, i, rupees);
+                    }
+                    column++;
+                    from = i + 1;
+                }
+            }
+            out[0] = id;
+            out[1] = amount;
+            return id >= 0 && amount >= 0;
+        };
+    }
+
+    /**
+     * @param idStart      offset of the transaction id
+     * @param idLength     width of the transaction id
+     * @param amountStart  offset of the amount
+     * @param amountLength width of the amount
+     * @param rupees       amounts are rupees (with decimals) instead of paise
+     * @return a fixed-width format; shorter lines are rejected
+     */
+    static SettlementFormat fixedWidth(int idStart, int idLength, int amountStart, int amountLength,
+            boolean rupees) {
+        if (idStart < 0 || amountStart < 0 || idLength <= 0 || amountLength <= 0) {
+            throw new IllegalArgumentException("Fixed-width offsets must be non-negative and widths positive");
+        }
+        int minLength = Math.max(idStart + idLength, amountStart + amountLength);
+        return (line, start, end, out) -> {
+            if (end - start < minLength) {
+                return false;
+            }
+            out[0] = number(line, start + idStart, start + idStart + idLength, false);
+            out[1] = number(line, start + amountStart, start + amountStart + amountLength, rupees);
+            return out[0] >= 0 && out[1] >= 0;
+        };
+    }
+
+    /**
+     * Parses a non-negative number from {@code [from, to)}, ignoring
+     * surrounding blanks and quotes. With {@code rupees}, up to two decimals
+     * are allowed and the result is in paise.
+     *
+     * @return the value, or -1 if malformed
+     */
+    private static long number(ByteBuffer buf, int from, int to, boolean rupees) {
+        while (from < to && isPadding(buf.get(from))) {
+            from++;
+        }
+        while (to > from && isPadding(buf.get(to - 1))) {
+            to--;
+        }
+        if (from == to) {
+            return -1;
+        }
+        long value = 0;
+        int decimals = -1;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == '.' && rupees && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (b < '0' || b > '9' || decimals >= 2 || value > (Long.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        if (rupees) {
+            for (int d = Math.max(decimals, 0); d < 2; d++) {
+                if (value > Long.MAX_VALUE / 10) {
+                    return -1;
+                }
+                value *= 10;
+            }
+        }
+        return value;
+    }
+
+    private static boolean isPadding(byte b) {
+        return b == ' ' || b == '"' || b == '\t';
+    }
+}
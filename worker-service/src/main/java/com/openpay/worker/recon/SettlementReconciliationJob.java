@@ -0,0 +1,279 @@
+package com.openpay.worker.recon;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.leader.LeaderElection;
+import com.openpay.worker.recon.ReconciliationEngine.Summary;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * <h2>SettlementReconciliationJob</h2>
+ * <p>
+ * Picks up daily settlement files from the inbox and reconciles each against
+ * the transactions created that day, with {@link ReconciliationEngine}. Runs
+ * on the elected leader only; the inbox is expected on storage the leader
+ * can read.
+ * </p>
+ *
+ * <ul>
+ * <li>Files are named {@code settlement-YYYY-MM-DD.<ext>}; the day selects
+ * the id window, the ids created that day ({@link TransactionIdWindow})</li>
+ * <li>Reports land in {@code <report-dir>/<day>/}; the file then moves to
+ * {@code <inbox>/done/} (or {@code failed/} if it cannot be read)</li>
+ * <li>A database error leaves the file in the inbox for the next poll</li>
+ * <li>Our side is one id-ordered cursor per range over the primary key,
+ * fetched {@code fetch-size} rows at a time</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "openpay.recon.enabled", havingValue = "true")
+public class SettlementReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(SettlementReconciliationJob.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("settlement-(\\d{4}-\\d{2}-\\d{2})\\.[A-Za-z0-9]+");
+
+    private static final String EXPORT = "SELECT id, amount_paise, status FROM transactions "
+            + "WHERE id >= ? AND id < ? ORDER BY id";
+
+    /** Export failures become {@link DataAccessException}s, so the file stays in the inbox. */
+    private static final SQLExceptionSubclassTranslator SQL_ERRORS = new SQLExceptionSubclassTranslator();
+
+    private final ReconciliationProperties properties;
+    private final DataSource dataSource;
+    private final TransactionIdWindow idWindow;
+    private final LeaderElection leaderElection;
+    private final ExecutorService pool;
+    private final ReconciliationEngine engine;
+    private final SettlementFormat format;
+    private final MeterRegistry meterRegistry;
+    private final Timer duration;
+    private final Counter failures;
+
+    /**
+     * @param properties     reconciliation settings
+     * @param dataSource     primary datasource (export cursors)
+     * @param idWindow       maps the file's day to an id range
+     * @param leaderElection runs only on the leader
+     * @param meterRegistry  metrics registry
+     */
+    public SettlementReconciliationJob(ReconciliationProperties properties,
+            DataSource dataSource,
+            TransactionIdWindow idWindow,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry) {
+        if (properties.getParallelism() <= 0 || properties.getFetchSize() <= 0) {
+            throw new IllegalArgumentException("openpay.recon.parallelism and fetch-size must be positive");
+        }
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.idWindow = idWindow;
+        this.leaderElection = leaderElection;
+        this.format = properties.settlementFormat();
+        this.pool = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "settlement-recon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.engine = new ReconciliationEngine(pool, properties.getParallelism(), properties.getRanges(),
+                properties.getBufferRecords());
+        this.meterRegistry = meterRegistry;
+        this.duration = meterRegistry.timer("openpay.recon.duration");
+        this.failures = meterRegistry.counter("openpay.recon.failures");
+    }
+
+    /**
+     * Reconciles every settlement file waiting in the inbox, oldest day
+     * first. Never throws.
+     */
+    @Scheduled(initialDelayString = "${openpay.recon.initial-delay-ms:60000}",
+            fixedDelayString = "${openpay.recon.poll-interval-ms:60000}",
+            scheduler = "jobScheduler")
+    public void poll() {
+        if (!leaderElection.isLeader() || !Files.isDirectory(properties.getInboxDir())) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> inbox = Files.newDirectoryStream(properties.getInboxDir(),
+                path -> Files.isRegularFile(path) && FILE_NAME.matcher(path.getFileName().toString()).matches())) {
+            inbox.forEach(files::add);
+        } catch (IOException e) {
+            log.warn("[RECON] Cannot list inbox {}: {}", properties.getInboxDir(), e.getMessage());
+            return;
+        }
+        files.sort(null);
+        for (Path file : files) {
+            Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+            name.matches();
+            try {
+                reconcile(LocalDate.parse(name.group(1)), file);
+                moveTo(file, "done");
+            } catch (DataAccessException e) {
+                failures.increment();
+                log.warn("[RECON] {} not reconciled, will retry: {}", file.getFileName(), e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                log.error("[RECON] {} could not be reconciled: {}", file.getFileName(), e.getMessage());
+                moveTo(file, "failed");
+            }
+        }
+    }
+
+    /**
+     * Reconciles one settlement file against the transactions created on
+     * {@code day}.
+     *
+     * @return outcome counts; the reports are in {@code <report-dir>/<day>/}
+     */
+    public Summary reconcile(LocalDate day, Path file) throws IOException {
+        TransactionIdWindow.Range window = idWindow.forDay(day);
+        long started = System.nanoTime();
+        Summary summary = engine.reconcile(file, format, window.fromId(), window.toId(), this::export,
+                properties.getReportDir().resolve(day.toString()));
+        duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        count("matched", summary.matched());
+        count("missing_in_file", summary.missingInFile());
+        count("missing_internal", summary.missingInternal());
+        count("amount_mismatch", summary.amountMismatches());
+        log.info("[RECON] {}: matched={} missingInFile={} missingInternal={} amountMismatch={} "
+                + "rejectedLines={} in {} ms ({} records/s)", day, summary.matched(), summary.missingInFile(),
+                summary.missingInternal(), summary.amountMismatches(), summary.rejectedLines(),
+                summary.elapsed().toMillis(), summary.recordsPerSecond());
+        return summary;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void count(String result, long amount) {
+        meterRegistry.counter("openpay.recon.records", "result", result).increment(amount);
+    }
+
+    private void moveTo(Path file, String subdirectory) {
+        try {
+            Path dir = properties.getInboxDir().resolve(subdirectory);
+            Files.createDirectories(dir);
+            Files.move(file, dir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("[RECON] Cannot move {} to {}: {}", file.getFileName(), subdirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a streaming, id-ordered cursor over {@code [fromId, toId)}; it
+     * holds one connection until closed.
+     */
+    private RecordCursor export(long fromId, long toId) {
+        try {
+            return new TransactionCursor(dataSource.getConnection(), fromId, toId, properties.getFetchSize());
+        } catch (SQLException e) {
+            throw SQL_ERRORS.translate("Open transaction export", EXPORT, e);
+        }
+    }
+
+    /**
+     * JDBC cursor over {@code transactions}; autocommit is off so the
+     * driver fetches in pages instead of materializing the range.
+     */
+    private static final class TransactionCursor implements RecordCursor {
+
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet rows;
+
+        TransactionCursor(Connection connection, long fromId, long toId, int fetchSize) throws SQLException {
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(false);
+                connection.setReadOnly(true);
+                this.statement = connection.prepareStatement(EXPORT);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, fromId);
+                statement.setLong(2, toId);
+                this.rows = statement.executeQuery();
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean next() {
+            try {
+                return rows.next();
+            } catch (SQLException e) {
+                throw SQL_ERRORS.translate("Transaction export", EXPORT, e);
+            }
+        }
+
+        @Override
+        public long id() {
+            return read(1);
+        }
+
+        @Override
+        public long amountPaise() {
+            return read(2);
+        }
+
+        @Override
+        public int status() {
+            return (int) read(3);
+        }
+
+        private long read(int column) {
+            try {
+                return rows.getLong(column);
+            } catch (SQLException e) {
+                throw SQL_ERRORS.translate("Transaction export", EXPORT, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try (connection; statement; rows) {
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                throw SQL_ERRORS.translate("Close transaction export", EXPORT, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.openpay.worker.recon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <h2>SortedRuns</h2>
+ * <p>
+ * External sort of the settlement records of one id range: records arrive in
+ * bounded buffers, each buffer is sorted and spilled as a run file, and
+ * {@link #merge()} streams all runs back in id order through a k-way merge.
+ * Memory is one buffer per producer while spilling and one read buffer per
+ * run while merging, whatever the file size.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+final class SortedRuns {
+
+    private static final int IO_BUFFER = 64 * 1024;
+
+    private final Path dir;
+    private final String name;
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param dir  directory for the run files
+     * @param name file name prefix of the runs
+     */
+    SortedRuns(Path dir, String name) {
+        this.dir = dir;
+        this.name = name;
+    }
+
+    /**
+     * Writes {@code n} records, already sorted by {@link #sort}, as a new run.
+     * Safe to call from several producers.
+     */
+    void spill(long[] ids, long[] amounts, int n) throws IOException {
+        if (n == 0) {
+            return;
+        }
+        Path run;
+        synchronized (runs) {
+            run = dir.resolve(name + "-run-" + runs.size() + ".bin");
+            runs.add(run);
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER))) {
+            for (int i = 0; i < n; i++) {
+                out.writeLong(ids[i]);
+                out.writeLong(amounts[i]);
+            }
+        }
+    }
+
+    /**
+     * @return cursor over all spilled records in id order; call after the
+     *         last spill
+     */
+    RecordCursor merge() throws IOException {
+        List<Path> files;
+        synchronized (runs) {
+            files = List.copyOf(runs);
+        }
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, files.size()),
+                Comparator.comparingLong(RunReader::id));
+        try {
+            for (Path file : files) {
+                RunReader reader = new RunReader(file);
+                if (reader.next()) {
+                    heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            for (RunReader reader : heads) {
+                reader.close();
+            }
+            throw e;
+        }
+        return new RecordCursor() {
+
+            private RunReader current;
+
+            @Override
+            public boolean next() throws IOException {
+                if (current != null) {
+                    if (current.next()) {
+                        heads.add(current);
+                    } else {
+                        current.close();
+                    }
+                }
+                current = heads.poll();
+                return current != null;
+            }
+
+            @Override
+            public long id() {
+                return current.id;
+            }
+
+            @Override
+            public long amountPaise() {
+                return current.amount;
+            }
+
+            @Override
+            public int status() {
+                return 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                for (RunReader reader : heads) {
+                    reader.close();
+                }
+                heads.clear();
+            }
+        };
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    void delete() throws IOException {
+        synchronized (runs) {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Sorts the first {@code n} records by id, moving amounts along
+     * (quicksort, insertion sort for short slices).
+     */
+    static void sort(long[] ids, long[] amounts, int n) {
+        quicksort(ids, amounts, 0, n - 1);
+    }
+
+    private static void quicksort(long[] ids, long[] amounts, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            // median of three as pivot
+            if (ids[mid] < ids[lo]) {
+                swap(ids, amounts, mid, lo);
+            }
+            if (ids[hi] < ids[lo]) {
+                swap(ids, amounts, hi, lo);
+            }
+            if (ids[hi] < ids[mid]) {
+                swap(ids, amounts, hi, mid);
+            }
+            long pivot = ids[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (ids[i] < pivot) {
+                    i++;
+                }
+                while (ids[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(ids, amounts, i++, j--);
+                }
+            }
+            // recurse into the smaller half, loop on the larger
+            if (j - lo < hi - i) {
+                quicksort(ids, amounts, lo, j);
+                lo = i;
+            } else {
+                quicksort(ids, amounts, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            long id = ids[i];
+            long amount = amounts[i];
+            int j = i - 1;
+            while (j >= lo && ids[j] > id) {
+                ids[j + 1] = ids[j];
+                amounts[j + 1] = amounts[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            amounts[j + 1] = amount;
+        }
+    }
+
+    private static void swap(long[] ids, long[] amounts, int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        long amount = amounts[a];
+        amounts[a] = amounts[b];
+        amounts[b] = amount;
+    }
+
+    /**
+     * Sequential reader of one run file.
+     */
+    private static final class RunReader implements AutoCloseable {
+
+        private final DataInputStream in;
+        private long id;
+        private long amount;
+
+        RunReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER));
+        }
+
+        long id() {
+            return id;
+        }
+
+        boolean next() throws IOException {
+            try {
+                id = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            amount = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.openpay.worker.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h2>AdaptiveConcurrencyLimiter</h2>
+ * <p>
+ * Caps the number of calls in flight to one dependency with a limit that is
+ * learned from observed round-trip times instead of configured. While the
+ * gateway answers as fast as it does unloaded the limit grows; as queueing
+ * shows up in its latency the limit shrinks, and timeouts/errors cut it
+ * multiplicatively. The worker therefore pushes as hard as the gateway can
+ * absorb at any time of day.
+ * </p>
+ *
+ * <ul>
+ * <li><b>Gradient</b> (Vegas-style) on every sample:
+ * {@code gradient = clamp(tolerance * minRtt / rtt, 0.5, 1)},
+ * {@code target = limit * gradient + sqrt(limit)}, smoothed into the limit.
+ * {@code minRtt} is the no-load baseline; it is re-learned every
+ * {@code minRttResetSamples} samples so a gateway that got permanently slower
+ * is not mistaken for one that is overloaded</li>
+ * <li><b>Multiplicative decrease</b> on a dropped call (timeout, transport
+ * error): {@code limit *= backoffRatio}</li>
+ * <li>The limit only grows while at least half of it is in use, so an idle
+ * worker does not inflate it</li>
+ * <li>Callers over the limit wait (virtual threads, no carrier pinning: a
+ * {@link ReentrantLock}, not {@code synchronized}) up to a bounded time and
+ * are then rejected</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * One granted slot. Exactly one of {@link #onSuccess(long)},
+     * {@link #onDropped()} or {@link #onIgnored()} must be called.
+     */
+    public final class Permit {
+
+        private boolean released;
+
+        private Permit() {
+        }
+
+        /**
+         * The call completed (with any gateway answer) after the given RTT.
+         *
+         * @param rttNanos measured round trip
+         */
+        public void onSuccess(long rttNanos) {
+            release(rttNanos, false);
+        }
+
+        /**
+         * The call timed out or failed in transport: treat as overload.
+         */
+        public void onDropped() {
+            release(0L, true);
+        }
+
+        /**
+         * The slot was not used for a call; no sample is recorded.
+         */
+        public void onIgnored() {
+            release(-1L, false);
+        }
+
+        private void release(long rttNanos, boolean dropped) {
+            lock.lock();
+            try {
+                if (released) {
+                    return;
+                }
+                released = true;
+                int inFlightAtRelease = inFlight--;
+                if (dropped) {
+                    drops.incrementAndGet();
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (rttNanos > 0) {
+                    sample(rttNanos, inFlightAtRelease);
+                }
+                slotFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final int minRttResetSamples;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+
+    // guarded by lock
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long samplesSinceReset;
+
+    private volatile long lastRttNanos;
+    private volatile long publishedMinRttNanos;
+
+    /**
+     * @param name               dependency name (metrics tag)
+     * @param initialLimit       starting limit
+     * @param minLimit           floor for the limit
+     * @param maxLimit           ceiling for the limit
+     * @param rttTolerance       how much RTT above the baseline is tolerated
+     *                           before the limit shrinks (e.g. 1.5)
+     * @param smoothing          weight of a new target in the limit (0..1]
+     * @param backoffRatio       multiplier applied on a dropped call (0..1)
+     * @param minRttResetSamples samples after which the RTT baseline is
+     *                           re-learned
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+            double rttTolerance, double smoothing, double backoffRatio, int minRttResetSamples) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit
+                || rttTolerance < 1.0 || smoothing <= 0.0 || smoothing > 1.0
+                || backoffRatio <= 0.0 || backoffRatio >= 1.0 || minRttResetSamples <= 0) {
+            throw new IllegalArgumentException("Invalid concurrency limiter settings for " + name);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.minRttResetSamples = minRttResetSamples;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Waits up to {@code maxWait} for a slot under the current limit.
+     *
+     * @param maxWait longest time to wait for a slot
+     * @return the permit, or null if still over the limit after {@code maxWait}
+     *         (counted as a rejection)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Permit tryAcquire(Duration maxWait) throws InterruptedException {
+        long remaining = maxWait.toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0L) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+                remaining = slotFreed.awaitNanos(remaining);
+            }
+            inFlight++;
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds lock
+    private void sample(long rttNanos, int inFlightAtRelease) {
+        lastRttNanos = rttNanos;
+        if (++samplesSinceReset >= minRttResetSamples) {
+            minRttNanos = rttNanos;
+            samplesSinceReset = 0;
+        } else {
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+        }
+        publishedMinRttNanos = minRttNanos;
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, rttTolerance * minRttNanos / rttNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        if (target > limit && inFlightAtRelease < limit / 2) {
+            return; // app-limited: no evidence the gateway could take more
+        }
+        double next = limit * (1.0 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return current in-flight limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return calls currently holding a permit
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return most recent RTT sample in milliseconds
+     */
+    public double getLastRttMillis() {
+        return lastRttNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return current no-load RTT baseline in milliseconds (0 before the first
+     *         sample)
+     */
+    public double getMinRttMillis() {
+        return publishedMinRttNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return callers turned away after waiting for a slot
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return calls reported as dropped (each shrank the limit)
+     */
+    public long getDroppedCount() {
+        return drops.get();
+    }
+}
@@ -0,0 +1,25 @@
+package com.openpay.worker.resilience;
+
+import com.openpay.shared.exception.OpenPayException;
+
+/**
+ * <h2>CallNotPermittedException</h2>
+ * <p>
+ * Thrown when a {@link CircuitBreaker} refuses a call because the circuit is
+ * open (or half-open with all trial calls taken). The dependency was not
+ * contacted; callers should park the work rather than count it as a failed
+ * attempt.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class CallNotPermittedException extends OpenPayException {
+
+    /**
+     * @param breakerName name of the breaker that refused the call
+     */
+    public CallNotPermittedException(String breakerName) {
+        super("Circuit '" + breakerName + "' is open; call not permitted");
+    }
+}
@@ -0,0 +1,373 @@
+package com.openpay.worker.resilience;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <h2>CircuitBreaker</h2>
+ * <p>
+ * Lock-free closed / open / half-open circuit breaker for one external
+ * dependency. While the circuit is open, callers are refused without touching
+ * the dependency, so a degraded gateway is not hammered by calls and retries
+ * that are bound to fail.
+ * </p>
+ *
+ * <ul>
+ * <li><b>Closed</b>: outcomes go into a count-based sliding window; once it
+ * holds at least {@code minimumCalls} outcomes and the failure rate reaches
+ * {@code failureRateThreshold} percent, the circuit opens</li>
+ * <li><b>Open</b>: every call is refused for {@code openDuration}</li>
+ * <li><b>Half-open</b>: {@code halfOpenCalls} trial calls are let through;
+ * all succeed -&gt; closed (window reset), any failure -&gt; open again</li>
+ * <li>State is one immutable snapshot behind an {@link AtomicReference}; the
+ * window is an {@link AtomicIntegerArray} ring with atomic counters. No
+ * locks on the call path</li>
+ * <li>Transitions are queued for {@link CircuitBreakerStateStore}, which
+ * persists them to {@code service_circuit_breakers}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int MAX_PENDING_TRANSITIONS = 1000;
+
+    /**
+     * Breaker states, with their {@code service_circuit_breakers.state} value.
+     */
+    public enum State {
+        CLOSED("closed"), OPEN("open"), HALF_OPEN("half-open");
+
+        private final String dbValue;
+
+        State(String dbValue) {
+            this.dbValue = dbValue;
+        }
+
+        public String getDbValue() {
+            return dbValue;
+        }
+    }
+
+    /**
+     * One state transition, kept for the audit trail.
+     *
+     * @param from          previous state
+     * @param to            new state
+     * @param failureCount  failures in the window at transition time
+     * @param atMillis      wall-clock time of the transition
+     */
+    public record Transition(State from, State to, int failureCount, long atMillis) {
+    }
+
+    private record Snapshot(State state, long openedAtMillis, int halfOpenPermits, int halfOpenSuccesses) {
+    }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(
+            new Snapshot(State.CLOSED, 0L, 0, 0));
+    private final AtomicIntegerArray window;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger windowCalls = new AtomicInteger();
+    private final AtomicInteger windowFailures = new AtomicInteger();
+    private final AtomicLong transitions = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Queue<Transition> pendingTransitions = new ConcurrentLinkedQueue<>();
+    private volatile long lastFailureAtMillis;
+
+    /**
+     * @param name                 service name ({@code service_circuit_breakers}
+     *                             primary key)
+     * @param failureRateThreshold failure percentage that opens the circuit
+     * @param windowSize           number of most recent calls considered
+     * @param minimumCalls         calls needed in the window before it can trip
+     * @param openDuration         how long the circuit stays open
+     * @param halfOpenCalls        trial calls allowed while half-open
+     */
+    public CircuitBreaker(String name, int failureRateThreshold, int windowSize, int minimumCalls,
+            Duration openDuration, int halfOpenCalls) {
+        if (windowSize <= 0 || halfOpenCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings for " + name);
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openDurationMillis = openDuration.toMillis();
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new AtomicIntegerArray(windowSize);
+    }
+
+    /**
+     * Asks to make one call. A {@code true} answer must be followed by exactly
+     * one of {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @return true if the call may proceed
+     */
+    public boolean tryAcquirePermission() {
+        while (true) {
+            Snapshot s = snapshot.get();
+            switch (s.state()) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.currentTimeMillis() - s.openedAtMillis() < openDurationMillis) {
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                    if (transition(s, new Snapshot(State.HALF_OPEN, s.openedAtMillis(), halfOpenCalls - 1, 0))) {
+                        return true;
+                    }
+                    break;
+                case HALF_OPEN:
+                    if (s.halfOpenPermits() == 0) {
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                    if (snapshot.compareAndSet(s, new Snapshot(State.HALF_OPEN, s.openedAtMillis(),
+                            s.halfOpenPermits() - 1, s.halfOpenSuccesses()))) {
+                        return true;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state " + s.state());
+            }
+        }
+    }
+
+    /**
+     * Non-consuming peek: would {@link #tryAcquirePermission()} currently
+     * succeed?
+     *
+     * @return true if a call would be let through now
+     */
+    public boolean isCallPermitted() {
+        Snapshot s = snapshot.get();
+        return switch (s.state()) {
+            case CLOSED -> true;
+            case OPEN -> System.currentTimeMillis() - s.openedAtMillis() >= openDurationMillis;
+            case HALF_OPEN -> s.halfOpenPermits() > 0;
+        };
+    }
+
+    /**
+     * @return milliseconds until an open circuit lets a trial call through (0
+     *         if not open)
+     */
+    public long remainingOpenMillis() {
+        Snapshot s = snapshot.get();
+        if (s.state() != State.OPEN) {
+            return 0L;
+        }
+        return Math.max(0L, s.openedAtMillis() + openDurationMillis - System.currentTimeMillis());
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public void onSuccess() {
+        while (true) {
+            Snapshot s = snapshot.get();
+            if (s.state() == State.CLOSED) {
+                record(SUCCESS);
+                return;
+            }
+            if (s.state() != State.HALF_OPEN) {
+                return; // late result of a call started before the circuit opened
+            }
+            int successes = s.halfOpenSuccesses() + 1;
+            if (successes >= halfOpenCalls) {
+                if (transition(s, new Snapshot(State.CLOSED, 0L, 0, 0))) {
+                    resetWindow();
+                    return;
+                }
+            } else if (snapshot.compareAndSet(s,
+                    new Snapshot(State.HALF_OPEN, s.openedAtMillis(), s.halfOpenPermits(), successes))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records a failed call (error, timeout or negative gateway answer).
+     */
+    public void onFailure() {
+        lastFailureAtMillis = System.currentTimeMillis();
+        while (true) {
+            Snapshot s = snapshot.get();
+            switch (s.state()) {
+                case CLOSED:
+                    record(FAILURE);
+                    int calls = windowCalls.get();
+                    if (calls < minimumCalls || windowFailures.get() * 100 < failureRateThreshold * calls) {
+                        return;
+                    }
+                    if (transition(s, new Snapshot(State.OPEN, System.currentTimeMillis(), 0, 0))) {
+                        return;
+                    }
+                    break;
+                case HALF_OPEN:
+                    if (transition(s, new Snapshot(State.OPEN, System.currentTimeMillis(), 0, 0))) {
+                        return;
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Hands back a permission that did not result in a call (e.g. the local
+     * work failed before reaching the dependency).
+     */
+    public void onIgnored() {
+        while (true) {
+            Snapshot s = snapshot.get();
+            if (s.state() != State.HALF_OPEN || snapshot.compareAndSet(s, new Snapshot(State.HALF_OPEN,
+                    s.openedAtMillis(), s.halfOpenPermits() + 1, s.halfOpenSuccesses()))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adopts an open circuit observed by another worker, if this one is still
+     * closed.
+     *
+     * @param openedAtMillis when the other worker opened it
+     * @return true if the local circuit was opened
+     */
+    public boolean adoptOpen(long openedAtMillis) {
+        Snapshot s = snapshot.get();
+        return s.state() == State.CLOSED
+                && System.currentTimeMillis() - openedAtMillis < openDurationMillis
+                && transition(s, new Snapshot(State.OPEN, openedAtMillis, 0, 0));
+    }
+
+    /**
+     * Drains the transitions recorded since the last call.
+     *
+     * @return transitions, oldest first
+     */
+    public List<Transition> drainTransitions() {
+        List<Transition> drained = new ArrayList<>();
+        Transition t;
+        while ((t = pendingTransitions.poll()) != null) {
+            drained.add(t);
+        }
+        return drained;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return snapshot.get().state();
+    }
+
+    /**
+     * @return wall-clock time the circuit last opened, 0 if it never did
+     */
+    public long getOpenedAtMillis() {
+        return snapshot.get().openedAtMillis();
+    }
+
+    /**
+     * @return failures among the calls in the current window
+     */
+    public int getFailureCount() {
+        return windowFailures.get();
+    }
+
+    /**
+     * @return wall-clock time of the last recorded failure, 0 if none
+     */
+    public long getLastFailureAtMillis() {
+        return lastFailureAtMillis;
+    }
+
+    /**
+     * @return number of state transitions so far (changes when the state
+     *         changes)
+     */
+    public long getTransitionCount() {
+        return transitions.get();
+    }
+
+    /**
+     * @return calls refused because the circuit was open or half-open and full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public Duration getOpenDuration() {
+        return Duration.ofMillis(openDurationMillis);
+    }
+
+    private boolean transition(Snapshot from, Snapshot to) {
+        if (!snapshot.compareAndSet(from, to)) {
+            return false;
+        }
+        transitions.incrementAndGet();
+        if (pendingTransitions.size() < MAX_PENDING_TRANSITIONS) {
+            pendingTransitions.offer(new Transition(from.state(), to.state(), windowFailures.get(),
+                    System.currentTimeMillis()));
+        }
+        if (to.state() == State.CLOSED) {
+            log.info("[CIRCUIT] {} {} -> {}", name, from.state(), to.state());
+        } else {
+            log.warn("[CIRCUIT] {} {} -> {} (failures in window: {}/{})", name, from.state(), to.state(),
+                    windowFailures.get(), windowCalls.get());
+        }
+        return true;
+    }
+
+    private void record(int outcome) {
+        int index = (int) (cursor.getAndIncrement() % window.length());
+        int previous = window.getAndSet(index, outcome);
+        if (previous == EMPTY) {
+            windowCalls.incrementAndGet();
+        }
+        if (previous == FAILURE) {
+            windowFailures.decrementAndGet();
+        }
+        if (outcome == FAILURE) {
+            windowFailures.incrementAndGet();
+        }
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < window.length(); i++) {
+            int previous = window.getAndSet(i, EMPTY);
+            if (previous != EMPTY) {
+                windowCalls.decrementAndGet();
+            }
+            if (previous == FAILURE) {
+                windowFailures.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.openpay.worker.resilience;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+/**
+ * <h2>CircuitBreakerStateStore</h2>
+ * <p>
+ * Periodically flushes every {@link CircuitBreaker} to
+ * {@code service_circuit_breakers} (latest state) and
+ * {@code service_circuit_breaker_events} (transition log), and pulls the other
+ * workers' view back in: a closed local breaker adopts a circuit another
+ * worker opened recently, so the whole fleet backs off together.
+ * </p>
+ *
+ * <ul>
+ * <li>The call path never touches the database; a failed flush is logged and
+ * retried next run</li>
+ * <li>The state row is only rewritten when the local state changed, so a
+ * closed worker does not overwrite an open circuit written by another</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class CircuitBreakerStateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerStateStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<CircuitBreaker> breakers;
+    private final String workerId;
+    private final Map<String, Long> flushedTransitions = new ConcurrentHashMap<>();
+
+    /**
+     * @param jdbcTemplate          JDBC access to the operational tables
+     * @param breakers              all circuit breakers of this worker
+     * @param partitionLeaseManager source of this worker's id
+     */
+    public CircuitBreakerStateStore(JdbcTemplate jdbcTemplate, List<CircuitBreaker> breakers,
+            PartitionLeaseManager partitionLeaseManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.breakers = breakers;
+        this.workerId = partitionLeaseManager.getWorkerId();
+    }
+
+    /**
+     * Scheduled flush + fleet sync for all breakers. Never throws.
+     */
+    @Scheduled(fixedDelayString = "${openpay.circuit-breaker.flush-interval-ms:5000}")
+    public void flush() {
+        for (CircuitBreaker breaker : breakers) {
+            try {
+                flush(breaker);
+            } catch (DataAccessException e) {
+                log.warn("[CIRCUIT] Flush of {} failed, will retry: {}", breaker.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void flush(CircuitBreaker breaker) {
+        List<CircuitBreaker.Transition> transitions = breaker.drainTransitions();
+        if (!transitions.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO service_circuit_breaker_events "
+                            + "(service_name, from_state, to_state, failure_count, worker_id, occurred_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?)",
+                    transitions, transitions.size(), (ps, t) -> {
+                        ps.setString(1, breaker.getName());
+                        ps.setString(2, t.from().getDbValue());
+                        ps.setString(3, t.to().getDbValue());
+                        ps.setInt(4, t.failureCount());
+                        ps.setString(5, workerId);
+                        ps.setTimestamp(6, new Timestamp(t.atMillis()));
+                    });
+        }
+
+        long transitionCount = breaker.getTransitionCount();
+        Long flushed = flushedTransitions.get(breaker.getName());
+        if (flushed == null || flushed != transitionCount) {
+            jdbcTemplate.update(
+                    "INSERT INTO service_circuit_breakers "
+                            + "(service_name, state, failure_count, last_failure_at, opened_at, updated_at, updated_by) "
+                            + "VALUES (?, ?, ?, ?, ?, NOW(), ?) "
+                            + "ON CONFLICT (service_name) DO UPDATE SET state = EXCLUDED.state, "
+                            + "failure_count = EXCLUDED.failure_count, "
+                            + "last_failure_at = GREATEST(service_circuit_breakers.last_failure_at, EXCLUDED.last_failure_at), "
+                            + "opened_at = COALESCE(EXCLUDED.opened_at, service_circuit_breakers.opened_at), "
+                            + "updated_at = NOW(), updated_by = EXCLUDED.updated_by",
+                    breaker.getName(), breaker.getState().getDbValue(), breaker.getFailureCount(),
+                    toTimestamp(breaker.getLastFailureAtMillis()), toTimestamp(breaker.getOpenedAtMillis()),
+                    workerId);
+            flushedTransitions.put(breaker.getName(), transitionCount);
+            return;
+        }
+
+        if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+            adoptFleetState(breaker);
+        }
+    }
+
+    /**
+     * Opens the local breaker if another worker recorded an open circuit that
+     * is still within its open duration.
+     */
+    private void adoptFleetState(CircuitBreaker breaker) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT state, opened_at, updated_by FROM service_circuit_breakers WHERE service_name = ?",
+                breaker.getName());
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<String, Object> row = rows.get(0);
+        if (!CircuitBreaker.State.OPEN.getDbValue().equals(row.get("state"))
+                || workerId.equals(row.get("updated_by"))
+                || !(row.get("opened_at") instanceof Timestamp openedAt)) {
+            return;
+        }
+        if (breaker.adoptOpen(openedAt.getTime())) {
+            log.warn("[CIRCUIT] {} opened by worker {}; backing off here too", breaker.getName(),
+                    row.get("updated_by"));
+        }
+    }
+
+    private static Timestamp toTimestamp(long millis) {
+        return millis == 0L ? null : new Timestamp(millis);
+    }
+}
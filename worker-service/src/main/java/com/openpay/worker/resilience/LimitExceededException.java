@@ -0,0 +1,26 @@
+package com.openpay.worker.resilience;
+
+import com.openpay.shared.exception.OpenPayException;
+
+/**
+ * <h2>LimitExceededException</h2>
+ * <p>
+ * Thrown when an {@link AdaptiveConcurrencyLimiter} has no free slot within
+ * the allowed wait. The dependency was not contacted; like
+ * {@link CallNotPermittedException}, callers should retry later without
+ * counting it as a failed attempt.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public class LimitExceededException extends OpenPayException {
+
+    /**
+     * @param limiterName name of the limiter that refused the call
+     * @param limit       limit at the time of refusal
+     */
+    public LimitExceededException(String limiterName, int limit) {
+        super("Concurrency limit " + limit + " of '" + limiterName + "' reached; call not permitted");
+    }
+}
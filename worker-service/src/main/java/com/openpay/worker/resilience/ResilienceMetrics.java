@@ -0,0 +1,70 @@
+package com.openpay.worker.resilience;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * <h2>ResilienceMetrics</h2>
+ * <p>
+ * Exports the state of every {@link CircuitBreaker} and
+ * {@link AdaptiveConcurrencyLimiter} to Micrometer, tagged with the
+ * dependency name. The guards themselves stay free of metrics code.
+ * </p>
+ *
+ * <ul>
+ * <li>{@code openpay.gateway.concurrency.limit} / {@code .inflight}</li>
+ * <li>{@code openpay.gateway.concurrency.rtt} ({@code kind=last|min}, ms)</li>
+ * <li>{@code openpay.gateway.concurrency.rejected} / {@code .dropped}</li>
+ * <li>{@code openpay.gateway.circuit.state} (0 closed, 1 open, 2 half-open)
+ * and {@code openpay.gateway.circuit.rejected}</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class ResilienceMetrics implements MeterBinder {
+
+    private final List<CircuitBreaker> breakers;
+    private final List<AdaptiveConcurrencyLimiter> limiters;
+
+    /**
+     * @param breakers all circuit breakers of this worker
+     * @param limiters all concurrency limiters of this worker
+     */
+    public ResilienceMetrics(List<CircuitBreaker> breakers, List<AdaptiveConcurrencyLimiter> limiters) {
+        this.breakers = breakers;
+        this.limiters = limiters;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (AdaptiveConcurrencyLimiter limiter : limiters) {
+            String service = limiter.getName();
+            Gauge.builder("openpay.gateway.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("service", service).register(registry);
+            Gauge.builder("openpay.gateway.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("service", service).register(registry);
+            Gauge.builder("openpay.gateway.concurrency.rtt", limiter, AdaptiveConcurrencyLimiter::getLastRttMillis)
+                    .tag("service", service).tag("kind", "last").baseUnit("milliseconds").register(registry);
+            Gauge.builder("openpay.gateway.concurrency.rtt", limiter, AdaptiveConcurrencyLimiter::getMinRttMillis)
+                    .tag("service", service).tag("kind", "min").baseUnit("milliseconds").register(registry);
+            FunctionCounter.builder("openpay.gateway.concurrency.rejected", limiter,
+                    AdaptiveConcurrencyLimiter::getRejectedCount).tag("service", service).register(registry);
+            FunctionCounter.builder("openpay.gateway.concurrency.dropped", limiter,
+                    AdaptiveConcurrencyLimiter::getDroppedCount).tag("service", service).register(registry);
+        }
+        for (CircuitBreaker breaker : breakers) {
+            Gauge.builder("openpay.gateway.circuit.state", breaker, b -> b.getState().ordinal())
+                    .tag("service", breaker.getName()).register(registry);
+            FunctionCounter.builder("openpay.gateway.circuit.rejected", breaker, CircuitBreaker::getRejectedCount)
+                    .tag("service", breaker.getName()).register(registry);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.openpay.worker.resilience;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * <h2>RetryBudget</h2>
+ * <p>
+ * Fleet-wide cap on gateway retries: over a sliding window, retries may be at
+ * most {@code ratio} times the number of first attempts (plus a small floor so
+ * a quiet system can still retry). During a gateway incident this keeps the
+ * extra load from retries bounded instead of multiplying it exactly when the
+ * gateway is weakest; retries over budget are deferred, not sent.
+ * </p>
+ *
+ * <ul>
+ * <li>Counts live in Redis as per-bucket hashes
+ * ({@code openpay:retry-budget:{fleet}:<bucket>}, fields {@code attempts} /
+ * {@code retries}) that expire after the window, so all workers share one
+ * budget. The {@code {fleet}} hash tag keeps every bucket in one Redis
+ * Cluster slot, as the sync script reads the whole window in one call</li>
+ * <li>The call path never touches Redis: local counts are flushed and the
+ * window totals read back in one script call every
+ * {@code sync-interval-ms}; decisions use those totals plus local unflushed
+ * counts</li>
+ * <li>If Redis is unreachable, local counts are kept and the budget keeps
+ * working on the last known totals</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class RetryBudget implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryBudget.class);
+
+    static final String KEY_PREFIX = "openpay:retry-budget:{fleet}:";
+
+    /**
+     * KEYS[1] = current bucket, KEYS[2..n] = all buckets in the window;
+     * ARGV = attempts, retries, ttl ms. Returns {attempts, retries} over the
+     * window.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SYNC = new DefaultRedisScript<>(
+            "if tonumber(ARGV[1]) > 0 then redis.call('hincrby', KEYS[1], 'attempts', ARGV[1]) end "
+                    + "if tonumber(ARGV[2]) > 0 then redis.call('hincrby', KEYS[1], 'retries', ARGV[2]) end "
+                    + "if redis.call('exists', KEYS[1]) == 1 then redis.call('pexpire', KEYS[1], ARGV[3]) end "
+                    + "local a, r = 0, 0 "
+                    + "for i = 2, #KEYS do "
+                    + "  local v = redis.call('hmget', KEYS[i], 'attempts', 'retries') "
+                    + "  a = a + (tonumber(v[1]) or 0) r = r + (tonumber(v[2]) or 0) "
+                    + "end "
+                    + "return {a, r}",
+            List.class);
+
+    private final StringRedisTemplate redis;
+    private final double ratio;
+    private final long minRetriesPerWindow;
+    private final long bucketMillis;
+    private final int buckets;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private long localAttempts;
+    private long localRetries;
+    private long windowAttempts;
+    private long windowRetries;
+    private long deferred;
+
+    /**
+     * @param redis               string template for the shared counters
+     * @param ratio               allowed retries per first attempt (e.g. 0.1)
+     * @param minRetriesPerWindow retries always allowed per window, fleet-wide
+     * @param window              sliding window length
+     * @param bucket              bucket granularity of the window
+     */
+    public RetryBudget(StringRedisTemplate redis,
+            @Value("${openpay.retry-budget.ratio:0.1}") double ratio,
+            @Value("${openpay.retry-budget.min-retries-per-window:10}") long minRetriesPerWindow,
+            @Value("${openpay.retry-budget.window:PT60S}") Duration window,
+            @Value("${openpay.retry-budget.bucket:PT10S}") Duration bucket) {
+        if (ratio < 0 || bucket.isZero() || bucket.isNegative() || window.compareTo(bucket) < 0) {
+            throw new IllegalArgumentException("Invalid retry budget settings");
+        }
+        this.redis = redis;
+        this.ratio = ratio;
+        this.minRetriesPerWindow = minRetriesPerWindow;
+        this.bucketMillis = bucket.toMillis();
+        this.buckets = (int) (window.toMillis() / bucketMillis);
+    }
+
+    /**
+     * Counts a first attempt (once per payment), which earns retry budget.
+     */
+    public void recordAttempt() {
+        lock.lock();
+        try {
+            localAttempts++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes one retry from the budget.
+     *
+     * @return true if the retry may be sent now; false if the budget is
+     *         exhausted and the retry should be deferred
+     */
+    public boolean tryAcquireRetry() {
+        lock.lock();
+        try {
+            long retries = windowRetries + localRetries;
+            long attempts = windowAttempts + localAttempts;
+            if (retries + 1 > ratio * attempts + minRetriesPerWindow) {
+                deferred++;
+                return false;
+            }
+            localRetries++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes local counts to Redis and refreshes the fleet-wide window totals.
+     * Never throws.
+     */
+    @Scheduled(fixedDelayString = "${openpay.retry-budget.sync-interval-ms:1000}")
+    public void sync() {
+        long attempts;
+        long retries;
+        lock.lock();
+        try {
+            attempts = localAttempts;
+            retries = localRetries;
+        } finally {
+            lock.unlock();
+        }
+
+        long currentBucket = System.currentTimeMillis() / bucketMillis;
+        List<String> keys = new ArrayList<>(buckets + 1);
+        keys.add(KEY_PREFIX + currentBucket);
+        for (int i = 0; i < buckets; i++) {
+            keys.add(KEY_PREFIX + (currentBucket - i));
+        }
+        List<?> totals;
+        try {
+            totals = redis.execute(SYNC, keys, String.valueOf(attempts), String.valueOf(retries),
+                    String.valueOf(bucketMillis * (buckets + 1)));
+        } catch (DataAccessException e) {
+            log.warn("[RETRY-BUDGET] Sync failed, deciding on local counts: {}", e.getMessage());
+            return;
+        }
+        if (totals == null || totals.size() < 2) {
+            return;
+        }
+        lock.lock();
+        try {
+            localAttempts -= attempts;
+            localRetries -= retries;
+            windowAttempts = ((Number) totals.get(0)).longValue();
+            windowRetries = ((Number) totals.get(1)).longValue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return retries still allowed in the current window (fleet-wide view)
+     */
+    public double getRemaining() {
+        lock.lock();
+        try {
+            return Math.max(0.0, ratio * (windowAttempts + localAttempts) + minRetriesPerWindow
+                    - (windowRetries + localRetries));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return retries / first attempts over the window (0 without attempts)
+     */
+    public double getRetryRatio() {
+        lock.lock();
+        try {
+            long attempts = windowAttempts + localAttempts;
+            return attempts == 0 ? 0.0 : (double) (windowRetries + localRetries) / attempts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return retries deferred by this worker because the budget was exhausted
+     */
+    public long getDeferredCount() {
+        lock.lock();
+        try {
+            return deferred;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openpay.retry.budget.remaining", this, RetryBudget::getRemaining).register(registry);
+        Gauge.builder("openpay.retry.budget.ratio", this, RetryBudget::getRetryRatio).register(registry);
+        FunctionCounter.builder("openpay.retry.budget.deferred", this, RetryBudget::getDeferredCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.openpay.worker.retention;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <h2>PostgresStreamArchiver</h2>
+ * <p>
+ * Archives trimmed stream entries into the {@code stream_archive} table (see
+ * {@code V8__stream_archive.sql}), one batched INSERT per page. Entries stay
+ * queryable by stream, id and time with plain SQL.
+ * </p>
+ *
+ * <ul>
+ * <li>Active with {@code openpay.retention.archive=postgres}</li>
+ * <li>{@code ON CONFLICT DO NOTHING} makes re-archiving an entry harmless</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "openpay.retention.archive", havingValue = "postgres")
+public class PostgresStreamArchiver implements StreamArchiver {
+
+    private static final String INSERT = "INSERT INTO stream_archive (stream_name, entry_id, entry_time, fields) "
+            + "VALUES (?, ?, ?, ?::jsonb) ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param jdbcTemplate JDBC template bound to the primary datasource
+     */
+    public PostgresStreamArchiver(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void archive(String stream, List<ArchivedEntry> entries) throws JsonProcessingException {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (ArchivedEntry entry : entries) {
+            rows.add(new Object[] { stream, entry.id(),
+                    Timestamp.from(Instant.ofEpochMilli(StreamIds.millisOf(entry.id()))),
+                    objectMapper.writeValueAsString(entry.fields()) });
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+}
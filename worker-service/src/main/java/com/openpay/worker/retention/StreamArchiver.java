@@ -0,0 +1,46 @@
+package com.openpay.worker.retention;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h2>StreamArchiver</h2>
+ * <p>
+ * Destination for Redis stream entries about to be trimmed by
+ * {@link StreamRetentionManager}. Selected with
+ * {@code openpay.retention.archive}; with {@code none} there is no archiver
+ * and entries are simply trimmed.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #archive} must be durable when it returns: the entries are
+ * trimmed from Redis right after</li>
+ * <li>It may see an entry twice (crash between archive and trim) and should
+ * tolerate that</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+public interface StreamArchiver {
+
+    /**
+     * One stream entry, fields rendered as JSON-friendly values.
+     *
+     * @param id     stream entry id
+     * @param fields entry fields
+     */
+    record ArchivedEntry(String id, Map<String, Object> fields) {
+    }
+
+    /**
+     * Stores a batch of consecutive entries of one stream.
+     *
+     * @param stream  stream name
+     * @param entries entries in stream order, never empty
+     * @throws IOException if the batch was not stored (runtime data access
+     *                     errors likewise); nothing is trimmed then
+     */
+    void archive(String stream, List<ArchivedEntry> entries) throws IOException;
+}
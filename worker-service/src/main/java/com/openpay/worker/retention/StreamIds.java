@@ -0,0 +1,58 @@
+package com.openpay.worker.retention;
+
+/**
+ * <h2>StreamIds</h2>
+ * <p>
+ * Arithmetic on Redis stream entry ids ({@code <millis>-<seq>}), for
+ * computing XTRIM MINID cut points.
+ * </p>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+final class StreamIds {
+
+    private StreamIds() {
+    }
+
+    /**
+     * @param id entry id; a bare {@code <millis>} is read as {@code <millis>-0}
+     * @return its millisecond part
+     */
+    static long millisOf(String id) {
+        int dash = id.indexOf('-');
+        return Long.parseLong(dash < 0 ? id : id.substring(0, dash));
+    }
+
+    static long seqOf(String id) {
+        int dash = id.indexOf('-');
+        return dash < 0 ? 0L : Long.parseLong(id.substring(dash + 1));
+    }
+
+    /**
+     * @return the smallest id greater than {@code id}, so that
+     *         {@code XTRIM MINID successor(id)} also removes {@code id}
+     */
+    static String successor(String id) {
+        return millisOf(id) + "-" + (seqOf(id) + 1);
+    }
+
+    /**
+     * @return first id at or after the given time
+     */
+    static String atMillis(long millis) {
+        return millis + "-0";
+    }
+
+    /**
+     * Orders ids numerically (string order breaks across digit counts).
+     */
+    static int compare(String a, String b) {
+        int byMillis = Long.compare(millisOf(a), millisOf(b));
+        return byMillis != 0 ? byMillis : Long.compare(seqOf(a), seqOf(b));
+    }
+
+    static String min(String a, String b) {
+        return compare(a, b) <= 0 ? a : b;
+    }
+}
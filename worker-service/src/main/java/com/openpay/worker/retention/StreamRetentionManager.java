@@ -0,0 +1,272 @@
+package com.openpay.worker.retention;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openpay.shared.util.StreamPartitioner;
+import com.openpay.worker.leader.LeaderElection;
+import com.openpay.worker.partition.PartitionLeaseManager;
+import com.openpay.worker.retention.StreamArchiver.ArchivedEntry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>StreamRetentionManager</h2>
+ * <p>
+ * Keeps Redis memory bounded by trimming the payment streams on a schedule.
+ * Without it every payment ever made stays in {@code transactions.main.{p}},
+ * and the retry/DLQ streams grow without limit.
+ * </p>
+ *
+ * <ul>
+ * <li><b>main partitions</b>: only acknowledged entries are trimmed (at or
+ * below the partition's committed offset, see {@link PartitionLeaseManager}),
+ * and only once older than {@code streams.main.max-age}; an unprocessed
+ * payment is never removed</li>
+ * <li><b>retry / dlq / collect</b>: trimmed to {@code max-length} and
+ * {@code max-age}</li>
+ * <li><b>dlq</b>: dead letters are the last record of a failed payment, so
+ * the DLQ is only trimmed behind an archiver; with {@code archive=none} its
+ * policy is ignored and the stream is kept whole</li>
+ * <li>Trims are approximate ({@code XTRIM MINID ~} / {@code MAXLEN ~}) so Redis
+ * only drops whole macro nodes, which is cheap</li>
+ * <li>With an {@link StreamArchiver} ({@code openpay.retention.archive=postgres
+ * | file}) entries are archived page by page first and the trim never passes
+ * the last archived id; the archive cursor per stream lives in
+ * {@code openpay:retention:archived:<stream>}</li>
+ * <li>Only the elected leader trims (see {@link LeaderElection})</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class StreamRetentionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamRetentionManager.class);
+
+    static final String CURSOR_PREFIX = "openpay:retention:archived:";
+
+    static final String RETRY_STREAM = "transactions.retry";
+    static final String DLQ_STREAM = "transactions.dlq";
+
+    private final RedisTemplate<Object, Object> redisWorkerTemplate;
+    private final StringRedisTemplate redis;
+    private final PartitionLeaseManager partitionLeaseManager;
+    private final LeaderElection leaderElection;
+    private final StreamRetentionProperties properties;
+    private final Optional<StreamArchiver> archiver;
+    private final MeterRegistry meterRegistry;
+    private final int partitions;
+
+    /**
+     * @param redisWorkerTemplate   template the streams are written with
+     * @param redis                 string template for archive cursors
+     * @param partitionLeaseManager committed offsets
+     * @param leaderElection        trims only on the leader
+     * @param properties            retention policies
+     * @param archiver              archive sink, absent with {@code archive=none}
+     * @param meterRegistry         metrics registry
+     * @param partitions            number of partition streams
+     */
+    public StreamRetentionManager(RedisTemplate<Object, Object> redisWorkerTemplate,
+            StringRedisTemplate redis,
+            PartitionLeaseManager partitionLeaseManager,
+            LeaderElection leaderElection,
+            StreamRetentionProperties properties,
+            Optional<StreamArchiver> archiver,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.streams.partitions:8}") int partitions) {
+        if (archiver.isEmpty() && !"none".equalsIgnoreCase(properties.getArchive())) {
+            throw new IllegalArgumentException(
+                    "Unknown openpay.retention.archive '" + properties.getArchive() + "' (none | postgres | file)");
+        }
+        if (properties.getPageSize() <= 0) {
+            throw new IllegalArgumentException("openpay.retention.page-size must be positive");
+        }
+        this.redisWorkerTemplate = redisWorkerTemplate;
+        this.redis = redis;
+        this.partitionLeaseManager = partitionLeaseManager;
+        this.leaderElection = leaderElection;
+        this.properties = properties;
+        this.archiver = archiver;
+        this.meterRegistry = meterRegistry;
+        this.partitions = partitions;
+        if (archiver.isEmpty() && properties.getStreams().containsKey("dlq")) {
+            log.warn("[RETENTION] openpay.retention.archive=none: the {} policy is ignored, dead letters are never trimmed",
+                    DLQ_STREAM);
+        }
+    }
+
+    /**
+     * One retention pass over all streams. Never throws; a stream that fails
+     * is retried on the next pass.
+     */
+    @Scheduled(fixedDelayString = "${openpay.retention.interval-ms:60000}",
+            initialDelayString = "${openpay.retention.interval-ms:60000}",
+            scheduler = "jobScheduler")
+    public void enforce() {
+        if (!properties.isEnabled() || !leaderElection.isLeader()) {
+            return;
+        }
+        try {
+            StreamRetentionProperties.Policy main = properties.getStreams().get("main");
+            if (main != null) {
+                for (String stream : StreamPartitioner.allStreams(partitions)) {
+                    String acked = partitionLeaseManager.committedOffset(stream);
+                    if (!PartitionLeaseManager.INITIAL_OFFSET.equals(acked)) {
+                        enforce(stream, main, acked);
+                    }
+                }
+            }
+            StreamRetentionProperties.Policy retry = properties.getStreams().get("retry");
+            if (retry != null) {
+                enforce(RETRY_STREAM, retry, null);
+            }
+            StreamRetentionProperties.Policy dlq = properties.getStreams().get("dlq");
+            if (dlq != null && archiver.isPresent()) {
+                // never drop a dead letter that has not been archived
+                enforce(DLQ_STREAM, dlq, null);
+            }
+            StreamRetentionProperties.Policy collect = properties.getStreams().get("collect");
+            if (collect != null) {
+                enforce(StreamPartitioner.COLLECT_STREAM, collect, null);
+            }
+        } catch (DataAccessException e) {
+            log.warn("[RETENTION] Pass aborted: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Trims one stream.
+     *
+     * @param ackedUpTo last acknowledged entry id (main partitions), or null
+     *                  for streams without a consumer
+     */
+    private void enforce(String stream, StreamRetentionProperties.Policy policy, String ackedUpTo) {
+        try {
+            Long length = redisWorkerTemplate.opsForStream().size(stream);
+            if (length == null || length == 0) {
+                return;
+            }
+            String cut = policy.getMaxAge() == null ? null
+                    : StreamIds.atMillis(System.currentTimeMillis() - policy.getMaxAge().toMillis());
+            long excess = 0;
+            if (ackedUpTo != null) {
+                // never past the committed offset: later entries may be unprocessed
+                cut = cut == null ? null : StreamIds.min(cut, StreamIds.successor(ackedUpTo));
+            } else if (policy.getMaxLength() > 0) {
+                excess = Math.max(0, length - policy.getMaxLength());
+            }
+            if (cut == null && excess == 0) {
+                return;
+            }
+
+            long removed;
+            if (archiver.isPresent()) {
+                String archivedUpTo = archive(stream, cut, excess);
+                removed = archivedUpTo == null ? 0 : trimMinId(stream, StreamIds.successor(archivedUpTo));
+            } else {
+                removed = cut == null ? 0 : trimMinId(stream, cut);
+                if (excess > 0) {
+                    Long trimmed = redisWorkerTemplate.opsForStream().trim(stream, policy.getMaxLength(), true);
+                    removed += trimmed == null ? 0 : trimmed;
+                }
+            }
+            if (removed > 0) {
+                counter("openpay.streams.retention.trimmed", stream).increment(removed);
+                log.info("[RETENTION] Trimmed {} entries from {} (length was {})", removed, stream, length);
+            }
+        } catch (IOException | DataAccessException e) {
+            log.warn("[RETENTION] Could not trim {}: {}", stream, e.getMessage());
+        }
+    }
+
+    /**
+     * Archives, page by page from the archive cursor, the entries below
+     * {@code cut} plus the first {@code excess} entries.
+     *
+     * @return highest archived id (this pass or earlier), or null if none
+     */
+    private String archive(String stream, String cut, long excess) throws IOException {
+        String cursorKey = CURSOR_PREFIX + stream;
+        String cursor = redis.opsForValue().get(cursorKey);
+        long taken = 0;
+
+        while (taken < properties.getMaxArchivePerRun()) {
+            Range<String> range = cursor == null ? Range.unbounded()
+                    : Range.rightUnbounded(Range.Bound.exclusive(cursor));
+            List<MapRecord<Object, Object, Object>> page = redisWorkerTemplate.opsForStream()
+                    .range(stream, range, Limit.limit().count(properties.getPageSize()));
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+
+            List<ArchivedEntry> batch = new ArrayList<>(page.size());
+            boolean reachedEnd = false;
+            for (MapRecord<Object, Object, Object> record : page) {
+                String id = record.getId().getValue();
+                boolean expired = cut != null && StreamIds.compare(id, cut) < 0;
+                if ((!expired && taken >= excess) || taken >= properties.getMaxArchivePerRun()) {
+                    reachedEnd = true;
+                    break;
+                }
+                batch.add(new ArchivedEntry(id, fieldsOf(record.getValue())));
+                taken++;
+            }
+            if (!batch.isEmpty()) {
+                archiver.get().archive(stream, batch);
+                cursor = batch.get(batch.size() - 1).id();
+                redis.opsForValue().set(cursorKey, cursor);
+                counter("openpay.streams.retention.archived", stream).increment(batch.size());
+            }
+            if (reachedEnd || page.size() < properties.getPageSize()) {
+                break;
+            }
+        }
+        return cursor;
+    }
+
+    private long trimMinId(String stream, String minId) {
+        @SuppressWarnings("unchecked")
+        byte[] key = ((RedisSerializer<Object>) redisWorkerTemplate.getKeySerializer()).serialize(stream);
+        Long removed = redisWorkerTemplate.execute((RedisCallback<Long>) connection -> (Long) connection.execute(
+                "XTRIM", key, bytes("MINID"), bytes("~"), bytes(minId)));
+        return removed == null ? 0 : removed;
+    }
+
+    private static Map<String, Object> fieldsOf(Map<Object, Object> values) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        values.forEach((k, v) -> fields.put(String.valueOf(k),
+                v instanceof Number || v instanceof Boolean ? v : String.valueOf(v)));
+        return fields;
+    }
+
+    private Counter counter(String name, String stream) {
+        return Counter.builder(name).tag("stream", stream).register(meterRegistry);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
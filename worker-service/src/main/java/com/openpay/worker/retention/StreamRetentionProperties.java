@@ -0,0 +1,129 @@
+package com.openpay.worker.retention;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <h2>StreamRetentionProperties</h2>
+ * <p>
+ * Binds {@code openpay.retention.*}: how much of each Redis stream is kept,
+ * and where trimmed entries are archived first. Policies are keyed by stream
+ * kind: {@code main} (applies to every {@code transactions.main.{p}}
+ * partition), {@code retry} and {@code dlq} (the DLQ is only trimmed with an
+ * archive configured).
+ * </p>
+ *
+ * <h3>Example:</h3>
+ *
+ * <pre>
+ * openpay.retention.archive=file
+ * openpay.retention.archive-dir=/var/lib/openpay/stream-archive
+ * openpay.retention.streams.main.max-age=PT1H
+ * openpay.retention.streams.dlq.max-length=100000
+ * openpay.retention.streams.dlq.max-age=P14D
+ * </pre>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "openpay.retention")
+public class StreamRetentionProperties {
+
+    /** Master switch for trimming. */
+    private boolean enabled = true;
+
+    /** Where trimmed entries go first: none | postgres | file. */
+    private String archive = "none";
+
+    /** Root directory of segment files ({@code archive=file}). */
+    private Path archiveDir = Path.of("stream-archive");
+
+    /** Entries read per XRANGE while archiving. */
+    private int pageSize = 1000;
+
+    /** Upper bound on entries archived per stream per run; the rest waits. */
+    private long maxArchivePerRun = 100_000;
+
+    /** Per stream kind policy. */
+    private Map<String, Policy> streams = new LinkedHashMap<>();
+
+    /**
+     * Retention bounds of one stream kind. Unset bounds do not trim.
+     */
+    public static class Policy {
+
+        /** Entries kept at most (not applied to main partitions). */
+        private long maxLength;
+
+        /** Entries older than this are trimmed. */
+        private Duration maxAge;
+
+        public long getMaxLength() {
+            return maxLength;
+        }
+
+        public void setMaxLength(long maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+
+        public void setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getArchive() {
+        return archive;
+    }
+
+    public void setArchive(String archive) {
+        this.archive = archive;
+    }
+
+    public Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    public void setArchiveDir(Path archiveDir) {
+        this.archiveDir = archiveDir;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public long getMaxArchivePerRun() {
+        return maxArchivePerRun;
+    }
+
+    public void setMaxArchivePerRun(long maxArchivePerRun) {
+        this.maxArchivePerRun = maxArchivePerRun;
+    }
+
+    public Map<String, Policy> getStreams() {
+        return streams;
+    }
+
+    public void setStreams(Map<String, Policy> streams) {
+        this.streams = streams;
+    }
+}
@@ -0,0 +1,295 @@
+package com.openpay.worker.sweeper;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openpay.shared.model.FailureReason;
+import com.openpay.shared.model.TransactionEntity;
+import com.openpay.shared.model.TransactionHistoryEntity;
+import com.openpay.shared.model.TransactionStatus;
+import com.openpay.shared.repository.TransactionHistoryRepository;
+import com.openpay.shared.repository.TransactionRepository;
+import com.openpay.shared.util.StreamPartitioner;
+import com.openpay.worker.client.GatewayStatus;
+import com.openpay.worker.client.UpiGatewayClient;
+import com.openpay.worker.leader.LeaderElection;
+import com.openpay.worker.ledger.LedgerPoster;
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * <h2>StuckTransactionSweeper</h2>
+ * <p>
+ * Resolves transactions left in progress (queued, processing) for longer than
+ * {@code stuck-after}, e.g. because a worker died between setting
+ * "processing" and saving the gateway's answer. Runs on the elected leader
+ * only (see {@link LeaderElection}). Collect requests awaiting approval are
+ * not stuck; they expire through the collect handler.
+ * </p>
+ *
+ * <ul>
+ * <li>Stuck rows are paged oldest first through the partial index
+ * {@code idx_tx_active_created}; each run takes one page and the next run
+ * continues after it, so rows that stay unresolved cannot starve younger
+ * ones</li>
+ * <li>The gateway status of the whole page is inquired concurrently</li>
+ * <li>{@code SUCCESS} / {@code FAILURE}: the row is completed / failed
+ * (DECLINED) with an audit entry; a completion is posted to the ledger in
+ * the same DB transaction</li>
+ * <li>{@code PENDING}, or no answer: left alone until the next run</li>
+ * <li>{@code NOT_FOUND} while the payment's stream message (written around the
+ * row's creation or last update) is still ahead of its partition's committed
+ * offset: left alone, a worker will get to it</li>
+ * <li>{@code NOT_FOUND} after the message was consumed: the message was lost,
+ * so the payment is re-enqueued to its partition (with a {@code redriveOf}
+ * marker, so the deduplicator treats it as a new delivery); once older than
+ * {@code give-up-after} it is failed with DEADLINE_EXCEEDED instead</li>
+ * <li>All row updates are conditional on the status read, so a worker
+ * finishing the payment concurrently always wins</li>
+ * </ul>
+ *
+ * @author David Grace
+ * @since 1.0
+ */
+@Component
+public class StuckTransactionSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(StuckTransactionSweeper.class);
+
+    /** Last re-enqueued record id per transaction, kept for {@code give-up-after}. */
+    static final String REQUEUED_PREFIX = "openpay:sweeper:requeued:";
+
+    /** Allowance for the API host's clock running ahead of Redis. */
+    private static final long CLOCK_SKEW_MILLIS = 30_000;
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerPoster ledgerPoster;
+    private final UpiGatewayClient upiGatewayClient;
+    private final RedisTemplate<Object, Object> redisWorkerTemplate;
+    private final StringRedisTemplate redis;
+    private final PartitionLeaseManager partitionLeaseManager;
+    private final LeaderElection leaderElection;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration stuckAfter;
+    private final Duration giveUpAfter;
+    private final Duration inquiryTimeout;
+    private final int batchSize;
+    private final int partitions;
+
+    /** created_at of the last row of the previous page; null = start over. */
+    private LocalDateTime cursor;
+
+    /**
+     * @param transactionRepository        transactions
+     * @param transactionHistoryRepository audit trail
+     * @param transactionTemplate          one DB transaction per row update
+     * @param ledgerPoster                 posts payments resolved as completed
+     * @param upiGatewayClient             gateway status inquiries
+     * @param redisWorkerTemplate          template the streams are written
+     *                                     with
+     * @param redis                        string template for requeue markers
+     * @param partitionLeaseManager        committed offsets
+     * @param leaderElection               runs only on the leader
+     * @param meterRegistry                metrics registry
+     * @param enabled                      sweeper on/off
+     * @param stuckAfter                   age after which an in-progress row
+     *                                     is stuck
+     * @param giveUpAfter                  age after which a lost payment is
+     *                                     failed instead of re-enqueued
+     * @param inquiryTimeout               timeout of one status inquiry
+     * @param batchSize                    rows per run
+     * @param partitions                   number of partition streams
+     */
+    public StuckTransactionSweeper(TransactionRepository transactionRepository,
+            TransactionHistoryRepository transactionHistoryRepository,
+            TransactionTemplate transactionTemplate,
+            LedgerPoster ledgerPoster,
+            UpiGatewayClient upiGatewayClient,
+            RedisTemplate<Object, Object> redisWorkerTemplate,
+            StringRedisTemplate redis,
+            PartitionLeaseManager partitionLeaseManager,
+            LeaderElection leaderElection,
+            MeterRegistry meterRegistry,
+            @Value("${openpay.sweeper.enabled:true}") boolean enabled,
+            @Value("${openpay.sweeper.stuck-after:PT5M}") Duration stuckAfter,
+            @Value("${openpay.sweeper.give-up-after:PT1H}") Duration giveUpAfter,
+            @Value("${openpay.sweeper.inquiry-timeout:PT5S}") Duration inquiryTimeout,
+            @Value("${openpay.sweeper.batch-size:200}") int batchSize,
+            @Value("${openpay.streams.partitions:8}") int partitions) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("openpay.sweeper.batch-size must be positive");
+        }
+        if (giveUpAfter.compareTo(stuckAfter) <= 0) {
+            throw new IllegalArgumentException("openpay.sweeper.give-up-after must exceed stuck-after");
+        }
+        this.transactionRepository = transactionRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ledgerPoster = ledgerPoster;
+        this.upiGatewayClient = upiGatewayClient;
+        this.redisWorkerTemplate = redisWorkerTemplate;
+        this.redis = redis;
+        this.partitionLeaseManager = partitionLeaseManager;
+        this.leaderElection = leaderElection;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.stuckAfter = stuckAfter;
+        this.giveUpAfter = giveUpAfter;
+        this.inquiryTimeout = inquiryTimeout;
+        this.batchSize = batchSize;
+        this.partitions = partitions;
+    }
+
+    /**
+     * One sweep over the next page of stuck transactions. Never throws; a
+     * failed run is repeated on the next tick.
+     */
+    @Scheduled(fixedDelayString = "${openpay.sweeper.interval-ms:30000}",
+            initialDelayString = "${openpay.sweeper.interval-ms:30000}",
+            scheduler = "jobScheduler")
+    public void sweep() {
+        if (!enabled || !leaderElection.isLeader()) {
+            return;
+        }
+        try {
+            LocalDateTime before = LocalDateTime.now().minus(stuckAfter);
+            List<TransactionEntity> page = cursor == null
+                    ? transactionRepository.findActiveCreatedBefore(before, batchSize)
+                    : transactionRepository.findActiveCreatedBetween(cursor, before, batchSize);
+            cursor = page.size() < batchSize ? null : page.get(page.size() - 1).getCreatedAt();
+            if (page.isEmpty()) {
+                return;
+            }
+
+            List<CompletableFuture<GatewayStatus>> inquiries = new ArrayList<>(page.size());
+            for (TransactionEntity txn : page) {
+                inquiries.add(upiGatewayClient.inquireStatus(txn.getId(), inquiryTimeout));
+            }
+            for (int i = 0; i < page.size(); i++) {
+                TransactionEntity txn = page.get(i);
+                GatewayStatus status;
+                try {
+                    status = inquiries.get(i).join();
+                } catch (CompletionException e) {
+                    log.debug("[SWEEPER] Status inquiry for txnId={} failed: {}", txn.getId(), e.getMessage());
+                    count("unresolved");
+                    continue;
+                }
+                try {
+                    resolve(txn, status);
+                } catch (DataAccessException e) {
+                    log.warn("[SWEEPER] Could not resolve txnId={}: {}", txn.getId(), e.getMessage());
+                    count("unresolved");
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("[SWEEPER] Sweep aborted: {}", e.getMessage());
+        }
+    }
+
+    private void resolve(TransactionEntity txn, GatewayStatus status) {
+        switch (status) {
+            case SUCCESS -> finish(txn, TransactionStatus.COMPLETED, null, "completed");
+            case FAILURE -> finish(txn, TransactionStatus.FAILED, FailureReason.DECLINED, "failed");
+            case PENDING -> count("pending");
+            case NOT_FOUND -> resolveLost(txn);
+        }
+    }
+
+    /**
+     * The gateway never saw the payment: wait while its message is still
+     * unconsumed, otherwise re-enqueue it or, past {@code give-up-after}, fail
+     * it.
+     */
+    private void resolveLost(TransactionEntity txn) {
+        String stream = StreamPartitioner.streamForSender(txn.getSenderUpi(), partitions);
+        String markerKey = REQUEUED_PREFIX + txn.getId();
+        String lastRequeue = redis.opsForValue().get(markerKey);
+        // an approved collect is enqueued on approval (updated_at), not on creation
+        LocalDateTime written = txn.getUpdatedAt() != null && txn.getUpdatedAt().isAfter(txn.getCreatedAt())
+                ? txn.getUpdatedAt() : txn.getCreatedAt();
+        long enqueuedAt = lastRequeue != null ? millisOf(lastRequeue)
+                : written.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + CLOCK_SKEW_MILLIS;
+        if (millisOf(partitionLeaseManager.committedOffset(stream)) <= enqueuedAt) {
+            count("queued");
+            return;
+        }
+        if (txn.getCreatedAt().isBefore(LocalDateTime.now().minus(giveUpAfter))) {
+            finish(txn, TransactionStatus.FAILED, FailureReason.DEADLINE_EXCEEDED, "expired");
+            return;
+        }
+
+        Map<Object, Object> payload = new HashMap<>();
+        payload.put("txnId", txn.getId());
+        payload.put("senderUpi", txn.getSenderUpi());
+        payload.put("receiverUpi", txn.getReceiverUpi());
+        payload.put("amountPaise", String.valueOf(txn.getAmountPaise()));
+        payload.put("redriveOf", "sweep-" + System.currentTimeMillis());
+        RecordId recordId = redisWorkerTemplate.opsForStream().add(stream, payload);
+        if (recordId != null) {
+            redis.opsForValue().set(markerKey, recordId.getValue(), giveUpAfter);
+        }
+        count("requeued");
+        log.warn("[SWEEPER] Re-enqueued lost txnId={} ({}) to {}", txn.getId(), txn.getStatus(), stream);
+    }
+
+    private void finish(TransactionEntity txn, TransactionStatus to, FailureReason reason, String action) {
+        TransactionStatus from = txn.getStatus();
+        Boolean moved = transactionTemplate.execute(tx -> {
+            if (transactionRepository.transition(txn.getId(), from, to, reason, LocalDateTime.now()) != 1) {
+                return false;
+            }
+            if (to == TransactionStatus.COMPLETED) {
+                ledgerPoster.post(txn.getId(), txn.getSenderUpi(), txn.getReceiverUpi(), txn.getAmountPaise());
+            }
+            TransactionHistoryEntity audit = new TransactionHistoryEntity();
+            audit.setTransactionId(txn.getId());
+            audit.setPrevStatus(from);
+            audit.setNewStatus(to);
+            audit.setReason(reason);
+            audit.setChangedAt(LocalDateTime.now());
+            transactionHistoryRepository.save(audit);
+            return true;
+        });
+        if (Boolean.TRUE.equals(moved)) {
+            count(action);
+            log.info("[SWEEPER] Resolved stuck txnId={}: {} -> {} {}", txn.getId(), from, to,
+                    reason == null ? "" : reason);
+        }
+    }
+
+    /**
+     * @return millisecond part of a stream record id
+     */
+    private static long millisOf(String recordId) {
+        int dash = recordId.indexOf('-');
+        return Long.parseLong(dash < 0 ? recordId : recordId.substring(0, dash));
+    }
+
+    private void count(String action) {
+        Counter.builder("openpay.sweeper.transactions").tag("action", action).register(meterRegistry).increment();
+    }
+}
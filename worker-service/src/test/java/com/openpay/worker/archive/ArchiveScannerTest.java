@@ -0,0 +1,146 @@
+package com.openpay.worker.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openpay.worker.archive.ArchiveScanner.Group;
+import com.openpay.worker.archive.ArchiveScanner.Result;
+
+/**
+ * Unit tests for {@link ArchiveScanner} over {@link SegmentWriter} files:
+ * filtered, grouped aggregates match a brute-force pass over the same rows,
+ * blocks outside a filter are skipped from the index, and a damaged chunk
+ * fails verification.
+ */
+public class ArchiveScannerTest {
+
+    private static final int ROWS = 50_000;
+    private static final long START_MICROS = 1_760_000_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final ArchiveScanner scanner = new ArchiveScanner(pool, 4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void groupedAggregatesMatchBruteForce() throws IOException {
+        Path file = write(dir.resolve("transactions.seg"));
+        ScanQuery query = ScanQuery.parse("transactions where created_at >= " + (START_MICROS + 10_000_000_000L)
+                + " and status = 3 group by receiver_upi sum amount_paise limit 1000");
+
+        Map<String, long[]> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < ROWS; i++) {
+            Row row = row(i, random);
+            if (row.createdAt >= START_MICROS + 10_000_000_000L && row.status == 3) {
+                long[] acc = expected.computeIfAbsent(row.receiver, k -> new long[] { 0, 0 });
+                acc[0]++;
+                acc[1] += row.amount;
+            }
+        }
+
+        try (Segment segment = Segment.open(file)) {
+            segment.verify();
+            assertEquals(ROWS, segment.rows());
+            Result result = scanner.scan(List.of(segment), query);
+            assertEquals(expected.size(), result.groups().size());
+            for (Group group : result.groups()) {
+                long[] acc = expected.get((String) group.key());
+                assertEquals(acc[0], group.count(), "count of " + group.key());
+                assertEquals(acc[1], group.sums()[0], "sum of " + group.key());
+            }
+            // rows are in time order, so early blocks are skipped from their min/max
+            assertTrue(result.blocksSkipped() > 0);
+        }
+    }
+
+    @Test
+    void textFiltersNullsAndSkippedSegments() throws IOException {
+        Path file = write(dir.resolve("transactions.seg"));
+        try (Segment segment = Segment.open(file)) {
+            Result nulls = scanner.scan(List.of(segment),
+                    ScanQuery.parse("transactions group by failure_reason sum amount_paise"));
+            assertEquals(ROWS, nulls.rowsMatched());
+            Group notFailed = nulls.groups().stream().filter(g -> g.key() == null).findFirst().orElseThrow();
+            assertEquals(ROWS - ROWS / 7 - (ROWS % 7 == 0 ? 0 : 1), notFailed.count());
+
+            Result one = scanner.scan(List.of(segment),
+                    ScanQuery.parse("transactions where receiver_upi = 'merchant3@bank' and id < 1000"));
+            assertEquals(1, one.groups().size());
+            assertNull(one.groups().get(0).key());
+            assertEquals(1000 / 50 + (1000 % 50 > 3 ? 1 : 0), one.rowsMatched());
+
+            Result none = scanner.scan(List.of(segment),
+                    ScanQuery.parse("transactions where receiver_upi = 'nobody@bank'"));
+            assertEquals(0, none.rowsMatched());
+            assertEquals(segment.blockCount(), none.blocksSkipped());
+
+            assertThrows(IllegalArgumentException.class, () -> scanner.scan(List.of(segment),
+                    ScanQuery.parse("transactions where receiver_upi >= 3")));
+        }
+
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(100);
+            raw.write(raw.read() ^ 0xff);
+        }
+        try (Segment segment = Segment.open(file)) {
+            assertThrows(IOException.class, segment::verify);
+        }
+    }
+
+    private record Row(long id, String receiver, long amount, int status, long failure, long createdAt) {
+    }
+
+    /**
+     * Ids ascend with time; every 7th row failed with a reason, the others
+     * have none.
+     */
+    private static Row row(int i, Random random) {
+        long amount = 100 + random.nextInt(1_000_000);
+        int status = i % 7 == 0 ? 4 : 3;
+        return new Row(i, "merchant" + (i % 50) + "@bank", amount, status, status == 4 ? 1 + i % 5 : Column.NULL,
+                START_MICROS + i * 1_000_000L + random.nextInt(1_000));
+    }
+
+    private static Path write(Path file) throws IOException {
+        Random random = new Random(7);
+        try (SegmentWriter out = new SegmentWriter(file, ColdArchive.TRANSACTION_COLUMNS, 4_096)) {
+            for (int i = 0; i < ROWS; i++) {
+                Row row = row(i, random);
+                out.set(0, row.id);
+                out.set(1, "payer" + (i % 1_000) + "@bank");
+                out.set(2, row.receiver);
+                out.set(3, row.amount);
+                out.set(4, row.status);
+                out.set(5, row.failure);
+                out.set(6, row.createdAt);
+                out.set(7, row.status == 4 ? Column.NULL : row.createdAt + 5_000_000);
+                out.endRow();
+            }
+            out.finish();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,90 @@
+package com.openpay.worker.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openpay.worker.audit.AuditChain.Result;
+import com.openpay.worker.audit.AuditChain.Row;
+import com.openpay.worker.audit.AuditChain.Segment;
+import com.openpay.worker.audit.AuditChain.SegmentCheck;
+import com.openpay.worker.audit.AuditChain.SegmentSource;
+
+/**
+ * Unit tests for {@link AuditChain}: an intact chain verifies in parallel
+ * segments, and a changed or missing row is pinned to its position.
+ */
+public class AuditChainTest {
+
+    private static final int CHAIN = 3;
+
+    @Test
+    void intactChainVerifiesAcrossSegments() {
+        List<Row> chain = seal(8_000);
+        AtomicInteger loads = new AtomicInteger();
+        Result result = verify(chain, 1, 8_000, loads);
+        assertEquals(new Result(8_000, 0, -1), result);
+        assertEquals(16, loads.get());
+
+        // a later range verifies on its own from the stored hash before it
+        assertEquals(new Result(3_001, 0, -1), verify(chain, 5_000, 8_000, new AtomicInteger()));
+    }
+
+    @Test
+    void changedRowFailsAtItsOwnPosition() {
+        List<Row> chain = seal(2_000);
+        Row row = chain.get(1_233);
+        chain.set(1_233, new Row(row.seq(), row.historyId(), row.transactionId(), row.prevStatus(), (short) 4,
+                row.reason(), row.changedAtMicros(), row.hash()));
+        assertEquals(new Result(2_000, 1, 1_234), verify(chain, 1, 2_000, new AtomicInteger()));
+    }
+
+    @Test
+    void missingRowIsAGap() {
+        List<Row> chain = seal(2_000);
+        chain.remove(999);
+        // position 1000 is missing; 1001 can no longer be checked against it
+        assertEquals(new Result(2_000, 2, 1_000), verify(chain, 1, 2_000, new AtomicInteger()));
+    }
+
+    private static List<Row> seal(int count) {
+        MessageDigest digest = AuditChain.sha256();
+        List<Row> rows = new ArrayList<>(count);
+        byte[] previous = AuditChain.GENESIS;
+        for (int seq = 1; seq <= count; seq++) {
+            Row row = new Row(seq, 100L + seq, seq * 16L + CHAIN, (short) 2, (short) 3, (short) 0,
+                    1_700_000_000_000_000L + seq, null);
+            previous = AuditChain.hash(digest, previous, CHAIN, row);
+            rows.add(row.sealed(seq, previous));
+        }
+        return rows;
+    }
+
+    private static Result verify(List<Row> chain, long fromSeq, long toSeq, AtomicInteger loads) {
+        SegmentSource source = (c, from, to) -> {
+            loads.incrementAndGet();
+            byte[] seed = from == 1 ? AuditChain.GENESIS : null;
+            List<Row> rows = new ArrayList<>();
+            for (Row row : chain) {
+                if (row.seq() == from - 1) {
+                    seed = row.hash();
+                } else if (row.seq() >= from && row.seq() <= to) {
+                    rows.add(row);
+                }
+            }
+            return new Segment(seed, rows);
+        };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            return pool.invoke(new SegmentCheck(source, CHAIN, fromSeq, toSeq, 500));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
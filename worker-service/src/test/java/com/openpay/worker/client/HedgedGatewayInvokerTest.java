@@ -0,0 +1,94 @@
+package com.openpay.worker.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openpay.shared.model.FailureReason;
+
+/**
+ * Unit tests for {@link HedgedGatewayInvoker} deadlines and hedging.
+ */
+public class HedgedGatewayInvokerTest {
+
+    /** Gateway whose payment latency is switchable and whose inquiry is fast. */
+    private static final class FakeGateway implements UpiGatewayClient {
+        volatile long payMillis = 5;
+        volatile GatewayStatus inquiryAnswer = GatewayStatus.SUCCESS;
+        final AtomicInteger inquiries = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<PaymentOutcome> initiateUpiPayment(String senderUpi, String receiverUpi,
+                long amountPaise, Long txnId, Duration timeout) {
+            return CompletableFuture.supplyAsync(PaymentOutcome::success,
+                    CompletableFuture.delayedExecutor(payMillis, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public CompletableFuture<GatewayStatus> inquireStatus(Long txnId, Duration timeout) {
+            inquiries.incrementAndGet();
+            return CompletableFuture.completedFuture(inquiryAnswer);
+        }
+    }
+
+    private static HedgedGatewayInvoker warmedUp(FakeGateway gateway) throws Exception {
+        // hedge after p95 (>= 1 ms), 100% budget (burst 10), p95 trusted after 5 samples, 200 ms intervals
+        HedgedGatewayInvoker invoker = new HedgedGatewayInvoker(gateway, "inquiry", 1, 100, 10, 5, 200);
+        CompletableFuture<?>[] warmUp = new CompletableFuture<?>[20];
+        for (int i = 0; i < warmUp.length; i++) {
+            warmUp[i] = invoker.pay("a@upi", "b@upi", 100, (long) i, Instant.now().plusSeconds(5));
+        }
+        CompletableFuture.allOf(warmUp).get();
+        Thread.sleep(220); // the next call rolls the warm-up interval into place
+        return invoker;
+    }
+
+    // A slow call is answered by the status inquiry hedge
+    @Test
+    void hedgeAnswersSlowCall() throws Exception {
+        FakeGateway gateway = new FakeGateway();
+        HedgedGatewayInvoker invoker = warmedUp(gateway);
+        gateway.payMillis = 2_000;
+
+        long started = System.nanoTime();
+        assertEquals(PaymentOutcome.success(),
+                invoker.pay("a@upi", "b@upi", 100, 1L, Instant.now().plusSeconds(5)).get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1_000);
+        assertEquals(1, gateway.inquiries.get());
+    }
+
+    // A non-final inquiry answer is ignored; the original call decides
+    @Test
+    void pendingInquiryIsIgnored() throws Exception {
+        FakeGateway gateway = new FakeGateway();
+        HedgedGatewayInvoker invoker = warmedUp(gateway);
+        gateway.payMillis = 200;
+        gateway.inquiryAnswer = GatewayStatus.PENDING;
+
+        assertEquals(PaymentOutcome.success(),
+                invoker.pay("a@upi", "b@upi", 100, 1L, Instant.now().plusSeconds(5)).get());
+        assertEquals(1, gateway.inquiries.get());
+    }
+
+    // The call ends at the deadline with an unknown outcome; an expired payment is not sent at all
+    @Test
+    void deadlineBoundsTheCall() throws Exception {
+        FakeGateway gateway = new FakeGateway();
+        gateway.payMillis = 5_000;
+        HedgedGatewayInvoker invoker = new HedgedGatewayInvoker(gateway, "off", 1, 100, 10, 5, 50);
+
+        PaymentOutcome late = invoker.pay("a@upi", "b@upi", 100, 1L, Instant.now().plusMillis(100)).get();
+        assertEquals(PaymentOutcome.unknown(FailureReason.DEADLINE_EXCEEDED), late);
+
+        PaymentOutcome expired = invoker.pay("a@upi", "b@upi", 100, 2L, Instant.now().minusSeconds(1)).get();
+        assertEquals(PaymentOutcome.retryable(FailureReason.DEADLINE_EXCEEDED), expired);
+        assertEquals(0, gateway.inquiries.get());
+    }
+}
@@ -0,0 +1,88 @@
+package com.openpay.worker.collect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HierarchicalTimingWheel}: every timer fires exactly
+ * once, never early and no later than one tick late, across cascades and
+ * beyond the top wheel's span.
+ */
+public class HierarchicalTimingWheelTest {
+
+    @Test
+    void pastDeadlinesAreRejected() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(10, 2, 2, 1_000);
+        assertFalse(wheel.schedule(1, 1_000));
+        assertFalse(wheel.schedule(2, 500));
+        assertTrue(wheel.schedule(3, 1_001));
+        assertEquals(1, wheel.size());
+    }
+
+    // Small wheels (4 slots x 3 levels = 64 ticks) so that cascades and
+    // beyond-span re-placement happen constantly
+    @Test
+    void timersFireOnTimeAcrossCascades() {
+        long tick = 10;
+        long start = 12_345;
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(tick, 2, 3, start);
+        Random random = new Random(42);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 5_000; id++) {
+            long deadline = start + 1 + random.nextInt(5_000);
+            deadlines.put(id, deadline);
+            assertTrue(wheel.schedule(id, deadline));
+        }
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        long nextId = 10_000;
+        for (long now = start; now <= start + 6_000; now += 1 + random.nextInt(25)) {
+            long at = now;
+            wheel.advance(now, id -> assertNull(firedAt.put(id, at), "fired twice: " + id));
+            // late scheduling while the wheel is running
+            if (random.nextInt(10) == 0) {
+                long id = nextId++;
+                long deadline = now + 1 + random.nextInt(2_000);
+                deadlines.put(id, deadline);
+                wheel.schedule(id, deadline);
+            }
+        }
+        wheel.advance(start + 10_000, id -> firedAt.put(id, start + 10_000));
+
+        assertEquals(0, wheel.size());
+        assertEquals(deadlines.keySet(), firedAt.keySet());
+        for (Map.Entry<Long, Long> entry : deadlines.entrySet()) {
+            long deadline = entry.getValue();
+            long fired = firedAt.get(entry.getKey());
+            assertTrue(fired >= deadline, "early: " + entry.getKey());
+        }
+    }
+
+    @Test
+    void firesWithinOneTickWhenAdvancedEveryTick() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1, 3, 2, 0);
+        long[] deadlines = { 1, 7, 8, 9, 63, 64, 65, 200, 4_097 };
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.schedule(i, deadlines[i]);
+        }
+        List<Long> fired = new ArrayList<>();
+        for (long now = 1; now <= 5_000; now++) {
+            long at = now;
+            wheel.advance(now, id -> {
+                assertEquals(deadlines[(int) id], at, "timer " + id);
+                fired.add(id);
+            });
+        }
+        assertEquals(deadlines.length, fired.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.openpay.worker.dedup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+/**
+ * Unit tests for {@link PaymentDeduplicator} keys and its in-memory recent
+ * set (Redis mocked).
+ */
+public class PaymentDeduplicatorTest {
+
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate redisAnswering(String claim) {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(claim);
+        when(redis.opsForValue()).thenReturn(mock(ValueOperations.class));
+        return redis;
+    }
+
+    private static PaymentDeduplicator deduplicator(StringRedisTemplate redis, int recentSize) {
+        PartitionLeaseManager leases = mock(PartitionLeaseManager.class);
+        when(leases.getWorkerId()).thenReturn("w1");
+        return new PaymentDeduplicator(redis, leases, Duration.ofMinutes(5), Duration.ofHours(24), recentSize);
+    }
+
+    @Test
+    void redriveIsADistinctDelivery() {
+        assertEquals("42", PaymentDeduplicator.keyOf(Map.of("txnId", 42L)));
+        assertEquals("42:1700000000000-0",
+                PaymentDeduplicator.keyOf(Map.of("txnId", 42L, "redriveOf", "1700000000000-0")));
+        assertNull(PaymentDeduplicator.keyOf(Map.of("test", "init")));
+    }
+
+    // Once finished, a redelivery is answered from memory without touching Redis
+    @SuppressWarnings("unchecked")
+    @Test
+    void finishedPaymentsAreSuppressedLocally() {
+        StringRedisTemplate redis = redisAnswering("CLAIMED");
+        PaymentDeduplicator dedup = deduplicator(redis, 2);
+
+        assertEquals(PaymentDeduplicator.Claim.CLAIMED, dedup.tryClaim("1"));
+        dedup.complete("1");
+        assertEquals(PaymentDeduplicator.Claim.DONE, dedup.tryClaim("1"));
+        verify(redis, times(1)).execute(any(RedisScript.class), anyList(), any(), any());
+
+        // bounded: the oldest entry falls out and is asked from Redis again
+        dedup.complete("2");
+        dedup.complete("3");
+        assertEquals(PaymentDeduplicator.Claim.CLAIMED, dedup.tryClaim("1"));
+        verify(redis, times(2)).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    void claimsHeldElsewhereAreReported() {
+        PaymentDeduplicator dedup = deduplicator(redisAnswering("IN_FLIGHT"), 10);
+        assertEquals(PaymentDeduplicator.Claim.IN_FLIGHT, dedup.tryClaim("7"));
+
+        PaymentDeduplicator done = deduplicator(redisAnswering("DONE"), 10);
+        assertEquals(PaymentDeduplicator.Claim.DONE, done.tryClaim("7"));
+    }
+}
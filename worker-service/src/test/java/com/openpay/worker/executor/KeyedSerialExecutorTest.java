@@ -0,0 +1,118 @@
+package com.openpay.worker.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link KeyedSerialExecutor}: per-key ordering and mutual
+ * exclusion, cross-key parallelism, the capacity bound and mailbox
+ * reclamation.
+ */
+public class KeyedSerialExecutorTest {
+
+    // Tasks of one key run in submit order and never overlap, even under heavy
+    // interleaving with other keys
+    @Test
+    void keepsPerKeyOrderAndExclusion() throws Exception {
+        int keys = 50;
+        int perKey = 400;
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+
+        try (KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(64)) {
+            for (int i = 0; i < perKey; i++) {
+                for (int k = 0; k < keys; k++) {
+                    String key = "sender" + k + "@upi";
+                    int seq = i;
+                    executor.submit(key, () -> {
+                        if (running.computeIfAbsent(key, x -> new AtomicInteger()).incrementAndGet() != 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        seen.computeIfAbsent(key, x -> new ArrayList<>()).add(seq);
+                        running.get(key).decrementAndGet();
+                    });
+                }
+            }
+            assertTrue(executor.shutdown(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(0, overlaps.get());
+        assertEquals(keys, seen.size());
+        for (List<Integer> order : seen.values()) {
+            assertEquals(perKey, order.size());
+            for (int i = 0; i < perKey; i++) {
+                assertEquals(i, order.get(i));
+            }
+        }
+    }
+
+    // Different keys make progress concurrently: all blocked tasks start together
+    @Test
+    void runsDifferentKeysInParallel() throws Exception {
+        int keys = 20;
+        CountDownLatch allStarted = new CountDownLatch(keys);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(keys)) {
+            for (int k = 0; k < keys; k++) {
+                executor.submit("k" + k, () -> {
+                    allStarted.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+            assertEquals(keys, executor.queuedTasks());
+            release.countDown();
+            assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+            assertEquals(0, executor.activeMailboxes());
+        }
+    }
+
+    // submit() blocks once maxQueued tasks are pending, and resumes as they drain
+    @Test
+    void boundsQueuedTasks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(2)) {
+            Runnable blocked = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            executor.submit("a", blocked);
+            executor.submit("a", blocked);
+
+            Thread third = Thread.ofVirtual().start(() -> {
+                try {
+                    executor.submit("b", () -> {
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            third.join(200);
+            assertTrue(third.isAlive(), "third submit should block at capacity");
+
+            release.countDown();
+            third.join(5000);
+            assertTrue(!third.isAlive());
+            assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.openpay.worker.leader;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import com.openpay.worker.partition.PartitionLeaseManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for {@link LeaderElection} lease handling (Redis mocked).
+ */
+public class LeaderElectionTest {
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+
+    private LeaderElection election(Duration ttl) {
+        when(redis.opsForValue()).thenReturn(values);
+        PartitionLeaseManager leases = mock(PartitionLeaseManager.class);
+        when(leases.getWorkerId()).thenReturn("w1");
+        return new LeaderElection(redis, leases, new SimpleMeterRegistry(), ttl);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void electedUntilRenewalIsRejected() {
+        LeaderElection election = election(Duration.ofSeconds(15));
+        when(values.setIfAbsent(eq(LeaderElection.LEADER_KEY), eq("w1"), any(Duration.class))).thenReturn(true);
+
+        assertFalse(election.isLeader());
+        election.campaign();
+        assertTrue(election.isLeader());
+
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L);
+        election.campaign();
+        assertTrue(election.isLeader());
+
+        // another worker holds the key now
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+        election.campaign();
+        assertFalse(election.isLeader());
+    }
+
+    @Test
+    void keyHeldElsewhereIsNotLeadership() {
+        LeaderElection election = election(Duration.ofSeconds(15));
+        when(values.setIfAbsent(eq(LeaderElection.LEADER_KEY), eq("w1"), any(Duration.class))).thenReturn(false);
+
+        election.campaign();
+        assertFalse(election.isLeader());
+    }
+
+    // Without renewals (Redis down) leadership runs out locally after the TTL
+    @SuppressWarnings("unchecked")
+    @Test
+    void leadershipExpiresWhenRedisIsUnreachable() throws InterruptedException {
+        LeaderElection election = election(Duration.ofMillis(50));
+        when(values.setIfAbsent(eq(LeaderElection.LEADER_KEY), eq("w1"), any(Duration.class))).thenReturn(true);
+        election.campaign();
+        assertTrue(election.isLeader());
+
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new QueryTimeoutException("redis down"));
+        election.campaign();
+        Thread.sleep(80);
+        assertFalse(election.isLeader());
+    }
+}
@@ -0,0 +1,84 @@
+package com.openpay.worker.payout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openpay.worker.payout.PayoutFileWriter.Totals;
+
+/**
+ * Unit tests for {@link PayoutFileWriter}: fixed-width lines through a buffer
+ * much smaller than the file, with a trailer whose count, total and checksum
+ * match the bytes on disk.
+ */
+public class PayoutFileWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void trailerMatchesFileWrittenThroughSmallBuffer() throws IOException {
+        Path file = dir.resolve("payout.txt");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1000);
+        long expectedTotal = 0;
+        Totals totals;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            PayoutFileWriter writer = new PayoutFileWriter(channel, buffer);
+            writer.header(LocalDate.of(2026, 10, 18), "OPENPAY20261018");
+            for (long id = 1; id <= 5_000; id++) {
+                assertTrue(writer.record(id, "payee" + id + "@bank", id * 100));
+                expectedTotal += id * 100;
+            }
+            assertFalse(writer.record(5_001, "payée@bank", 1));
+            totals = writer.finish();
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+        assertEquals(5_002, lines.size());
+        assertTrue(lines.stream().allMatch(line -> line.length() == PayoutFileWriter.RECORD_LENGTH));
+        assertTrue(lines.get(0).startsWith("H20261018OPENPAY20261018     "));
+        assertEquals("D000000042" + "00000000000000000042" + pad("payee42@bank") + "000000000004200",
+                lines.get(42));
+
+        byte[] bytes = Files.readAllBytes(file);
+        int body = bytes.length - PayoutFileWriter.RECORD_LENGTH - 1;
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, body);
+        String trailer = String.format("T%09d%018d%08X", 5_000, expectedTotal, crc.getValue());
+        assertEquals(trailer, lines.get(5_001).trim());
+        assertEquals(new Totals(5_000, expectedTotal, crc.getValue(), bytes.length), totals);
+    }
+
+    @Test
+    void rejectsOutOfOrderCallsAndOverflow() throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("bad.txt"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            PayoutFileWriter writer = new PayoutFileWriter(channel, ByteBuffer.allocate(4096));
+            assertThrows(IllegalStateException.class, () -> writer.record(1, "a@b", 1));
+            writer.header(LocalDate.of(2026, 10, 18), "B");
+            assertThrows(IllegalArgumentException.class, () -> writer.record(1, "a@b", 1_000_000_000_000_000L));
+            assertThrows(IllegalArgumentException.class, () -> writer.record(1, "a@b", -1));
+            writer.finish();
+            assertThrows(IllegalStateException.class, writer::finish);
+        }
+    }
+
+    private static String pad(String vpa) {
+        return vpa + " ".repeat(PayoutFileWriter.VPA_LENGTH - vpa.length());
+    }
+}
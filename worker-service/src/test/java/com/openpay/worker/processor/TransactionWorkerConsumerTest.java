@@ -0,0 +1,109 @@
+package com.openpay.worker.processor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import com.openpay.shared.repository.TransactionHistoryRepository;
+import com.openpay.shared.repository.TransactionRepository;
+import com.openpay.worker.client.HedgedGatewayInvoker;
+import com.openpay.worker.dedup.PaymentDeduplicator;
+import com.openpay.worker.executor.KeyedSerialExecutor;
+import com.openpay.worker.ledger.LedgerPoster;
+import com.openpay.worker.partition.PartitionLeaseManager;
+import com.openpay.worker.resilience.AdaptiveConcurrencyLimiter;
+import com.openpay.worker.resilience.CircuitBreaker;
+import com.openpay.worker.resilience.RetryBudget;
+
+/**
+ * Unit tests for the {@link TransactionWorkerConsumer} drain (Redis, the
+ * database and the gateway mocked).
+ */
+public class TransactionWorkerConsumerTest {
+
+    private static final String STREAM = "transactions.main.0";
+
+    // A drain that starts mid-batch still commits the records that finished
+    // before it; the records after them stay uncommitted for the next owner
+    @SuppressWarnings("unchecked")
+    @Test
+    void drainMidBatchCommitsFinishedRecords() throws Exception {
+        RedisTemplate<Object, Object> redis = mock(RedisTemplate.class, Answers.RETURNS_DEEP_STUBS);
+        when(redis.opsForStream().read(any(StreamReadOptions.class), any(StreamOffset[].class)))
+                .thenReturn(List.of(record("1-0", 1L), record("2-0", 2L), record("3-0", 3L)));
+
+        PartitionLeaseManager leases = mock(PartitionLeaseManager.class);
+        when(leases.ownedStreams()).thenReturn(List.of(STREAM));
+        when(leases.committedOffset(STREAM)).thenReturn(PartitionLeaseManager.INITIAL_OFFSET);
+        when(leases.commitOffset(anyString(), anyString())).thenReturn(true);
+        CountDownLatch firstFinished = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstFinished.countDown();
+            return null;
+        }).when(leases).endWork(STREAM);
+
+        // The second record is dispatched only once the first has finished and
+        // the drain has started (stop() interrupts the blocked reader)
+        CountDownLatch reachedSecond = new CountDownLatch(1);
+        AtomicInteger begun = new AtomicInteger();
+        when(leases.tryBeginWork(STREAM)).thenAnswer(invocation -> {
+            if (begun.incrementAndGet() == 2) {
+                firstFinished.await(5, TimeUnit.SECONDS);
+                reachedSecond.countDown();
+                try {
+                    new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // the drain has started
+                }
+            }
+            return true;
+        });
+
+        // The first record is a redelivery: it finishes without a gateway call
+        PaymentDeduplicator deduplicator = mock(PaymentDeduplicator.class);
+        when(deduplicator.tryClaim("1")).thenReturn(PaymentDeduplicator.Claim.DONE);
+
+        TransactionWorkerConsumer consumer = new TransactionWorkerConsumer(redis,
+                mock(TransactionRepository.class), mock(HedgedGatewayInvoker.class),
+                mock(TransactionHistoryRepository.class), leases, new KeyedSerialExecutor<>(16),
+                mock(CircuitBreaker.class), mock(AdaptiveConcurrencyLimiter.class), Duration.ofSeconds(1),
+                Duration.ofSeconds(60), mock(RetryBudget.class), deduplicator, mock(LedgerPoster.class),
+                100, 10L, Duration.ofSeconds(5), mock(ApplicationEventPublisher.class));
+
+        consumer.start();
+        assertTrue(reachedSecond.await(5, TimeUnit.SECONDS));
+        consumer.stop();
+
+        verify(leases).commitOffset(STREAM, "1-0");
+        verify(leases, never()).commitOffset(eq(STREAM), eq("2-0"));
+        verify(leases, never()).commitOffset(eq(STREAM), eq("3-0"));
+        verify(deduplicator, never()).tryClaim("3");
+    }
+
+    private static MapRecord<Object, Object, Object> record(String id, long txnId) {
+        return MapRecord.<Object, Object, Object>create(STREAM, Map.of("txnId", txnId, "senderUpi", "a@upi"))
+                .withId(RecordId.of(id));
+    }
+}
@@ -0,0 +1,181 @@
+package com.openpay.worker.recon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openpay.shared.model.TransactionStatus;
+import com.openpay.worker.recon.ReconciliationEngine.Summary;
+
+/**
+ * Unit tests for {@link ReconciliationEngine}: an unsorted settlement file is
+ * sorted in spilled runs and joined per id range, every record landing in
+ * exactly one report, for both line formats.
+ */
+public class ReconciliationEngineTest {
+
+    private static final int COMPLETED = TransactionStatus.COMPLETED.getCode();
+    private static final int FAILED = TransactionStatus.FAILED.getCode();
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void unsortedCsvIsJoinedInBoundedRuns() throws IOException {
+        // ours: ids 1000..10999, amount = id, every 10th failed
+        long[][] ours = new long[10_000][];
+        for (int i = 0; i < ours.length; i++) {
+            long id = 1_000 + i;
+            ours[i] = new long[] { id, id, id % 10 == 0 ? FAILED : COMPLETED };
+        }
+        List<String> lines = new ArrayList<>();
+        long notSettled = 0;
+        long mismatched = 0;
+        long matchedRows = 0;
+        for (long[] row : ours) {
+            long id = row[0];
+            if (row[2] == FAILED) {
+                continue;
+            }
+            if (id % 97 == 0) {
+                notSettled++;
+            } else if (id % 101 == 0) {
+                mismatched++;
+                lines.add(id + "," + (id + 1) + ",SETTLED");
+            } else {
+                matchedRows++;
+                lines.add(id + "," + id + ",SETTLED");
+            }
+        }
+        lines.add("20,1,SETTLED"); // settled outside the window
+        lines.add("1010,1010,SETTLED"); // settled although we failed it
+        lines.add("1001,1001,SETTLED"); // settled twice
+        Collections.shuffle(lines, new Random(42));
+        lines.add(0, "txn_id,amount,status");
+        Path file = write("settlement.csv", lines);
+
+        ReconciliationEngine engine = new ReconciliationEngine(pool, 3, 4, 256);
+        Summary summary = engine.reconcile(file, SettlementFormat.csv((byte) ',', 0, 1, false),
+                1_000, 11_000, source(ours), dir.resolve("report"));
+
+        assertEquals(notSettled, summary.missingInFile());
+        assertEquals(mismatched, summary.amountMismatches());
+        assertEquals(matchedRows, summary.matched());
+        assertEquals(3, summary.missingInternal());
+        assertEquals(1, summary.rejectedLines());
+
+        List<String> missingInternal = Files.readAllLines(dir.resolve("report/missing-internal.csv"));
+        assertEquals(List.of("txn_id,settled_paise,our_status", "20,1,", "1001,1001,DUPLICATE", "1010,1010,FAILED"),
+                missingInternal);
+        List<String> matched = Files.readAllLines(dir.resolve("report/matched.csv"));
+        assertEquals(summary.matched() + 1, matched.size());
+        assertEquals("1001,1001", matched.get(1));
+        assertTrue(Files.list(dir.resolve("report")).noneMatch(p -> p.getFileName().toString().contains("part")));
+    }
+
+    @Test
+    void fixedWidthRupeesWithCrLf() throws IOException {
+        long[][] ours = { { 7, 12_345, COMPLETED }, { 8, 100, COMPLETED }, { 9, 5, COMPLETED } };
+        Path file = write("settlement.txt", List.of(
+                "H20261018                          \r",
+                "00000000000000000007    123.45\r",
+                "00000000000000000008      1   \r",
+                "00000000000000000009      0.5 \r",
+                "T00000003\r"));
+
+        Summary summary = new ReconciliationEngine(pool, 2, 2, 2).reconcile(file,
+                SettlementFormat.fixedWidth(0, 20, 20, 10, true), 7, 10, source(ours), dir.resolve("fixed"));
+
+        assertEquals(2, summary.matched());
+        assertEquals(1, summary.amountMismatches());
+        assertEquals(2, summary.rejectedLines());
+        assertEquals(List.of("txn_id,our_paise,settled_paise", "9,5,50"),
+                Files.readAllLines(dir.resolve("fixed/amount-mismatch.csv")));
+    }
+
+    // A database failure must reach the job as is, so it can keep the file for the next poll
+    @Test
+    void sourceFailurePropagatesUnwrapped() throws IOException {
+        Path file = write("settlement.csv", List.of("7,100"));
+        IllegalStateException down = new IllegalStateException("database down");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> new ReconciliationEngine(pool, 1, 2, 2).reconcile(file,
+                        SettlementFormat.csv((byte) ',', 0, 1, false), 7, 10, (from, to) -> {
+                            throw down;
+                        }, dir.resolve("down")));
+        assertSame(down, thrown);
+    }
+
+    private Path write(String name, List<String> lines) throws IOException {
+        Path file = dir.resolve(name);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return source over {@code rows} ({@code [id, amount, status]}, sorted)
+     */
+    private static ReconciliationEngine.InternalSource source(long[][] rows) {
+        return (from, to) -> new RecordCursor() {
+
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                do {
+                    index++;
+                } while (index < rows.length && rows[index][0] < from);
+                return index < rows.length && rows[index][0] < to;
+            }
+
+            @Override
+            public long id() {
+                return rows[index][0];
+            }
+
+            @Override
+            public long amountPaise() {
+                return rows[index][1];
+            }
+
+            @Override
+            public int status() {
+                return (int) rows[index][2];
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.openpay.worker.resilience;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link AdaptiveConcurrencyLimiter} limit adaptation.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static AdaptiveConcurrencyLimiter limiter(int initial) {
+        return new AdaptiveConcurrencyLimiter("test", initial, 2, 200, 1.5, 0.5, 0.5, 10_000);
+    }
+
+    /** Fills every slot, then completes all calls with the given RTT. */
+    private static void saturatedRound(AdaptiveConcurrencyLimiter limiter, long rttMillis) throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit p;
+        while ((p = limiter.tryAcquire(Duration.ZERO)) != null) {
+            permits.add(p);
+        }
+        for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+            permit.onSuccess(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+        }
+    }
+
+    // Grows while saturated and latency stays at the baseline
+    @Test
+    void growsAtBaselineLatency() throws Exception {
+        AdaptiveConcurrencyLimiter l = limiter(10);
+        for (int i = 0; i < 5; i++) {
+            saturatedRound(l, 20);
+        }
+        assertTrue(l.getLimit() > 10, "limit was " + l.getLimit());
+        assertEquals(0, l.getInFlight());
+    }
+
+    // Shrinks once latency rises well above the baseline
+    @Test
+    void shrinksWhenLatencyRises() throws Exception {
+        AdaptiveConcurrencyLimiter l = limiter(40);
+        saturatedRound(l, 20);
+        int before = l.getLimit();
+        for (int i = 0; i < 5; i++) {
+            saturatedRound(l, 200);
+        }
+        assertTrue(l.getLimit() < before, before + " -> " + l.getLimit());
+        assertEquals(20.0, l.getMinRttMillis(), 0.001);
+    }
+
+    // A dropped call cuts the limit multiplicatively, never below the floor
+    @Test
+    void dropBacksOff() throws Exception {
+        AdaptiveConcurrencyLimiter l = limiter(40);
+        l.tryAcquire(Duration.ZERO).onDropped();
+        assertEquals(20, l.getLimit());
+        for (int i = 0; i < 10; i++) {
+            l.tryAcquire(Duration.ZERO).onDropped();
+        }
+        assertEquals(2, l.getLimit());
+        assertEquals(11, l.getDroppedCount());
+    }
+
+    // Over the limit: waits, then rejects; a freed slot lets a waiter in
+    @Test
+    void rejectsOverLimitAndWakesWaiters() throws Exception {
+        AdaptiveConcurrencyLimiter l = limiter(2);
+        AdaptiveConcurrencyLimiter.Permit a = l.tryAcquire(Duration.ZERO);
+        assertNotNull(l.tryAcquire(Duration.ZERO));
+        assertNull(l.tryAcquire(Duration.ofMillis(20)));
+        assertEquals(1, l.getRejectedCount());
+
+        Thread releaser = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            a.onIgnored();
+        });
+        assertNotNull(l.tryAcquire(Duration.ofSeconds(5)));
+        releaser.join();
+    }
+}
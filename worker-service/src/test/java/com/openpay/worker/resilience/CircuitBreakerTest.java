@@ -0,0 +1,97 @@
+package com.openpay.worker.resilience;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link CircuitBreaker} state transitions.
+ */
+public class CircuitBreakerTest {
+
+    private static CircuitBreaker breaker(Duration openDuration) {
+        // 50% over the last 10 calls, at least 4 calls, 2 trial calls
+        return new CircuitBreaker("test", 50, 10, 4, openDuration, 2);
+    }
+
+    private static void call(CircuitBreaker breaker, boolean success) {
+        assertTrue(breaker.tryAcquirePermission());
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+
+    // Stays closed below the minimum call count and below the threshold
+    @Test
+    void staysClosedUnderThreshold() {
+        CircuitBreaker cb = breaker(Duration.ofSeconds(30));
+        call(cb, false);
+        call(cb, false);
+        call(cb, false); // 3 failures, but minimumCalls = 4
+        assertEquals(CircuitBreaker.State.CLOSED, cb.getState());
+
+        CircuitBreaker healthy = breaker(Duration.ofSeconds(30));
+        for (int i = 0; i < 20; i++) {
+            call(healthy, i % 3 != 2); // ~33% failures
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, healthy.getState());
+    }
+
+    // Opens at the threshold and then refuses calls without counting them
+    @Test
+    void opensAndRejects() {
+        CircuitBreaker cb = breaker(Duration.ofSeconds(30));
+        call(cb, true);
+        call(cb, false);
+        call(cb, true);
+        call(cb, false); // 2/4 = 50%
+        assertEquals(CircuitBreaker.State.OPEN, cb.getState());
+        assertFalse(cb.isCallPermitted());
+        assertFalse(cb.tryAcquirePermission());
+        assertEquals(1, cb.getRejectedCount());
+        assertEquals(1, cb.drainTransitions().size());
+    }
+
+    // After the open duration, trial calls decide: all succeed -> closed
+    @Test
+    void halfOpenClosesAfterSuccessfulTrials() throws Exception {
+        CircuitBreaker cb = breaker(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            call(cb, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, cb.getState());
+        Thread.sleep(80);
+
+        assertTrue(cb.tryAcquirePermission());
+        assertTrue(cb.tryAcquirePermission());
+        assertFalse(cb.tryAcquirePermission(), "only 2 trial calls while half-open");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.getState());
+        cb.onSuccess();
+        cb.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, cb.getState());
+        assertEquals(0, cb.getFailureCount());
+    }
+
+    // A failed trial call re-opens the circuit; an unused permit is handed back
+    @Test
+    void halfOpenReopensOnFailure() throws Exception {
+        CircuitBreaker cb = breaker(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            call(cb, false);
+        }
+        Thread.sleep(80);
+
+        assertTrue(cb.tryAcquirePermission());
+        cb.onIgnored();
+        assertTrue(cb.tryAcquirePermission());
+        assertTrue(cb.tryAcquirePermission());
+        cb.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, cb.getState());
+    }
+}
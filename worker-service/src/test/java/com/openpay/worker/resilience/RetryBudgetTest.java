@@ -0,0 +1,34 @@
+package com.openpay.worker.resilience;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link RetryBudget} admission on local counts (no Redis
+ * sync).
+ */
+public class RetryBudgetTest {
+
+    // The floor allows a few retries; beyond it retries are earned by attempts
+    @Test
+    void retriesAreCappedByRatio() {
+        RetryBudget budget = new RetryBudget(null, 0.1, 2, Duration.ofSeconds(60), Duration.ofSeconds(10));
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+        assertEquals(1, budget.getDeferredCount());
+
+        for (int i = 0; i < 10; i++) {
+            budget.recordAttempt();
+        }
+        assertTrue(budget.tryAcquireRetry()); // 10 attempts x 0.1 = 1 more
+        assertFalse(budget.tryAcquireRetry());
+        assertEquals(0.3, budget.getRetryRatio(), 1e-9);
+        assertEquals(0.0, budget.getRemaining(), 1e-9);
+    }
+}
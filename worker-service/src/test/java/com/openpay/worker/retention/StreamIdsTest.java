@@ -0,0 +1,28 @@
+package com.openpay.worker.retention;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link StreamIds} (MINID cut points).
+ */
+public class StreamIdsTest {
+
+    @Test
+    void comparesNumericallyNotLexically() {
+        assertTrue(StreamIds.compare("999-0", "1000-0") < 0);
+        assertTrue(StreamIds.compare("1000-10", "1000-9") > 0);
+        assertEquals(0, StreamIds.compare("1000", "1000-0"));
+        assertEquals("999-5", StreamIds.min("1000-0", "999-5"));
+    }
+
+    @Test
+    void successorIsTheNextPossibleId() {
+        assertEquals("1000-1", StreamIds.successor("1000-0"));
+        assertEquals("1700000000000-43", StreamIds.successor("1700000000000-42"));
+        assertTrue(StreamIds.compare(StreamIds.successor("5-7"), "5-7") > 0);
+        assertTrue(StreamIds.compare(StreamIds.successor("5-7"), "6-0") < 0);
+    }
+}